@@ -0,0 +1,142 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import es.uvigo.esei.sing.textproc.abstracttppstep.TppProtocol.RequestFormat;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import lombok.NonNull;
+
+/**
+ * Contains the protocol negotiation and content coding logic common to every
+ * client. Requests are sent in the PROTOCOL-1 format until a response
+ * announces that the web service speaks a newer version, so web services that
+ * do not know about newer versions keep working as before.
+ *
+ * @author Alejandro González García
+ */
+abstract class AbstractTppClient implements TppClient {
+	private final int maximumProtocolVersion;
+	private final boolean framedRequests;
+	private final TppContentEncoding contentEncoding;
+	private volatile int protocolVersion = 1;
+
+	/**
+	 * Initializes the protocol settings of a client.
+	 *
+	 * @param maximumProtocolVersion The newest protocol version to negotiate.
+	 * @param framedRequests         Whether to send PROTOCOL-2 requests as
+	 *                               streams of frames, one per document.
+	 * @param contentEncoding        The content coding to compress PROTOCOL-2
+	 *                               request bodies with. Responses are requested
+	 *                               to be compressed with any supported content
+	 *                               coding if it is not identity.
+	 * @throws IllegalArgumentException If {@code maximumProtocolVersion} is not a
+	 *                                  known protocol version, or
+	 *                                  {@code contentEncoding} is {@code null}.
+	 */
+	protected AbstractTppClient(final int maximumProtocolVersion, final boolean framedRequests, @NonNull final TppContentEncoding contentEncoding) {
+		if (maximumProtocolVersion < 1 || maximumProtocolVersion > TppProtocol.LATEST_VERSION) {
+			throw new IllegalArgumentException("Unknown protocol version: " + maximumProtocolVersion);
+		}
+
+		this.maximumProtocolVersion = maximumProtocolVersion;
+		this.framedRequests = framedRequests;
+		this.contentEncoding = contentEncoding;
+	}
+
+	/**
+	 * Returns the format requests are sent in, according to the protocol version
+	 * negotiated so far.
+	 *
+	 * @return The described request format.
+	 */
+	protected final RequestFormat getRequestFormat() {
+		if (protocolVersion < 2) {
+			return RequestFormat.PROTOCOL_1;
+		} else {
+			return framedRequests ? RequestFormat.PROTOCOL_2_FRAMED : RequestFormat.PROTOCOL_2;
+		}
+	}
+
+	/**
+	 * Returns the value of the User-Agent request header, which advertises the
+	 * newest protocol version we are willing to speak.
+	 *
+	 * @return The described header value.
+	 */
+	protected final String getUserAgent() {
+		return USER_AGENT_PREFIX + maximumProtocolVersion;
+	}
+
+	/**
+	 * Returns the content coding a request body in the specified format is
+	 * compressed with. PROTOCOL-1 web services do not expect compressed requests.
+	 *
+	 * @param requestFormat The format of the request body.
+	 * @return The described content coding.
+	 */
+	protected final TppContentEncoding getRequestContentEncoding(@NonNull final RequestFormat requestFormat) {
+		return requestFormat.getProtocolVersion() >= 2 ? contentEncoding : TppContentEncoding.IDENTITY;
+	}
+
+	/**
+	 * Returns the value of the Accept-Encoding request header, or {@code null} if
+	 * responses should not be compressed.
+	 *
+	 * @return The described header value.
+	 */
+	protected final String getAcceptedEncodings() {
+		return contentEncoding != TppContentEncoding.IDENTITY ? TppContentEncoding.ACCEPTED_ENCODINGS : null;
+	}
+
+	/**
+	 * Writes a request body, compressed as appropriate for its format.
+	 *
+	 * @param requestFormat The format of the request body.
+	 * @param requestBody   The stream to write the request body to. It is not
+	 *                      closed.
+	 * @param requestWriter The writer of the uncompressed request body.
+	 * @throws IOException         If an I/O error occurs.
+	 * @throws ProcessingException If the request body could not be generated.
+	 */
+	protected final void writeRequest(
+		final RequestFormat requestFormat, final OutputStream requestBody, final RequestWriter requestWriter
+	) throws IOException, ProcessingException {
+		getRequestContentEncoding(requestFormat).writeEncoded(requestFormat, requestBody, requestWriter);
+	}
+
+	/**
+	 * Upgrades the protocol version to use in later requests, according to the
+	 * value of the {@value TppProtocol#PROTOCOL_HEADER} header of a response, and
+	 * returns the decompressed response body.
+	 *
+	 * @param protocolHeader  The value of the protocol response header, or
+	 *                        {@code null} if the response has no such header.
+	 * @param contentEncoding The value of the Content-Encoding response header, or
+	 *                        {@code null} if the response has no such header.
+	 * @param responseBody    The response body, as received.
+	 * @return The decompressed response body.
+	 * @throws IOException If the response content coding is not supported.
+	 */
+	protected final InputStream readResponse(
+		final String protocolHeader, final String contentEncoding, @NonNull final InputStream responseBody
+	) throws IOException {
+		if (protocolHeader != null) {
+			try {
+				final int announcedProtocolVersion = Math.min(Integer.parseInt(protocolHeader.strip()), maximumProtocolVersion);
+
+				if (announcedProtocolVersion > protocolVersion) {
+					protocolVersion = announcedProtocolVersion;
+				}
+			} catch (final NumberFormatException ignored) {
+				// Keep speaking the protocol we know the web service understands
+			}
+		}
+
+		return TppContentEncoding.decode(contentEncoding, responseBody);
+	}
+}
@@ -2,31 +2,58 @@
 
 package es.uvigo.esei.sing.textproc.abstracttppstep;
 
-import static es.uvigo.esei.sing.textproc.abstracttppstep.TppHelper.processAttributes;
+import static java.util.Map.entry;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URI;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Formatter;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
+import javax.json.Json;
 import javax.json.JsonObject;
 import javax.json.stream.JsonGenerator;
 import javax.persistence.PersistenceException;
-import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
-import javax.ws.rs.client.WebTarget;
 
 import es.uvigo.esei.sing.textproc.entity.ProcessedDocument;
+import es.uvigo.esei.sing.textproc.logging.TextProcLogging;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.AsynchronousRequestsProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.BackendProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.BisectFailingRequestsProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.CircuitBreakerCooldownProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.CircuitBreakerThresholdProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.CompressionProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.ConnectTimeoutProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.DocumentsPerRequestProcessingStepParameter;
 import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.EndpointProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.FramedRequestsProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.HealthCheckIntervalProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.Http2ProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.LoadBalancingProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.MaxInFlightRequestsProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.MaxRequestsPerEndpointProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.MaxRetriesProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.ProtocolVersionProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.RequestTimeoutProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.ResponseCacheFileProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.ResponseCacheSizeProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.RetryBackoffProcessingStepParameter;
 import es.uvigo.esei.sing.textproc.step.AbstractProcessingStep;
 import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
 import lombok.NonNull;
 
 /**
@@ -37,12 +64,108 @@ import lombok.NonNull;
  */
 public abstract class AbstractTppProcessingStep extends AbstractProcessingStep {
 	private static final String ENDPOINT_PROCESSING_STEP_PARAMETER_NAME = new EndpointProcessingStepParameter().getName();
+	private static final String BACKEND_PROCESSING_STEP_PARAMETER_NAME = new BackendProcessingStepParameter().getName();
+	private static final String ASYNCHRONOUS_REQUESTS_PROCESSING_STEP_PARAMETER_NAME = new AsynchronousRequestsProcessingStepParameter().getName();
+	private static final String MAX_IN_FLIGHT_REQUESTS_PROCESSING_STEP_PARAMETER_NAME = new MaxInFlightRequestsProcessingStepParameter().getName();
+	private static final String DOCUMENTS_PER_REQUEST_PROCESSING_STEP_PARAMETER_NAME = new DocumentsPerRequestProcessingStepParameter().getName();
+	private static final String HTTP2_PROCESSING_STEP_PARAMETER_NAME = new Http2ProcessingStepParameter().getName();
+	private static final String RESPONSE_CACHE_SIZE_PROCESSING_STEP_PARAMETER_NAME = new ResponseCacheSizeProcessingStepParameter().getName();
+	private static final String RESPONSE_CACHE_FILE_PROCESSING_STEP_PARAMETER_NAME = new ResponseCacheFileProcessingStepParameter().getName();
+	private static final String PROTOCOL_VERSION_PROCESSING_STEP_PARAMETER_NAME = new ProtocolVersionProcessingStepParameter().getName();
+	private static final String FRAMED_REQUESTS_PROCESSING_STEP_PARAMETER_NAME = new FramedRequestsProcessingStepParameter().getName();
+	private static final String COMPRESSION_PROCESSING_STEP_PARAMETER_NAME = new CompressionProcessingStepParameter().getName();
+	private static final String CONNECT_TIMEOUT_PROCESSING_STEP_PARAMETER_NAME = new ConnectTimeoutProcessingStepParameter().getName();
+	private static final String REQUEST_TIMEOUT_PROCESSING_STEP_PARAMETER_NAME = new RequestTimeoutProcessingStepParameter().getName();
+	private static final String MAX_RETRIES_PROCESSING_STEP_PARAMETER_NAME = new MaxRetriesProcessingStepParameter().getName();
+	private static final String RETRY_BACKOFF_PROCESSING_STEP_PARAMETER_NAME = new RetryBackoffProcessingStepParameter().getName();
+	private static final String BISECT_FAILING_REQUESTS_PROCESSING_STEP_PARAMETER_NAME = new BisectFailingRequestsProcessingStepParameter().getName();
+	private static final String CIRCUIT_BREAKER_THRESHOLD_PROCESSING_STEP_PARAMETER_NAME = new CircuitBreakerThresholdProcessingStepParameter().getName();
+	private static final String CIRCUIT_BREAKER_COOLDOWN_PROCESSING_STEP_PARAMETER_NAME = new CircuitBreakerCooldownProcessingStepParameter().getName();
+	private static final String LOAD_BALANCING_PROCESSING_STEP_PARAMETER_NAME = new LoadBalancingProcessingStepParameter().getName();
+	private static final String MAX_REQUESTS_PER_ENDPOINT_PROCESSING_STEP_PARAMETER_NAME = new MaxRequestsPerEndpointProcessingStepParameter().getName();
+	private static final String HEALTH_CHECK_INTERVAL_PROCESSING_STEP_PARAMETER_NAME = new HealthCheckIntervalProcessingStepParameter().getName();
+
+	/**
+	 * The value of the backend parameter that makes documents be processed by a
+	 * web service, which is the default.
+	 */
+	private static final String HTTP_BACKEND = "http";
+
+	/**
+	 * The value of the backend parameter that makes documents be processed in
+	 * the JVM.
+	 */
+	private static final String IN_PROCESS_BACKEND = "in-process";
+
+	/**
+	 * Separates the endpoints of the endpoint parameter.
+	 */
+	private static final Pattern ENDPOINT_SEPARATOR_REGEX = Pattern.compile("[\\s,]+");
+
+	/**
+	 * The default maximum number of responses for document attributes kept in
+	 * memory. Short texts like "[deleted]" or "thanks!" repeat a lot in social
+	 * network corpora, and their responses take little memory.
+	 */
+	private static final String DEFAULT_RESPONSE_CACHE_SIZE_PROCESSING_STEP_PARAMETER = "16384";
+
+	/**
+	 * The default content coding of compressed requests. Compressing the highly
+	 * redundant JSON of a batch only pays off when the web service is not on the
+	 * same machine, so it is disabled unless asked for.
+	 */
+	private static final String DEFAULT_COMPRESSION_PROCESSING_STEP_PARAMETER = "identity";
+
+	/**
+	 * The default milliseconds to wait for a connection to be established.
+	 */
+	private static final String DEFAULT_CONNECT_TIMEOUT_PROCESSING_STEP_PARAMETER = "10000";
+
+	/**
+	 * The default milliseconds to wait for a response. Lemmatizing a big batch
+	 * with some models takes a while, so this is generous.
+	 */
+	private static final String DEFAULT_REQUEST_TIMEOUT_PROCESSING_STEP_PARAMETER = "300000";
+
+	/**
+	 * The default number of retries of a failed request.
+	 */
+	private static final String DEFAULT_MAX_RETRIES_PROCESSING_STEP_PARAMETER = "3";
+
+	/**
+	 * The default milliseconds to wait before the first retry of a request.
+	 */
+	private static final String DEFAULT_RETRY_BACKOFF_PROCESSING_STEP_PARAMETER = "500";
+
+	/**
+	 * The default number of consecutive unavailability failures that pause
+	 * requests.
+	 */
+	private static final String DEFAULT_CIRCUIT_BREAKER_THRESHOLD_PROCESSING_STEP_PARAMETER = "5";
+
+	/**
+	 * The default milliseconds requests are paused for.
+	 */
+	private static final String DEFAULT_CIRCUIT_BREAKER_COOLDOWN_PROCESSING_STEP_PARAMETER = "30000";
+
+	/**
+	 * The default way requests are balanced among several endpoints.
+	 */
+	private static final String DEFAULT_LOAD_BALANCING_PROCESSING_STEP_PARAMETER = "least-outstanding-requests";
+
+	/**
+	 * The default milliseconds an unavailable endpoint is left out when there are
+	 * several endpoints. It is shorter than the circuit breaker cooldown, as the
+	 * other endpoints take its requests meanwhile.
+	 */
+	private static final String DEFAULT_HEALTH_CHECK_INTERVAL_PROCESSING_STEP_PARAMETER = "5000";
 
 	private final List<Class<? extends ProcessedDocument>> processedDocumentTypes;
 	private final String stepDescriptionFormatString;
 	private final JsonResponseAttributeType jsonResponseAttributeType;
 	private final ProcessingConsumer<? super JsonGenerator> requestParametersAction;
 	private final ProcessingBiConsumer<? super Entry<String, JsonObject>, ? super Map<String, String>> storeProcessedAttributeAction;
+	private final InProcessTppOperation inProcessOperation;
 
 	/**
 	 * Creates a new processing step that processes documents via calls to the Text
@@ -82,6 +205,10 @@ public abstract class AbstractTppProcessingStep extends AbstractProcessingStep {
 	 *                                      document object of the response, and is
 	 *                                      expected to put its processed form in
 	 *                                      the provided map.
+	 * @param inProcessOperation            The implementation of the operation of
+	 *                                      the web service in the JVM, which is
+	 *                                      run when the in-process backend is
+	 *                                      selected.
 	 * @throws IllegalArgumentException If any parameter is {@code null} or invalid.
 	 */
 	protected AbstractTppProcessingStep(
@@ -89,11 +216,12 @@ public abstract class AbstractTppProcessingStep extends AbstractProcessingStep {
 		@NonNull final List<Class<? extends ProcessedDocument>> processedDocumentTypes,
 		@NonNull final String stepDescriptionFormatString, @NonNull final JsonResponseAttributeType jsonResponseAttributeType,
 		@NonNull final ProcessingConsumer<? super JsonGenerator> requestParametersAction,
-		@NonNull final ProcessingBiConsumer<? super Entry<String, JsonObject>, ? super Map<String, String>> storeProcessedAttributeAction 
+		@NonNull final ProcessingBiConsumer<? super Entry<String, JsonObject>, ? super Map<String, String>> storeProcessedAttributeAction,
+		@NonNull final InProcessTppOperation inProcessOperation
 	) {
 		super(
 			getActualValidationPredicates(validationPredicates),
-			getActualRequiredParameters(requiredParameters)
+			requiredParameters
 		);
 
 		if (processedDocumentTypes.size() != 2) {
@@ -113,57 +241,284 @@ public abstract class AbstractTppProcessingStep extends AbstractProcessingStep {
 		this.jsonResponseAttributeType = jsonResponseAttributeType;
 		this.requestParametersAction = requestParametersAction;
 		this.storeProcessedAttributeAction = storeProcessedAttributeAction;
+		this.inProcessOperation = inProcessOperation;
 	}
 
 	@Override
 	protected final void run() throws ProcessingException {
-		final Client wsClient = ClientBuilder.newClient();
-
-		try {
-			final WebTarget target = wsClient.target(getParameters().get(ENDPOINT_PROCESSING_STEP_PARAMETER_NAME));
-
-			// Delete previous results
-			for (final Class<? extends ProcessedDocument> processedDocumentType : processedDocumentTypes) {
-				deleteAllProcessedDocumentsOfType(processedDocumentType);
-			}
-
+		try (final TppBackend backend = createBackend()) {
 			// Do the actual processing
-			for (int i = 0; i < processedDocumentTypes.size(); ++i) {
-				final String[] unprocessedAttributeNames = unprocessedDocumentsAttributes.get(i);
-				final Class<? extends ProcessedDocument> processedDocumentType = processedDocumentTypes.get(i);
-
-				forEachDocumentInNativeQuery(
-					unprocessedDocumentsQuerySuppliers.get(i),
-					String.format(stepDescriptionFormatString, unprocessedDocumentTypesNames.get(i)),
-					numberOfUnprocessedEntitiesProviders.get(i).get(),
+			processDocuments(
+				processedDocumentTypes, stepDescriptionFormatString,
+				(
+					final String unprocessedDocumentTypeName, final String[] unprocessedAttributeNames,
+					final Class<? extends ProcessedDocument> processedDocumentType
+				) ->
 					(final List<String[]> batchAttributes) -> {
 						// Process entity attributes
-						final List<Map<String, String>> processedDocs = processAttributes(
-							batchAttributes, 1, unprocessedAttributeNames, target,
-							requestParametersAction, jsonResponseAttributeType,
-							storeProcessedAttributeAction
+						final List<Map<String, String>> processedDocs = backend.processAttributes(
+							batchAttributes, unprocessedAttributeNames
 						);
 						// No benefit in iterating with several threads as order matters
 						final Iterator<Map<String, String>> processedDocsIter = processedDocs.iterator();
 
 						// Persist the resulting processed documents
 						for (final String[] completeAttributes : batchAttributes) {
+							final Map<String, String> processedDoc = processedDocsIter.next(); // Same size than attributes
+
+							if (processedDoc == null) {
+								TextProcLogging.getLogger().log(
+									Level.WARNING, "The web service could not process the document with ID {1} of {0}. Skipping...",
+									new Object[] { unprocessedDocumentTypeName, completeAttributes[0] }
+								);
+
+								continue;
+							}
+
 							saveProcessedDocument(
-								processedDocumentType, Integer.parseInt(completeAttributes[0]),
-								processedDocsIter.next() // Same size than attributes
+								processedDocumentType, Integer.parseInt(completeAttributes[0]), processedDoc
 							);
 						}
-					},
-					null
-				);
-			}
+					}
+			);
+
+			backend.printStatistics();
 		} catch (final IllegalArgumentException | PersistenceException exc) {
 			throw new ProcessingException(DATA_ACCESS_EXCEPTION_MESSAGE, exc);
-		} finally {
-			wsClient.close();
+		} catch (final IOException exc) {
+			throw new ProcessingException("An I/O error occurred while using the response cache", exc);
 		}
 	}
 
+	/**
+	 * Creates the backend that processes the documents of this step, as
+	 * configured by its parameters. By default, documents are processed by the
+	 * web service at the endpoint of this step, which is mandatory then.
+	 *
+	 * @return The described backend.
+	 * @throws ProcessingException If the endpoint parameter is missing, or the
+	 *                             request parameters could not be generated.
+	 * @throws IOException         If the disk store of the response cache could
+	 *                             not be opened.
+	 */
+	private TppBackend createBackend() throws ProcessingException, IOException {
+		final Map<String, String> parameters = getParameters();
+
+		if (IN_PROCESS_BACKEND.equals(parameters.getOrDefault(BACKEND_PROCESSING_STEP_PARAMETER_NAME, HTTP_BACKEND))) {
+			return new InProcessTppBackend(inProcessOperation, parameters);
+		}
+
+		if (!parameters.containsKey(ENDPOINT_PROCESSING_STEP_PARAMETER_NAME)) {
+			throw new ProcessingException(
+				"Missing required parameter for step " + getClass().getSimpleName() + ": " +
+				ENDPOINT_PROCESSING_STEP_PARAMETER_NAME
+			);
+		}
+
+		final TppResponseCache responseCache = createResponseCache();
+		final TppClient client;
+
+		try {
+			client = createClient();
+		} catch (final RuntimeException exc) {
+			if (responseCache != null) {
+				responseCache.close();
+			}
+
+			throw exc;
+		}
+
+		return new HttpTppBackend(
+			client,
+			Integer.parseInt(parameters.getOrDefault(
+				DOCUMENTS_PER_REQUEST_PROCESSING_STEP_PARAMETER_NAME, Integer.toString(Integer.MAX_VALUE)
+			)),
+			responseCache, createRetryPolicy(client.getEndpoint()), requestParametersAction, jsonResponseAttributeType,
+			storeProcessedAttributeAction
+		);
+	}
+
+	/**
+	 * Creates the client that sends requests to the endpoints of this step, as
+	 * configured by its parameters. Asynchronous clients allow twice as many
+	 * requests in flight to each endpoint as worker threads by default, so every
+	 * worker can have a request on the wire while it reads the response of
+	 * another. The newest protocol version is negotiated by default, as web
+	 * services that do not speak it keep receiving requests in the first
+	 * version. If there are several endpoints, a client is created for each of
+	 * them, and requests are balanced among them.
+	 *
+	 * @return The described client.
+	 * @throws IllegalArgumentException If some endpoint is not a valid URI.
+	 */
+	private TppClient createClient() {
+		final Map<String, String> parameters = getParameters();
+		final String[] endpoints = getEndpoints();
+		final List<TppClient> clients = new ArrayList<>(endpoints.length);
+
+		if (endpoints.length == 1) {
+			return createClient(endpoints[0]);
+		}
+
+		try {
+			for (final String endpoint : endpoints) {
+				clients.add(createClient(endpoint));
+			}
+
+			return new BalancingTppClient(
+				clients,
+				TppLoadBalancing.forName(parameters.getOrDefault(
+					LOAD_BALANCING_PROCESSING_STEP_PARAMETER_NAME, DEFAULT_LOAD_BALANCING_PROCESSING_STEP_PARAMETER
+				)),
+				Integer.parseInt(parameters.getOrDefault(
+					MAX_REQUESTS_PER_ENDPOINT_PROCESSING_STEP_PARAMETER_NAME, Integer.toString(Integer.MAX_VALUE)
+				)),
+				Long.parseLong(parameters.getOrDefault(
+					HEALTH_CHECK_INTERVAL_PROCESSING_STEP_PARAMETER_NAME, DEFAULT_HEALTH_CHECK_INTERVAL_PROCESSING_STEP_PARAMETER
+				))
+			);
+		} catch (final RuntimeException exc) {
+			for (final TppClient client : clients) {
+				client.close();
+			}
+
+			throw exc;
+		}
+	}
+
+	/**
+	 * Creates the client that sends requests to an endpoint of this step, as
+	 * configured by its parameters.
+	 *
+	 * @param endpoint The endpoint.
+	 * @return The described client.
+	 * @throws IllegalArgumentException If the endpoint is not a valid URI.
+	 */
+	private TppClient createClient(final String endpoint) {
+		final Map<String, String> parameters = getParameters();
+		final int maximumProtocolVersion = Integer.parseInt(parameters.getOrDefault(
+			PROTOCOL_VERSION_PROCESSING_STEP_PARAMETER_NAME, Integer.toString(TppProtocol.LATEST_VERSION)
+		));
+		final boolean framedRequests = AbstractProcessingStepParameter.convertValueToBoolean(
+			parameters.get(FRAMED_REQUESTS_PROCESSING_STEP_PARAMETER_NAME)
+		);
+		final TppContentEncoding contentEncoding = TppContentEncoding.forName(parameters.getOrDefault(
+			COMPRESSION_PROCESSING_STEP_PARAMETER_NAME, DEFAULT_COMPRESSION_PROCESSING_STEP_PARAMETER
+		));
+		final long connectTimeoutMillis = Long.parseLong(parameters.getOrDefault(
+			CONNECT_TIMEOUT_PROCESSING_STEP_PARAMETER_NAME, DEFAULT_CONNECT_TIMEOUT_PROCESSING_STEP_PARAMETER
+		));
+		final long requestTimeoutMillis = Long.parseLong(parameters.getOrDefault(
+			REQUEST_TIMEOUT_PROCESSING_STEP_PARAMETER_NAME, DEFAULT_REQUEST_TIMEOUT_PROCESSING_STEP_PARAMETER
+		));
+
+		if (!AbstractProcessingStepParameter.convertValueToBoolean(parameters.get(ASYNCHRONOUS_REQUESTS_PROCESSING_STEP_PARAMETER_NAME))) {
+			return new JaxRsTppClient(
+				endpoint, connectTimeoutMillis, requestTimeoutMillis, maximumProtocolVersion, framedRequests, contentEncoding
+			);
+		}
+
+		return new HttpTppClient(
+			endpoint,
+			Integer.parseInt(parameters.getOrDefault(
+				MAX_IN_FLIGHT_REQUESTS_PROCESSING_STEP_PARAMETER_NAME,
+				Integer.toString(2 * Integer.parseInt(
+					parameters.getOrDefault(WORKER_THREADS_STEP_PARAMETER_NAME, DEFAULT_WORKER_THREADS_STEP_PARAMETER)
+				))
+			)),
+			AbstractProcessingStepParameter.convertValueToBoolean(parameters.get(HTTP2_PROCESSING_STEP_PARAMETER_NAME)),
+			connectTimeoutMillis, requestTimeoutMillis, maximumProtocolVersion, framedRequests, contentEncoding
+		);
+	}
+
+	/**
+	 * Creates the policy that decides how failed requests to the endpoint of this
+	 * step are recovered from, as configured by its parameters. By default,
+	 * requests are retried and bisected, and a circuit breaker pauses them when
+	 * the web service is unavailable.
+	 *
+	 * @param endpoint The endpoint of this step.
+	 * @return The described policy.
+	 */
+	private TppRetryPolicy createRetryPolicy(final String endpoint) {
+		final Map<String, String> parameters = getParameters();
+		final int circuitBreakerThreshold = Integer.parseInt(parameters.getOrDefault(
+			CIRCUIT_BREAKER_THRESHOLD_PROCESSING_STEP_PARAMETER_NAME, DEFAULT_CIRCUIT_BREAKER_THRESHOLD_PROCESSING_STEP_PARAMETER
+		));
+
+		return new TppRetryPolicy(
+			Integer.parseInt(parameters.getOrDefault(
+				MAX_RETRIES_PROCESSING_STEP_PARAMETER_NAME, DEFAULT_MAX_RETRIES_PROCESSING_STEP_PARAMETER
+			)),
+			Long.parseLong(parameters.getOrDefault(
+				RETRY_BACKOFF_PROCESSING_STEP_PARAMETER_NAME, DEFAULT_RETRY_BACKOFF_PROCESSING_STEP_PARAMETER
+			)),
+			AbstractProcessingStepParameter.convertValueToBoolean(
+				parameters.getOrDefault(BISECT_FAILING_REQUESTS_PROCESSING_STEP_PARAMETER_NAME, "true")
+			),
+			circuitBreakerThreshold < 1 ? null : new TppCircuitBreaker(
+				endpoint, circuitBreakerThreshold,
+				Long.parseLong(parameters.getOrDefault(
+					CIRCUIT_BREAKER_COOLDOWN_PROCESSING_STEP_PARAMETER_NAME, DEFAULT_CIRCUIT_BREAKER_COOLDOWN_PROCESSING_STEP_PARAMETER
+				))
+			)
+		);
+	}
+
+	/**
+	 * Returns the endpoints of this step, as given by its endpoint parameter.
+	 *
+	 * @return The described endpoints. There is at least one.
+	 */
+	private String[] getEndpoints() {
+		return ENDPOINT_SEPARATOR_REGEX.splitAsStream(getParameters().get(ENDPOINT_PROCESSING_STEP_PARAMETER_NAME))
+			.filter((final String endpoint) -> !endpoint.isEmpty())
+			.toArray(String[]::new);
+	}
+
+	/**
+	 * Creates the cache of the responses of the endpoints of this step, as
+	 * configured by its parameters. The request parameters are part of the cache
+	 * keys, so responses for other languages or models are not mixed up. So are
+	 * the paths of the endpoints, which tell the operation they perform, but not
+	 * their hosts: any replica of an operation gives the same responses, so the
+	 * cache is still valid when endpoints are added, removed or reordered.
+	 *
+	 * @return The described cache, or {@code null} if it is disabled.
+	 * @throws ProcessingException      If the request parameters could not be
+	 *                                  generated.
+	 * @throws IOException              If the disk store could not be opened.
+	 * @throws IllegalArgumentException If some endpoint is not a valid URI.
+	 */
+	private TppResponseCache createResponseCache() throws ProcessingException, IOException {
+		final Map<String, String> parameters = getParameters();
+		final int maximumMemoryEntries = Integer.parseInt(parameters.getOrDefault(
+			RESPONSE_CACHE_SIZE_PROCESSING_STEP_PARAMETER_NAME, DEFAULT_RESPONSE_CACHE_SIZE_PROCESSING_STEP_PARAMETER
+		));
+		final String diskStoreFile = parameters.get(RESPONSE_CACHE_FILE_PROCESSING_STEP_PARAMETER_NAME);
+		final StringWriter requestParametersWriter = new StringWriter();
+
+		if (maximumMemoryEntries < 1 && diskStoreFile == null) {
+			return null;
+		}
+
+		try (final JsonGenerator requestParametersGenerator = Json.createGenerator(requestParametersWriter)) {
+			requestParametersGenerator.writeStartObject();
+			requestParametersAction.accept(requestParametersGenerator);
+			requestParametersGenerator.writeEnd();
+		}
+
+		return new TppResponseCache(
+			Arrays.stream(getEndpoints())
+				.map((final String endpoint) -> URI.create(endpoint).getPath())
+				.distinct()
+				.sorted()
+				.collect(Collectors.joining(" ")),
+			requestParametersWriter.toString(),
+			maximumMemoryEntries, diskStoreFile != null ? Path.of(diskStoreFile) : null
+		);
+	}
+
 	/**
 	 * Returns a map with the provided validation predicates, plus any validation
 	 * predicates common to all Text Processing Python processing steps.
@@ -173,8 +528,106 @@ public abstract class AbstractTppProcessingStep extends AbstractProcessingStep {
 	 * @throws IllegalArgumentException If {@code validationPredicates} is {@code null}.
 	 */
 	private static Map<String, Predicate<String>> getActualValidationPredicates(@NonNull final Map<String, Predicate<String>> validationPredicates) {
-		final Map<String, Predicate<String>> commonValidationPredicates = Map.of(
-			ENDPOINT_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> value != null && !value.isBlank()
+		final Map<String, Predicate<String>> commonValidationPredicates = Map.ofEntries(
+			entry(ENDPOINT_PROCESSING_STEP_PARAMETER_NAME, (final String value) ->
+				value != null && !value.isEmpty() && !ENDPOINT_SEPARATOR_REGEX.matcher(value).matches()
+			),
+			entry(BACKEND_PROCESSING_STEP_PARAMETER_NAME, (final String value) ->
+				HTTP_BACKEND.equals(value) || IN_PROCESS_BACKEND.equals(value)
+			),
+			entry(ASYNCHRONOUS_REQUESTS_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> value != null),
+			entry(MAX_IN_FLIGHT_REQUESTS_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> {
+				try {
+					return Integer.parseInt(value) > 0;
+				} catch (final NumberFormatException exc) {
+					return false;
+				}
+			}),
+			entry(DOCUMENTS_PER_REQUEST_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> {
+				try {
+					return Integer.parseInt(value) > 0;
+				} catch (final NumberFormatException exc) {
+					return false;
+				}
+			}),
+			entry(HTTP2_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> value != null),
+			entry(RESPONSE_CACHE_SIZE_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> {
+				try {
+					return Integer.parseInt(value) >= 0;
+				} catch (final NumberFormatException exc) {
+					return false;
+				}
+			}),
+			entry(RESPONSE_CACHE_FILE_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> value != null && !value.isBlank()),
+			entry(PROTOCOL_VERSION_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> {
+				try {
+					final int protocolVersion = Integer.parseInt(value);
+
+					return protocolVersion > 0 && protocolVersion <= TppProtocol.LATEST_VERSION;
+				} catch (final NumberFormatException exc) {
+					return false;
+				}
+			}),
+			entry(FRAMED_REQUESTS_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> value != null),
+			entry(COMPRESSION_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> TppContentEncoding.forName(value) != null),
+			entry(CONNECT_TIMEOUT_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> {
+				try {
+					return Long.parseLong(value) >= 0;
+				} catch (final NumberFormatException exc) {
+					return false;
+				}
+			}),
+			entry(REQUEST_TIMEOUT_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> {
+				try {
+					return Long.parseLong(value) >= 0;
+				} catch (final NumberFormatException exc) {
+					return false;
+				}
+			}),
+			entry(MAX_RETRIES_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> {
+				try {
+					return Integer.parseInt(value) >= 0;
+				} catch (final NumberFormatException exc) {
+					return false;
+				}
+			}),
+			entry(RETRY_BACKOFF_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> {
+				try {
+					return Long.parseLong(value) >= 0;
+				} catch (final NumberFormatException exc) {
+					return false;
+				}
+			}),
+			entry(BISECT_FAILING_REQUESTS_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> value != null),
+			entry(CIRCUIT_BREAKER_THRESHOLD_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> {
+				try {
+					return Integer.parseInt(value) >= 0;
+				} catch (final NumberFormatException exc) {
+					return false;
+				}
+			}),
+			entry(CIRCUIT_BREAKER_COOLDOWN_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> {
+				try {
+					return Long.parseLong(value) >= 0;
+				} catch (final NumberFormatException exc) {
+					return false;
+				}
+			}),
+			entry(LOAD_BALANCING_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> TppLoadBalancing.forName(value) != null),
+			entry(MAX_REQUESTS_PER_ENDPOINT_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> {
+				try {
+					return Integer.parseInt(value) > 0;
+				} catch (final NumberFormatException exc) {
+					return false;
+				}
+			}),
+			entry(HEALTH_CHECK_INTERVAL_PROCESSING_STEP_PARAMETER_NAME, (final String value) -> {
+				try {
+					return Long.parseLong(value) >= 0;
+				} catch (final NumberFormatException exc) {
+					return false;
+				}
+			})
 		);
 
 		final Map<String, Predicate<String>> actualValidationPredicates = new HashMap<>(
@@ -186,28 +639,4 @@ public abstract class AbstractTppProcessingStep extends AbstractProcessingStep {
 
 		return actualValidationPredicates;
 	}
-
-	/**
-	 * Returns a set with the provided required parameters, plus any required
-	 * parameter common to all Text Processing Python processing steps.
-	 *
-	 * @param requiredParameters The required parameters for the specific step.
-	 * @return The described set.
-	 * @throws IllegalArgumentException If {@code requiredParameters} is
-	 *                                  {@code null}.
-	 */
-	private static Set<String> getActualRequiredParameters(@NonNull final Set<String> requiredParameters) {
-		final Set<String> commonRequiredParameters = Set.of(
-			ENDPOINT_PROCESSING_STEP_PARAMETER_NAME
-		);
-
-		final Set<String> actualRequiredParameters = new HashSet<>(
-			(int) Math.ceil((commonRequiredParameters.size() + requiredParameters.size()) / 0.75)
-		);
-
-		actualRequiredParameters.addAll(commonRequiredParameters);
-		actualRequiredParameters.addAll(requiredParameters);
-
-		return actualRequiredParameters;
-	}
 }
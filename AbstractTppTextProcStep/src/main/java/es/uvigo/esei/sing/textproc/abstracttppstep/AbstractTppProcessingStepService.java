@@ -9,7 +9,27 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.AsynchronousRequestsProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.BackendProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.BisectFailingRequestsProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.CircuitBreakerCooldownProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.CircuitBreakerThresholdProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.CompressionProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.ConnectTimeoutProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.DocumentsPerRequestProcessingStepParameter;
 import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.EndpointProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.FramedRequestsProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.HealthCheckIntervalProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.Http2ProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.LoadBalancingProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.MaxInFlightRequestsProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.MaxRequestsPerEndpointProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.MaxRetriesProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.ProtocolVersionProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.RequestTimeoutProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.ResponseCacheFileProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.ResponseCacheSizeProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition.RetryBackoffProcessingStepParameter;
 import es.uvigo.esei.sing.textproc.step.ProcessingStepService;
 import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
 
@@ -32,7 +52,27 @@ public abstract class AbstractTppProcessingStepService implements ProcessingStep
 
 		completeSet.addAll(
 			Set.of(
-				EndpointProcessingStepParameter.class
+				EndpointProcessingStepParameter.class,
+				AsynchronousRequestsProcessingStepParameter.class,
+				MaxInFlightRequestsProcessingStepParameter.class,
+				DocumentsPerRequestProcessingStepParameter.class,
+				Http2ProcessingStepParameter.class,
+				ResponseCacheSizeProcessingStepParameter.class,
+				ResponseCacheFileProcessingStepParameter.class,
+				ProtocolVersionProcessingStepParameter.class,
+				FramedRequestsProcessingStepParameter.class,
+				CompressionProcessingStepParameter.class,
+				ConnectTimeoutProcessingStepParameter.class,
+				RequestTimeoutProcessingStepParameter.class,
+				MaxRetriesProcessingStepParameter.class,
+				RetryBackoffProcessingStepParameter.class,
+				BisectFailingRequestsProcessingStepParameter.class,
+				CircuitBreakerThresholdProcessingStepParameter.class,
+				CircuitBreakerCooldownProcessingStepParameter.class,
+				LoadBalancingProcessingStepParameter.class,
+				MaxRequestsPerEndpointProcessingStepParameter.class,
+				HealthCheckIntervalProcessingStepParameter.class,
+				BackendProcessingStepParameter.class
 			)
 		);
 
@@ -0,0 +1,317 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.logging.Level;
+import java.util.stream.Collectors;
+
+import es.uvigo.esei.sing.textproc.logging.TextProcLogging;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import lombok.NonNull;
+
+/**
+ * A client that balances requests among several instances of a Text Processing
+ * Python compatible web service, each one served by its own client. Every
+ * request is sent to the endpoint with the least load, as estimated by the
+ * load balancing, among the ones that are healthy and have fewer requests
+ * waiting for a response than the limit per endpoint.
+ * <p>
+ * The health of endpoints is checked passively: an endpoint that fails a
+ * request because it is unavailable is left out for a health check interval,
+ * after which a single request probes it. The endpoint is healthy again once a
+ * probe gets a response. If every endpoint is unhealthy, requests are sent to
+ * them anyway, so the retry policy decides what to do with their failures.
+ * <p>
+ * Each client negotiates its protocol version on its own, and requests are
+ * sent in the format negotiated with the endpoint they are sent to, so
+ * endpoints that speak older versions don't hold back the rest.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Alejandro González García
+ */
+final class BalancingTppClient implements TppClient {
+	/**
+	 * The weight of the latency of the last response in the average latency of
+	 * an endpoint.
+	 */
+	private static final double LATENCY_SMOOTHING_FACTOR = 0.2;
+
+	private final List<Endpoint> endpoints;
+	private final TppLoadBalancing loadBalancing;
+	private final int maxRequestsPerEndpoint;
+	private final long healthCheckIntervalNanos;
+	private int nextEndpoint = 0;
+
+	/**
+	 * Creates a client that balances requests among the specified clients, which
+	 * are closed along with it.
+	 *
+	 * @param clients                   The clients of each endpoint. There must
+	 *                                  be at least one.
+	 * @param loadBalancing             The way the load of endpoints is
+	 *                                  estimated.
+	 * @param maxRequestsPerEndpoint    The maximum number of requests sent to an
+	 *                                  endpoint that may wait for a response at
+	 *                                  the same time.
+	 * @param healthCheckIntervalMillis The milliseconds an unavailable endpoint
+	 *                                  is left out before probing it again.
+	 * @throws IllegalArgumentException If some parameter is {@code null} or
+	 *                                  invalid.
+	 */
+	BalancingTppClient(
+		@NonNull final List<? extends TppClient> clients, @NonNull final TppLoadBalancing loadBalancing,
+		final int maxRequestsPerEndpoint, final long healthCheckIntervalMillis
+	) {
+		if (clients.isEmpty()) {
+			throw new IllegalArgumentException("There must be at least one endpoint");
+		}
+
+		if (maxRequestsPerEndpoint < 1) {
+			throw new IllegalArgumentException("The maximum number of requests per endpoint must be positive");
+		}
+
+		if (healthCheckIntervalMillis < 0) {
+			throw new IllegalArgumentException("The health check interval can't be negative");
+		}
+
+		this.endpoints = new ArrayList<>(clients.size());
+		for (final TppClient client : clients) {
+			endpoints.add(new Endpoint(client));
+		}
+
+		this.loadBalancing = loadBalancing;
+		this.maxRequestsPerEndpoint = maxRequestsPerEndpoint;
+		this.healthCheckIntervalNanos = healthCheckIntervalMillis * 1_000_000;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * This method blocks while every endpoint has as many requests waiting for a
+	 * response as allowed. A request stops counting towards that limit when its
+	 * future completes.
+	 */
+	@Override
+	public CompletableFuture<InputStream> post(@NonNull final RequestWriter requestWriter) {
+		final Endpoint endpoint;
+
+		try {
+			endpoint = acquireEndpoint();
+		} catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			return CompletableFuture.failedFuture(
+				new ProcessingException("Interrupted while waiting to send a request to " + getEndpoint(), exc)
+			);
+		}
+
+		final long startTime = System.nanoTime();
+
+		try {
+			return endpoint.client.post(requestWriter).whenComplete(
+				(final InputStream responseBody, final Throwable exc) -> releaseEndpoint(endpoint, startTime, exc)
+			);
+		} catch (final RuntimeException exc) {
+			releaseEndpoint(endpoint, startTime, exc);
+			return CompletableFuture.failedFuture(exc);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The endpoints of the balanced clients are separated by commas.
+	 */
+	@Override
+	public String getEndpoint() {
+		return endpoints.stream()
+			.map((final Endpoint endpoint) -> endpoint.client.getEndpoint())
+			.collect(Collectors.joining(", "));
+	}
+
+	/**
+	 * Returns a human-readable summary of how many requests each endpoint
+	 * answered, and how fast.
+	 *
+	 * @return The described summary.
+	 */
+	synchronized String getStatistics() {
+		return endpoints.stream()
+			.map((final Endpoint endpoint) -> String.format(
+				Locale.ROOT, "%s: %d requests, %d unavailable, %.1f ms average latency",
+				endpoint.client.getEndpoint(), endpoint.answeredRequests, endpoint.unavailableRequests,
+				endpoint.averageLatencyNanos / 1_000_000
+			))
+			.collect(Collectors.joining("; "));
+	}
+
+	@Override
+	public void close() {
+		for (final Endpoint endpoint : endpoints) {
+			endpoint.client.close();
+		}
+	}
+
+	/**
+	 * Selects the endpoint to send a request to, waiting until some endpoint can
+	 * take it, and counts the request as outstanding for it.
+	 *
+	 * @return The selected endpoint.
+	 * @throws InterruptedException If the calling thread is interrupted while
+	 *                              waiting.
+	 */
+	private synchronized Endpoint acquireEndpoint() throws InterruptedException {
+		while (true) {
+			final long now = System.nanoTime();
+			Endpoint selectedEndpoint = null;
+			Endpoint fallbackEndpoint = null;
+			boolean healthyEndpointBusy = false;
+			Long nextHealthCheckTime = null;
+
+			// Start at a different endpoint every time, so ties are broken in turns
+			for (int i = 0; i < endpoints.size(); ++i) {
+				final Endpoint endpoint = endpoints.get((nextEndpoint + i) % endpoints.size());
+
+				if (endpoint.outstandingRequests >= maxRequestsPerEndpoint) {
+					healthyEndpointBusy |= endpoint.healthy;
+				} else if (endpoint.isAvailable(now)) {
+					if (selectedEndpoint == null || endpoint.compareLoad(selectedEndpoint) < 0) {
+						selectedEndpoint = endpoint;
+					}
+				} else {
+					if (fallbackEndpoint == null || endpoint.outstandingRequests < fallbackEndpoint.outstandingRequests) {
+						fallbackEndpoint = endpoint;
+					}
+
+					if (!endpoint.probing && (nextHealthCheckTime == null || endpoint.nextHealthCheckTime - nextHealthCheckTime < 0)) {
+						nextHealthCheckTime = endpoint.nextHealthCheckTime;
+					}
+				}
+			}
+
+			if (selectedEndpoint == null && !healthyEndpointBusy) {
+				selectedEndpoint = fallbackEndpoint;
+			}
+
+			if (selectedEndpoint != null) {
+				nextEndpoint = (nextEndpoint + 1) % endpoints.size();
+				++selectedEndpoint.outstandingRequests;
+				selectedEndpoint.probing = !selectedEndpoint.healthy;
+
+				return selectedEndpoint;
+			}
+
+			// Wait for a request to complete, or for an endpoint to be probed
+			if (nextHealthCheckTime != null) {
+				wait(Math.max((nextHealthCheckTime - now + 999_999) / 1_000_000, 1));
+			} else {
+				wait();
+			}
+		}
+	}
+
+	/**
+	 * Records the outcome of a request sent to an endpoint, and stops counting
+	 * it as outstanding.
+	 *
+	 * @param endpoint  The endpoint the request was sent to.
+	 * @param startTime The value of {@link System#nanoTime()} when the request
+	 *                  was sent.
+	 * @param failure   The exception the request failed with, or {@code null}
+	 *                  if it got a response.
+	 */
+	private synchronized void releaseEndpoint(final Endpoint endpoint, final long startTime, final Throwable failure) {
+		final long now = System.nanoTime();
+
+		--endpoint.outstandingRequests;
+		endpoint.probing = false;
+
+		if (failure != null && TppRetryPolicy.isUnavailability(failure)) {
+			++endpoint.unavailableRequests;
+			endpoint.nextHealthCheckTime = now + healthCheckIntervalNanos;
+
+			if (endpoint.healthy) {
+				endpoint.healthy = false;
+
+				TextProcLogging.getLogger().log(
+					Level.WARNING, "{0} seems to be unavailable. Sending requests to other endpoints",
+					endpoint.client.getEndpoint()
+				);
+			}
+		} else {
+			// Errors about what was sent mean that the endpoint is up
+			if (failure == null) {
+				++endpoint.answeredRequests;
+				endpoint.averageLatencyNanos = endpoint.averageLatencyNanos == 0 ?
+					now - startTime :
+					LATENCY_SMOOTHING_FACTOR * (now - startTime) + (1 - LATENCY_SMOOTHING_FACTOR) * endpoint.averageLatencyNanos;
+			}
+
+			if (!endpoint.healthy) {
+				endpoint.healthy = true;
+
+				TextProcLogging.getLogger().log(
+					Level.INFO, "{0} is available again. Resuming requests to it", endpoint.client.getEndpoint()
+				);
+			}
+		}
+
+		notifyAll();
+	}
+
+	/**
+	 * The state of an endpoint, which is guarded by the lock of the balancing
+	 * client.
+	 *
+	 * @author Alejandro González García
+	 */
+	private final class Endpoint {
+		private final TppClient client;
+		private int outstandingRequests = 0;
+		private double averageLatencyNanos = 0;
+		private long answeredRequests = 0;
+		private long unavailableRequests = 0;
+		private boolean healthy = true;
+		private boolean probing = false;
+		private long nextHealthCheckTime;
+
+		private Endpoint(final TppClient client) {
+			this.client = client;
+		}
+
+		/**
+		 * Checks whether requests may be sent to this endpoint: it is healthy, or
+		 * it is time to probe it and no other request is probing it.
+		 *
+		 * @param now The current value of {@link System#nanoTime()}.
+		 * @return {@code true} if requests may be sent, {@code false} otherwise.
+		 */
+		private boolean isAvailable(final long now) {
+			return healthy || (!probing && now - nextHealthCheckTime >= 0);
+		}
+
+		/**
+		 * Compares the load of this endpoint with the load of another one. Equal
+		 * loads are told apart by the number of outstanding requests.
+		 *
+		 * @param other The other endpoint.
+		 * @return A negative number, zero or a positive number if the load of this
+		 *         endpoint is less than, equal to or greater than the load of the
+		 *         other one.
+		 */
+		private int compareLoad(final Endpoint other) {
+			final int loadComparison = Double.compare(
+				loadBalancing.getLoad(outstandingRequests, averageLatencyNanos),
+				loadBalancing.getLoad(other.outstandingRequests, other.averageLatencyNanos)
+			);
+
+			return loadComparison != 0 ?
+				loadComparison : Integer.compare(outstandingRequests, other.outstandingRequests);
+		}
+	}
+}
@@ -0,0 +1,107 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import javax.json.JsonObject;
+import javax.json.stream.JsonGenerator;
+
+import es.uvigo.esei.sing.textproc.step.AbstractProcessingStep.ProcessingConsumer;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import lombok.NonNull;
+
+/**
+ * A backend that processes documents by sending HTTP requests to a Text
+ * Processing Python compatible web service, as described in
+ * {@link TppHelper#processAttributes}.
+ *
+ * @author Alejandro González García
+ */
+final class HttpTppBackend implements TppBackend {
+	private final TppClient client;
+	private final int documentsPerRequest;
+	private final TppResponseCache responseCache;
+	private final TppRetryPolicy retryPolicy;
+	private final ProcessingConsumer<? super JsonGenerator> requestParametersAction;
+	private final JsonResponseAttributeType responseAttributeType;
+	private final ProcessingBiConsumer<? super Entry<String, JsonObject>, ? super Map<String, String>> storeProcessedAttributeAction;
+
+	/**
+	 * Creates a backend that sends requests with the specified client. The client
+	 * and the response cache are closed along with the backend.
+	 *
+	 * @param client                        The client that sends requests to the
+	 *                                      web service.
+	 * @param documentsPerRequest           The maximum number of documents to
+	 *                                      send in a single request.
+	 * @param responseCache                 The cache of processed attribute
+	 *                                      objects, or {@code null} to not cache
+	 *                                      them.
+	 * @param retryPolicy                   The policy that decides how failed
+	 *                                      requests are recovered from.
+	 * @param requestParametersAction       The action to execute to populate the
+	 *                                      request object with parameters.
+	 * @param responseAttributeType         The expected type of the processed text
+	 *                                      in the response.
+	 * @param storeProcessedAttributeAction An action that receives the JSON
+	 *                                      document object of the response, and is
+	 *                                      expected to put its processed form in
+	 *                                      the provided map.
+	 * @throws IllegalArgumentException If some parameter, except the response
+	 *                                  cache, is {@code null}.
+	 */
+	HttpTppBackend(
+		@NonNull final TppClient client, final int documentsPerRequest, final TppResponseCache responseCache,
+		@NonNull final TppRetryPolicy retryPolicy, @NonNull final ProcessingConsumer<? super JsonGenerator> requestParametersAction,
+		@NonNull final JsonResponseAttributeType responseAttributeType,
+		@NonNull final ProcessingBiConsumer<? super Entry<String, JsonObject>, ? super Map<String, String>> storeProcessedAttributeAction
+	) {
+		this.client = client;
+		this.documentsPerRequest = documentsPerRequest;
+		this.responseCache = responseCache;
+		this.retryPolicy = retryPolicy;
+		this.requestParametersAction = requestParametersAction;
+		this.responseAttributeType = responseAttributeType;
+		this.storeProcessedAttributeAction = storeProcessedAttributeAction;
+	}
+
+	@Override
+	public List<Map<String, String>> processAttributes(
+		@NonNull final List<String[]> attributesBatch, @NonNull final String[] attributeNames
+	) throws ProcessingException {
+		return TppHelper.processAttributes(
+			attributesBatch, 1, attributeNames, client, documentsPerRequest, responseCache, retryPolicy,
+			requestParametersAction, responseAttributeType, storeProcessedAttributeAction
+		);
+	}
+
+	@Override
+	public void printStatistics() {
+		if (responseCache != null) {
+			System.out.println();
+			System.out.print("> Response cache: ");
+			System.out.println(responseCache.getStatistics());
+		}
+
+		if (client instanceof BalancingTppClient) {
+			System.out.println();
+			System.out.print("> Endpoints: ");
+			System.out.println(((BalancingTppClient) client).getStatistics());
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			client.close();
+		} finally {
+			if (responseCache != null) {
+				responseCache.close();
+			}
+		}
+	}
+}
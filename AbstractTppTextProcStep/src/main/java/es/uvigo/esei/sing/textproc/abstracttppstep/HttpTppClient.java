@@ -0,0 +1,201 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import es.uvigo.esei.sing.textproc.abstracttppstep.TppProtocol.RequestFormat;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import lombok.NonNull;
+
+/**
+ * A client that sends requests asynchronously with the HTTP client of the JDK,
+ * which keeps the connections to the endpoint alive between requests. The
+ * number of requests waiting for a response at the same time is limited, so
+ * the web service is not flooded when many batches are processed at once.
+ *
+ * @author Alejandro González García
+ */
+final class HttpTppClient extends AbstractTppClient {
+	private final URI endpoint;
+	private final Duration requestTimeout;
+	private final Semaphore inFlightRequestPermits;
+	private final ExecutorService responseExecutor;
+	private final HttpClient httpClient;
+
+	/**
+	 * Creates a client for the specified endpoint.
+	 *
+	 * @param endpoint               The endpoint URI.
+	 * @param maxInFlightRequests    The maximum number of requests that may wait
+	 *                               for a response at the same time.
+	 * @param http2                  Whether to try to use HTTP/2, falling back
+	 *                               to HTTP/1.1 if the web service does not
+	 *                               support it.
+	 * @param connectTimeoutMillis   The milliseconds to wait for a connection to
+	 *                               be established, or 0 to wait indefinitely.
+	 * @param requestTimeoutMillis   The milliseconds to wait for a response
+	 *                               after sending a request, or 0 to wait
+	 *                               indefinitely.
+	 * @param maximumProtocolVersion The newest protocol version to negotiate.
+	 * @param framedRequests         Whether to send PROTOCOL-2 requests as
+	 *                               streams of frames.
+	 * @param contentEncoding        The content coding to compress PROTOCOL-2
+	 *                               requests with.
+	 * @throws IllegalArgumentException If {@code endpoint} is {@code null} or not
+	 *                                  a valid URI,
+	 *                                  {@code maxInFlightRequests} is less than 1,
+	 *                                  or some protocol setting is invalid.
+	 */
+	HttpTppClient(
+		@NonNull final String endpoint, final int maxInFlightRequests, final boolean http2,
+		final long connectTimeoutMillis, final long requestTimeoutMillis, final int maximumProtocolVersion, final boolean framedRequests, final TppContentEncoding contentEncoding
+	) {
+		super(maximumProtocolVersion, framedRequests, contentEncoding);
+
+		final HttpClient.Builder httpClientBuilder = HttpClient.newBuilder();
+
+		if (maxInFlightRequests < 1) {
+			throw new IllegalArgumentException("The maximum number of in-flight requests must be positive");
+		}
+
+		if (connectTimeoutMillis < 0 || requestTimeoutMillis < 0) {
+			throw new IllegalArgumentException("The time outs can't be negative");
+		}
+
+		if (connectTimeoutMillis > 0) {
+			httpClientBuilder.connectTimeout(Duration.ofMillis(connectTimeoutMillis));
+		}
+
+		this.endpoint = URI.create(endpoint);
+		this.requestTimeout = requestTimeoutMillis > 0 ? Duration.ofMillis(requestTimeoutMillis) : null;
+		this.inFlightRequestPermits = new Semaphore(maxInFlightRequests);
+		this.responseExecutor = Executors.newCachedThreadPool((final Runnable runnable) -> {
+			final Thread responseThread = new Thread(runnable, "TPP HTTP client");
+			responseThread.setDaemon(true);
+			return responseThread;
+		});
+		this.httpClient = httpClientBuilder
+			.version(http2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+			.executor(responseExecutor)
+			.build();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * A request is in flight until its response body is received, which is
+	 * buffered in memory, so callers that send several requests before reading
+	 * their responses can't starve each other of permits.
+	 */
+	@Override
+	public CompletableFuture<InputStream> post(@NonNull final RequestWriter requestWriter) {
+		final RequestFormat requestFormat = getRequestFormat();
+		final RequestBodyOutputStream requestBody = new RequestBodyOutputStream();
+		final TppContentEncoding requestContentEncoding = getRequestContentEncoding(requestFormat);
+		final String acceptedEncodings = getAcceptedEncodings();
+
+		// The request body is buffered because it is sent asynchronously
+		try {
+			writeRequest(requestFormat, requestBody, requestWriter);
+		} catch (final IOException | ProcessingException exc) {
+			return CompletableFuture.failedFuture(exc);
+		}
+
+		try {
+			inFlightRequestPermits.acquire();
+		} catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			return CompletableFuture.failedFuture(
+				new ProcessingException("Interrupted while waiting to send a request to " + endpoint, exc)
+			);
+		}
+
+		try {
+			final HttpRequest.Builder requestBuilder = HttpRequest.newBuilder(endpoint)
+				.header("Content-Type", requestFormat.getContentType())
+				.header("Accept", requestFormat.getContentType())
+				// Identify ourselves via the User-Agent header
+				.header("User-Agent", getUserAgent())
+				.POST(requestBody.toBodyPublisher());
+
+			if (requestContentEncoding != TppContentEncoding.IDENTITY) {
+				requestBuilder.header("Content-Encoding", requestContentEncoding.getCodingName());
+			}
+
+			if (acceptedEncodings != null) {
+				requestBuilder.header("Accept-Encoding", acceptedEncodings);
+			}
+
+			if (requestTimeout != null) {
+				requestBuilder.timeout(requestTimeout);
+			}
+
+			return httpClient.sendAsync(requestBuilder.build(), HttpResponse.BodyHandlers.ofByteArray())
+				.whenComplete((final HttpResponse<byte[]> response, final Throwable exc) -> inFlightRequestPermits.release())
+				.thenApply((final HttpResponse<byte[]> response) -> {
+					if (response.statusCode() / 100 != 2) {
+						throw new CompletionException(new TppStatusException(endpoint.toString(), response.statusCode()));
+					}
+
+					try {
+						return readResponse(
+							response.headers().firstValue(TppProtocol.PROTOCOL_HEADER).orElse(null),
+							response.headers().firstValue("Content-Encoding").orElse(null),
+							new ByteArrayInputStream(response.body())
+						);
+					} catch (final IOException exc) {
+						throw new CompletionException(exc);
+					}
+				});
+		} catch (final RuntimeException exc) {
+			inFlightRequestPermits.release();
+			return CompletableFuture.failedFuture(exc);
+		}
+	}
+
+	@Override
+	public String getEndpoint() {
+		return endpoint.toString();
+	}
+
+	@Override
+	public void close() {
+		// The connections of the client are closed when it is garbage collected
+		responseExecutor.shutdownNow();
+	}
+
+	/**
+	 * A byte array output stream whose contents are published without copying
+	 * them.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class RequestBodyOutputStream extends ByteArrayOutputStream {
+		private RequestBodyOutputStream() {
+			super(8192);
+		}
+
+		/**
+		 * Returns a publisher of the bytes written so far.
+		 *
+		 * @return The described publisher.
+		 */
+		private HttpRequest.BodyPublisher toBodyPublisher() {
+			return HttpRequest.BodyPublishers.ofByteArray(buf, 0, count);
+		}
+	}
+}
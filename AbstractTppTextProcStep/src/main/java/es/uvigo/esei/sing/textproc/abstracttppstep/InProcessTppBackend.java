@@ -0,0 +1,76 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import lombok.NonNull;
+
+/**
+ * A backend that processes documents in the JVM, with the in-process
+ * implementation of the operation of a step. The text of attributes is handed
+ * to the operation as read from the DB, without any serialization, and
+ * attributes without text are stored empty, as the web service backend does
+ * when the web service does not return them.
+ *
+ * @author Alejandro González García
+ */
+final class InProcessTppBackend implements TppBackend {
+	private final InProcessTppOperation operation;
+	private final Map<String, String> stepParameters;
+
+	/**
+	 * Creates a backend that runs the specified operation, after checking that
+	 * it supports the step parameters.
+	 *
+	 * @param operation      The operation to run on the text of every attribute.
+	 * @param stepParameters The parameters of the step, which are passed to the
+	 *                       operation.
+	 * @throws IllegalArgumentException If some parameter is {@code null}.
+	 * @throws ProcessingException      If the operation does not support the
+	 *                                  step parameters.
+	 */
+	InProcessTppBackend(
+		@NonNull final InProcessTppOperation operation, @NonNull final Map<String, String> stepParameters
+	) throws ProcessingException {
+		operation.validate(stepParameters);
+
+		this.operation = operation;
+		this.stepParameters = stepParameters;
+	}
+
+	@Override
+	public List<Map<String, String>> processAttributes(
+		@NonNull final List<String[]> attributesBatch, @NonNull final String[] attributeNames
+	) throws ProcessingException {
+		final List<Map<String, String>> batchAttributeValues = new ArrayList<>(attributesBatch.size());
+
+		for (final String[] attributes : attributesBatch) {
+			final Map<String, String> attributeValues = new HashMap<>((int) Math.ceil(attributeNames.length / 0.75));
+
+			if (attributes.length - 1 != attributeNames.length) {
+				throw new IllegalArgumentException(
+					"The length of the attribute values minus the primary key must be equal to the attribute names array length"
+				);
+			}
+
+			for (int i = 0; i < attributeNames.length; ++i) {
+				final String text = attributes[i + 1];
+
+				attributeValues.put(attributeNames[i], text != null ? operation.process(text, stepParameters) : "");
+			}
+
+			batchAttributeValues.add(Collections.unmodifiableMap(attributeValues));
+		}
+
+		return Collections.unmodifiableList(batchAttributeValues);
+	}
+
+	@Override
+	public void close() {}
+}
@@ -0,0 +1,45 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import java.util.Map;
+
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+
+/**
+ * An implementation, in the JVM, of the operation a Text Processing Python
+ * endpoint does on the text of a document attribute. Steps that use the
+ * in-process backend run it instead of sending requests to a web service, so
+ * the text is neither serialized nor sent over the network.
+ * <p>
+ * Implementations are invoked concurrently by the worker threads of a step, so
+ * they must be thread-safe.
+ *
+ * @author Alejandro González García
+ */
+@FunctionalInterface
+public interface InProcessTppOperation {
+	/**
+	 * Processes the text of a document attribute, like the web service would.
+	 *
+	 * @param text           The text to process. It is not {@code null}.
+	 * @param stepParameters The parameters of the step that processes the
+	 *                       document, which stand in for the request parameters.
+	 * @return The processed text, in the same form the step stores the
+	 *         processed attributes the web service returns.
+	 * @throws ProcessingException If the text could not be processed.
+	 */
+	public String process(final String text, final Map<String, String> stepParameters) throws ProcessingException;
+
+	/**
+	 * Checks that the parameters of a step are supported by this operation. It
+	 * is invoked once before any text is processed with those parameters, so
+	 * {@link #process(String, Map)} doesn't need to check them for every text.
+	 * The default implementation supports any parameters.
+	 *
+	 * @param stepParameters The parameters of the step that will process
+	 *                       documents.
+	 * @throws ProcessingException If the parameters are not supported.
+	 */
+	public default void validate(final Map<String, String> stepParameters) throws ProcessingException {}
+}
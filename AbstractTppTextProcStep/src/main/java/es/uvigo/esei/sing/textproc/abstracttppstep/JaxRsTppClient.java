@@ -0,0 +1,156 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.ws.rs.core.Variant;
+
+import es.uvigo.esei.sing.textproc.abstracttppstep.TppProtocol.RequestFormat;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import es.uvigo.esei.sing.textproc.step.util.VariableHolder;
+import lombok.NonNull;
+
+/**
+ * A client that sends requests synchronously with JAX-RS, so the calling thread
+ * waits for each response before sending the next request. Request bodies are
+ * streamed to the web service as they are written.
+ *
+ * @author Alejandro González García
+ */
+final class JaxRsTppClient extends AbstractTppClient {
+	private final Client wsClient;
+	private final WebTarget target;
+
+	/**
+	 * Creates a client for the specified endpoint, with a new JAX-RS client that
+	 * is closed along with it.
+	 *
+	 * @param endpoint               The endpoint URI.
+	 * @param connectTimeoutMillis   The milliseconds to wait for a connection to
+	 *                               be established, or 0 to wait indefinitely.
+	 * @param requestTimeoutMillis   The milliseconds to wait for data of a
+	 *                               response, or 0 to wait indefinitely.
+	 * @param maximumProtocolVersion The newest protocol version to negotiate.
+	 * @param framedRequests         Whether to send PROTOCOL-2 requests as
+	 *                               streams of frames.
+	 * @param contentEncoding        The content coding to compress PROTOCOL-2
+	 *                               requests with.
+	 * @throws IllegalArgumentException If some parameter is {@code null} or
+	 *                                  invalid.
+	 */
+	JaxRsTppClient(
+		@NonNull final String endpoint, final long connectTimeoutMillis, final long requestTimeoutMillis,
+		final int maximumProtocolVersion, final boolean framedRequests, final TppContentEncoding contentEncoding
+	) {
+		super(maximumProtocolVersion, framedRequests, contentEncoding);
+
+		this.wsClient = ClientBuilder.newBuilder()
+			.connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+			.readTimeout(requestTimeoutMillis, TimeUnit.MILLISECONDS)
+			.build();
+
+		try {
+			this.target = wsClient.target(endpoint);
+		} catch (final RuntimeException exc) {
+			wsClient.close();
+			throw exc;
+		}
+	}
+
+	/**
+	 * Creates a client for the specified target, whose JAX-RS client is owned by
+	 * the caller.
+	 *
+	 * @param target                 The endpoint to send requests to.
+	 * @param maximumProtocolVersion The newest protocol version to negotiate.
+	 * @param framedRequests         Whether to send PROTOCOL-2 requests as
+	 *                               streams of frames.
+	 * @param contentEncoding        The content coding to compress PROTOCOL-2
+	 *                               requests with.
+	 * @throws IllegalArgumentException If some parameter is {@code null} or
+	 *                                  invalid.
+	 */
+	JaxRsTppClient(
+		@NonNull final WebTarget target, final int maximumProtocolVersion, final boolean framedRequests,
+		final TppContentEncoding contentEncoding
+	) {
+		super(maximumProtocolVersion, framedRequests, contentEncoding);
+
+		this.wsClient = null;
+		this.target = target;
+	}
+
+	@Override
+	public CompletableFuture<InputStream> post(@NonNull final RequestWriter requestWriter) {
+		final RequestFormat requestFormat = getRequestFormat();
+		final VariableHolder<ProcessingException> requestWriterException = new VariableHolder<>(null);
+		final TppContentEncoding requestContentEncoding = getRequestContentEncoding(requestFormat);
+		final Invocation.Builder requestBuilder = target
+			.request(requestFormat.getContentType())
+			// Identify ourselves via the User-Agent header
+			.header("User-Agent", getUserAgent())
+			.header("Accept-Encoding", getAcceptedEncodings());
+		Response response = null;
+
+		try {
+			response = requestBuilder.post(
+				Entity.entity((StreamingOutput) (final OutputStream requestBody) -> {
+					try {
+						writeRequest(requestFormat, requestBody, requestWriter);
+					} catch (final ProcessingException exc) {
+						// Keep it to fail with it, as JAX-RS wraps I/O errors
+						requestWriterException.setVariable(exc);
+						throw new IOException(exc);
+					}
+				}, new Variant(
+					MediaType.valueOf(requestFormat.getContentType()), (String) null,
+					// JAX-RS takes the Content-Encoding header from the entity
+					requestContentEncoding != TppContentEncoding.IDENTITY ? requestContentEncoding.getCodingName() : null
+				))
+			);
+
+			if (response.getStatusInfo().getFamily() != Response.Status.Family.SUCCESSFUL) {
+				throw new TppStatusException(getEndpoint(), response.getStatus());
+			}
+
+			return CompletableFuture.completedFuture(readResponse(
+				response.getHeaderString(TppProtocol.PROTOCOL_HEADER),
+				response.getHeaderString("Content-Encoding"),
+				response.readEntity(InputStream.class)
+			));
+		} catch (final RuntimeException | IOException exc) {
+			final ProcessingException cause = requestWriterException.getVariable();
+
+			if (response != null) {
+				response.close();
+			}
+
+			return CompletableFuture.failedFuture(cause != null ? cause : exc);
+		}
+	}
+
+	@Override
+	public String getEndpoint() {
+		return target.getUri().toString();
+	}
+
+	@Override
+	public void close() {
+		if (wsClient != null) {
+			wsClient.close();
+		}
+	}
+}
@@ -0,0 +1,54 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+
+/**
+ * Does the processing of the documents of a Text Processing Python step, either
+ * by calling a compatible web service or by running the step operation in the
+ * JVM. Backends are created for a single execution of a step, and are used by
+ * all its worker threads at the same time.
+ *
+ * @author Alejandro González García
+ */
+interface TppBackend extends AutoCloseable {
+	/**
+	 * Processes a batch of document attributes. The resulting list contains maps
+	 * of attribute names with their processed versions, in the same order as the
+	 * input documents in the batch. Documents that could not be processed are
+	 * {@code null} in the resulting list.
+	 *
+	 * @param attributesBatch The batch of attribute values, as directly read from
+	 *                        the DB. It must have at least one element. The first
+	 *                        attribute value for each element is its primary key,
+	 *                        and the rest are the attributes to process.
+	 * @param attributeNames  The names of the attributes to process.
+	 * @return The described list. It is not modifiable.
+	 * @throws ProcessingException      If some exception occurs during the
+	 *                                  operation.
+	 * @throws IllegalArgumentException If some parameter is {@code null} or
+	 *                                  invalid.
+	 */
+	public List<Map<String, String>> processAttributes(
+		final List<String[]> attributesBatch, final String[] attributeNames
+	) throws ProcessingException;
+
+	/**
+	 * Prints human-readable statistics about the processing done so far to the
+	 * standard output, if this backend keeps any.
+	 */
+	public default void printStatistics() {}
+
+	/**
+	 * Releases the resources associated to this backend.
+	 *
+	 * @throws IOException If some resource could not be released.
+	 */
+	@Override
+	public void close() throws IOException;
+}
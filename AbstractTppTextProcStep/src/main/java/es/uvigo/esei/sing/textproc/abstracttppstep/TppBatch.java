@@ -0,0 +1,233 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import java.io.IOException;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map.Entry;
+
+import javax.json.JsonObject;
+import javax.json.stream.JsonGenerator;
+
+import es.uvigo.esei.sing.textproc.step.AbstractProcessingStep.ProcessingConsumer;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * A batch of document attributes being processed by a Text Processing Python
+ * compatible web service. It keeps track of the attributes that are pending,
+ * because they were neither found in the response cache nor received yet, and
+ * passes the received ones to a consumer. Documents the web service could not
+ * process are marked as failed.
+ *
+ * @author Alejandro González García
+ */
+final class TppBatch {
+	private final List<String[]> attributesBatch;
+	private final int startIndex;
+	@Getter(AccessLevel.PACKAGE)
+	private final String[] attributeNames;
+	@Getter(AccessLevel.PACKAGE)
+	private final ProcessingConsumer<? super JsonGenerator> requestParametersAction;
+	private final JsonResponseAttributeType responseAttributeType;
+	private final ProcessedAttributeConsumer processedAttributeConsumer;
+	private final TppResponseCache responseCache;
+	// Indexed by document and then attribute
+	private final BitSet pendingAttributes;
+	private final BitSet failedDocuments = new BitSet();
+	private final byte[][] cacheKeys;
+
+	/**
+	 * Creates a batch whose attributes are all pending, looking them up in the
+	 * response cache, if any. Cached attributes are passed to the consumer right
+	 * away.
+	 *
+	 * @param attributesBatch            The batch of attribute values.
+	 * @param startIndex                 The index of the first attribute to
+	 *                                   process in each element of the batch.
+	 * @param attributeNames             The names of the attributes to process.
+	 * @param requestParametersAction    The action that adds parameters to
+	 *                                   request bodies.
+	 * @param responseAttributeType      The expected type of the processed text
+	 *                                   in responses.
+	 * @param processedAttributeConsumer The consumer of processed attributes.
+	 * @param responseCache              The cache of processed attribute objects,
+	 *                                   or {@code null}.
+	 * @throws ProcessingException If the consumer fails.
+	 * @throws IOException         If the response cache could not be read.
+	 */
+	TppBatch(
+		@NonNull final List<String[]> attributesBatch, final int startIndex, @NonNull final String[] attributeNames,
+		@NonNull final ProcessingConsumer<? super JsonGenerator> requestParametersAction,
+		@NonNull final JsonResponseAttributeType responseAttributeType,
+		@NonNull final ProcessedAttributeConsumer processedAttributeConsumer, final TppResponseCache responseCache
+	) throws ProcessingException, IOException {
+		final int batchAttributes = attributesBatch.size() * attributeNames.length;
+
+		this.attributesBatch = attributesBatch;
+		this.startIndex = startIndex;
+		this.attributeNames = attributeNames;
+		this.requestParametersAction = requestParametersAction;
+		this.responseAttributeType = responseAttributeType;
+		this.processedAttributeConsumer = processedAttributeConsumer;
+		this.responseCache = responseCache;
+		this.pendingAttributes = new BitSet(batchAttributes);
+		this.cacheKeys = responseCache != null ? new byte[batchAttributes][] : null;
+
+		for (int i = 0; i < batchAttributes; ++i) {
+			final String text = getText(i / attributeNames.length, i % attributeNames.length);
+			final JsonObject cachedProcessedAttribute;
+
+			if (responseCache == null || text == null) {
+				pendingAttributes.set(i);
+				continue;
+			}
+
+			cacheKeys[i] = responseCache.keyOf(text);
+			cachedProcessedAttribute = responseCache.get(cacheKeys[i]);
+
+			if (cachedProcessedAttribute != null) {
+				processedAttributeConsumer.accept(
+					i / attributeNames.length,
+					new SimpleImmutableEntry<>(attributeNames[i % attributeNames.length], cachedProcessedAttribute)
+				);
+			} else {
+				pendingAttributes.set(i);
+			}
+		}
+	}
+
+	/**
+	 * Returns the text of an attribute of a document of this batch.
+	 *
+	 * @param documentIndex  The index of the document in the batch.
+	 * @param attributeIndex The index of the attribute name.
+	 * @return The described text. It may be {@code null}.
+	 */
+	String getText(final int documentIndex, final int attributeIndex) {
+		return attributesBatch.get(documentIndex)[attributeIndex + startIndex];
+	}
+
+	/**
+	 * Checks whether an attribute of a document of this batch is pending.
+	 *
+	 * @param documentIndex  The index of the document in the batch.
+	 * @param attributeIndex The index of the attribute name.
+	 * @return {@code true} if the attribute is pending, {@code false} otherwise.
+	 */
+	boolean isPending(final int documentIndex, final int attributeIndex) {
+		return pendingAttributes.get(documentIndex * attributeNames.length + attributeIndex);
+	}
+
+	/**
+	 * Checks whether any attribute of a range of documents of this batch is
+	 * pending.
+	 *
+	 * @param firstDocument The index of the first document of the range.
+	 * @param documents     The number of documents of the range.
+	 * @return {@code true} if some attribute is pending, {@code false} otherwise.
+	 */
+	boolean hasPendingAttributes(final int firstDocument, final int documents) {
+		final int nextPendingAttribute = pendingAttributes.nextSetBit(firstDocument * attributeNames.length);
+
+		return nextPendingAttribute >= 0 && nextPendingAttribute < (firstDocument + documents) * attributeNames.length;
+	}
+
+	/**
+	 * Passes a processed attribute received from the web service to the
+	 * consumer, and stores it in the response cache, if the attribute is pending.
+	 * Otherwise, it is ignored.
+	 *
+	 * @param documentIndex      The index of the document in the batch.
+	 * @param attributeIndex     The index of the attribute name.
+	 * @param processedAttribute The processed attribute object.
+	 * @throws ProcessingException If the consumer fails.
+	 * @throws IOException         If the response cache could not be written.
+	 */
+	void receive(final int documentIndex, final int attributeIndex, @NonNull final JsonObject processedAttribute) throws ProcessingException, IOException {
+		final int batchAttributeIndex = documentIndex * attributeNames.length + attributeIndex;
+
+		if (documentIndex < 0 || attributeIndex < 0 || attributeIndex >= attributeNames.length || !pendingAttributes.get(batchAttributeIndex)) {
+			return;
+		}
+
+		processedAttributeConsumer.accept(
+			documentIndex, new SimpleImmutableEntry<>(attributeNames[attributeIndex], processedAttribute)
+		);
+
+		if (cacheKeys != null && cacheKeys[batchAttributeIndex] != null) {
+			responseCache.put(cacheKeys[batchAttributeIndex], processedAttribute);
+		}
+
+		pendingAttributes.clear(batchAttributeIndex);
+	}
+
+	/**
+	 * Passes a dummy value to the consumer for every attribute of a range of
+	 * documents that is still pending, because the web service did not return
+	 * it.
+	 *
+	 * @param firstDocument The index of the first document of the range.
+	 * @param documents     The number of documents of the range.
+	 * @throws ProcessingException If the consumer fails.
+	 */
+	void receiveMissing(final int firstDocument, final int documents) throws ProcessingException {
+		for (
+			int i = pendingAttributes.nextSetBit(firstDocument * attributeNames.length);
+			i >= 0 && i < (firstDocument + documents) * attributeNames.length;
+			i = pendingAttributes.nextSetBit(i + 1)
+		) {
+			processedAttributeConsumer.accept(
+				i / attributeNames.length,
+				new SimpleImmutableEntry<>(attributeNames[i % attributeNames.length], responseAttributeType.getDummyValue())
+			);
+
+			pendingAttributes.clear(i);
+		}
+	}
+
+	/**
+	 * Marks a range of documents of this batch as failed, so their pending
+	 * attributes are not sent nor consumed anymore.
+	 *
+	 * @param firstDocument The index of the first document of the range.
+	 * @param documents     The number of documents of the range.
+	 */
+	void fail(final int firstDocument, final int documents) {
+		failedDocuments.set(firstDocument, firstDocument + documents);
+		pendingAttributes.clear(firstDocument * attributeNames.length, (firstDocument + documents) * attributeNames.length);
+	}
+
+	/**
+	 * Checks whether a document of this batch was marked as failed.
+	 *
+	 * @param documentIndex The index of the document in the batch.
+	 * @return {@code true} if the document failed, {@code false} otherwise.
+	 */
+	boolean isFailed(final int documentIndex) {
+		return failedDocuments.get(documentIndex);
+	}
+
+	/**
+	 * Consumes a processed document attribute object, along with the index of its
+	 * document in the batch.
+	 *
+	 * @author Alejandro González García
+	 */
+	@FunctionalInterface
+	static interface ProcessedAttributeConsumer {
+		/**
+		 * Performs the processing operation on the given arguments.
+		 *
+		 * @param documentIndex      The index of the document in the batch.
+		 * @param processedAttribute The name of the attribute and its processed
+		 *                           object.
+		 * @throws ProcessingException If the operation fails.
+		 */
+		public void accept(final int documentIndex, final Entry<String, JsonObject> processedAttribute) throws ProcessingException;
+	}
+}
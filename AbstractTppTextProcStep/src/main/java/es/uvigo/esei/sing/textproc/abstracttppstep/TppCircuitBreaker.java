@@ -0,0 +1,114 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import java.util.logging.Level;
+
+import es.uvigo.esei.sing.textproc.logging.TextProcLogging;
+import lombok.NonNull;
+
+/**
+ * Pauses the dispatch of requests to a Text Processing Python compatible web
+ * service that seems to be down, so worker threads do not waste their retries
+ * on it. The breaker opens after a number of consecutive requests fail because
+ * the web service is unavailable, and stays open for a cooldown period. After
+ * that, requests are dispatched again: the first one that gets a response
+ * closes the breaker, and the first one that fails opens it again.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @author Alejandro González García
+ */
+final class TppCircuitBreaker {
+	private final String endpoint;
+	private final int failureThreshold;
+	private final long cooldownNanos;
+	private int consecutiveFailures = 0;
+	private boolean open = false;
+	private long openUntilNanos;
+
+	/**
+	 * Creates a closed circuit breaker.
+	 *
+	 * @param endpoint         The endpoint whose requests this breaker guards,
+	 *                         for logging purposes.
+	 * @param failureThreshold The number of consecutive failures that open the
+	 *                         breaker.
+	 * @param cooldownMillis   The milliseconds the breaker stays open before
+	 *                         requests are dispatched again.
+	 * @throws IllegalArgumentException If {@code endpoint} is {@code null},
+	 *                                  {@code failureThreshold} is less than 1
+	 *                                  or {@code cooldownMillis} is negative.
+	 */
+	TppCircuitBreaker(@NonNull final String endpoint, final int failureThreshold, final long cooldownMillis) {
+		if (failureThreshold < 1) {
+			throw new IllegalArgumentException("The failure threshold must be positive");
+		}
+
+		if (cooldownMillis < 0) {
+			throw new IllegalArgumentException("The cooldown can't be negative");
+		}
+
+		this.endpoint = endpoint;
+		this.failureThreshold = failureThreshold;
+		this.cooldownNanos = cooldownMillis * 1_000_000;
+	}
+
+	/**
+	 * Waits until requests can be dispatched, which is right away unless the
+	 * breaker is open and its cooldown has not elapsed yet.
+	 *
+	 * @throws InterruptedException If the calling thread is interrupted while
+	 *                              waiting.
+	 */
+	synchronized void awaitDispatch() throws InterruptedException {
+		long remainingNanos;
+
+		while (open && (remainingNanos = openUntilNanos - System.nanoTime()) > 0) {
+			wait(remainingNanos / 1_000_000, (int) (remainingNanos % 1_000_000));
+		}
+	}
+
+	/**
+	 * Records that a request got a response, which closes the breaker.
+	 */
+	synchronized void recordSuccess() {
+		consecutiveFailures = 0;
+
+		if (open) {
+			open = false;
+			notifyAll();
+
+			TextProcLogging.getLogger().log(Level.INFO, "{0} is available again. Resuming requests", endpoint);
+		}
+	}
+
+	/**
+	 * Records that a request failed because the web service is unavailable,
+	 * which may open the breaker.
+	 */
+	synchronized void recordFailure() {
+		// Failures while open come from requests dispatched after the cooldown
+		if (++consecutiveFailures >= failureThreshold || open) {
+			if (!open) {
+				TextProcLogging.getLogger().log(
+					Level.WARNING, "{0} seems to be unavailable. Pausing requests for {1} ms",
+					new Object[] { endpoint, cooldownNanos / 1_000_000 }
+				);
+			}
+
+			open = true;
+			openUntilNanos = System.nanoTime() + cooldownNanos;
+		}
+	}
+
+	/**
+	 * Checks whether this breaker is open, even if its cooldown has elapsed.
+	 *
+	 * @return {@code true} if the web service is considered to be unavailable,
+	 *         {@code false} otherwise.
+	 */
+	synchronized boolean isOpen() {
+		return open;
+	}
+}
@@ -0,0 +1,80 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+
+import es.uvigo.esei.sing.textproc.abstracttppstep.TppProtocol.RequestFormat;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+
+/**
+ * Sends JSON requests to a Text Processing Python compatible web service
+ * endpoint, returning the response bodies as they become available. Clients
+ * negotiate the newest protocol version both ends speak from the responses
+ * they receive, so the format of later requests may change. The format of
+ * every request is chosen by the client when it is sent, and passed to the
+ * writer of its body.
+ *
+ * @author Alejandro González García
+ */
+interface TppClient extends AutoCloseable {
+	/**
+	 * The prefix of the User-Agent header we identify ourselves with, which is
+	 * followed by the newest protocol version we are willing to speak.
+	 */
+	static final String USER_AGENT_PREFIX = "TextProc/PROTOCOL-";
+
+	/**
+	 * Sends a POST HTTP request to the endpoint, whose body is written by the
+	 * specified writer in the format negotiated so far with the endpoint. This
+	 * method may block until the request can be sent, but implementations are
+	 * not required to wait for the response.
+	 *
+	 * @param requestWriter The writer of the uncompressed request body. It is
+	 *                      invoked at most once, on the calling thread, before
+	 *                      this method returns. It is not invoked if the request
+	 *                      could not be sent.
+	 * @return A future that completes with the uncompressed response body, which
+	 *         must be closed by the caller, or completes exceptionally if the
+	 *         request could not be answered. The response body is in the format
+	 *         that was passed to the request writer.
+	 * @throws IllegalArgumentException If some parameter is {@code null}.
+	 */
+	public CompletableFuture<InputStream> post(final RequestWriter requestWriter);
+
+	/**
+	 * Returns the endpoint this client sends requests to.
+	 *
+	 * @return The described endpoint URI, as a string.
+	 */
+	public String getEndpoint();
+
+	/**
+	 * Releases the resources associated to this client. Responses that were not
+	 * read yet may be discarded.
+	 */
+	@Override
+	public void close();
+
+	/**
+	 * Writes the body of a request to a stream.
+	 *
+	 * @author Alejandro González García
+	 */
+	@FunctionalInterface
+	static interface RequestWriter {
+		/**
+		 * Writes the body of a request to the specified stream, which must not be
+		 * closed.
+		 *
+		 * @param requestFormat The format to write the request body in.
+		 * @param requestBody   The stream to write the request body to.
+		 * @throws IOException         If an I/O error occurs.
+		 * @throws ProcessingException If the body could not be generated.
+		 */
+		public void writeTo(final RequestFormat requestFormat, final OutputStream requestBody) throws IOException, ProcessingException;
+	}
+}
@@ -0,0 +1,132 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import es.uvigo.esei.sing.textproc.abstracttppstep.TppClient.RequestWriter;
+import es.uvigo.esei.sing.textproc.abstracttppstep.TppProtocol.RequestFormat;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The HTTP content codings request and response bodies exchanged with a Text
+ * Processing Python compatible web service may be compressed with.
+ *
+ * @author Alejandro González García
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+enum TppContentEncoding {
+	/**
+	 * No compression.
+	 */
+	IDENTITY("identity"),
+	/**
+	 * The gzip file format.
+	 */
+	GZIP("gzip"),
+	/**
+	 * The zlib format, which is what HTTP calls deflate.
+	 */
+	DEFLATE("deflate");
+
+	/**
+	 * The value of the {@code Accept-Encoding} request header for the content
+	 * codings that responses may be compressed with.
+	 */
+	static final String ACCEPTED_ENCODINGS = "gzip, deflate";
+
+	@Getter(AccessLevel.PACKAGE) @NonNull
+	private final String codingName;
+
+	/**
+	 * Writes a request body to a stream, compressed with this content coding.
+	 * The stream is not closed.
+	 *
+	 * @param requestFormat The format the request body is written in.
+	 * @param requestBody   The stream to write the compressed request body to.
+	 * @param requestWriter The writer of the uncompressed request body.
+	 * @throws IOException         If an I/O error occurs.
+	 * @throws ProcessingException If the request body could not be generated.
+	 */
+	void writeEncoded(
+		@NonNull final RequestFormat requestFormat, @NonNull final OutputStream requestBody,
+		@NonNull final RequestWriter requestWriter
+	) throws IOException, ProcessingException {
+		if (this == IDENTITY) {
+			requestWriter.writeTo(requestFormat, requestBody);
+			return;
+		}
+
+		final OutputStream shieldedRequestBody = new FilterOutputStream(requestBody) {
+			@Override
+			public void write(final byte[] b, final int off, final int len) throws IOException {
+				out.write(b, off, len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				// Finish the compressed data, but leave the request body open
+				flush();
+			}
+		};
+
+		try (
+			final DeflaterOutputStream encodedRequestBody = this == GZIP ?
+				new GZIPOutputStream(shieldedRequestBody, 8192) : new DeflaterOutputStream(shieldedRequestBody)
+		) {
+			requestWriter.writeTo(requestFormat, encodedRequestBody);
+		}
+	}
+
+	/**
+	 * Returns a stream that decompresses a response body with the content coding
+	 * named by a {@code Content-Encoding} response header.
+	 *
+	 * @param contentEncoding The value of the header, or {@code null} if the
+	 *                        response has no such header.
+	 * @param responseBody    The response body, as received.
+	 * @return The decompressed response body.
+	 * @throws IOException If the content coding is not supported, or the
+	 *                     compressed data is not valid.
+	 */
+	static InputStream decode(final String contentEncoding, @NonNull final InputStream responseBody) throws IOException {
+		if (contentEncoding == null || contentEncoding.isBlank() || IDENTITY.codingName.equalsIgnoreCase(contentEncoding.strip())) {
+			return responseBody;
+		} else if (GZIP.codingName.equalsIgnoreCase(contentEncoding.strip()) || "x-gzip".equalsIgnoreCase(contentEncoding.strip())) {
+			return new GZIPInputStream(responseBody, 8192);
+		} else if (DEFLATE.codingName.equalsIgnoreCase(contentEncoding.strip())) {
+			return new InflaterInputStream(responseBody);
+		} else {
+			throw new IOException("Unsupported response content encoding: " + contentEncoding);
+		}
+	}
+
+	/**
+	 * Returns the content coding with the specified name, ignoring case
+	 * differences.
+	 *
+	 * @param name The name of the content coding.
+	 * @return The described content coding, or {@code null} if there is none
+	 *         with that name.
+	 */
+	static TppContentEncoding forName(final String name) {
+		for (final TppContentEncoding contentEncoding : values()) {
+			if (contentEncoding.codingName.equalsIgnoreCase(name)) {
+				return contentEncoding;
+			}
+		}
+
+		return null;
+	}
+}
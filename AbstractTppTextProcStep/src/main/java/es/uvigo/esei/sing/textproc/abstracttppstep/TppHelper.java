@@ -2,50 +2,48 @@
 
 package es.uvigo.esei.sing.textproc.abstracttppstep;
 
-import java.io.Reader;
-import java.io.StringWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.Map.Entry;
 
-import javax.json.Json;
 import javax.json.JsonException;
 import javax.json.JsonObject;
-import javax.json.JsonReader;
 import javax.json.stream.JsonGenerator;
 import javax.ws.rs.WebApplicationException;
-import javax.ws.rs.client.Entity;
-import javax.ws.rs.client.WebTarget;
-import javax.ws.rs.core.MediaType;
 
+import es.uvigo.esei.sing.textproc.abstracttppstep.TppProtocol.RequestFormat;
 import es.uvigo.esei.sing.textproc.step.AbstractProcessingStep.ProcessingConsumer;
-import es.uvigo.esei.sing.textproc.step.util.VariableHolder;
 import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import es.uvigo.esei.sing.textproc.step.util.VariableHolder;
 import lombok.NonNull;
-
-import static java.util.AbstractMap.SimpleImmutableEntry;
+import lombok.RequiredArgsConstructor;
 
 /**
  * Contains common logic to text processing steps that involve calling the Text
- * Processing Python web service, or any compatible web service.
+ * Processing Python web service, or any compatible web service. Requests are
+ * written and responses are parsed as streams of JSON events, so the text of a
+ * batch is not copied into intermediate JSON strings or object trees.
  *
  * @author Alejandro González García
  */
 final class TppHelper {
-	private static final String USER_AGENT_STRING = "TextProc/PROTOCOL-1";
-
 	/**
 	 * Processes the batch of attributes contained in the specified list, each
 	 * attribute identified by a name, by sending an appropriate POST HTTP request
 	 * to Text Processing Python, and parsing the resulting JSON response. The
 	 * resulting list contains maps of attribute names with their processed
-	 * versions, in the same order as the input documents in the batch.
+	 * versions, in the same order as the input documents in the batch. Failed
+	 * requests are recovered from as the retry policy says, and documents that
+	 * could not be processed even so are {@code null} in the resulting list.
 	 *
 	 * @param attributesBatch               The batch of attribute values, as
 	 *                                      directly read from the DB. It must have
@@ -58,8 +56,18 @@ final class TppHelper {
 	 * @param attributeNames                The attribute names. This array length
 	 *                                      must be equal to
 	 *                                      {@code attributes - startIndex}.
-	 * @param target                        The web service endpoint to send the
-	 *                                      POST HTTP request to.
+	 * @param client                        The client that sends POST HTTP
+	 *                                      requests to the web service endpoint.
+	 * @param documentsPerRequest           The maximum number of documents to
+	 *                                      send in a single request. It must be
+	 *                                      positive.
+	 * @param responseCache                 The cache of processed attribute
+	 *                                      objects to look attributes up in before
+	 *                                      sending them, and to store the received
+	 *                                      ones in. It may be {@code null} to not
+	 *                                      cache them.
+	 * @param retryPolicy                   The policy that decides how failed
+	 *                                      requests are recovered from.
 	 * @param requestParametersAction       The action to execute to populate the
 	 *                                      request object with parameters, after
 	 *                                      the documents object.
@@ -69,7 +77,7 @@ final class TppHelper {
 	 *                                      document object of the response, and is
 	 *                                      expected to put its processed form in
 	 *                                      the provided map.
-	 * @return The described list. The values of this list and its maps are not
+	 * @return The described list. The values of the maps of this list are not
 	 *         {@code null}. This list is not modifiable.
 	 * @throws ProcessingException      If some exception occurs during the
 	 *                                  operation.
@@ -77,19 +85,24 @@ final class TppHelper {
 	 *                                  invalid.
 	 */
 	public static List<Map<String, String>> processAttributes(
-		@NonNull final List<String[]> attributesBatch, final int startIndex, @NonNull final String[] attributeNames, @NonNull final WebTarget target,
+		@NonNull final List<String[]> attributesBatch, final int startIndex, @NonNull final String[] attributeNames, @NonNull final TppClient client,
+		final int documentsPerRequest, final TppResponseCache responseCache, @NonNull final TppRetryPolicy retryPolicy,
 		@NonNull final ProcessingConsumer<? super JsonGenerator> requestParametersAction,
 		@NonNull final JsonResponseAttributeType responseAttributeType,
 		@NonNull final ProcessingBiConsumer<? super Entry<String, JsonObject>, ? super Map<String, String>> storeProcessedAttributeAction
 	) throws ProcessingException {
 		final List<Map<String, String>> batchAttributeValues;
-		final List<Map<String, String>> batchAttributeValuesReadOnly;
 		final int batchSize = attributesBatch.size();
+		final TppBatch batch;
 
 		if (batchSize < 1) {
 			throw new IllegalArgumentException("The attribute batch can't be empty");
 		}
 
+		if (documentsPerRequest < 1) {
+			throw new IllegalArgumentException("The number of documents per request must be positive");
+		}
+
 		if (attributesBatch.get(0).length - startIndex != attributeNames.length) {
 			throw new IllegalArgumentException(
 				"The length of the attribute values minus the start index must be equal to the attribute names array length"
@@ -98,52 +111,20 @@ final class TppHelper {
 
 		batchAttributeValues = new ArrayList<>(batchSize);
 
-		// Prepare batch document attribute map
-		for (final String[] documentAttributes : attributesBatch) {
-			final Map<String, String> attributeValuesMap = new HashMap<>(
-				(int) Math.ceil(attributeNames.length / 0.75)
-			);
-
-			// Prepare attribute map for the current document
-			for (int i = 0; i < attributeNames.length; ++i) {
-				attributeValuesMap.put(attributeNames[i], documentAttributes[i + startIndex]);
-			}
-
-			batchAttributeValues.add(attributeValuesMap);
+		// Prepare batch document attribute maps, to be filled with processed values
+		for (int i = 0; i < batchSize; ++i) {
+			batchAttributeValues.add(new HashMap<>((int) Math.ceil(attributeNames.length / 0.75)));
 		}
 
-		batchAttributeValuesReadOnly = Collections.unmodifiableList(batchAttributeValues);
-
 		try {
-			final VariableHolder<Integer> attributeIndex = new VariableHolder<>(0);
-			final VariableHolder<Integer> documentIndex = new VariableHolder<>(0);
-
-			processProcessedResponseDocument(
-				batchAttributeValuesReadOnly,
-				target,
-				requestParametersAction,
-				responseAttributeType,
-				(final Entry<String, JsonObject> returnedAttributeObject) -> {
-					int currentDocumentIndex = documentIndex.getVariable();
-					int currentAttributeIndex = attributeIndex.getVariable();
-
-					final Map<String, String> currentDocumentAttributes = batchAttributeValues.get(currentDocumentIndex);
-					// Reuse map for storing processed attribute values
-					storeProcessedAttributeAction.accept(returnedAttributeObject, currentDocumentAttributes);
-
-					// Move on to the next document if its attributes ended
-					if (++currentAttributeIndex >= attributeNames.length) {
-						// We have finished with this map, set it read only
-						batchAttributeValues.set(currentDocumentIndex, Collections.unmodifiableMap(currentDocumentAttributes));
-
-						++currentDocumentIndex;
-						currentAttributeIndex = 0;
-					}
-
-					documentIndex.setVariable(currentDocumentIndex);
-					attributeIndex.setVariable(currentAttributeIndex);
-				}
+			batch = new TppBatch(
+				attributesBatch, startIndex, attributeNames, requestParametersAction, responseAttributeType,
+				(final int documentIndex, final Entry<String, JsonObject> returnedAttributeObject) ->
+					storeProcessedAttributeAction.accept(returnedAttributeObject, batchAttributeValues.get(documentIndex)),
+				responseCache
 			);
+
+			processProcessedResponseDocuments(client, documentsPerRequest, retryPolicy, batch, batchSize);
 		} catch (final Exception exc) {
 			if (!(exc instanceof ProcessingException)) {
 				throw new ProcessingException(exc);
@@ -152,105 +133,338 @@ final class TppHelper {
 			}
 		}
 
-		return batchAttributeValuesReadOnly;
+		// We have finished with these maps, set them read only
+		for (int i = 0; i < batchSize; ++i) {
+			batchAttributeValues.set(i, batch.isFailed(i) ? null : Collections.unmodifiableMap(batchAttributeValues.get(i)));
+		}
+
+		return Collections.unmodifiableList(batchAttributeValues);
 	}
 
 	/**
-	 * Processes the specified batch of document attributes, each element of the
-	 * batch being pairs of attribute names and values, by sending a HTTP POST
-	 * request to a JSON web service endpoint, that is assumed to be Text Processing
-	 * Python compatible. The caller can inspect the results and do appropriate
-	 * side-effects with them via the {@code processedAttributeConsumer}.
+	 * Processes the specified batch of document attributes by sending HTTP POST
+	 * requests to a JSON web service endpoint, that is assumed to be Text
+	 * Processing Python compatible. The batch is split in requests of at most
+	 * {@code documentsPerRequest} documents, which are all sent before any
+	 * response is read, so their round trips overlap if the client does not wait
+	 * for responses. Attributes found in the response cache are not sent, and
+	 * requests without attributes to send are skipped. Each request is sent in
+	 * the format of the protocol version negotiated by the client when it is
+	 * sent. The caller can inspect the results and do appropriate side-effects
+	 * with them via the {@code processedAttributeConsumer}.
+	 * <p>
+	 * Requests that fail are recovered from one at a time, in the order of their
+	 * documents, as described in {@link #recover}.
 	 *
-	 * @param attributesBatch                 The batch of attributes to process in
-	 *                                        a single request with Text Processing
-	 *                                        Python.
-	 * @param target                          The Text Processing Python web service
-	 *                                        endpoint method to invoke.
-	 * @param requestParametersAction         An extension point for adding
-	 *                                        parameters to the request body, after
-	 *                                        the documents JSON object. The format
-	 *                                        of these parameters is endpoint
-	 *                                        specific.
-	 * @param responseAttributeType           The expected type of the processed
-	 *                                        text in the response, for each
-	 *                                        document in the batch.
-	 * @param processedResponseObjectConsumer Consumes each of the processed
-	 *                                        document attribute response object,
-	 *                                        doing the appropriate actions with it,
-	 *                                        in the same order that they were in
-	 *                                        the batch. The key of the entry it
-	 *                                        receives is the name of the attribute.
-	 * @throws IllegalArgumentException If some parameter is {@code null} or
-	 *                                  invalid.
+	 * @param client              The client that sends requests to the Text
+	 *                            Processing Python web service endpoint method to
+	 *                            invoke.
+	 * @param documentsPerRequest The maximum number of documents to send in a
+	 *                            single request.
+	 * @param retryPolicy         The policy that decides how failed requests are
+	 *                            recovered from.
+	 * @param batch               The batch of document attributes to process,
+	 *                            which passes the processed attributes to its
+	 *                            consumer.
+	 * @param batchSize           The number of documents of the batch.
 	 * @throws JsonException            If some exception occurs during JSON parsing
 	 *                                  or generation.
-	 * @throws ProcessingException      If some exception occurs while parsing the
-	 *                                  server response.
 	 * @throws WebApplicationException  If some exception occurs while parsing the
 	 *                                  server response.
+	 * @throws IOException              If the response cache could not be read or
+	 *                                  written, or the response could not be
+	 *                                  decompressed.
 	 * @throws ProcessingException      If some other error occurs during the
 	 *                                  processing.
 	 */
-	private static void processProcessedResponseDocument(
-		@NonNull final List<Map<String, String>> attributesBatch, @NonNull final WebTarget target,
-		@NonNull final ProcessingConsumer<? super JsonGenerator> requestParametersAction,
-		@NonNull final JsonResponseAttributeType responseAttributeType,
-		@NonNull final ProcessingConsumer<? super Entry<String, JsonObject>> processedResponseObjectConsumer
-	) throws ProcessingException {
-		final StringWriter requestJsonWriter = new StringWriter(8192);
-		final Set<String> attributeNames = new HashSet<>();
-		int documentNumber = 0;
+	private static void processProcessedResponseDocuments(
+		final TppClient client, final int documentsPerRequest, final TppRetryPolicy retryPolicy, final TppBatch batch,
+		final int batchSize
+	) throws ProcessingException, IOException {
+		final List<PendingRequest> pendingRequests = new ArrayList<>((batchSize + documentsPerRequest - 1) / documentsPerRequest);
+		int readResponses = 0;
 
-		// Generate the request body
-		try (final JsonGenerator requestJsonGenerator = Json.createGenerator(requestJsonWriter)) {
-			requestJsonGenerator.writeStartObject().writeStartObject("documents");
+		try {
+			// Send every request before reading any response
+			for (int i = 0; i < batchSize; i += documentsPerRequest) {
+				final int documents = Math.min(documentsPerRequest, batchSize - i);
 
-			for (final Map<String, String> attributes : attributesBatch) {
-				for (final Entry<String, String> attribute : attributes.entrySet()) {
-					final String attributeName = attribute.getKey();
+				if (batch.hasPendingAttributes(i, documents)) {
+					retryPolicy.awaitDispatch();
+					pendingRequests.add(send(client, batch, i, documents));
+				}
+			}
 
-					requestJsonGenerator.writeStartObject(documentNumber + "_" + attributeName)
-						.write("text", attribute.getValue())
-					.writeEnd();
+			// Read the responses in the same order as the documents
+			for (final PendingRequest pendingRequest : pendingRequests) {
+				++readResponses;
 
-					// Save the attribute name for parsing the response later
-					// (we assume that all the documents have the same attributes)
-					attributeNames.add(attributeName);
+				try {
+					receive(client, batch, pendingRequest);
+					retryPolicy.recordOutcome(null);
+				} catch (final ProcessingException | IOException | RuntimeException exc) {
+					retryPolicy.recordOutcome(exc);
+					recover(client, retryPolicy, batch, pendingRequest.firstDocument, pendingRequest.documents, exc);
 				}
+			}
+		} finally {
+			// Discard the responses we won't read because of an error
+			for (final PendingRequest pendingRequest : pendingRequests.subList(readResponses, pendingRequests.size())) {
+				pendingRequest.response.thenAccept((final InputStream responseBody) -> {
+					try {
+						responseBody.close();
+					} catch (final IOException ignored) {}
+				});
+			}
+		}
+	}
 
-				++documentNumber;
+	/**
+	 * Recovers from the failure of a request for a range of documents of a batch.
+	 * The request is sent again, after backing off, while its failure may be
+	 * transient and the retries allowed by the policy are not exhausted. If it
+	 * still fails, and the web service is not considered to be unavailable, the
+	 * range is split in halves that are sent and recovered from on their own,
+	 * until the documents that make the request fail are isolated and marked as
+	 * failed. Otherwise, the request failure is propagated.
+	 *
+	 * @param client        The client that sends requests.
+	 * @param retryPolicy   The policy that decides how to recover.
+	 * @param batch         The batch the documents belong to.
+	 * @param firstDocument The index in the batch of the first document of the
+	 *                      range.
+	 * @param documents     The number of documents of the range.
+	 * @param failure       The exception the request failed with.
+	 * @throws IOException         If the request failure was an I/O error that
+	 *                             could not be recovered from, or the response
+	 *                             cache could not be written.
+	 * @throws ProcessingException If the request failure could not be recovered
+	 *                             from.
+	 */
+	private static void recover(
+		final TppClient client, final TppRetryPolicy retryPolicy, final TppBatch batch,
+		final int firstDocument, final int documents, final Exception failure
+	) throws ProcessingException, IOException {
+		Exception lastFailure = failure;
+
+		for (int retry = 1; retry <= retryPolicy.getMaximumRetries() && TppRetryPolicy.isRetryable(lastFailure); ++retry) {
+			// Attributes received before the failure are not sent again
+			if (!batch.hasPendingAttributes(firstDocument, documents)) {
+				return;
 			}
 
-			requestJsonGenerator.writeEnd();
-			requestParametersAction.accept(requestJsonGenerator);
-			requestJsonGenerator.writeEnd();
+			if (Thread.currentThread().isInterrupted()) {
+				break;
+			}
+
+			retryPolicy.backOff(retry);
+
+			try {
+				exchange(client, retryPolicy, batch, firstDocument, documents);
+				return;
+			} catch (final ProcessingException | IOException | RuntimeException exc) {
+				lastFailure = exc;
+			}
 		}
 
-		// Send the request and retrieve the response as a JSON object
-		try (
-			final JsonReader responseJsonReader = Json.createReader(
-				target
-					.request(MediaType.APPLICATION_JSON_TYPE)
-					// Identify ourselves via the User-Agent header
-					.header("User-Agent", USER_AGENT_STRING)
-					.post(Entity.json(requestJsonWriter.toString()), Reader.class)
-			)
+		if (!batch.hasPendingAttributes(firstDocument, documents)) {
+			return;
+		}
+
+		if (
+			!retryPolicy.isBisectFailingRequests() || retryPolicy.isWebServiceUnavailable() ||
+			Thread.currentThread().isInterrupted()
 		) {
-			final JsonObject processedDocuments = responseJsonReader.readObject().getJsonObject("documents");
-
-			for (int i = 0; i < documentNumber; ++i) {
-				for (final String attributeName : attributeNames) {
-					final JsonObject processedAttribute = Objects.requireNonNullElse(
-						processedDocuments.getJsonObject(i + "_" + attributeName),
-						responseAttributeType.getDummyValue()
-					);
-
-					processedResponseObjectConsumer.accept(
-						new SimpleImmutableEntry<>(attributeName, processedAttribute)
-					);
+			if (lastFailure instanceof ProcessingException) {
+				throw (ProcessingException) lastFailure;
+			} else if (lastFailure instanceof IOException) {
+				throw (IOException) lastFailure;
+			} else {
+				throw (RuntimeException) lastFailure;
+			}
+		}
+
+		if (documents == 1) {
+			batch.fail(firstDocument, 1);
+			return;
+		}
+
+		for (final int[] half : new int[][] {
+			{ firstDocument, documents / 2 }, { firstDocument + documents / 2, documents - documents / 2 }
+		}) {
+			if (batch.hasPendingAttributes(half[0], half[1])) {
+				try {
+					exchange(client, retryPolicy, batch, half[0], half[1]);
+				} catch (final ProcessingException | IOException | RuntimeException exc) {
+					recover(client, retryPolicy, batch, half[0], half[1], exc);
 				}
 			}
 		}
 	}
+
+	/**
+	 * Sends a request for the pending attributes of a range of documents of a
+	 * batch, once the retry policy allows it, and reads its response, recording
+	 * its outcome.
+	 *
+	 * @param client        The client that sends requests.
+	 * @param retryPolicy   The policy that decides when requests are dispatched.
+	 * @param batch         The batch the documents belong to.
+	 * @param firstDocument The index in the batch of the first document to send.
+	 * @param documents     The number of documents to send.
+	 * @throws IOException         If an I/O error occurs.
+	 * @throws ProcessingException If the request fails.
+	 */
+	private static void exchange(
+		final TppClient client, final TppRetryPolicy retryPolicy, final TppBatch batch,
+		final int firstDocument, final int documents
+	) throws ProcessingException, IOException {
+		retryPolicy.awaitDispatch();
+
+		try {
+			receive(client, batch, send(client, batch, firstDocument, documents));
+			retryPolicy.recordOutcome(null);
+		} catch (final ProcessingException | IOException | RuntimeException exc) {
+			retryPolicy.recordOutcome(exc);
+			throw exc;
+		}
+	}
+
+	/**
+	 * Sends a request for the pending attributes of a range of documents of a
+	 * batch, in the request format the client negotiated so far with the
+	 * endpoint it sends the request to.
+	 *
+	 * @param client        The client that sends the request.
+	 * @param batch         The batch the documents belong to.
+	 * @param firstDocument The index in the batch of the first document to send.
+	 * @param documents     The number of documents to send.
+	 * @return The request, whose response may not be available yet.
+	 */
+	private static PendingRequest send(final TppClient client, final TppBatch batch, final int firstDocument, final int documents) {
+		final VariableHolder<RequestFormat> requestFormat = new VariableHolder<>(null);
+		final TppRequestEvent requestEvent = new TppRequestEvent();
+		final CompletableFuture<InputStream> response;
+
+		requestEvent.begin();
+
+		response = client.post((final RequestFormat writtenRequestFormat, final OutputStream requestBody) -> {
+			requestFormat.setVariable(writtenRequestFormat);
+
+			try (final CountingOutputStream countingRequestBody = new CountingOutputStream(requestBody)) {
+				TppProtocol.writeRequest(writtenRequestFormat, countingRequestBody, batch, firstDocument, documents);
+
+				requestEvent.requestBytes = countingRequestBody.writtenBytes;
+			}
+		});
+
+		// The request format is unknown if the request could not be sent, but then there is no response to read
+		return new PendingRequest(firstDocument, documents, requestFormat.getVariable(), requestEvent, response);
+	}
+
+	/**
+	 * Waits for the response of a request and passes its processed attributes to
+	 * the batch.
+	 *
+	 * @param client         The client that sent the request.
+	 * @param batch          The batch the documents of the request belong to.
+	 * @param pendingRequest The request.
+	 * @throws IOException         If an I/O error occurs.
+	 * @throws ProcessingException If the request failed or its response is
+	 *                             malformed.
+	 */
+	private static void receive(
+		final TppClient client, final TppBatch batch, final PendingRequest pendingRequest
+	) throws ProcessingException, IOException {
+		final TppRequestEvent requestEvent = pendingRequest.requestEvent;
+
+		try (final InputStream responseBody = awaitResponse(pendingRequest.response)) {
+			TppProtocol.readResponse(
+				pendingRequest.requestFormat, responseBody, batch, pendingRequest.firstDocument, pendingRequest.documents
+			);
+
+			requestEvent.successful = true;
+		} finally {
+			requestEvent.end();
+			if (requestEvent.shouldCommit()) {
+				requestEvent.endpoint = client.getEndpoint();
+				requestEvent.documents = pendingRequest.documents;
+				requestEvent.protocolVersion = pendingRequest.requestFormat != null ?
+					pendingRequest.requestFormat.getProtocolVersion() : 0;
+				requestEvent.commit();
+			}
+		}
+	}
+
+	/**
+	 * Waits for the response of a request, unwrapping the exception it failed
+	 * with, if any.
+	 *
+	 * @param response The future response.
+	 * @return The response body.
+	 * @throws ProcessingException If the request failed with a checked exception,
+	 *                             or the wait was interrupted.
+	 */
+	private static InputStream awaitResponse(final CompletableFuture<InputStream> response) throws ProcessingException {
+		try {
+			return response.get();
+		} catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			throw new ProcessingException("Interrupted while waiting for a web service response", exc);
+		} catch (final ExecutionException exc) {
+			final Throwable cause = exc.getCause();
+
+			if (cause instanceof ProcessingException) {
+				throw (ProcessingException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else {
+				throw new ProcessingException(cause);
+			}
+		}
+	}
+
+	/**
+	 * A request whose response was not read yet.
+	 *
+	 * @author Alejandro González García
+	 */
+	@RequiredArgsConstructor
+	private static final class PendingRequest {
+		private final int firstDocument;
+		private final int documents;
+		private final RequestFormat requestFormat;
+		private final TppRequestEvent requestEvent;
+		private final CompletableFuture<InputStream> response;
+	}
+
+	/**
+	 * Counts the bytes written to a stream, leaving it open when closed.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class CountingOutputStream extends FilterOutputStream {
+		private long writtenBytes = 0;
+
+		private CountingOutputStream(final OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			out.write(b);
+			++writtenBytes;
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			out.write(b, off, len);
+			writtenBytes += len;
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
 }
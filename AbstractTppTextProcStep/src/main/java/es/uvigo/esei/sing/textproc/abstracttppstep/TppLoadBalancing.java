@@ -0,0 +1,74 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The ways requests may be balanced among several instances of a Text
+ * Processing Python compatible web service. Each of them estimates the load of
+ * an endpoint, and requests are sent to the endpoint with the least load.
+ *
+ * @author Alejandro González García
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+enum TppLoadBalancing {
+	/**
+	 * The load of an endpoint is the number of requests sent to it that are
+	 * waiting for a response.
+	 */
+	LEAST_OUTSTANDING_REQUESTS("least-outstanding-requests") {
+		@Override
+		double getLoad(final int outstandingRequests, final double averageLatencyNanos) {
+			return outstandingRequests;
+		}
+	},
+	/**
+	 * The load of an endpoint is the time it would take to answer another
+	 * request, estimated from the number of requests waiting for a response and
+	 * its recent average latency. Instances on faster machines get more
+	 * requests, and endpoints that did not answer a request yet are tried
+	 * first.
+	 */
+	LATENCY_WEIGHTED("latency-weighted") {
+		@Override
+		double getLoad(final int outstandingRequests, final double averageLatencyNanos) {
+			return (outstandingRequests + 1) * averageLatencyNanos;
+		}
+	};
+
+	@Getter(AccessLevel.PACKAGE) @NonNull
+	private final String balancingName;
+
+	/**
+	 * Estimates the load of an endpoint.
+	 *
+	 * @param outstandingRequests The number of requests sent to the endpoint that
+	 *                            are waiting for a response.
+	 * @param averageLatencyNanos The recent average latency of the endpoint, in
+	 *                            nanoseconds, or 0 if it did not answer a request
+	 *                            yet.
+	 * @return The described load. Its unit depends on the balancing.
+	 */
+	abstract double getLoad(final int outstandingRequests, final double averageLatencyNanos);
+
+	/**
+	 * Returns the load balancing with the specified name, ignoring case.
+	 *
+	 * @param name The name of the load balancing.
+	 * @return The described load balancing, or {@code null} if there is no load
+	 *         balancing with such name.
+	 */
+	static TppLoadBalancing forName(final String name) {
+		for (final TppLoadBalancing loadBalancing : values()) {
+			if (loadBalancing.balancingName.equalsIgnoreCase(name)) {
+				return loadBalancing;
+			}
+		}
+
+		return null;
+	}
+}
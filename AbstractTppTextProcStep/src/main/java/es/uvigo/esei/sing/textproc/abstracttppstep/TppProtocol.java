@@ -0,0 +1,527 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Writes requests to and reads responses from Text Processing Python
+ * compatible web services, in the formats of every version of the TextProc
+ * protocol.
+ * <p>
+ * In PROTOCOL-1, the request is a JSON object whose {@code documents} member
+ * is an object with a member for every attribute of every document, keyed by
+ * the document number and the attribute name joined by an underscore, and the
+ * response has the same shape.
+ * <p>
+ * PROTOCOL-2 identifies documents and attributes by their position instead. A
+ * request is a JSON object whose {@code attributes} member is an array with
+ * the attribute names, and whose {@code documents} member is an array with an
+ * array of attribute texts for every document, where {@code null} stands for
+ * an attribute that must not be processed. The response has a
+ * {@code documents} array with an array of processed attribute objects, or
+ * {@code null}, for every document. Alternatively, the request can be a
+ * stream of frames, each made of the length in bytes of a JSON value as an
+ * ASCII decimal number, a line feed, the JSON value and another line feed. The
+ * first frame is an object with the {@code attributes} array and the number of
+ * {@code documents}, followed by a frame with the array of texts of every
+ * document, and the response has a frame with the array of processed
+ * attribute objects of every document. Web services that speak PROTOCOL-2
+ * announce it with a {@value #PROTOCOL_HEADER} response header, and may
+ * receive compressed request bodies.
+ * <p>
+ * Request parameters are added as members of the request object, or of the
+ * first frame, after the documents.
+ *
+ * @author Alejandro González García
+ */
+final class TppProtocol {
+	/**
+	 * The response header with which web services announce the newest protocol
+	 * version they speak.
+	 */
+	static final String PROTOCOL_HEADER = "TextProc-Protocol";
+
+	/**
+	 * The newest protocol version this implementation speaks.
+	 */
+	static final int LATEST_VERSION = 2;
+
+	private static final JsonGeneratorFactory JSON_GENERATOR_FACTORY = Json.createGeneratorFactory(Map.of());
+
+	private TppProtocol() {}
+
+	/**
+	 * The formats of request and response bodies.
+	 *
+	 * @author Alejandro González García
+	 */
+	@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+	static enum RequestFormat {
+		/**
+		 * A PROTOCOL-1 JSON object, with documents keyed by number and attribute.
+		 */
+		PROTOCOL_1(1, "application/json"),
+		/**
+		 * A PROTOCOL-2 JSON object, with positional documents.
+		 */
+		PROTOCOL_2(2, "application/json"),
+		/**
+		 * A PROTOCOL-2 stream of length-prefixed JSON frames, one per document.
+		 */
+		PROTOCOL_2_FRAMED(2, "application/x-ndjson");
+
+		@Getter(AccessLevel.PACKAGE)
+		private final int protocolVersion;
+		@Getter(AccessLevel.PACKAGE) @NonNull
+		private final String contentType;
+	}
+
+	/**
+	 * Writes the request body for the pending attributes of a range of documents
+	 * of a batch, numbering the documents from zero.
+	 *
+	 * @param requestFormat The format of the request body.
+	 * @param requestBody   The stream to write the request body to. It is not
+	 *                      closed.
+	 * @param batch         The batch the documents belong to.
+	 * @param firstDocument The index in the batch of the first document to send.
+	 * @param documents     The number of documents to send.
+	 * @throws IOException         If an I/O error occurs.
+	 * @throws ProcessingException If the request parameters action fails.
+	 */
+	static void writeRequest(
+		@NonNull final RequestFormat requestFormat, @NonNull final OutputStream requestBody, @NonNull final TppBatch batch,
+		final int firstDocument, final int documents
+	) throws IOException, ProcessingException {
+		switch (requestFormat) {
+			case PROTOCOL_1:
+				writeProtocol1Request(requestBody, batch, firstDocument, documents);
+				break;
+			case PROTOCOL_2:
+				writeProtocol2Request(requestBody, batch, firstDocument, documents);
+				break;
+			case PROTOCOL_2_FRAMED:
+				writeFramedProtocol2Request(requestBody, batch, firstDocument, documents);
+				break;
+		}
+	}
+
+	/**
+	 * Reads the response body for a range of documents of a batch, passing every
+	 * processed attribute to the batch as soon as it is parsed, and then the
+	 * attributes the web service did not return.
+	 *
+	 * @param requestFormat The format of the request body the response answers.
+	 * @param responseBody  The response body. It is not closed.
+	 * @param batch         The batch the documents belong to.
+	 * @param firstDocument The index in the batch of the first document that was
+	 *                      sent.
+	 * @param documents     The number of documents that were sent.
+	 * @throws IOException         If an I/O error occurs.
+	 * @throws ProcessingException If the response is malformed, or the batch
+	 *                             consumer fails.
+	 */
+	static void readResponse(
+		@NonNull final RequestFormat requestFormat, @NonNull final InputStream responseBody, @NonNull final TppBatch batch,
+		final int firstDocument, final int documents
+	) throws IOException, ProcessingException {
+		if (requestFormat == RequestFormat.PROTOCOL_2_FRAMED) {
+			readFramedProtocol2Response(responseBody, batch, firstDocument, documents);
+		} else {
+			try (final JsonParser responseJsonParser = Json.createParser(new UnclosableInputStream(responseBody, Long.MAX_VALUE))) {
+				if (!responseJsonParser.hasNext() || responseJsonParser.next() != Event.START_OBJECT) {
+					throw new ProcessingException("The web service response is not a JSON object");
+				}
+
+				if (!readDocumentsMember(responseJsonParser, requestFormat, batch, firstDocument, documents)) {
+					throw new ProcessingException("The web service response has no documents member");
+				}
+			}
+		}
+
+		batch.receiveMissing(firstDocument, documents);
+	}
+
+	private static void writeProtocol1Request(
+		final OutputStream requestBody, final TppBatch batch, final int firstDocument, final int documents
+	) throws ProcessingException {
+		final String[] attributeNames = batch.getAttributeNames();
+
+		try (final JsonGenerator requestJsonGenerator = JSON_GENERATOR_FACTORY.createGenerator(new UnclosableOutputStream(requestBody))) {
+			requestJsonGenerator.writeStartObject().writeStartObject("documents");
+
+			for (int documentNumber = 0; documentNumber < documents; ++documentNumber) {
+				for (int i = 0; i < attributeNames.length; ++i) {
+					if (batch.isPending(firstDocument + documentNumber, i)) {
+						requestJsonGenerator.writeStartObject(documentNumber + "_" + attributeNames[i])
+							.write("text", batch.getText(firstDocument + documentNumber, i))
+						.writeEnd();
+					}
+				}
+			}
+
+			requestJsonGenerator.writeEnd();
+			batch.getRequestParametersAction().accept(requestJsonGenerator);
+			requestJsonGenerator.writeEnd();
+		}
+	}
+
+	private static void writeProtocol2Request(
+		final OutputStream requestBody, final TppBatch batch, final int firstDocument, final int documents
+	) throws ProcessingException {
+		try (final JsonGenerator requestJsonGenerator = JSON_GENERATOR_FACTORY.createGenerator(new UnclosableOutputStream(requestBody))) {
+			requestJsonGenerator.writeStartObject();
+			writeAttributeNames(requestJsonGenerator, batch);
+
+			requestJsonGenerator.writeStartArray("documents");
+			for (int documentNumber = 0; documentNumber < documents; ++documentNumber) {
+				writeDocumentTexts(requestJsonGenerator, batch, firstDocument + documentNumber);
+			}
+			requestJsonGenerator.writeEnd();
+
+			batch.getRequestParametersAction().accept(requestJsonGenerator);
+			requestJsonGenerator.writeEnd();
+		}
+	}
+
+	private static void writeFramedProtocol2Request(
+		final OutputStream requestBody, final TppBatch batch, final int firstDocument, final int documents
+	) throws IOException, ProcessingException {
+		final ByteArrayOutputStream frame = new ByteArrayOutputStream(1024);
+
+		try (final JsonGenerator frameJsonGenerator = JSON_GENERATOR_FACTORY.createGenerator(frame)) {
+			frameJsonGenerator.writeStartObject();
+			writeAttributeNames(frameJsonGenerator, batch);
+			frameJsonGenerator.write("documents", documents);
+			batch.getRequestParametersAction().accept(frameJsonGenerator);
+			frameJsonGenerator.writeEnd();
+		}
+		writeFrame(requestBody, frame);
+
+		for (int documentNumber = 0; documentNumber < documents; ++documentNumber) {
+			frame.reset();
+
+			try (final JsonGenerator frameJsonGenerator = JSON_GENERATOR_FACTORY.createGenerator(frame)) {
+				writeDocumentTexts(frameJsonGenerator, batch, firstDocument + documentNumber);
+			}
+			writeFrame(requestBody, frame);
+		}
+	}
+
+	private static void writeAttributeNames(final JsonGenerator requestJsonGenerator, final TppBatch batch) {
+		requestJsonGenerator.writeStartArray("attributes");
+		for (final String attributeName : batch.getAttributeNames()) {
+			requestJsonGenerator.write(attributeName);
+		}
+		requestJsonGenerator.writeEnd();
+	}
+
+	/**
+	 * Writes an array with the texts of the pending attributes of a document,
+	 * and {@code null} for the rest.
+	 */
+	private static void writeDocumentTexts(final JsonGenerator requestJsonGenerator, final TppBatch batch, final int documentIndex) {
+		requestJsonGenerator.writeStartArray();
+
+		for (int i = 0; i < batch.getAttributeNames().length; ++i) {
+			final String text = batch.getText(documentIndex, i);
+
+			if (text != null && batch.isPending(documentIndex, i)) {
+				requestJsonGenerator.write(text);
+			} else {
+				requestJsonGenerator.writeNull();
+			}
+		}
+
+		requestJsonGenerator.writeEnd();
+	}
+
+	private static void writeFrame(final OutputStream requestBody, final ByteArrayOutputStream frame) throws IOException {
+		requestBody.write(Integer.toString(frame.size()).getBytes(StandardCharsets.US_ASCII));
+		requestBody.write('\n');
+		frame.writeTo(requestBody);
+		requestBody.write('\n');
+	}
+
+	/**
+	 * Reads the members of a response object until its end, passing the
+	 * processed attributes of its documents member to the batch.
+	 *
+	 * @return Whether the documents member was found.
+	 */
+	private static boolean readDocumentsMember(
+		final JsonParser responseJsonParser, final RequestFormat requestFormat, final TppBatch batch,
+		final int firstDocument, final int documents
+	) throws IOException, ProcessingException {
+		boolean documentsRead = false;
+
+		while (responseJsonParser.next() == Event.KEY_NAME) {
+			final boolean documentsKey = "documents".equals(responseJsonParser.getString());
+			final Event valueEvent = responseJsonParser.next();
+
+			if (documentsKey && requestFormat == RequestFormat.PROTOCOL_1 && valueEvent == Event.START_OBJECT) {
+				readKeyedDocuments(responseJsonParser, batch, firstDocument, documents);
+				documentsRead = true;
+			} else if (documentsKey && requestFormat != RequestFormat.PROTOCOL_1 && valueEvent == Event.START_ARRAY) {
+				int documentNumber = 0;
+				Event documentEvent;
+
+				while ((documentEvent = responseJsonParser.next()) != Event.END_ARRAY) {
+					readPositionalDocument(responseJsonParser, documentEvent, batch, firstDocument, documentNumber++, documents);
+				}
+
+				documentsRead = true;
+			} else if (valueEvent == Event.START_OBJECT) {
+				responseJsonParser.skipObject();
+			} else if (valueEvent == Event.START_ARRAY) {
+				responseJsonParser.skipArray();
+			}
+		}
+
+		return documentsRead;
+	}
+
+	/**
+	 * Reads the members of a PROTOCOL-1 documents object until its end.
+	 */
+	private static void readKeyedDocuments(
+		final JsonParser responseJsonParser, final TppBatch batch, final int firstDocument, final int documents
+	) throws IOException, ProcessingException {
+		final String[] attributeNames = batch.getAttributeNames();
+
+		while (responseJsonParser.next() == Event.KEY_NAME) {
+			final String key = responseJsonParser.getString();
+			final int separatorIndex = key.indexOf('_');
+			final String attributeName = key.substring(separatorIndex + 1);
+			int attributeIndex = -1;
+			int documentNumber;
+
+			if (responseJsonParser.next() != Event.START_OBJECT) {
+				throw new ProcessingException("The processed document attribute " + key + " is not a JSON object");
+			}
+
+			for (int i = 0; i < attributeNames.length && attributeIndex < 0; ++i) {
+				if (attributeNames[i].equals(attributeName)) {
+					attributeIndex = i;
+				}
+			}
+
+			try {
+				documentNumber = Integer.parseInt(key.substring(0, Math.max(separatorIndex, 0)));
+			} catch (final NumberFormatException exc) {
+				documentNumber = -1;
+			}
+
+			if (documentNumber >= 0 && documentNumber < documents) {
+				batch.receive(firstDocument + documentNumber, attributeIndex, responseJsonParser.getObject());
+			} else {
+				responseJsonParser.skipObject();
+			}
+		}
+	}
+
+	/**
+	 * Reads the array of processed attributes of a PROTOCOL-2 document, whose
+	 * first event was already parsed.
+	 */
+	private static void readPositionalDocument(
+		final JsonParser responseJsonParser, final Event documentEvent, final TppBatch batch,
+		final int firstDocument, final int documentNumber, final int documents
+	) throws IOException, ProcessingException {
+		int attributeIndex = 0;
+		Event attributeEvent;
+
+		if (documentEvent == Event.VALUE_NULL) {
+			return;
+		} else if (documentEvent != Event.START_ARRAY) {
+			throw new ProcessingException("The processed document " + documentNumber + " is not a JSON array");
+		}
+
+		while ((attributeEvent = responseJsonParser.next()) != Event.END_ARRAY) {
+			if (attributeEvent == Event.START_OBJECT) {
+				if (documentNumber < documents) {
+					batch.receive(firstDocument + documentNumber, attributeIndex, responseJsonParser.getObject());
+				} else {
+					responseJsonParser.skipObject();
+				}
+			} else if (attributeEvent != Event.VALUE_NULL) {
+				throw new ProcessingException(
+					"The processed attribute " + attributeIndex + " of document " + documentNumber + " is not a JSON object"
+				);
+			}
+
+			++attributeIndex;
+		}
+	}
+
+	private static void readFramedProtocol2Response(
+		final InputStream responseBody, final TppBatch batch, final int firstDocument, final int documents
+	) throws IOException, ProcessingException {
+		final InputStream bufferedResponseBody = new BufferedInputStream(new UnclosableInputStream(responseBody, Long.MAX_VALUE));
+		long frameLength;
+		int documentNumber = 0;
+
+		while ((frameLength = readFrameLength(bufferedResponseBody)) >= 0) {
+			try (final JsonParser frameJsonParser = Json.createParser(new UnclosableInputStream(bufferedResponseBody, frameLength))) {
+				if (!frameJsonParser.hasNext()) {
+					throw new ProcessingException("Empty frame for processed document " + documentNumber);
+				}
+
+				readPositionalDocument(frameJsonParser, frameJsonParser.next(), batch, firstDocument, documentNumber, documents);
+			} catch (final JsonException exc) {
+				// The frame length may not match the JSON value
+				throw new ProcessingException("Malformed frame for processed document " + documentNumber, exc);
+			}
+
+			++documentNumber;
+
+			if (bufferedResponseBody.read() != '\n') {
+				throw new ProcessingException("A frame of the web service response is not terminated by a line feed");
+			}
+		}
+	}
+
+	/**
+	 * Reads the length of the next frame of a framed response.
+	 *
+	 * @return The described length, or -1 if the response has ended.
+	 */
+	private static long readFrameLength(final InputStream responseBody) throws IOException, ProcessingException {
+		long frameLength = 0;
+		int digits = 0;
+		int readByte;
+
+		while ((readByte = responseBody.read()) != '\n') {
+			if (readByte < 0 && digits == 0) {
+				return -1;
+			} else if (readByte < '0' || readByte > '9' || ++digits > 18) {
+				throw new ProcessingException("Invalid frame length in the web service response");
+			}
+
+			frameLength = frameLength * 10 + readByte - '0';
+		}
+
+		if (digits == 0) {
+			throw new ProcessingException("Invalid frame length in the web service response");
+		}
+
+		return frameLength;
+	}
+
+	/**
+	 * A stream that reads at most a number of bytes of another stream, and skips
+	 * the rest of them when closed, leaving the other stream open. JSON parsers
+	 * close their input when they are closed.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class UnclosableInputStream extends FilterInputStream {
+		private long remainingBytes;
+
+		private UnclosableInputStream(final InputStream in, final long maximumBytes) {
+			super(in);
+			this.remainingBytes = maximumBytes;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remainingBytes < 1) {
+				return -1;
+			}
+
+			final int readByte = in.read();
+			if (readByte >= 0) {
+				--remainingBytes;
+			}
+
+			return readByte;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			if (remainingBytes < 1) {
+				return -1;
+			}
+
+			final int readBytes = in.read(b, off, (int) Math.min(len, remainingBytes));
+			if (readBytes > 0) {
+				remainingBytes -= readBytes;
+			}
+
+			return readBytes;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(in.available(), remainingBytes);
+		}
+
+		@Override
+		public boolean markSupported() {
+			return false;
+		}
+
+		@Override
+		public void close() throws IOException {
+			// Only bounded streams need to skip the rest of their bytes
+			if (remainingBytes != Long.MAX_VALUE) {
+				while (read() >= 0);
+			}
+		}
+	}
+
+	/**
+	 * A stream that writes to another stream, flushing it instead of closing it.
+	 * JSON generators close their output when they are closed.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class UnclosableOutputStream extends OutputStream {
+		private final OutputStream out;
+
+		private UnclosableOutputStream(final OutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(final int b) throws IOException {
+			out.write(b);
+		}
+
+		@Override
+		public void write(final byte[] b, final int off, final int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			out.flush();
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.flush();
+		}
+	}
+}
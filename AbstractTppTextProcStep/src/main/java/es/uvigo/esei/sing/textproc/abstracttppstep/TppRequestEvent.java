@@ -0,0 +1,39 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event emitted for every HTTP round trip to a Text
+ * Processing Python compatible web service. Its duration covers sending the
+ * request and parsing the response.
+ *
+ * @author Alejandro González García
+ */
+@Name("es.uvigo.esei.sing.textproc.TppRequest")
+@Label("Text Processing Python Request")
+@Description("A batch of documents processed by a Text Processing Python compatible web service")
+@Category({ "TextProc", "Natural Language Processing" })
+final class TppRequestEvent extends jdk.jfr.Event {
+	@Label("Endpoint")
+	String endpoint;
+
+	@Label("Documents")
+	int documents;
+
+	@Label("Protocol Version")
+	@Description("The TextProc protocol version of the request")
+	int protocolVersion;
+
+	@Label("Request Bytes")
+	@Description("The number of bytes of the request body, before compression")
+	long requestBytes;
+
+	@Label("Successful")
+	@Description("Whether a response was received and parsed")
+	boolean successful;
+}
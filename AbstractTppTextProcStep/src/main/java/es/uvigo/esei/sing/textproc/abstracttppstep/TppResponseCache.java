@@ -0,0 +1,317 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+
+import lombok.NonNull;
+
+/**
+ * A cache of the processed document attribute objects returned by a Text
+ * Processing Python operation, addressed by the SHA-256 hash of the operation,
+ * the request parameters and the text of the attribute. Recently used objects
+ * are kept in memory, up to a maximum number of them. Optionally, every object
+ * is also appended to a file, so it survives the cache and can be reused by
+ * later executions.
+ * <p>
+ * The file is a sequence of records, each made of the 32 bytes of a hash, the
+ * length of the UTF-8 encoded JSON object as a 32 bit big endian integer, and
+ * the encoded object. The offsets of the records are kept in an index file
+ * next to it, as described in {@link TppResponseCacheIndex}, so the size of the
+ * disk store is not bound by the available memory either. Records appended to
+ * the disk store without being indexed, because an execution was interrupted,
+ * are indexed when the store is opened again.
+ *
+ * @author Alejandro González García
+ */
+final class TppResponseCache implements AutoCloseable {
+	private static final int KEY_LENGTH = 32;
+	private static final int RECORD_HEADER_LENGTH = KEY_LENGTH + Integer.BYTES;
+	private static final ThreadLocal<MessageDigest> KEY_DIGEST = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException exc) {
+			// Every Java platform implementation must support SHA-256
+			throw new AssertionError(exc);
+		}
+	});
+
+	private final byte[] keyPrefix;
+	private final Map<ByteBuffer, JsonObject> memoryEntries;
+	private final FileChannel diskStore;
+	private final TppResponseCacheIndex diskStoreIndex;
+	private long diskStoreSize = 0;
+
+	private final LongAdder memoryHits = new LongAdder();
+	private final LongAdder diskHits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * Creates a cache for the responses of an operation, opening its disk store
+	 * if one is specified.
+	 *
+	 * @param operation            The operation whose responses will be cached,
+	 *                             such as the path of the endpoints that
+	 *                             perform it.
+	 * @param requestParameters    The request parameters sent to the endpoint,
+	 *                             serialized in a stable way.
+	 * @param maximumMemoryEntries The maximum number of processed attribute
+	 *                             objects to keep in memory.
+	 * @param diskStoreFile        The file of the disk store, which is created
+	 *                             if it doesn't exist. It may be {@code null}
+	 *                             to not use a disk store. Its index is stored
+	 *                             in a file with the same name plus an
+	 *                             {@code .index} extension.
+	 * @throws IOException If the disk store could not be opened or read.
+	 */
+	TppResponseCache(
+		@NonNull final String operation, @NonNull final String requestParameters,
+		final int maximumMemoryEntries, final Path diskStoreFile
+	) throws IOException {
+		this.keyPrefix = (operation + '\0' + requestParameters + '\0').getBytes(StandardCharsets.UTF_8);
+		this.memoryEntries = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<ByteBuffer, JsonObject> eldest) {
+				return size() > maximumMemoryEntries;
+			}
+		};
+
+		if (diskStoreFile != null) {
+			this.diskStore = FileChannel.open(
+				diskStoreFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+			);
+
+			try {
+				this.diskStoreIndex = new TppResponseCacheIndex(
+					diskStoreFile.resolveSibling(diskStoreFile.getFileName() + ".index")
+				);
+			} catch (final IOException exc) {
+				diskStore.close();
+				throw exc;
+			}
+
+			try {
+				indexDiskStore();
+			} catch (final IOException exc) {
+				diskStoreIndex.close();
+				diskStore.close();
+				throw exc;
+			}
+		} else {
+			this.diskStore = null;
+			this.diskStoreIndex = null;
+		}
+	}
+
+	/**
+	 * Computes the key a processed attribute object for the specified text is
+	 * stored with.
+	 *
+	 * @param text The text of the attribute.
+	 * @return The described key.
+	 * @throws IllegalArgumentException If {@code text} is {@code null}.
+	 */
+	byte[] keyOf(@NonNull final String text) {
+		final MessageDigest keyDigest = KEY_DIGEST.get();
+
+		keyDigest.update(keyPrefix);
+		return keyDigest.digest(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Returns the processed attribute object stored with a key, looking for it in
+	 * memory first, and then in the disk store.
+	 *
+	 * @param key The key, as returned by {@link #keyOf(String)}.
+	 * @return The processed attribute object, or {@code null} if it is not
+	 *         cached.
+	 * @throws IOException If the disk store could not be read.
+	 */
+	JsonObject get(@NonNull final byte[] key) throws IOException {
+		final ByteBuffer wrappedKey = ByteBuffer.wrap(key);
+		JsonObject value;
+
+		synchronized (memoryEntries) {
+			value = memoryEntries.get(wrappedKey);
+		}
+
+		if (value != null) {
+			memoryHits.increment();
+			return value;
+		}
+
+		final long recordOffset = diskStoreIndex != null ? diskStoreIndex.find(key) : -1;
+		if (recordOffset >= 0) {
+			value = readDiskRecordValue(recordOffset);
+
+			synchronized (memoryEntries) {
+				memoryEntries.put(wrappedKey, value);
+			}
+
+			diskHits.increment();
+			return value;
+		}
+
+		misses.increment();
+		return null;
+	}
+
+	/**
+	 * Stores a processed attribute object with a key, in memory and in the disk
+	 * store.
+	 *
+	 * @param key   The key, as returned by {@link #keyOf(String)}.
+	 * @param value The processed attribute object.
+	 * @throws IOException If the disk store could not be written.
+	 */
+	void put(@NonNull final byte[] key, @NonNull final JsonObject value) throws IOException {
+		final ByteBuffer wrappedKey = ByteBuffer.wrap(key);
+
+		synchronized (memoryEntries) {
+			memoryEntries.put(wrappedKey, value);
+		}
+
+		if (diskStore != null) {
+			synchronized (diskStore) {
+				if (diskStoreIndex.find(key) < 0) {
+					final byte[] encodedValue = value.toString().getBytes(StandardCharsets.UTF_8);
+					final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + encodedValue.length)
+						.put(key).putInt(encodedValue.length).put(encodedValue).flip();
+					final long recordOffset = diskStoreSize;
+
+					while (record.hasRemaining()) {
+						diskStoreSize += diskStore.write(record, diskStoreSize);
+					}
+
+					diskStoreIndex.put(key, recordOffset, diskStoreSize);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a human readable summary of how many lookups were answered by this
+	 * cache.
+	 *
+	 * @return The described summary.
+	 */
+	String getStatistics() {
+		final long memoryHitCount = memoryHits.sum();
+		final long diskHitCount = diskHits.sum();
+		final long missCount = misses.sum();
+		final long lookups = memoryHitCount + diskHitCount + missCount;
+
+		return String.format(
+			"%d hits (%d from disk), %d misses, %.1f%% hit ratio",
+			memoryHitCount + diskHitCount, diskHitCount, missCount,
+			lookups > 0 ? 100.0 * (memoryHitCount + diskHitCount) / lookups : 0.0
+		);
+	}
+
+	/**
+	 * Closes the disk store and its index, if any.
+	 *
+	 * @throws IOException If the disk store could not be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (diskStore != null) {
+			try {
+				diskStoreIndex.close();
+			} finally {
+				diskStore.close();
+			}
+		}
+	}
+
+	/**
+	 * Adds to the index the records of the disk store that are not in it yet,
+	 * discarding a last record that was not completely written. The index is
+	 * rebuilt if it refers to more records than the disk store has.
+	 */
+	private void indexDiskStore() throws IOException {
+		final long fileSize = diskStore.size();
+		final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+
+		if (diskStoreIndex.getIndexedStoreSize() > fileSize) {
+			diskStoreIndex.clear();
+		}
+		diskStoreSize = diskStoreIndex.getIndexedStoreSize();
+
+		while (diskStoreSize + RECORD_HEADER_LENGTH <= fileSize) {
+			final byte[] key = new byte[KEY_LENGTH];
+			final long valueLength;
+
+			readFully(recordHeader.clear(), diskStoreSize);
+			recordHeader.flip().get(key);
+			valueLength = recordHeader.getInt();
+
+			if (valueLength < 0 || diskStoreSize + RECORD_HEADER_LENGTH + valueLength > fileSize) {
+				break;
+			}
+
+			diskStoreIndex.put(key, diskStoreSize, diskStoreSize + RECORD_HEADER_LENGTH + valueLength);
+			diskStoreSize += RECORD_HEADER_LENGTH + valueLength;
+		}
+
+		diskStore.truncate(diskStoreSize);
+	}
+
+	/**
+	 * Reads the processed attribute object of the disk store record at the
+	 * specified offset.
+	 */
+	private JsonObject readDiskRecordValue(final long recordOffset) throws IOException {
+		final ByteBuffer valueLength = ByteBuffer.allocate(Integer.BYTES);
+		final ByteBuffer value;
+
+		readFully(valueLength, recordOffset + KEY_LENGTH);
+		value = ByteBuffer.allocate(valueLength.flip().getInt());
+		readFully(value, recordOffset + RECORD_HEADER_LENGTH);
+
+		try (final JsonReader valueReader = Json.createReader(
+			new StringReader(new String(value.array(), StandardCharsets.UTF_8))
+		)) {
+			return valueReader.readObject();
+		} catch (final JsonException exc) {
+			throw new IOException("Corrupt response cache record at offset " + recordOffset, exc);
+		}
+	}
+
+	/**
+	 * Fills a buffer with the bytes of the disk store from the specified
+	 * position onwards.
+	 */
+	private void readFully(final ByteBuffer buffer, final long position) throws IOException {
+		long readPosition = position;
+
+		while (buffer.hasRemaining()) {
+			final int readBytes = diskStore.read(buffer, readPosition);
+
+			if (readBytes < 0) {
+				throw new EOFException("Unexpected end of the response cache disk store");
+			}
+
+			readPosition += readBytes;
+		}
+	}
+}
@@ -0,0 +1,351 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import lombok.NonNull;
+
+/**
+ * The index of the records of a {@link TppResponseCache} disk store, which maps
+ * the keys of the records to their offsets in the store. The index is an open
+ * addressing hash table with linear probing that is kept in its own file, so
+ * its size is not bound by the available memory: a lookup reads just the slots
+ * it probes. The table doubles its capacity when it gets half full.
+ * <p>
+ * The file begins with a header made of the number of slots, the number of
+ * used slots and the size of the disk store prefix whose records are indexed,
+ * as 64 bit big endian integers. Every slot is made of the 32 bytes of a key
+ * and the offset of its record plus one, as a 64 bit big endian integer, which
+ * is zero for empty slots.
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe. Lookups may be
+ *           executed concurrently.
+ */
+final class TppResponseCacheIndex implements AutoCloseable {
+	private static final int KEY_LENGTH = 32;
+	private static final int HEADER_LENGTH = 3 * Long.BYTES;
+	private static final int SLOT_LENGTH = KEY_LENGTH + Long.BYTES;
+	private static final long INITIAL_CAPACITY = 1024;
+	// Slots read or written at once while initializing or growing the table
+	private static final int GROWTH_READ_SLOTS = 4096;
+
+	private final Path indexFile;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private FileChannel channel;
+	private long capacity;
+	private long entries;
+	private long indexedStoreSize;
+
+	/**
+	 * Opens the index stored in a file, creating an empty one if the file doesn't
+	 * exist or doesn't contain a valid index.
+	 *
+	 * @param indexFile The file of the index.
+	 * @throws IOException If the index could not be opened or created.
+	 */
+	TppResponseCacheIndex(@NonNull final Path indexFile) throws IOException {
+		this.indexFile = indexFile;
+		this.channel = FileChannel.open(
+			indexFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE
+		);
+
+		try {
+			if (!readHeader()) {
+				clear();
+			}
+		} catch (final IOException exc) {
+			channel.close();
+			throw exc;
+		}
+	}
+
+	/**
+	 * Returns the size of the disk store prefix whose records are indexed. Any
+	 * record after it must be added to the index.
+	 *
+	 * @return The described size.
+	 */
+	long getIndexedStoreSize() {
+		lock.readLock().lock();
+		try {
+			return indexedStoreSize;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Looks up the offset of the disk store record with a key.
+	 *
+	 * @param key The key of the record.
+	 * @return The offset of the record, or a negative number if it is not
+	 *         indexed.
+	 * @throws IOException If the index could not be read.
+	 */
+	long find(@NonNull final byte[] key) throws IOException {
+		final ByteBuffer slot = ByteBuffer.allocate(SLOT_LENGTH);
+
+		lock.readLock().lock();
+		try {
+			for (long i = firstSlotOf(key, capacity); ; i = (i + 1) & (capacity - 1)) {
+				final long storedOffset;
+
+				readFully(channel, slot.clear(), slotPosition(i));
+				storedOffset = slot.getLong(KEY_LENGTH);
+
+				if (storedOffset == 0) {
+					return -1;
+				}
+
+				if (keyEquals(slot, key)) {
+					return storedOffset - 1;
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Adds a record of the disk store to the index, replacing the offset of any
+	 * record with the same key, and records the size of the indexed prefix of the
+	 * store.
+	 *
+	 * @param key              The key of the record.
+	 * @param recordOffset     The offset of the record in the disk store.
+	 * @param indexedStoreSize The size of the disk store prefix whose records are
+	 *                         indexed, after adding this one.
+	 * @throws IOException If the index could not be written.
+	 */
+	void put(@NonNull final byte[] key, final long recordOffset, final long indexedStoreSize) throws IOException {
+		lock.writeLock().lock();
+		try {
+			if (2 * (entries + 1) > capacity) {
+				grow();
+			}
+
+			if (insert(channel, capacity, key, recordOffset)) {
+				++entries;
+			}
+
+			this.indexedStoreSize = indexedStoreSize;
+			writeHeader(channel, capacity);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes every record from the index.
+	 *
+	 * @throws IOException If the index could not be written.
+	 */
+	void clear() throws IOException {
+		lock.writeLock().lock();
+		try {
+			channel.truncate(0);
+			capacity = INITIAL_CAPACITY;
+			entries = 0;
+			indexedStoreSize = 0;
+			initialize(channel, capacity);
+			writeHeader(channel, capacity);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Closes the file of this index.
+	 *
+	 * @throws IOException If the file could not be closed.
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.writeLock().lock();
+		try {
+			channel.close();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Reads the header of the index file, checking that it describes a table
+	 * that matches the size of the file.
+	 *
+	 * @return {@code true} if the header is valid, {@code false} otherwise.
+	 */
+	private boolean readHeader() throws IOException {
+		final long fileSize = channel.size();
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+
+		if (fileSize < HEADER_LENGTH) {
+			return false;
+		}
+
+		readFully(channel, header, 0);
+		header.flip();
+		capacity = header.getLong();
+		entries = header.getLong();
+		indexedStoreSize = header.getLong();
+
+		return
+			capacity >= INITIAL_CAPACITY && Long.bitCount(capacity) == 1 && entries >= 0 && entries < capacity &&
+			indexedStoreSize >= 0 && fileSize == slotPosition(capacity);
+	}
+
+	/**
+	 * Writes the header of an index file with the specified number of slots.
+	 */
+	private void writeHeader(final FileChannel channel, final long capacity) throws IOException {
+		final ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH)
+			.putLong(capacity).putLong(entries).putLong(indexedStoreSize).flip();
+
+		writeFully(channel, header, 0);
+	}
+
+	/**
+	 * Doubles the capacity of the table, inserting its used slots in a new file
+	 * that replaces the current one.
+	 */
+	private void grow() throws IOException {
+		final long newCapacity = 2 * capacity;
+		final Path newIndexFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+		final ByteBuffer slots = ByteBuffer.allocate(GROWTH_READ_SLOTS * SLOT_LENGTH);
+		final byte[] key = new byte[KEY_LENGTH];
+
+		try (final FileChannel newChannel = FileChannel.open(
+			newIndexFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+			StandardOpenOption.READ, StandardOpenOption.WRITE
+		)) {
+			initialize(newChannel, newCapacity);
+
+			for (long i = 0; i < capacity; i += GROWTH_READ_SLOTS) {
+				slots.clear().limit((int) Math.min(GROWTH_READ_SLOTS, capacity - i) * SLOT_LENGTH);
+				readFully(channel, slots, slotPosition(i));
+				slots.flip();
+
+				while (slots.hasRemaining()) {
+					final long storedOffset;
+
+					slots.get(key);
+					storedOffset = slots.getLong();
+
+					if (storedOffset != 0) {
+						insert(newChannel, newCapacity, key, storedOffset - 1);
+					}
+				}
+			}
+
+			writeHeader(newChannel, newCapacity);
+			newChannel.force(false);
+		}
+
+		// The new file is complete before it replaces the current one
+		channel.close();
+		Files.move(newIndexFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		channel = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		capacity = newCapacity;
+	}
+
+	/**
+	 * Stores the offset of a record in the slot of its key, or in the first empty
+	 * slot after it.
+	 *
+	 * @return {@code true} if an empty slot was used, {@code false} if the key was
+	 *         already in the table.
+	 */
+	private static boolean insert(
+		final FileChannel channel, final long capacity, final byte[] key, final long recordOffset
+	) throws IOException {
+		final ByteBuffer slot = ByteBuffer.allocate(SLOT_LENGTH);
+
+		for (long i = firstSlotOf(key, capacity); ; i = (i + 1) & (capacity - 1)) {
+			final boolean emptySlot;
+
+			readFully(channel, slot.clear(), slotPosition(i));
+			emptySlot = slot.getLong(KEY_LENGTH) == 0;
+
+			if (emptySlot || keyEquals(slot, key)) {
+				writeFully(channel, slot.clear().put(key).putLong(recordOffset + 1).flip(), slotPosition(i));
+				return emptySlot;
+			}
+		}
+	}
+
+	/**
+	 * Fills a new index file with empty slots, leaving room for the header.
+	 */
+	private static void initialize(final FileChannel channel, final long capacity) throws IOException {
+		final ByteBuffer emptySlots = ByteBuffer.allocate(GROWTH_READ_SLOTS * SLOT_LENGTH);
+
+		for (long i = 0; i < capacity; i += GROWTH_READ_SLOTS) {
+			emptySlots.clear().limit((int) Math.min(GROWTH_READ_SLOTS, capacity - i) * SLOT_LENGTH);
+			writeFully(channel, emptySlots, slotPosition(i));
+		}
+	}
+
+	/**
+	 * Returns the slot where the probing for a key begins. Keys are SHA-256
+	 * hashes, so any of their bits are evenly distributed.
+	 */
+	private static long firstSlotOf(final byte[] key, final long capacity) {
+		return ByteBuffer.wrap(key).getLong() & (capacity - 1);
+	}
+
+	/**
+	 * Returns the position of a slot in the index file.
+	 */
+	private static long slotPosition(final long slot) {
+		return HEADER_LENGTH + slot * SLOT_LENGTH;
+	}
+
+	/**
+	 * Checks whether a slot read into a buffer holds a key.
+	 */
+	private static boolean keyEquals(final ByteBuffer slot, final byte[] key) {
+		return Arrays.equals(slot.array(), 0, KEY_LENGTH, key, 0, KEY_LENGTH);
+	}
+
+	/**
+	 * Fills a buffer with the bytes of a file from the specified position
+	 * onwards.
+	 */
+	private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+		long readPosition = position;
+
+		while (buffer.hasRemaining()) {
+			final int readBytes = channel.read(buffer, readPosition);
+
+			if (readBytes < 0) {
+				throw new EOFException("Unexpected end of the response cache index");
+			}
+
+			readPosition += readBytes;
+		}
+	}
+
+	/**
+	 * Writes the remaining bytes of a buffer to a file from the specified
+	 * position onwards.
+	 */
+	private static void writeFully(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException {
+		long writePosition = position;
+
+		while (buffer.hasRemaining()) {
+			writePosition += channel.write(buffer, writePosition);
+		}
+	}
+}
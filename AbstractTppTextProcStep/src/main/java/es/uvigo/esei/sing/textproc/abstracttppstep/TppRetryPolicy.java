@@ -0,0 +1,198 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.net.http.HttpConnectTimeoutException;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Decides how requests to a Text Processing Python compatible web service that
+ * fail are recovered from: how many times they are retried, how long to back
+ * off before each retry, and whether the documents of a request that keeps
+ * failing are split in halves, to isolate the documents the web service can't
+ * process from the rest.
+ *
+ * @author Alejandro González García
+ */
+final class TppRetryPolicy {
+	/**
+	 * The longest back off between retries, no matter how many were done.
+	 */
+	private static final long MAXIMUM_BACKOFF_MILLIS = 30_000;
+
+	/**
+	 * A policy that neither retries nor bisects requests.
+	 */
+	static final TppRetryPolicy NONE = new TppRetryPolicy(0, 0, false, null);
+
+	@Getter(AccessLevel.PACKAGE)
+	private final int maximumRetries;
+	private final long initialBackoffMillis;
+	@Getter(AccessLevel.PACKAGE)
+	private final boolean bisectFailingRequests;
+	private final TppCircuitBreaker circuitBreaker;
+
+	/**
+	 * Creates a new retry policy.
+	 *
+	 * @param maximumRetries        The number of times a failed request is sent
+	 *                              again, if the failure may be transient.
+	 * @param initialBackoffMillis  The milliseconds to wait before the first
+	 *                              retry, which double for every next retry.
+	 * @param bisectFailingRequests Whether to split the documents of requests
+	 *                              that fail after every retry in halves.
+	 * @param circuitBreaker        The circuit breaker of the endpoint, or
+	 *                              {@code null} if requests are always
+	 *                              dispatched.
+	 * @throws IllegalArgumentException If {@code maximumRetries} or
+	 *                                  {@code initialBackoffMillis} are
+	 *                                  negative.
+	 */
+	TppRetryPolicy(
+		final int maximumRetries, final long initialBackoffMillis, final boolean bisectFailingRequests,
+		final TppCircuitBreaker circuitBreaker
+	) {
+		if (maximumRetries < 0 || initialBackoffMillis < 0) {
+			throw new IllegalArgumentException("The retries and their back off can't be negative");
+		}
+
+		this.maximumRetries = maximumRetries;
+		this.initialBackoffMillis = initialBackoffMillis;
+		this.bisectFailingRequests = bisectFailingRequests;
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	/**
+	 * Waits until a request can be dispatched, according to the circuit breaker.
+	 *
+	 * @throws ProcessingException If the calling thread is interrupted while
+	 *                             waiting.
+	 */
+	void awaitDispatch() throws ProcessingException {
+		if (circuitBreaker != null) {
+			try {
+				circuitBreaker.awaitDispatch();
+			} catch (final InterruptedException exc) {
+				Thread.currentThread().interrupt();
+				throw new ProcessingException("Interrupted while waiting for the web service to become available", exc);
+			}
+		}
+	}
+
+	/**
+	 * Records the outcome of a request in the circuit breaker.
+	 *
+	 * @param failure The exception the request failed with, or {@code null} if
+	 *                it succeeded.
+	 */
+	void recordOutcome(final Throwable failure) {
+		if (circuitBreaker != null) {
+			if (failure != null && isUnavailability(failure)) {
+				circuitBreaker.recordFailure();
+			} else {
+				circuitBreaker.recordSuccess();
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the web service is considered to be unavailable, in which
+	 * case failing requests are not bisected, as their halves would fail too.
+	 *
+	 * @return {@code true} if the circuit breaker is open, {@code false}
+	 *         otherwise.
+	 */
+	boolean isWebServiceUnavailable() {
+		return circuitBreaker != null && circuitBreaker.isOpen();
+	}
+
+	/**
+	 * Waits before retrying a request. The back off grows exponentially with the
+	 * number of retries, and is randomized so that worker threads that failed at
+	 * the same time do not retry at the same time.
+	 *
+	 * @param retry The number of the retry, starting at 1.
+	 * @throws ProcessingException If the calling thread is interrupted while
+	 *                             waiting.
+	 */
+	void backOff(final int retry) throws ProcessingException {
+		final long backoffMillis = Math.min(
+			initialBackoffMillis << Math.min(retry - 1, 20), MAXIMUM_BACKOFF_MILLIS
+		);
+
+		try {
+			Thread.sleep(backoffMillis / 2 + ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1));
+		} catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			throw new ProcessingException("Interrupted while waiting to retry a request", exc);
+		}
+	}
+
+	/**
+	 * Checks whether a request that failed with the specified exception may
+	 * succeed if sent again. That is the case for I/O errors, including time
+	 * outs, and for HTTP status codes that signal overload or unavailability.
+	 * Internal server errors are usually caused by some document the web service
+	 * can't process, so they are left to bisection, which sends the documents
+	 * again anyway.
+	 *
+	 * @param failure The exception the request failed with.
+	 * @return {@code true} if the request is worth retrying, {@code false}
+	 *         otherwise.
+	 */
+	static boolean isRetryable(final Throwable failure) {
+		for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+			if (cause instanceof TppStatusException) {
+				final int statusCode = ((TppStatusException) cause).getStatusCode();
+
+				return statusCode == 408 || statusCode == 429 || statusCode == 502 || statusCode == 503 || statusCode == 504;
+			} else if (cause instanceof IOException) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Checks whether a request failed with the specified exception because the
+	 * web service is unavailable, rather than because of what was sent. Read
+	 * time outs and internal server errors mean that the web service is up,
+	 * even if it can't process some documents.
+	 *
+	 * @param failure The exception the request failed with.
+	 * @return {@code true} if the web service is unavailable, {@code false}
+	 *         otherwise.
+	 */
+	static boolean isUnavailability(final Throwable failure) {
+		for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+			if (cause instanceof TppStatusException) {
+				final int statusCode = ((TppStatusException) cause).getStatusCode();
+
+				return statusCode == 502 || statusCode == 503 || statusCode == 504;
+			} else if (
+				cause instanceof ConnectException || cause instanceof HttpConnectTimeoutException ||
+				cause instanceof NoRouteToHostException || cause instanceof UnknownHostException
+			) {
+				return true;
+			} else if (cause instanceof SocketTimeoutException) {
+				// JAX-RS does not tell connect and read time outs apart otherwise
+				final String message = cause.getMessage();
+
+				return message != null && message.toLowerCase(Locale.ROOT).contains("connect");
+			}
+		}
+
+		return false;
+	}
+}
@@ -0,0 +1,33 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import java.io.IOException;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * Signals that a Text Processing Python compatible web service answered a
+ * request with an HTTP status code that is not successful.
+ *
+ * @author Alejandro González García
+ */
+final class TppStatusException extends IOException {
+	private static final long serialVersionUID = 1L;
+
+	@Getter(AccessLevel.PACKAGE)
+	private final int statusCode;
+
+	/**
+	 * Creates a new exception for the specified response.
+	 *
+	 * @param endpoint   The endpoint that answered the request.
+	 * @param statusCode The HTTP status code of the response.
+	 */
+	TppStatusException(final String endpoint, final int statusCode) {
+		super(endpoint + " responded with HTTP status code " + statusCode);
+
+		this.statusCode = statusCode;
+	}
+}
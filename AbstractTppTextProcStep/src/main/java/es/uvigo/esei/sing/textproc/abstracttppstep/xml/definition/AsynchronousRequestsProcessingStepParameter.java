@@ -0,0 +1,17 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
+
+/**
+ * Parameter for processing steps which represents whether requests to the web
+ * service are sent asynchronously, over a pool of persistent connections, so
+ * several requests of a batch can be waited for at once.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "asynchronousRequests")
+public final class AsynchronousRequestsProcessingStepParameter extends AbstractProcessingStepParameter {}
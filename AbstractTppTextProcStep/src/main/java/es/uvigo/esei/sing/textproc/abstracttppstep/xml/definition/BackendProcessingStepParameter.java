@@ -0,0 +1,17 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
+
+/**
+ * Parameter for processing steps which represents where documents are
+ * processed. It may be http, which sends them to the web service at the
+ * endpoint of the step, or in-process, which processes them in the JVM.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "backend")
+public final class BackendProcessingStepParameter extends AbstractProcessingStepParameter {}
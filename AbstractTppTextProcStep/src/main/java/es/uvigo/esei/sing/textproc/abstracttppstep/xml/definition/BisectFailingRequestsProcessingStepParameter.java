@@ -0,0 +1,18 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
+
+/**
+ * Parameter for processing steps which represents whether the documents of a
+ * request that keeps failing are split in halves and sent again, so only the
+ * documents the web service can't process are skipped, instead of the whole
+ * batch.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "bisectFailingRequests")
+public final class BisectFailingRequestsProcessingStepParameter extends AbstractProcessingStepParameter {}
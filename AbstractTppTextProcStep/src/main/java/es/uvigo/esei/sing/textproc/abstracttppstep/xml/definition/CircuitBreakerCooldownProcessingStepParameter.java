@@ -0,0 +1,16 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
+
+/**
+ * Parameter for processing steps which represents the milliseconds requests
+ * to an unavailable web service are paused for.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "circuitBreakerCooldown")
+public final class CircuitBreakerCooldownProcessingStepParameter extends AbstractProcessingStepParameter {}
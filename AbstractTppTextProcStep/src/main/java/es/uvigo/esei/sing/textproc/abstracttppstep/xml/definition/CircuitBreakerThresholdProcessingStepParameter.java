@@ -0,0 +1,17 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
+
+/**
+ * Parameter for processing steps which represents the number of consecutive
+ * requests that must fail because the web service is unavailable to pause
+ * sending requests to it. Zero never pauses them.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "circuitBreakerThreshold")
+public final class CircuitBreakerThresholdProcessingStepParameter extends AbstractProcessingStepParameter {}
@@ -0,0 +1,18 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
+
+/**
+ * Parameter for processing steps which represents the HTTP content coding to
+ * compress requests of the second TextProc protocol version with, which also
+ * makes responses be requested compressed. It may be identity, gzip or
+ * deflate.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "compression")
+public final class CompressionProcessingStepParameter extends AbstractProcessingStepParameter {}
@@ -0,0 +1,16 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
+
+/**
+ * Parameter for processing steps which represents the milliseconds to wait for
+ * a connection to the web service to be established. Zero waits indefinitely.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "connectTimeout")
+public final class ConnectTimeoutProcessingStepParameter extends AbstractProcessingStepParameter {}
@@ -0,0 +1,17 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
+
+/**
+ * Parameter for processing steps which represents the maximum number of
+ * documents sent to the web service in a single request. Batches with more
+ * documents are split in several requests.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "documentsPerRequest")
+public final class DocumentsPerRequestProcessingStepParameter extends AbstractProcessingStepParameter {}
@@ -7,7 +7,10 @@ import javax.xml.bind.annotation.XmlRootElement;
 import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
 
 /**
- * Parameter for processing steps which represents a web service endpoint.
+ * Parameter for processing steps which represents a web service endpoint, or
+ * several endpoints of equivalent web service instances separated by white
+ * space or commas, among which requests are balanced. It is mandatory unless
+ * documents are processed by the in-process backend.
  *
  * @author Alejandro González García
  */
@@ -0,0 +1,17 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
+
+/**
+ * Parameter for processing steps which represents whether requests of the
+ * second TextProc protocol version are sent as a stream of length-prefixed
+ * JSON frames, one per document, instead of a single JSON object.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "framedRequests")
+public final class FramedRequestsProcessingStepParameter extends AbstractProcessingStepParameter {}
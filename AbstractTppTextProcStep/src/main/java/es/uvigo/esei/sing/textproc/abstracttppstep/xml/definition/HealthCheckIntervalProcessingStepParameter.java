@@ -0,0 +1,17 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
+
+/**
+ * Parameter for processing steps which represents the milliseconds a web
+ * service endpoint that seems to be unavailable is left out before sending it
+ * a request again, when there are several endpoints.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "healthCheckInterval")
+public final class HealthCheckIntervalProcessingStepParameter extends AbstractProcessingStepParameter {}
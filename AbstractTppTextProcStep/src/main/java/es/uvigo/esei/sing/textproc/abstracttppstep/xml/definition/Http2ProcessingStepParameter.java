@@ -0,0 +1,16 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
+
+/**
+ * Parameter for processing steps which represents whether asynchronous
+ * requests to the web service try to use HTTP/2.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "http2")
+public final class Http2ProcessingStepParameter extends AbstractProcessingStepParameter {}
@@ -0,0 +1,18 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
+
+/**
+ * Parameter for processing steps which represents how requests are balanced
+ * among several web service endpoints. It may be least-outstanding-requests,
+ * which favors the endpoints with fewer requests waiting for a response, or
+ * latency-weighted, which also favors the endpoints that answer faster.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "loadBalancing")
+public final class LoadBalancingProcessingStepParameter extends AbstractProcessingStepParameter {}
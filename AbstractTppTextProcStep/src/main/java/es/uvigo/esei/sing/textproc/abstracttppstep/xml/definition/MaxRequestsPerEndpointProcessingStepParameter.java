@@ -0,0 +1,17 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
+
+/**
+ * Parameter for processing steps which represents the maximum number of
+ * requests that may wait for a response from each web service endpoint at the
+ * same time.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "maxRequestsPerEndpoint")
+public final class MaxRequestsPerEndpointProcessingStepParameter extends AbstractProcessingStepParameter {}
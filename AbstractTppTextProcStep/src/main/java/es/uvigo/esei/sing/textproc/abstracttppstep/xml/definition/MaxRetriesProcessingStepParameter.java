@@ -0,0 +1,16 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
+
+/**
+ * Parameter for processing steps which represents the number of times a
+ * request to the web service that failed transiently is sent again.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "maxRetries")
+public final class MaxRetriesProcessingStepParameter extends AbstractProcessingStepParameter {}
@@ -0,0 +1,17 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
+
+/**
+ * Parameter for processing steps which represents the newest TextProc protocol
+ * version to negotiate with the web service. Requests use the first version
+ * until the web service announces it speaks a newer one.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "protocolVersion")
+public final class ProtocolVersionProcessingStepParameter extends AbstractProcessingStepParameter {}
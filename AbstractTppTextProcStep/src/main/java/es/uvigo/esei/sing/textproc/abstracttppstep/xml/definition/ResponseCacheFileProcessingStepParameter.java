@@ -0,0 +1,17 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
+
+/**
+ * Parameter for processing steps which represents the path of a file where web
+ * service responses for single document attributes are stored, so they can be
+ * reused by later executions.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "responseCacheFile")
+public final class ResponseCacheFileProcessingStepParameter extends AbstractProcessingStepParameter {}
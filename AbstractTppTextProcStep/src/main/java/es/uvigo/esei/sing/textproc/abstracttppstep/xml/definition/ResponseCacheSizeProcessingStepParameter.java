@@ -0,0 +1,17 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
+
+/**
+ * Parameter for processing steps which represents the maximum number of web
+ * service responses for single document attributes that are kept in memory,
+ * so identical texts are not sent again. Zero disables the memory cache.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "responseCacheSize")
+public final class ResponseCacheSizeProcessingStepParameter extends AbstractProcessingStepParameter {}
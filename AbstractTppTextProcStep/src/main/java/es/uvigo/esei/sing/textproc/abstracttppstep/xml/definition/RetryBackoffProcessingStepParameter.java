@@ -0,0 +1,17 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
+
+/**
+ * Parameter for processing steps which represents the milliseconds to wait
+ * before the first retry of a failed request, which double for every next
+ * retry.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "retryBackoff")
+public final class RetryBackoffProcessingStepParameter extends AbstractProcessingStepParameter {}
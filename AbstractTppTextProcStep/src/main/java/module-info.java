@@ -9,10 +9,13 @@
  */
 module es.uvigo.esei.sing.textproc.abstracttppstep {
 	requires transitive es.uvigo.esei.sing.textproc.step;
+	requires es.uvigo.esei.sing.textproc.logging;
 
 	requires lombok;
 	requires transitive java.json;
 	requires java.ws.rs;
+	requires java.net.http;
+	requires jdk.jfr;
 	requires transitive java.persistence;
 
 	// JAXB needs deep reflection access
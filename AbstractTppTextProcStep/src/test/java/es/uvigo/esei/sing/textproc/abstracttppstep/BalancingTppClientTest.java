@@ -0,0 +1,151 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import es.uvigo.esei.sing.textproc.abstracttppstep.TppProtocol.RequestFormat;
+import es.uvigo.esei.sing.textproc.logging.TextProcLogging;
+
+/**
+ * Tests the format {@link BalancingTppClient} sends requests in when its
+ * endpoints negotiated different protocol versions.
+ *
+ * @author Alejandro González García
+ */
+public class BalancingTppClientTest {
+	private static final int REQUESTS = 8;
+
+	@BeforeAll
+	static void initializeLogging() {
+		TextProcLogging.initialize(BalancingTppClientTest.class.getSimpleName());
+	}
+
+	/**
+	 * Checks that every request is written in the format negotiated with the
+	 * endpoint it is sent to, so an endpoint that only speaks PROTOCOL-1 doesn't
+	 * make the rest of endpoints receive PROTOCOL-1 requests.
+	 */
+	@Test
+	void requestsAreSentInTheFormatOfTheirEndpoint() throws ExecutionException, InterruptedException, IOException {
+		final FakeTppClient protocol1Client = new FakeTppClient("http://localhost/tpp1", RequestFormat.PROTOCOL_1, false);
+		final FakeTppClient protocol2Client = new FakeTppClient("http://localhost/tpp2", RequestFormat.PROTOCOL_2, false);
+
+		try (final BalancingTppClient client = new BalancingTppClient(
+			List.of(protocol1Client, protocol2Client), TppLoadBalancing.LEAST_OUTSTANDING_REQUESTS, 1, 60_000
+		)) {
+			for (int i = 0; i < REQUESTS; ++i) {
+				final List<RequestFormat> writtenRequestFormats = new ArrayList<>(1);
+
+				try (final InputStream responseBody = client.post(
+					(final RequestFormat requestFormat, final OutputStream requestBody) -> writtenRequestFormats.add(requestFormat)
+				).get()) {
+					assertEquals(1, writtenRequestFormats.size());
+					// The response comes from the endpoint the request was written for
+					assertEquals(
+						writtenRequestFormats.get(0).name(), new String(responseBody.readAllBytes(), StandardCharsets.UTF_8)
+					);
+				}
+			}
+		}
+
+		// Ties are broken in turns
+		assertEquals(REQUESTS / 2, protocol1Client.requests);
+		assertEquals(REQUESTS / 2, protocol2Client.requests);
+	}
+
+	/**
+	 * Checks that requests keep being sent in the format of the endpoints that
+	 * are available when another endpoint is not.
+	 */
+	@Test
+	void unavailableEndpointsDoNotChangeTheFormat() throws ExecutionException, InterruptedException, IOException {
+		final FakeTppClient protocol1Client = new FakeTppClient("http://localhost/tpp1", RequestFormat.PROTOCOL_1, true);
+		final FakeTppClient protocol2Client = new FakeTppClient("http://localhost/tpp2", RequestFormat.PROTOCOL_2, false);
+
+		try (final BalancingTppClient client = new BalancingTppClient(
+			List.of(protocol1Client, protocol2Client), TppLoadBalancing.LEAST_OUTSTANDING_REQUESTS, 1, 60_000
+		)) {
+			// The first request goes to the unavailable endpoint, which is left out afterwards
+			final CompletableFuture<InputStream> failedResponse = client.post(
+				(final RequestFormat requestFormat, final OutputStream requestBody) -> {}
+			);
+			assertEquals(ConnectException.class, assertThrows(ExecutionException.class, failedResponse::get).getCause().getClass());
+
+			for (int i = 0; i < REQUESTS; ++i) {
+				final List<RequestFormat> writtenRequestFormats = new ArrayList<>(1);
+
+				client.post(
+					(final RequestFormat requestFormat, final OutputStream requestBody) -> writtenRequestFormats.add(requestFormat)
+				).get().close();
+
+				assertEquals(List.of(RequestFormat.PROTOCOL_2), writtenRequestFormats);
+			}
+		}
+
+		assertEquals(1, protocol1Client.requests);
+		assertEquals(REQUESTS, protocol2Client.requests);
+	}
+
+	/**
+	 * A client of a fake web service that negotiated a fixed protocol version,
+	 * which answers requests with the name of the format they were written in,
+	 * unless it is unavailable.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class FakeTppClient implements TppClient {
+		private final String endpoint;
+		private final RequestFormat requestFormat;
+		private final boolean unavailable;
+		private int requests = 0;
+
+		private FakeTppClient(final String endpoint, final RequestFormat requestFormat, final boolean unavailable) {
+			this.endpoint = endpoint;
+			this.requestFormat = requestFormat;
+			this.unavailable = unavailable;
+		}
+
+		@Override
+		public CompletableFuture<InputStream> post(final RequestWriter requestWriter) {
+			++requests;
+
+			if (unavailable) {
+				return CompletableFuture.failedFuture(new ConnectException("Connection refused"));
+			}
+
+			try {
+				requestWriter.writeTo(requestFormat, OutputStream.nullOutputStream());
+			} catch (final Exception exc) {
+				return CompletableFuture.failedFuture(exc);
+			}
+
+			return CompletableFuture.completedFuture(
+				new ByteArrayInputStream(requestFormat.name().getBytes(StandardCharsets.UTF_8))
+			);
+		}
+
+		@Override
+		public String getEndpoint() {
+			return endpoint;
+		}
+
+		@Override
+		public void close() {}
+	}
+}
@@ -0,0 +1,265 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+import javax.json.stream.JsonGenerator;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import es.uvigo.esei.sing.textproc.abstracttppstep.TppProtocol.RequestFormat;
+import es.uvigo.esei.sing.textproc.logging.TextProcLogging;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+
+/**
+ * Tests how {@link TppHelper} recovers from failed requests, with the help of
+ * {@link TppRetryPolicy} and {@link TppCircuitBreaker}.
+ *
+ * @author Alejandro González García
+ */
+public class TppHelperTest {
+	private static final String ENDPOINT = "http://localhost/tpp";
+	private static final String POISONED_TEXT = "Poison";
+	private static final int BATCH_SIZE = 512;
+
+	@BeforeAll
+	static void initializeLogging() {
+		TextProcLogging.initialize(TppHelperTest.class.getSimpleName());
+	}
+
+	/**
+	 * Checks that a document the web service can't process is isolated from the
+	 * rest of its batch by bisecting the failing request, so it is the only one
+	 * that fails.
+	 */
+	@Test
+	void poisonedDocumentIsIsolatedByBisection() throws ProcessingException {
+		final int poisonedDocument = 137;
+		final FakeTppClient client = new FakeTppClient((final List<String> texts) ->
+			texts.contains(POISONED_TEXT) ? new TppStatusException(ENDPOINT, 500) : null
+		);
+		final List<Map<String, String>> processedDocuments = processBatch(
+			client, poisonedDocument, new TppRetryPolicy(2, 0, true, null)
+		);
+
+		for (int i = 0; i < BATCH_SIZE; ++i) {
+			if (i == poisonedDocument) {
+				assertNull(processedDocuments.get(i));
+			} else {
+				assertEquals(textOf(i).toUpperCase(), processedDocuments.get(i).get("text"));
+			}
+		}
+
+		// Internal server errors are not retried, and every split sends both halves
+		assertEquals(1 + 2 * Integer.numberOfTrailingZeros(BATCH_SIZE), client.getRequests());
+	}
+
+	/**
+	 * Checks that requests failing because the web service is unavailable open
+	 * the circuit breaker, and that failing requests are not bisected while it
+	 * is open, but the failure is propagated instead.
+	 */
+	@Test
+	void unavailableWebServiceTripsTheCircuitBreaker() {
+		final TppCircuitBreaker circuitBreaker = new TppCircuitBreaker(ENDPOINT, 2, 0);
+		final TppRetryPolicy retryPolicy = new TppRetryPolicy(3, 0, true, circuitBreaker);
+		final FakeTppClient client = new FakeTppClient((final List<String> texts) -> new TppStatusException(ENDPOINT, 503));
+
+		assertThrows(ProcessingException.class, () -> processBatch(client, -1, retryPolicy));
+
+		assertTrue(circuitBreaker.isOpen());
+		assertTrue(retryPolicy.isWebServiceUnavailable());
+		// The first request and its retries, without bisection
+		assertEquals(1 + 3, client.getRequests());
+
+		circuitBreaker.recordSuccess();
+		assertFalse(circuitBreaker.isOpen());
+	}
+
+	/**
+	 * Checks which request failures are considered transient, and which ones mean
+	 * that the web service is unavailable.
+	 */
+	@Test
+	void failuresAreClassified() {
+		final ProcessingException unavailable = new ProcessingException(new TppStatusException(ENDPOINT, 503));
+		final ProcessingException internalError = new ProcessingException(new TppStatusException(ENDPOINT, 500));
+		final TppStatusException tooManyRequests = new TppStatusException(ENDPOINT, 429);
+		final ConnectException connectionRefused = new ConnectException("Connection refused");
+
+		assertTrue(TppRetryPolicy.isRetryable(unavailable));
+		assertTrue(TppRetryPolicy.isUnavailability(unavailable));
+
+		assertFalse(TppRetryPolicy.isRetryable(internalError));
+		assertFalse(TppRetryPolicy.isUnavailability(internalError));
+
+		assertTrue(TppRetryPolicy.isRetryable(tooManyRequests));
+		assertFalse(TppRetryPolicy.isUnavailability(tooManyRequests));
+
+		assertTrue(TppRetryPolicy.isRetryable(connectionRefused));
+		assertTrue(TppRetryPolicy.isUnavailability(connectionRefused));
+	}
+
+	/**
+	 * Checks that a circuit breaker opens after the configured number of
+	 * consecutive failures, and not before.
+	 */
+	@Test
+	void circuitBreakerOpensAfterConsecutiveFailures() {
+		final TppCircuitBreaker circuitBreaker = new TppCircuitBreaker(ENDPOINT, 3, 0);
+
+		circuitBreaker.recordFailure();
+		circuitBreaker.recordFailure();
+		circuitBreaker.recordSuccess();
+		circuitBreaker.recordFailure();
+		circuitBreaker.recordFailure();
+		assertFalse(circuitBreaker.isOpen());
+
+		circuitBreaker.recordFailure();
+		assertTrue(circuitBreaker.isOpen());
+	}
+
+	/**
+	 * Processes a batch of documents with a single text attribute each, sending
+	 * all of them in a single request.
+	 *
+	 * @param client           The client to send requests with.
+	 * @param poisonedDocument The index of the document whose text is
+	 *                         {@link #POISONED_TEXT}, or a negative number if
+	 *                         there is none.
+	 * @param retryPolicy      The policy to recover from failed requests with.
+	 * @return The processed documents.
+	 * @throws ProcessingException If the batch could not be processed.
+	 */
+	private static List<Map<String, String>> processBatch(
+		final TppClient client, final int poisonedDocument, final TppRetryPolicy retryPolicy
+	) throws ProcessingException {
+		final List<String[]> batch = new ArrayList<>(BATCH_SIZE);
+
+		for (int i = 0; i < BATCH_SIZE; ++i) {
+			batch.add(new String[] { Integer.toString(i), i == poisonedDocument ? POISONED_TEXT : textOf(i) });
+		}
+
+		return TppHelper.processAttributes(
+			batch, 1, new String[] { "text" }, client, BATCH_SIZE, null, retryPolicy,
+			(final JsonGenerator requestParametersGenerator) -> {}, JsonResponseAttributeType.STRING,
+			(final Map.Entry<String, JsonObject> processedAttribute, final Map<String, String> processedAttributes) ->
+				processedAttributes.put(processedAttribute.getKey(), processedAttribute.getValue().getString("text"))
+		);
+	}
+
+	private static String textOf(final int i) {
+		return "Text " + i;
+	}
+
+	/**
+	 * Decides whether a fake web service fails a request.
+	 *
+	 * @author Alejandro González García
+	 */
+	@FunctionalInterface
+	private static interface FailureDecider {
+		/**
+		 * Returns the exception a request for the specified texts fails with.
+		 *
+		 * @param texts The texts of the request.
+		 * @return The described exception, or {@code null} if the request succeeds.
+		 */
+		public Exception failureFor(final List<String> texts);
+	}
+
+	/**
+	 * A client of a fake PROTOCOL-2 web service that returns texts in upper
+	 * case, unless told to fail.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class FakeTppClient implements TppClient {
+		private final FailureDecider failureDecider;
+		private final AtomicInteger requests = new AtomicInteger();
+
+		private FakeTppClient(final FailureDecider failureDecider) {
+			this.failureDecider = failureDecider;
+		}
+
+		@Override
+		public CompletableFuture<InputStream> post(final RequestWriter requestWriter) {
+			final ByteArrayOutputStream requestBody = new ByteArrayOutputStream();
+			final List<String> texts = new ArrayList<>();
+			final JsonArrayBuilder responseDocuments = Json.createArrayBuilder();
+			final Exception failure;
+
+			requests.incrementAndGet();
+
+			try {
+				requestWriter.writeTo(RequestFormat.PROTOCOL_2, requestBody);
+			} catch (final IOException | ProcessingException exc) {
+				return CompletableFuture.failedFuture(exc);
+			}
+
+			try (final JsonReader requestReader = Json.createReader(new ByteArrayInputStream(requestBody.toByteArray()))) {
+				for (final JsonValue document : requestReader.readObject().getJsonArray("documents")) {
+					final JsonArray attributes = document.asJsonArray();
+					final String text = attributes.isNull(0) ? null : attributes.getString(0);
+
+					texts.add(text);
+					responseDocuments.add(
+						text == null ?
+							Json.createArrayBuilder().addNull() :
+							Json.createArrayBuilder().add(Json.createObjectBuilder().add("text", text.toUpperCase()))
+					);
+				}
+			}
+
+			failure = failureDecider.failureFor(texts);
+
+			return failure != null ?
+				CompletableFuture.failedFuture(failure) :
+				CompletableFuture.completedFuture(new ByteArrayInputStream(
+					Json.createObjectBuilder().add("documents", responseDocuments).build().toString()
+						.getBytes(StandardCharsets.UTF_8)
+				));
+		}
+
+		@Override
+		public String getEndpoint() {
+			return ENDPOINT;
+		}
+
+		@Override
+		public void close() {}
+
+		/**
+		 * Returns how many requests this client sent.
+		 *
+		 * @return The described number of requests.
+		 */
+		int getRequests() {
+			return requests.get();
+		}
+	}
+}
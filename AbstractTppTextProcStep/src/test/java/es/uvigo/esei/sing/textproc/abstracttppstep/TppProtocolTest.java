@@ -0,0 +1,100 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.json.JsonObject;
+import javax.json.stream.JsonGenerator;
+
+import org.junit.jupiter.api.Test;
+
+import es.uvigo.esei.sing.textproc.abstracttppstep.TppProtocol.RequestFormat;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+
+/**
+ * Tests how {@link TppProtocol} parses framed PROTOCOL-2 responses.
+ *
+ * @author Alejandro González García
+ */
+public class TppProtocolTest {
+	/**
+	 * Checks that every frame of a well formed response is parsed.
+	 */
+	@Test
+	void framedResponseIsParsed() throws IOException, ProcessingException {
+		final List<String> processedTexts = readFramedResponse(
+			2, "18\n[{\"text\":\"FIRST\"}]\n19\n[{\"text\":\"SECOND\"}]\n"
+		);
+
+		assertEquals(List.of("FIRST", "SECOND"), processedTexts);
+	}
+
+	/**
+	 * Checks that frames whose length is malformed are rejected, instead of
+	 * reading a wrong number of bytes.
+	 */
+	@Test
+	void malformedFrameLengthsAreRejected() {
+		for (final String responseBody : new String[] {
+			// Not a number
+			"abc\n[]\n",
+			// Negative
+			"-2\n[]\n",
+			// No digits
+			"\n[]\n",
+			// Too many digits to be a reasonable length
+			"1234567890123456789\n[]\n",
+			// Truncated before the line feed
+			"12",
+			// Shorter than the frame, so the frame is not terminated by a line feed
+			"1\n[{\"text\":\"FIRST\"}]\n"
+		}) {
+			assertThrows(ProcessingException.class, () -> readFramedResponse(1, responseBody), responseBody);
+		}
+	}
+
+	/**
+	 * Reads a framed response for a batch of documents with a single text
+	 * attribute each.
+	 *
+	 * @param documents    The number of documents of the batch.
+	 * @param responseBody The response body.
+	 * @return The processed texts received for each document.
+	 * @throws IOException         If an I/O error occurs.
+	 * @throws ProcessingException If the response is malformed.
+	 */
+	private static List<String> readFramedResponse(
+		final int documents, final String responseBody
+	) throws IOException, ProcessingException {
+		final List<String[]> attributesBatch = new ArrayList<>(documents);
+		final List<String> processedTexts = new ArrayList<>(documents);
+
+		for (int i = 0; i < documents; ++i) {
+			attributesBatch.add(new String[] { Integer.toString(i), "Text " + i });
+			processedTexts.add(null);
+		}
+
+		TppProtocol.readResponse(
+			RequestFormat.PROTOCOL_2_FRAMED, new ByteArrayInputStream(responseBody.getBytes(StandardCharsets.UTF_8)),
+			new TppBatch(
+				attributesBatch, 1, new String[] { "text" }, (final JsonGenerator requestParametersGenerator) -> {},
+				JsonResponseAttributeType.STRING,
+				(final int documentIndex, final Map.Entry<String, JsonObject> processedAttribute) ->
+					processedTexts.set(documentIndex, processedAttribute.getValue().getString("text")),
+				null
+			),
+			0, documents
+		);
+
+		return processedTexts;
+	}
+}
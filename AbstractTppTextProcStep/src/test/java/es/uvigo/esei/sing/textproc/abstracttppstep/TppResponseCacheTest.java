@@ -0,0 +1,90 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the disk store of {@link TppResponseCache} and its index.
+ *
+ * @author Alejandro González García
+ */
+public class TppResponseCacheTest {
+	// More than the initial capacity of the index, so it grows
+	private static final int CACHED_TEXTS = 3000;
+
+	@TempDir
+	Path cacheFolder;
+
+	/**
+	 * Checks that the responses stored in the disk store are found by later
+	 * executions, even if they don't fit in memory.
+	 */
+	@Test
+	void responsesAreReusedFromDisk() throws IOException {
+		final Path diskStoreFile = cacheFolder.resolve("responses.bin");
+
+		fillCache(diskStoreFile);
+		assertCached(diskStoreFile);
+	}
+
+	/**
+	 * Checks that the index of the disk store is rebuilt if it is lost, and that
+	 * a last record that was not completely written is discarded.
+	 */
+	@Test
+	void indexIsRebuiltFromTheDiskStore() throws IOException {
+		final Path diskStoreFile = cacheFolder.resolve("responses.bin");
+
+		fillCache(diskStoreFile);
+		Files.delete(cacheFolder.resolve("responses.bin.index"));
+		Files.write(diskStoreFile, new byte[] { 1, 2, 3 }, StandardOpenOption.APPEND);
+
+		assertCached(diskStoreFile);
+	}
+
+	/**
+	 * Stores a response for every cached text in a new cache.
+	 */
+	private static void fillCache(final Path diskStoreFile) throws IOException {
+		try (final TppResponseCache cache = new TppResponseCache("/tpp", "{}", 1, diskStoreFile)) {
+			for (int i = 0; i < CACHED_TEXTS; ++i) {
+				cache.put(cache.keyOf(textOf(i)), responseOf(i));
+			}
+		}
+	}
+
+	/**
+	 * Checks that a cache opened from a disk store has a response for every cached
+	 * text, and only for them.
+	 */
+	private static void assertCached(final Path diskStoreFile) throws IOException {
+		try (final TppResponseCache cache = new TppResponseCache("/tpp", "{}", 1, diskStoreFile)) {
+			for (int i = 0; i < CACHED_TEXTS; ++i) {
+				assertEquals(responseOf(i), cache.get(cache.keyOf(textOf(i))));
+			}
+
+			assertNull(cache.get(cache.keyOf(textOf(CACHED_TEXTS))));
+		}
+	}
+
+	private static String textOf(final int i) {
+		return "Text " + i;
+	}
+
+	private static JsonObject responseOf(final int i) {
+		return Json.createObjectBuilder().add("text", "Processed text " + i).build();
+	}
+}
@@ -48,6 +48,7 @@ import edu.stanford.nlp.tagger.maxent.MaxentTagger;
 import edu.stanford.nlp.util.CoreMap;
 import es.uvigo.esei.sing.textproc.step.AbstractProcessingStep;
 import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import es.uvigo.esei.sing.textproc.step.management.NlpAnnotationEvent;
 import es.uvigo.esei.sing.textproc.step.corenlpentityextraction.NamedEntityDictionaryHelper.NamedEntityTerm;
 import es.uvigo.esei.sing.textproc.step.corenlpentityextraction.NamedEntityDictionaryHelper.PropertyWithTemporaryFiles;
 import es.uvigo.esei.sing.textproc.step.corenlpentityextraction.xml.definition.NERMappingsFileStepParameter;
@@ -79,6 +80,7 @@ import es.uvigo.esei.sing.textproc.step.util.PathUtil;
  * @author Alejandro González García
  */
 final class CoreNLPEntityExtractionProcessingStep extends AbstractProcessingStep {
+	private static final String CORENLP_ANNOTATOR_NAME = "CoreNLP";
 	private static final String PROPERTIES_FILE_STEP_PARAMETER_NAME = new PropertiesFileProcessingStepParameter().getName();
 	private static final String SEED_WORDS_DIR_STEP_PARAMETER_NAME = new SeedWordsDirectoryProcessingStepParameter().getName();
 	private static final String NER_MAPPINGS_FILE_STEP_PARAMETER_NAME = new NERMappingsFileStepParameter().getName();
@@ -274,7 +276,10 @@ final class CoreNLPEntityExtractionProcessingStep extends AbstractProcessingStep
 								// Now store every sentence of the concatenated documents buffer in a map.
 								// Based on https://github.com/stanfordnlp/CoreNLP/blob/a9a4c2d75b177790a24c0f46188810668d044cd8/src/edu/stanford/nlp/patterns/GetPatternsFromDataMultiClass.java#L702
 								final Annotation annotatedDocument = new Annotation(document);
-								nlpPipeline.annotate(annotatedDocument);
+								NlpAnnotationEvent.annotate(
+									CORENLP_ANNOTATOR_NAME, batchAttributes.size(), document.length(),
+									() -> nlpPipeline.annotate(annotatedDocument)
+								);
 								for (final CoreMap sentence : annotatedDocument.get(SentencesAnnotation.class)) {
 									sentenceMap.put(
 										Integer.toString(k++), // Luckily, the key value just needs to be unique
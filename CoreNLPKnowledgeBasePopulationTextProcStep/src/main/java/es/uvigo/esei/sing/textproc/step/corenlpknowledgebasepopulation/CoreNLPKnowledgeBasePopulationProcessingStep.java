@@ -29,6 +29,7 @@ import org.apache.jena.rdf.model.Model;
 import org.apache.jena.rdf.model.Property;
 import org.apache.jena.rdf.model.ReifiedStatement;
 import org.apache.jena.rdf.model.Resource;
+import org.apache.jena.rdf.model.Statement;
 import org.apache.jena.tdb2.DatabaseMgr;
 import org.apache.jena.tdb2.TDB2Factory;
 
@@ -53,9 +54,11 @@ import edu.stanford.nlp.pipeline.TokenizerAnnotator.TokenizerType;
 import edu.stanford.nlp.pipeline.WordsToSentencesAnnotator;
 import edu.stanford.nlp.sentiment.SentimentCoreAnnotations.SentimentClass;
 import edu.stanford.nlp.util.CoreMap;
+import es.uvigo.esei.sing.textproc.entity.ProcessedDocument;
 import es.uvigo.esei.sing.textproc.logging.TextProcLogging;
 import es.uvigo.esei.sing.textproc.step.AbstractProcessingStep;
 import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import es.uvigo.esei.sing.textproc.step.management.NlpAnnotationEvent;
 import es.uvigo.esei.sing.textproc.step.corenlpknowledgebasepopulation.xml.definition.BaseModelURIProcessingStepParameter;
 import es.uvigo.esei.sing.textproc.step.corenlpknowledgebasepopulation.xml.definition.CompactKnowledgeBaseProcessingStepParameter;
 import es.uvigo.esei.sing.textproc.step.corenlpknowledgebasepopulation.xml.definition.CoreferenceAnimateFileProcessingStepParameter;
@@ -102,6 +105,7 @@ import lombok.NonNull;
  * @author Alejandro González García
  */
 final class CoreNLPKnowledgeBasePopulationProcessingStep extends AbstractProcessingStep {
+	private static final String CORENLP_ANNOTATOR_NAME = "CoreNLP";
 	private static final String NER_MAPPINGS_FILE_STEP_PARAMETER_NAME = new NERMappingsFileProcessingStepParameter().getName();
 	private static final String JENA_DATASET_FOLDER_STEP_PARAMETER_NAME = new JenaDatasetFolderProcessingStepParameter().getName();
 	private static final String BASE_MODEL_URI_STEP_PARAMETER_NAME = new BaseModelURIProcessingStepParameter().getName();
@@ -374,15 +378,6 @@ final class CoreNLPKnowledgeBasePopulationProcessingStep extends AbstractProcess
 			final Dataset jenaDataset = TDB2Factory.connectDataset(datasetPath);
 			final Model tripleGraph = jenaDataset.getNamedModel(baseModelURI.toASCIIString());
 
-			// Clear previous data from the graph
-			jenaDataset.begin(ReadWrite.WRITE);
-			try {
-				tripleGraph.removeAll();
-				jenaDataset.commit();
-			} finally {
-				jenaDataset.end();
-			}
-
 			// Some constant properties
 			final Property confidenceProperty = tripleGraph.createProperty(
 				basePropertyUriBuilder.fragment("confidence").build().toASCIIString()
@@ -400,20 +395,68 @@ final class CoreNLPKnowledgeBasePopulationProcessingStep extends AbstractProcess
 				basePropertyUriBuilder.fragment("documentsentencenumber").build().toASCIIString()
 			);
 
-			for (int i = 0; i < unprocessedDocumentTypesNames.size(); ++i) {
-				final Resource documentTypeNode = tripleGraph.createResource(
-					baseDocumentTypeUriBuilder.fragment(
-						unprocessedDocumentTypesNames.get(i)
-					).build().toASCIIString()
-				);
+			// Every batch is committed to the dataset on its own, so resumed executions
+			// just need to discard the relations of documents after the last checkpoint
+			final ExternalResultsCheckpointer knowledgeBaseCheckpointer = new ExternalResultsCheckpointer() {
+				@Override
+				public void discardAllResults() {
+					jenaDataset.begin(ReadWrite.WRITE);
+					try {
+						tripleGraph.removeAll();
+						jenaDataset.commit();
+					} finally {
+						jenaDataset.end();
+					}
+				}
+
+				@Override
+				public void discardResultsAfter(final String unprocessedDocumentTypeName, final long lastPrimaryKey) {
+					final Resource documentTypeNode = tripleGraph.createResource(
+						baseDocumentTypeUriBuilder.fragment(unprocessedDocumentTypeName).build().toASCIIString()
+					);
+
+					jenaDataset.begin(ReadWrite.WRITE);
+					try {
+						for (final Resource reifiedStatementNode : tripleGraph.listResourcesWithProperty(
+							documentTypeProperty, documentTypeNode
+						).toList()) {
+							if (reifiedStatementNode.getRequiredProperty(documentIdProperty).getInt() > lastPrimaryKey) {
+								final Statement statement = reifiedStatementNode.as(ReifiedStatement.class).getStatement();
+
+								reifiedStatementNode.removeProperties();
+
+								// Remove the relation too, unless other documents state it
+								if (!tripleGraph.isReified(statement)) {
+									tripleGraph.remove(statement);
+								}
+							}
+						}
+
+						jenaDataset.commit();
+					} finally {
+						jenaDataset.end();
+					}
+				}
+
+				@Override
+				public void commit() {
+					// Batches are committed as they are processed
+				}
+			};
+
+			processDocuments(
+				List.of(), "Populating KB from %s",
+				(
+					final String unprocessedDocumentTypeName, final String[] unprocessedAttributeNames,
+					final Class<? extends ProcessedDocument> processedDocumentType
+				) -> {
+					final Resource documentTypeNode = tripleGraph.createResource(
+						baseDocumentTypeUriBuilder.fragment(unprocessedDocumentTypeName).build().toASCIIString()
+					);
 
-				final String[] unprocessedAttributeNames = unprocessedDocumentsAttributes.get(i);
+					return (final List<String[]> batchAttributes) -> {
+						int batchTriples = 0;
 
-				forEachDocumentInNativeQuery(
-					unprocessedDocumentsQuerySuppliers.get(i),
-					String.format("Populating KB from %s", unprocessedDocumentTypesNames.get(i)),
-					numberOfUnprocessedEntitiesProviders.get(i).get(),
-					(final List<String[]> batchAttributes) -> {
 						// Start a Jena dataset transaction for writing
 						// Transactions are serializable, so no worries about phantom reads
 						// and such
@@ -424,7 +467,10 @@ final class CoreNLPKnowledgeBasePopulationProcessingStep extends AbstractProcess
 								for (int j = 0; j < unprocessedAttributeNames.length; ++j) {
 									final Annotation annotatedAttribute = new Annotation(documentAttributes[j + 1]);
 
-									nlpPipeline.annotate(annotatedAttribute);
+									NlpAnnotationEvent.annotate(
+										CORENLP_ANNOTATOR_NAME, 1, documentAttributes[j + 1].length(),
+										() -> nlpPipeline.annotate(annotatedAttribute)
+									);
 
 									int sentenceNumber = 0;
 									for (final CoreMap sentence : annotatedAttribute.get(SentencesAnnotation.class)) {
@@ -433,6 +479,8 @@ final class CoreNLPKnowledgeBasePopulationProcessingStep extends AbstractProcess
 										);
 
 										for (final RelationTriple triple : triples) {
+											++batchTriples;
+
 											final String subjectText = triple.subjectLemmaGloss();
 											final String relationText = triple.relationLemmaGloss();
 											final String objectText = triple.objectLemmaGloss();
@@ -501,14 +549,24 @@ final class CoreNLPKnowledgeBasePopulationProcessingStep extends AbstractProcess
 							}
 
 							// Everything went well, commit any changes made to the dataset
+							final KnowledgeBaseCommitEvent commitEvent = new KnowledgeBaseCommitEvent();
+
+							commitEvent.begin();
 							jenaDataset.commit();
+							commitEvent.end();
+
+							if (commitEvent.shouldCommit()) {
+								commitEvent.documents = batchAttributes.size();
+								commitEvent.triples = batchTriples;
+								commitEvent.commit();
+							}
 						} finally {
 							jenaDataset.end();
 						}
-					},
-					null
-				);
-			}
+					};
+				},
+				knowledgeBaseCheckpointer
+			);
 
 			// Compact the knowledge base if applicable
 			if (
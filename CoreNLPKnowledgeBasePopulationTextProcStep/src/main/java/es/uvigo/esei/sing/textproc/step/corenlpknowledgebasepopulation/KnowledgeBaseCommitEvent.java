@@ -0,0 +1,28 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.corenlpknowledgebasepopulation;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event emitted when the relation triples extracted
+ * from a batch of documents are committed to the Jena dataset of the knowledge
+ * base.
+ *
+ * @author Alejandro González García
+ */
+@Name("es.uvigo.esei.sing.textproc.KnowledgeBaseCommit")
+@Label("Knowledge Base Commit")
+@Description("Relation triples committed to the Jena dataset of the knowledge base")
+@Category({ "TextProc", "Knowledge Base" })
+final class KnowledgeBaseCommitEvent extends jdk.jfr.Event {
+	@Label("Documents")
+	int documents;
+
+	@Label("Triples")
+	@Description("The number of relation triples extracted from the documents")
+	int triples;
+}
@@ -24,6 +24,7 @@ module es.uvigo.esei.sing.textproc.step.corenlpknowledgebasepopulation {
 	requires org.apache.jena.core;
 	requires java.ws.rs;
 	requires es.uvigo.esei.sing.textproc.logging;
+	requires jdk.jfr;
 
 	// JAXB needs deep reflection access
 	opens es.uvigo.esei.sing.textproc.step.corenlpknowledgebasepopulation.xml.definition;
@@ -23,6 +23,7 @@ import edu.stanford.nlp.pipeline.WordsToSentencesAnnotator;
 import es.uvigo.esei.sing.textproc.entity.ProcessedDocument;
 import es.uvigo.esei.sing.textproc.step.AbstractProcessingStep;
 import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import es.uvigo.esei.sing.textproc.step.management.NlpAnnotationEvent;
 import es.uvigo.esei.sing.textproc.step.corenlplemmatization.entity.CoreNLPLemmatizedTextDocument;
 import es.uvigo.esei.sing.textproc.step.corenlplemmatization.entity.CoreNLPLemmatizedTextWithTitleDocument;
 import es.uvigo.esei.sing.textproc.step.corenlplemmatization.xml.definition.ModelProcessingStepParameter;
@@ -47,6 +48,7 @@ import es.uvigo.esei.sing.textproc.step.corenlplemmatization.xml.definition.Mode
  * @author Alejandro González García
  */
 final class CoreNLPLemmatizationProcessingStep extends AbstractProcessingStep {
+	private static final String CORENLP_ANNOTATOR_NAME = "CoreNLP";
 	private static final String MODEL_PROCESSING_STEP_PARAMETER_NAME = new ModelProcessingStepParameter().getName();
 
 	/**
@@ -85,19 +87,12 @@ final class CoreNLPLemmatizationProcessingStep extends AbstractProcessingStep {
 		nlpPipeline.addAnnotator(new MorphaAnnotator(false));
 
 		try {
-			// Delete previous results
-			for (final Class<? extends ProcessedDocument> processedDocumentType : processedDocumentTypes) {
-				deleteAllProcessedDocumentsOfType(processedDocumentType);
-			}
-
-			for (int i = 0; i < processedDocumentTypes.size(); ++i) {
-				final String[] unprocessedAttributeNames = unprocessedDocumentsAttributes.get(i);
-				final Class<? extends ProcessedDocument> processedDocumentType = processedDocumentTypes.get(i);
-
-				forEachDocumentInNativeQuery(
-					unprocessedDocumentsQuerySuppliers.get(i),
-					String.format("Lemmatizing %s", unprocessedDocumentTypesNames.get(i)),
-					numberOfUnprocessedEntitiesProviders.get(i).get(),
+			processDocuments(
+				processedDocumentTypes, "Lemmatizing %s",
+				(
+					final String unprocessedDocumentTypeName, final String[] unprocessedAttributeNames,
+					final Class<? extends ProcessedDocument> processedDocumentType
+				) ->
 					(final List<String[]> batchAttributes) -> {
 						final Map<String, String> processedAttributesMap = new HashMap<>(
 							(int) Math.ceil(unprocessedAttributeNames.length / 0.75)
@@ -108,7 +103,10 @@ final class CoreNLPLemmatizationProcessingStep extends AbstractProcessingStep {
 							for (int j = 0; j < unprocessedAttributeNames.length; ++j) {
 								final Annotation annotatedAttribute = new Annotation(documentAttributes[j + 1]);
 
-								nlpPipeline.annotate(annotatedAttribute);
+								NlpAnnotationEvent.annotate(
+									CORENLP_ANNOTATOR_NAME, 1, documentAttributes[j + 1].length(),
+									() -> nlpPipeline.annotate(annotatedAttribute)
+								);
 								for (final CoreLabel token : annotatedAttribute.get(TokensAnnotation.class)) {
 									tokenizedAttribute
 										.append(token.get(LemmaAnnotation.class))
@@ -131,10 +129,8 @@ final class CoreNLPLemmatizationProcessingStep extends AbstractProcessingStep {
 								Collections.unmodifiableMap(processedAttributesMap)
 							);
 						}
-					},
-					null
-				);
-			}
+					}
+			);
 		} catch (final IllegalArgumentException | PersistenceException exc) {
 			throw new ProcessingException(DATA_ACCESS_EXCEPTION_MESSAGE, exc);
 		}
@@ -19,6 +19,7 @@ import edu.stanford.nlp.pipeline.TokenizerAnnotator;
 import es.uvigo.esei.sing.textproc.entity.ProcessedDocument;
 import es.uvigo.esei.sing.textproc.step.AbstractProcessingStep;
 import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import es.uvigo.esei.sing.textproc.step.management.NlpAnnotationEvent;
 import es.uvigo.esei.sing.textproc.step.corenlptokenization.entity.CoreNLPTokenizedTextDocument;
 import es.uvigo.esei.sing.textproc.step.corenlptokenization.entity.CoreNLPTokenizedTextWithTitleDocument;
 import es.uvigo.esei.sing.textproc.step.corenlptokenization.xml.definition.LanguageProcessingStepParameter;
@@ -43,6 +44,7 @@ import es.uvigo.esei.sing.textproc.step.corenlptokenization.xml.definition.Token
  * @author Alejandro González García
  */
 final class CoreNLPTokenizationProcessingStep extends AbstractProcessingStep {
+	private static final String CORENLP_ANNOTATOR_NAME = "CoreNLP";
 	private static final String LANGUAGE_PROCESSING_STEP_PARAMETER_NAME = new LanguageProcessingStepParameter().getName();
 	private static final String TOKENIZER_OPTIONS_PROCESSING_STEP_PARAMETER_NAME = new TokenizerOptionsProcessingStepParameter().getName();
 
@@ -77,19 +79,12 @@ final class CoreNLPTokenizationProcessingStep extends AbstractProcessingStep {
 		);
 
 		try {
-			// Delete previous results
-			for (final Class<? extends ProcessedDocument> processedDocumentType : processedDocumentTypes) {
-				deleteAllProcessedDocumentsOfType(processedDocumentType);
-			}
-
-			for (int i = 0; i < processedDocumentTypes.size(); ++i) {
-				final String[] unprocessedAttributeNames = unprocessedDocumentsAttributes.get(i);
-				final Class<? extends ProcessedDocument> processedDocumentType = processedDocumentTypes.get(i);
-
-				forEachDocumentInNativeQuery(
-					unprocessedDocumentsQuerySuppliers.get(i),
-					String.format("Tokenizing %s", unprocessedDocumentTypesNames.get(i)),
-					numberOfUnprocessedEntitiesProviders.get(i).get(),
+			processDocuments(
+				processedDocumentTypes, "Tokenizing %s",
+				(
+					final String unprocessedDocumentTypeName, final String[] unprocessedAttributeNames,
+					final Class<? extends ProcessedDocument> processedDocumentType
+				) ->
 					(final List<String[]> batchAttributes) -> {
 						final Map<String, String> processedAttributesMap = new HashMap<>(
 							(int) Math.ceil(unprocessedAttributeNames.length / 0.75)
@@ -100,7 +95,10 @@ final class CoreNLPTokenizationProcessingStep extends AbstractProcessingStep {
 							for (int j = 0; j < unprocessedAttributeNames.length; ++j) {
 								final Annotation annotatedAttribute = new Annotation(documentAttributes[j + 1]);
 
-								nlpPipeline.annotate(annotatedAttribute);
+								NlpAnnotationEvent.annotate(
+									CORENLP_ANNOTATOR_NAME, 1, documentAttributes[j + 1].length(),
+									() -> nlpPipeline.annotate(annotatedAttribute)
+								);
 								for (final CoreLabel token : annotatedAttribute.get(TokensAnnotation.class)) {
 									tokenizedAttribute
 										.append(token.get(TextAnnotation.class))
@@ -123,10 +121,8 @@ final class CoreNLPTokenizationProcessingStep extends AbstractProcessingStep {
 								Collections.unmodifiableMap(processedAttributesMap)
 							);
 						}
-					},
-					null
-				);
-			}
+					}
+			);
 		} catch (final IllegalArgumentException | PersistenceException exc) {
 			throw new ProcessingException(DATA_ACCESS_EXCEPTION_MESSAGE, exc);
 		}
@@ -38,6 +38,15 @@ import es.uvigo.esei.sing.textproc.step.emptyfiltering.xml.definition.IncludeRed
 final class EmptyFilteringProcessingStep extends AbstractProcessingStep {
 	private static final String INCLUDE_REDDIT_DELETED_PROCESSING_STEP_PARAMETER_NAME = new IncludeRedditDeletedProcessingStepParameter().getName();
 
+	private static final Pattern EMPTY_REGEX = Pattern.compile(
+		"^[^\\p{Lower}]*$",
+		Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CHARACTER_CLASS
+	);
+	private static final Pattern EMPTY_OR_REDDIT_DELETED_REGEX = Pattern.compile(
+		"^[\\[(][\\p{Space}]*(?:removed|deleted|remove|delete)[\\p{Space}]*[\\])]$|^[^\\p{Lower}]*$",
+		Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CHARACTER_CLASS
+	);
+
 	/**
 	 * Instantiates a non empty filtering processing step.
 	 */
@@ -64,31 +73,18 @@ final class EmptyFilteringProcessingStep extends AbstractProcessingStep {
 				getParameters().getOrDefault(INCLUDE_REDDIT_DELETED_PROCESSING_STEP_PARAMETER_NAME, "true")
 			)
 		) {
-			emptyRegex = Pattern.compile(
-				"^[\\[(][\\p{Space}]*(?:removed|deleted|remove|delete)[\\p{Space}]*[\\])]$|^[^\\p{Lower}]*$",
-				Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CHARACTER_CLASS
-			);
+			emptyRegex = EMPTY_OR_REDDIT_DELETED_REGEX;
 		} else {
-			emptyRegex = Pattern.compile(
-				"^[^\\p{Lower}]*$",
-				Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CHARACTER_CLASS
-			);
+			emptyRegex = EMPTY_REGEX;
 		}
 
 		try {
-			// Delete previous results
-			for (final Class<? extends ProcessedDocument> processedDocumentType : processedDocumentTypes) {
-				deleteAllProcessedDocumentsOfType(processedDocumentType);
-			}
-
-			for (int i = 0; i < processedDocumentTypes.size(); ++i) {
-				final String[] unprocessedAttributeNames = unprocessedDocumentsAttributes.get(i);
-				final Class<? extends ProcessedDocument> processedDocumentType = processedDocumentTypes.get(i);
-
-				forEachDocumentInNativeQuery(
-					unprocessedDocumentsQuerySuppliers.get(i),
-					String.format("Filtering empty %s", unprocessedDocumentTypesNames.get(i)),
-					numberOfUnprocessedEntitiesProviders.get(i).get(),
+			processDocuments(
+				processedDocumentTypes, "Filtering empty %s",
+				(
+					final String unprocessedDocumentTypeName, final String[] unprocessedAttributeNames,
+					final Class<? extends ProcessedDocument> processedDocumentType
+				) ->
 					(final List<String[]> batchAttributes) -> {
 						final Map<String, String> documentAttributesMap = new HashMap<>(
 							(int) Math.ceil(unprocessedAttributeNames.length / 0.75)
@@ -112,10 +108,8 @@ final class EmptyFilteringProcessingStep extends AbstractProcessingStep {
 								);
 							}
 						}
-					},
-					null
-				);
-			}
+					}
+			);
 		} catch (final IllegalArgumentException | PersistenceException exc) {
 			throw new ProcessingException(DATA_ACCESS_EXCEPTION_MESSAGE, exc);
 		}
@@ -13,22 +13,31 @@ import java.util.Set;
 
 import org.apache.lucene.analysis.core.WhitespaceAnalyzer;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.IntPoint;
 import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.similarities.BM25Similarity;
 import org.apache.lucene.store.FSDirectory;
 
+import es.uvigo.esei.sing.textproc.entity.ProcessedDocument;
 import es.uvigo.esei.sing.textproc.step.AbstractProcessingStep;
 import es.uvigo.esei.sing.textproc.step.ProcessingException;
 import es.uvigo.esei.sing.textproc.step.luceneindex.xml.definition.FolderPathProcessingStepParameter;
 
 /**
- * Builds a Lucene index for all the input documents.
+ * Builds a Lucene index for all the input documents. The index is committed
+ * with every page of documents, so the execution of this step can be resumed.
  * <p>
  * Example declaration for this step in a process definition file:
  * </p>
@@ -47,6 +56,21 @@ import es.uvigo.esei.sing.textproc.step.luceneindex.xml.definition.FolderPathPro
 final class LuceneIndexProcessingStep extends AbstractProcessingStep {
 	private static final String FOLDER_PATH_PROCESSING_STEP_PARAMETER_NAME = new FolderPathProcessingStepParameter().getName();
 
+	// Index fields that identify the document every index document comes from
+	private static final String ID_FIELD_NAME = "id";
+	private static final String DOCUMENT_TYPE_FIELD_NAME = "type";
+
+	// The field type for every document text attribute
+	private static final FieldType TEXT_FIELD_TYPE = new FieldType();
+
+	static {
+		TEXT_FIELD_TYPE.setStored(false); // Do not store the raw value. We store a key instead
+		TEXT_FIELD_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS);
+		TEXT_FIELD_TYPE.setStoreTermVectors(true);
+		TEXT_FIELD_TYPE.setStoreTermVectorPositions(true);
+		TEXT_FIELD_TYPE.freeze();
+	}
+
 	/**
 	 * Instantiates a Lucene index building processing step.
 	 */
@@ -68,57 +92,69 @@ final class LuceneIndexProcessingStep extends AbstractProcessingStep {
 				getParameters().getOrDefault(FOLDER_PATH_PROCESSING_STEP_PARAMETER_NAME, "lucene_index")
 			));
 
-			// Use a simple whitespace analyzer and tokenizer because input documents are assumed to be processed.
-			// BM25 is a state of the art TF-IDF-based similarity metric
-			final IndexWriterConfig indexConfig = new IndexWriterConfig(new WhitespaceAnalyzer())
-				.setOpenMode(OpenMode.CREATE)
-				.setSimilarity(new BM25Similarity());
-
-			// The field type for every document text attribute
-			final FieldType fieldType = new FieldType();
-			fieldType.setStored(false); // Do not store the raw value. We store a key instead
-			fieldType.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS);
-			fieldType.setStoreTermVectors(true);
-			fieldType.setStoreTermVectorPositions(true);
-			fieldType.freeze();
-
-			try (final IndexWriter luceneIndex = new IndexWriter(indexFolder, indexConfig)) {
-				for (int i = 0; i < unprocessedDocumentTypesNames.size(); ++i) {
-					final String[] unprocessedAttributeNames = unprocessedDocumentsAttributes.get(i);
-
-					forEachDocumentInNativeQuery(
-						unprocessedDocumentsQuerySuppliers.get(i),
-						String.format("Adding %s to Lucene index", unprocessedDocumentTypesNames.get(i)),
-						numberOfUnprocessedEntitiesProviders.get(i).get(),
+			try (final IndexWriter luceneIndex = new IndexWriter(indexFolder, createIndexWriterConfig())) {
+				final ExternalResultsCheckpointer indexCheckpointer = new ExternalResultsCheckpointer() {
+					@Override
+					public void discardAllResults() throws ProcessingException {
+						try {
+							luceneIndex.deleteAll();
+						} catch (final IOException exc) {
+							throw new ProcessingException(DATA_ACCESS_EXCEPTION_MESSAGE, exc);
+						}
+					}
+
+					@Override
+					public void discardResultsAfter(final String unprocessedDocumentTypeName, final long lastPrimaryKey) throws ProcessingException {
+						// Primary keys are stored as ints, so no document is after the greatest int
+						if (lastPrimaryKey >= Integer.MAX_VALUE) {
+							return;
+						}
+
+						try {
+							luceneIndex.deleteDocuments(new BooleanQuery.Builder()
+								.add(new TermQuery(new Term(DOCUMENT_TYPE_FIELD_NAME, unprocessedDocumentTypeName)), Occur.FILTER)
+								.add(IntPoint.newRangeQuery(
+									ID_FIELD_NAME, (int) Math.max(lastPrimaryKey + 1, Integer.MIN_VALUE), Integer.MAX_VALUE
+								), Occur.FILTER)
+								.build()
+							);
+						} catch (final IOException exc) {
+							throw new ProcessingException(DATA_ACCESS_EXCEPTION_MESSAGE, exc);
+						}
+					}
+
+					@Override
+					public void commit() throws ProcessingException {
+						try {
+							luceneIndex.commit();
+						} catch (final IOException exc) {
+							throw new ProcessingException(DATA_ACCESS_EXCEPTION_MESSAGE, exc);
+						}
+					}
+				};
+
+				processDocuments(
+					List.of(), "Adding %s to Lucene index",
+					(
+						final String unprocessedDocumentTypeName, final String[] unprocessedAttributeNames,
+						final Class<? extends ProcessedDocument> processedDocumentType
+					) ->
 						(final List<String[]> batchAttributes) -> {
 							final Collection<IndexableField> documentFields = new ArrayList<>(unprocessedAttributeNames.length);
 
 							for (final String[] documentAttributes : batchAttributes) {
-								// Add a field with the primary key
-								documentFields.add(
-									new StoredField("id", Integer.parseInt(documentAttributes[0]))
-								);
-
-								// Add the text attributes of the document as fields
-								for (int j = 0; j < unprocessedAttributeNames.length; ++j) {
-									documentFields.add(
-										new Field(unprocessedAttributeNames[0], documentAttributes[j + 1].toLowerCase(Locale.ROOT), fieldType)
-									);
-								}
-
 								try {
-									luceneIndex.addDocument(documentFields);
+									addDocument(
+										luceneIndex, documentFields, unprocessedDocumentTypeName,
+										unprocessedAttributeNames, documentAttributes
+									);
 								} catch (final IllegalArgumentException | IOException exc) {
 									throw new ProcessingException(DATA_ACCESS_EXCEPTION_MESSAGE, exc);
 								}
-
-								// Clear the collection for reuse
-								documentFields.clear();
 							}
 						},
-						null
-					);
-				}
+					indexCheckpointer
+				);
 
 				luceneIndex.commit();
 			}
@@ -126,4 +162,60 @@ final class LuceneIndexProcessingStep extends AbstractProcessingStep {
 			throw new ProcessingException(DATA_ACCESS_EXCEPTION_MESSAGE, exc);
 		}
 	}
+
+	/**
+	 * Creates the configuration of the writers of the indexes built by this step.
+	 *
+	 * @return The described configuration.
+	 */
+	private static IndexWriterConfig createIndexWriterConfig() {
+		// Use a simple whitespace analyzer and tokenizer because input documents are assumed to be processed.
+		// BM25 is a state of the art TF-IDF-based similarity metric.
+		// The index is emptied when starting over, so resumed executions can append to it
+		return new IndexWriterConfig(new WhitespaceAnalyzer())
+			.setOpenMode(OpenMode.CREATE_OR_APPEND)
+			.setSimilarity(new BM25Similarity());
+	}
+
+	/**
+	 * Adds an input document to an index.
+	 *
+	 * @param luceneIndex                 The writer of the index.
+	 * @param documentFields              An empty collection to put the fields of
+	 *                                    the index document in. It is cleared
+	 *                                    afterwards, so it can be reused.
+	 * @param unprocessedDocumentTypeName The name of the type of the document.
+	 * @param unprocessedAttributeNames   The names of the text attributes of the
+	 *                                    document.
+	 * @param documentAttributes          The primary key of the document,
+	 *                                    followed by its text attributes.
+	 * @throws IOException If an I/O error occurs while adding the document.
+	 */
+	private static void addDocument(
+		final IndexWriter luceneIndex, final Collection<IndexableField> documentFields,
+		final String unprocessedDocumentTypeName, final String[] unprocessedAttributeNames,
+		final String[] documentAttributes
+	) throws IOException {
+		final int primaryKey = Integer.parseInt(documentAttributes[0]);
+
+		// Add fields with the primary key and document type.
+		// Points and terms allow discarding documents in resumed executions
+		documentFields.add(new StoredField(ID_FIELD_NAME, primaryKey));
+		documentFields.add(new IntPoint(ID_FIELD_NAME, primaryKey));
+		documentFields.add(new StringField(DOCUMENT_TYPE_FIELD_NAME, unprocessedDocumentTypeName, Store.NO));
+
+		// Add the text attributes of the document as fields
+		for (int j = 0; j < unprocessedAttributeNames.length; ++j) {
+			documentFields.add(
+				new Field(unprocessedAttributeNames[0], documentAttributes[j + 1].toLowerCase(Locale.ROOT), TEXT_FIELD_TYPE)
+			);
+		}
+
+		try {
+			luceneIndex.addDocument(documentFields);
+		} finally {
+			// Clear the collection for reuse
+			documentFields.clear();
+		}
+	}
 }
@@ -53,6 +53,7 @@ final class MentionFilteringProcessingStep extends AbstractProcessingStep {
 			Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CHARACTER_CLASS
 		)
 	);
+	private static final Pattern SEVERAL_SPACES_REGEX = Pattern.compile("[\\p{Blank}]{2,}", Pattern.UNICODE_CHARACTER_CLASS);
 
 	/**
 	 * Instantiates a mention filtering processing step.
@@ -78,22 +79,14 @@ final class MentionFilteringProcessingStep extends AbstractProcessingStep {
 		final Pattern mentionRegex = MENTION_REGEXES.get(
 			getParameters().get(MENTION_TYPE_PROCESSING_STEP_PARAMETER_NAME)
 		);
-		final Pattern severalSpaceRegex = Pattern.compile("[\\p{Blank}]{2,}", Pattern.UNICODE_CHARACTER_CLASS);
 
 		try {
-			// Delete previous results
-			for (final Class<? extends ProcessedDocument> processedDocumentType : processedDocumentTypes) {
-				deleteAllProcessedDocumentsOfType(processedDocumentType);
-			}
-
-			for (int i = 0; i < processedDocumentTypes.size(); ++i) {
-				final String[] unprocessedAttributeNames = unprocessedDocumentsAttributes.get(i);
-				final Class<? extends ProcessedDocument> processedDocumentType = processedDocumentTypes.get(i);
-
-				forEachDocumentInNativeQuery(
-					unprocessedDocumentsQuerySuppliers.get(i),
-					String.format("Filtering %s mentions", unprocessedDocumentTypesNames.get(i)),
-					numberOfUnprocessedEntitiesProviders.get(i).get(),
+			processDocuments(
+				processedDocumentTypes, "Filtering %s mentions",
+				(
+					final String unprocessedDocumentTypeName, final String[] unprocessedAttributeNames,
+					final Class<? extends ProcessedDocument> processedDocumentType
+				) ->
 					(final List<String[]> batchAttributes) -> {
 						final Map<String, String> processedAttributesMap = new HashMap<>(
 							(int) Math.ceil(unprocessedAttributeNames.length / 0.75)
@@ -101,9 +94,9 @@ final class MentionFilteringProcessingStep extends AbstractProcessingStep {
 
 						for (final String[] documentAttributes : batchAttributes) {
 							for (int j = 0; j < unprocessedAttributeNames.length; ++j) {
-								processedAttributesMap.put(unprocessedAttributeNames[j], severalSpaceRegex.matcher(
-									mentionRegex.matcher(documentAttributes[j + 1]).replaceAll("")
-								).replaceAll(""));
+								processedAttributesMap.put(
+									unprocessedAttributeNames[j], removeMentions(mentionRegex, documentAttributes[j + 1])
+								);
 							}
 
 							saveProcessedDocument(
@@ -111,12 +104,22 @@ final class MentionFilteringProcessingStep extends AbstractProcessingStep {
 								Collections.unmodifiableMap(processedAttributesMap)
 							);
 						}
-					},
-					null
-				);
-			}
+					}
+			);
 		} catch (final IllegalArgumentException | PersistenceException exc) {
 			throw new ProcessingException(DATA_ACCESS_EXCEPTION_MESSAGE, exc);
 		}
 	}
+
+	/**
+	 * Removes the mentions that a regular expression matches from a text, and
+	 * then the runs of blanks they may leave behind.
+	 *
+	 * @param mentionRegex The regular expression that matches mentions.
+	 * @param text         The text to remove mentions from.
+	 * @return The text without mentions.
+	 */
+	private static String removeMentions(final Pattern mentionRegex, final String text) {
+		return SEVERAL_SPACES_REGEX.matcher(mentionRegex.matcher(text).replaceAll("")).replaceAll("");
+	}
 }
@@ -27,6 +27,8 @@ DROP TABLE IF EXISTS mention_filtered_text_with_title_document;
 DROP TABLE IF EXISTS mention_filtered_text_document;
 DROP TABLE IF EXISTS non_empty_text_with_title_document;
 DROP TABLE IF EXISTS non_empty_text_document;
+DROP TABLE IF EXISTS textproc_step_metadata;
+DROP TABLE IF EXISTS textproc_process_checkpoint;
 
 -- CREATE JPA entity tables
 -- (you may need to modify the foreign key constraint)
@@ -95,6 +97,22 @@ CREATE TABLE non_empty_text_document (
 	FOREIGN KEY (id) REFERENCES comment(id) ON DELETE CASCADE ON UPDATE CASCADE
 );
 
+-- CREATE the TextProc metadata tables. TextProc creates
+-- them on demand too, if they don't exist
+CREATE TABLE textproc_step_metadata (
+	step VARCHAR(255) NOT NULL,
+	source_table VARCHAR(255) NOT NULL,
+	last_primary_key BIGINT NOT NULL,
+	PRIMARY KEY (step, source_table)
+);
+
+CREATE TABLE textproc_process_checkpoint (
+	step_index INTEGER NOT NULL PRIMARY KEY,
+	step VARCHAR(255) NOT NULL,
+	parameters_digest VARCHAR(64) NOT NULL,
+	completed SMALLINT NOT NULL
+);
+
 -- CREATE views to provide more generic names
 -- to particular entities, useful for JPA.
 -- Also create views to provide more specific names
@@ -0,0 +1,133 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.abstracttppstep;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.Map.Entry;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonString;
+import javax.json.stream.JsonGenerator;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.ClientRequestContext;
+import javax.ws.rs.client.ClientRequestFilter;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import es.uvigo.esei.sing.textproc.benchmark.SyntheticRedditCorpus;
+import es.uvigo.esei.sing.textproc.step.AbstractProcessingStep.NullProcessingConsumer;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+
+/**
+ * Measures how long {@link TppHelper} takes to generate the JSON request for a
+ * batch of synthetic submissions, and to parse the JSON response of a
+ * tokenization endpoint. The response is returned by a client filter, without
+ * any network round trip, so only the client side is measured.
+ *
+ * @author Alejandro González García
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TppHelperBenchmark {
+	private static final String[] ATTRIBUTE_NAMES = { "title", "text" };
+	private static final String ENDPOINT = "http://127.0.0.1:5005/tpp/v1/casual-tokenize";
+
+	@Param({ "64", "512" })
+	private int documentsPerBatch;
+
+	private List<String[]> batchAttributes;
+	private Client client;
+	private TppClient tppClient;
+
+	@Setup
+	public void setUp() {
+		final String response;
+
+		batchAttributes = new SyntheticRedditCorpus(SyntheticRedditCorpus.DEFAULT_SEED).nextSubmissions(documentsPerBatch);
+		response = createTokenizationResponse(batchAttributes);
+
+		client = ClientBuilder.newClient().register((ClientRequestFilter) (final ClientRequestContext requestContext) ->
+			requestContext.abortWith(Response.ok(response, MediaType.APPLICATION_JSON_TYPE).build())
+		);
+		tppClient = new JaxRsTppClient(client.target(ENDPOINT), 1, false, TppContentEncoding.IDENTITY);
+	}
+
+	@TearDown
+	public void tearDown() {
+		client.close();
+	}
+
+	@Benchmark
+	public List<Map<String, String>> processAttributes() throws ProcessingException {
+		return TppHelper.processAttributes(
+			batchAttributes, 1, ATTRIBUTE_NAMES, tppClient, documentsPerBatch, null, TppRetryPolicy.NONE,
+			new NullProcessingConsumer<>(), JsonResponseAttributeType.STRING_ARRAY,
+			(final Entry<String, JsonObject> returnedAttributeObject, final Map<String, String> processedAttributesMap) -> {
+				// Join the tokens, as the tokenization step does
+				final StringBuilder tokenizedAttributeBuilder = new StringBuilder();
+
+				for (final JsonString token : returnedAttributeObject.getValue().getJsonArray("text").getValuesAs(JsonString.class)) {
+					if (tokenizedAttributeBuilder.length() > 0) {
+						tokenizedAttributeBuilder.append(' ');
+					}
+
+					tokenizedAttributeBuilder.append(token.getString());
+				}
+
+				processedAttributesMap.put(returnedAttributeObject.getKey(), tokenizedAttributeBuilder.toString());
+			}
+		);
+	}
+
+	/**
+	 * Creates the response a tokenization endpoint would return for a batch of
+	 * documents, tokenizing them by white space.
+	 */
+	private static String createTokenizationResponse(final List<String[]> batchAttributes) {
+		final StringWriter responseJsonWriter = new StringWriter();
+
+		try (final JsonGenerator responseJsonGenerator = Json.createGenerator(responseJsonWriter)) {
+			responseJsonGenerator.writeStartObject().writeStartObject("documents");
+
+			for (int i = 0; i < batchAttributes.size(); ++i) {
+				for (int j = 0; j < ATTRIBUTE_NAMES.length; ++j) {
+					responseJsonGenerator.writeStartObject(i + "_" + ATTRIBUTE_NAMES[j]).writeStartArray("text");
+
+					for (final String token : batchAttributes.get(i)[j + 1].split("\\s+")) {
+						if (!token.isEmpty()) {
+							responseJsonGenerator.write(token);
+						}
+					}
+
+					responseJsonGenerator.writeEnd().writeEnd();
+				}
+			}
+
+			responseJsonGenerator.writeEnd().writeEnd();
+		}
+
+		return responseJsonWriter.toString();
+	}
+}
@@ -0,0 +1,108 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.benchmark;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import es.uvigo.esei.sing.textproc.entity.ProcessedDocument;
+import es.uvigo.esei.sing.textproc.step.AbstractProcessingStep;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import es.uvigo.esei.sing.textproc.step.mentionfiltering.entity.MentionFilteredTextDocument;
+import es.uvigo.esei.sing.textproc.step.mentionfiltering.entity.MentionFilteredTextWithTitleDocument;
+
+/**
+ * A processing step that does nothing with the documents it reads, other than
+ * counting their characters and optionally storing them as they are, so the
+ * cost of the processing step engine can be measured on its own.
+ *
+ * @author Alejandro González García
+ */
+final class BenchmarkProcessingStep extends AbstractProcessingStep {
+	/**
+	 * The processed document types stored by this step, which are borrowed from
+	 * the mention filtering step.
+	 */
+	static final List<Class<? extends ProcessedDocument>> PROCESSED_DOCUMENT_TYPES = List.of(
+		MentionFilteredTextWithTitleDocument.class, MentionFilteredTextDocument.class
+	);
+	/**
+	 * The names of the tables of the processed document types stored by this
+	 * step, in the same order.
+	 */
+	static final String[] PROCESSED_DOCUMENT_TABLE_NAMES = {
+		"mention_filtered_text_with_title_document", "mention_filtered_text_document"
+	};
+
+	private final boolean saveProcessedDocuments;
+	private final LongAdder characters = new LongAdder();
+
+	/**
+	 * Instantiates a benchmark processing step.
+	 *
+	 * @param saveProcessedDocuments If true, every submission and comment is
+	 *                               stored as a processed document. Otherwise,
+	 *                               only comments are read, with
+	 *                               {@link #forEachDocumentInNativeQuery}.
+	 */
+	BenchmarkProcessingStep(final boolean saveProcessedDocuments) {
+		super(Map.of(), Set.of());
+
+		this.saveProcessedDocuments = saveProcessedDocuments;
+	}
+
+	/**
+	 * Returns the number of characters of the documents read so far, so the
+	 * reading can't be optimized away.
+	 *
+	 * @return The described number.
+	 */
+	long getCharacters() {
+		return characters.sum();
+	}
+
+	@Override
+	protected void run() throws ProcessingException {
+		if (saveProcessedDocuments) {
+			processDocuments(
+				PROCESSED_DOCUMENT_TYPES, "Saving %s",
+				(
+					final String unprocessedDocumentTypeName, final String[] unprocessedAttributeNames,
+					final Class<? extends ProcessedDocument> processedDocumentType
+				) ->
+					(final List<String[]> batchAttributes) -> {
+						final Map<String, String> processedAttributesMap = new HashMap<>(
+							(int) Math.ceil(unprocessedAttributeNames.length / 0.75)
+						);
+
+						for (final String[] documentAttributes : batchAttributes) {
+							for (int j = 0; j < unprocessedAttributeNames.length; ++j) {
+								processedAttributesMap.put(unprocessedAttributeNames[j], documentAttributes[j + 1]);
+								characters.add(documentAttributes[j + 1].length());
+							}
+
+							saveProcessedDocument(
+								processedDocumentType, Integer.parseInt(documentAttributes[0]),
+								Collections.unmodifiableMap(processedAttributesMap)
+							);
+						}
+					}
+			);
+		} else {
+			forEachDocumentInNativeQuery(
+				unprocessedDocumentsQuerySuppliers.get(1), "Reading comments",
+				numberOfUnprocessedEntitiesProviders.get(1).get(),
+				(final List<String[]> batchAttributes) -> {
+					for (final String[] documentAttributes : batchAttributes) {
+						characters.add(documentAttributes[1].length());
+					}
+				},
+				null
+			);
+		}
+	}
+}
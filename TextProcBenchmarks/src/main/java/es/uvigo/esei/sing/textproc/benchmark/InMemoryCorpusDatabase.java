@@ -0,0 +1,103 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+import es.uvigo.esei.sing.textproc.logging.TextProcLogging;
+import es.uvigo.esei.sing.textproc.persistence.TextProcPersistence;
+import lombok.NonNull;
+
+/**
+ * An in-memory SQLite database with a synthetic Reddit-like corpus, which
+ * TextProc accesses through its persistence access layer while it is open.
+ * The database is named in the persistence unit of this module, and it exists
+ * while some connection to it is open, so this class keeps one open.
+ *
+ * @author Alejandro González García
+ * @see SyntheticRedditCorpus
+ */
+public final class InMemoryCorpusDatabase implements AutoCloseable {
+	/**
+	 * The URL of the database, which must match the one in the persistence unit.
+	 */
+	public static final String CONNECTION_URL = "jdbc:sqlite:file:textproc_benchmarks?mode=memory&cache=shared";
+
+	private final Connection keepAliveConnection;
+
+	/**
+	 * Creates an in-memory database with the given number of generated
+	 * submissions and comments, and empty processed document tables with the
+	 * given names, and then starts the TextProc persistence access layer.
+	 *
+	 * @param submissions                 The number of submissions to generate.
+	 * @param comments                    The number of comments to generate.
+	 * @param processedDocumentTableNames The names of the processed document
+	 *                                    tables to create, which store processed
+	 *                                    submissions and comments, in that order.
+	 * @param entityTypes                 The entity types of the persistence
+	 *                                    access layer.
+	 * @throws SQLException             If some error occurs while populating the
+	 *                                  database.
+	 * @throws IllegalArgumentException If some parameter is {@code null}.
+	 */
+	public InMemoryCorpusDatabase(
+		final int submissions, final int comments, @NonNull final String[] processedDocumentTableNames,
+		@NonNull final Set<Class<?>> entityTypes
+	) throws SQLException {
+		this.keepAliveConnection = DriverManager.getConnection(CONNECTION_URL);
+
+		try {
+			new SyntheticRedditCorpus(SyntheticRedditCorpus.DEFAULT_SEED).populate(
+				keepAliveConnection, submissions, comments
+			);
+
+			try (final Statement statement = keepAliveConnection.createStatement()) {
+				// Like the tables declared in TextProc.sql
+				if (processedDocumentTableNames.length > 0) {
+					statement.executeUpdate(
+						"CREATE TABLE " + processedDocumentTableNames[0] + " (" +
+							"id INT PRIMARY KEY, text TEXT NOT NULL, title TEXT NOT NULL, " +
+							"FOREIGN KEY (id) REFERENCES " + SyntheticRedditCorpus.SUBMISSION_TABLE_NAME + "(id) " +
+							"ON DELETE CASCADE ON UPDATE CASCADE" +
+						")"
+					);
+				}
+
+				if (processedDocumentTableNames.length > 1) {
+					statement.executeUpdate(
+						"CREATE TABLE " + processedDocumentTableNames[1] + " (" +
+							"id INT PRIMARY KEY, text TEXT NOT NULL, " +
+							"FOREIGN KEY (id) REFERENCES " + SyntheticRedditCorpus.COMMENT_TABLE_NAME + "(id) " +
+							"ON DELETE CASCADE ON UPDATE CASCADE" +
+						")"
+					);
+				}
+			}
+
+			TextProcLogging.initialize(getClass().getSimpleName());
+			TextProcPersistence.get().start(entityTypes);
+		} catch (final SQLException | RuntimeException exc) {
+			keepAliveConnection.close();
+			throw exc;
+		}
+	}
+
+	/**
+	 * Stops the TextProc persistence access layer, and discards the database.
+	 *
+	 * @throws SQLException If some error occurs while closing the database.
+	 */
+	@Override
+	public void close() throws SQLException {
+		try {
+			TextProcPersistence.get().stop();
+		} finally {
+			keepAliveConnection.close();
+		}
+	}
+}
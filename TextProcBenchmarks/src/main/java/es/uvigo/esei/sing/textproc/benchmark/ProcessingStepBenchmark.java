@@ -0,0 +1,110 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import es.uvigo.esei.sing.textproc.step.xml.definition.BatchSizeProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.PageSizeProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.PagingModeProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.TextDocumentTableNameProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.TextDocumentWithTitleTableNameProcessingStepParameter;
+
+/**
+ * Measures how long the processing step engine takes to page, batch and hand
+ * over to worker threads every comment of an in-memory corpus, and to store
+ * every submission and comment as a processed document, with keyset and offset
+ * paging. Steps do nothing else with the documents, so their cost is not
+ * measured.
+ *
+ * @author Alejandro González García
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ProcessingStepBenchmark {
+	private static final int MAXIMUM_DOCUMENTS_PER_BATCH = 512;
+
+	@Param({ "keyset", "offset" })
+	private String pagingMode;
+	@Param({ "1024", "32768" })
+	private int pageSize;
+	@Param({ "200000" })
+	private int comments;
+
+	private InMemoryCorpusDatabase database;
+	private Map<String, String> stepParameters;
+
+	@Setup
+	public void setUp() throws SQLException {
+		// Steps print their progress, which would get mixed with the JMH output
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		database = new InMemoryCorpusDatabase(
+			comments / 10, comments, BenchmarkProcessingStep.PROCESSED_DOCUMENT_TABLE_NAMES,
+			new HashSet<>(BenchmarkProcessingStep.PROCESSED_DOCUMENT_TYPES)
+		);
+
+		stepParameters = Map.of(
+			new TextDocumentWithTitleTableNameProcessingStepParameter().getName(), SyntheticRedditCorpus.SUBMISSION_TABLE_NAME,
+			new TextDocumentTableNameProcessingStepParameter().getName(), SyntheticRedditCorpus.COMMENT_TABLE_NAME,
+			new PagingModeProcessingStepParameter().getName(), pagingMode,
+			new PageSizeProcessingStepParameter().getName(), Integer.toString(pageSize),
+			new BatchSizeProcessingStepParameter().getName(), Integer.toString(Math.min(pageSize, MAXIMUM_DOCUMENTS_PER_BATCH))
+		);
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		database.close();
+	}
+
+	/**
+	 * Reads every comment with
+	 * {@code AbstractProcessingStep#forEachDocumentInNativeQuery}.
+	 */
+	@Benchmark
+	public long forEachDocumentInNativeQuery() throws ProcessingException {
+		final BenchmarkProcessingStep step = new BenchmarkProcessingStep(false);
+
+		step.execute(stepParameters);
+
+		return step.getCharacters();
+	}
+
+	/**
+	 * Stores every submission and comment with
+	 * {@code AbstractProcessingStep#saveProcessedDocument}, after deleting the
+	 * ones stored by the previous invocation.
+	 */
+	@Benchmark
+	public long saveProcessedDocument() throws ProcessingException {
+		final BenchmarkProcessingStep step = new BenchmarkProcessingStep(true);
+
+		step.execute(stepParameters);
+
+		return step.getCharacters();
+	}
+}
@@ -0,0 +1,401 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import lombok.NonNull;
+
+/**
+ * Generates a reproducible corpus of submissions and comments that resemble
+ * the ones posted to Reddit, so benchmarks process documents with realistic
+ * lengths, vocabulary and oddities without depending on a real dump.
+ * <p>
+ * Words are drawn from a vocabulary of common English words and made up words
+ * with a Zipfian distribution, as words are in natural language. Most comments
+ * are a few sentences long, but some are much longer. Like in real dumps, there
+ * are deleted and removed posts, stock replies and bot comments repeated
+ * verbatim, reposted titles, link submissions without text, and user and
+ * subreddit mentions, URLs, Markdown and emojis scattered through the texts.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is not thread safe.
+ */
+public final class SyntheticRedditCorpus {
+	/**
+	 * The seed used by benchmarks, so every run processes the same corpus.
+	 */
+	public static final long DEFAULT_SEED = 0x7E47_9C0CL;
+	/**
+	 * The name of the table of submissions created by
+	 * {@link #populate(Connection, int, int)}.
+	 */
+	public static final String SUBMISSION_TABLE_NAME = "submission";
+	/**
+	 * The name of the table of comments created by
+	 * {@link #populate(Connection, int, int)}.
+	 */
+	public static final String COMMENT_TABLE_NAME = "comment";
+
+	private static final String[] COMMON_WORDS = {
+		"the", "to", "and", "a", "of", "i", "you", "it", "that", "is", "in", "this", "for", "not", "be", "on",
+		"have", "but", "with", "are", "just", "was", "like", "they", "so", "if", "what", "do", "can", "at", "my",
+		"people", "all", "or", "as", "your", "get", "would", "one", "about", "think", "there", "he", "we", "no",
+		"out", "an", "will", "more", "from", "up", "know", "don't", "it's", "how", "by", "some", "really", "when",
+		"good", "time", "because", "me", "even", "I'm", "them", "then", "only", "who", "their", "game", "much",
+		"also", "make", "see", "any", "never", "been", "want", "way", "well", "thing", "going", "right", "could",
+		"first", "year", "still", "other", "post", "now", "why", "better", "here", "should", "lot", "back", "new",
+		"thread", "upvote", "downvote", "subreddit", "mods", "edit", "karma", "reddit", "meme", "source", "OP"
+	};
+	private static final String[] SYLLABLES = {
+		"ka", "lo", "mi", "ren", "tor", "sa", "vel", "qui", "dro", "ne", "pha", "zu", "bel", "cor", "fin", "ga",
+		"hal", "jen", "mar", "ost", "pel", "rix", "sun", "tal", "ver", "wen", "yor", "zan", "ex", "ion", "ly", "ism"
+	};
+	private static final String[] STOCK_REPLIES = {
+		"thanks!", "This.", "lol", "+1", "Source?", "Thank you!", "Same.", "This is the way.", "F", "Nice",
+		"Username checks out", "ELI5?", "/s", "Came here to say this", "RemindMe! 2 days"
+	};
+	private static final String BOT_COMMENT =
+		"I am a bot, and this action was performed automatically. Please [contact the moderators of this " +
+		"subreddit](/message/compose/?to=/r/AskReddit) if you have any questions or concerns.";
+	private static final String[] EMOJIS = { "😂", "🤣", "👍", "🙄", "❤️", "🔥", "¯\\_(ツ)_/¯" };
+	private static final String DELETED_TEXT = "[deleted]";
+	private static final String REMOVED_TEXT = "[removed]";
+
+	private static final int VOCABULARY_SIZE = 20000;
+	private static final double ZIPF_EXPONENT = 1.07;
+	private static final int MAXIMUM_REMEMBERED_TITLES = 4096;
+	private static final int INSERT_BATCH_SIZE = 4096;
+
+	private final Random random;
+	private final String[] vocabulary;
+	private final double[] cumulativeWordProbabilities;
+	private final List<String> postedTitles = new ArrayList<>(MAXIMUM_REMEMBERED_TITLES);
+	private int nextPrimaryKey = 1;
+
+	/**
+	 * Creates a synthetic Reddit-like corpus generator. Generators created with
+	 * the same seed generate the same documents, in the same order.
+	 *
+	 * @param seed The seed of the pseudorandom number generator.
+	 */
+	public SyntheticRedditCorpus(final long seed) {
+		final Random vocabularyRandom = new Random(seed);
+		double probabilitySum = 0;
+
+		this.random = new Random(seed + 1);
+		this.vocabulary = Arrays.copyOf(COMMON_WORDS, VOCABULARY_SIZE);
+		this.cumulativeWordProbabilities = new double[VOCABULARY_SIZE];
+
+		// Make up the rest of the words from syllables
+		for (int i = COMMON_WORDS.length; i < VOCABULARY_SIZE; ++i) {
+			final StringBuilder wordBuilder = new StringBuilder();
+			final int syllables = 1 + vocabularyRandom.nextInt(4);
+
+			for (int j = 0; j < syllables; ++j) {
+				wordBuilder.append(SYLLABLES[vocabularyRandom.nextInt(SYLLABLES.length)]);
+			}
+
+			vocabulary[i] = wordBuilder.toString();
+		}
+
+		// The probability of a word is inversely proportional to a power of its rank
+		for (int i = 0; i < VOCABULARY_SIZE; ++i) {
+			probabilitySum += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+			cumulativeWordProbabilities[i] = probabilitySum;
+		}
+
+		for (int i = 0; i < VOCABULARY_SIZE; ++i) {
+			cumulativeWordProbabilities[i] /= probabilitySum;
+		}
+	}
+
+	/**
+	 * Generates the title of a submission.
+	 *
+	 * @return The described title.
+	 */
+	public String nextTitle() {
+		final String title;
+
+		if (!postedTitles.isEmpty() && random.nextDouble() < 0.03) {
+			// Reposts
+			title = postedTitles.get(random.nextInt(postedTitles.size()));
+		} else {
+			final StringBuilder titleBuilder = new StringBuilder();
+
+			appendSentence(titleBuilder, 4 + random.nextInt(15));
+			title = titleBuilder.toString();
+
+			if (postedTitles.size() < MAXIMUM_REMEMBERED_TITLES) {
+				postedTitles.add(title);
+			} else {
+				postedTitles.set(random.nextInt(MAXIMUM_REMEMBERED_TITLES), title);
+			}
+		}
+
+		return title;
+	}
+
+	/**
+	 * Generates the text of a submission, which is empty for link submissions.
+	 *
+	 * @return The described text.
+	 */
+	public String nextSubmissionText() {
+		final double kind = random.nextDouble();
+
+		if (kind < 0.55) {
+			return "";
+		} else if (kind < 0.58) {
+			return DELETED_TEXT;
+		} else if (kind < 0.60) {
+			return REMOVED_TEXT;
+		} else {
+			return nextParagraphs(1 + (int) Math.min(-Math.log(1 - random.nextDouble()) * 5, 40));
+		}
+	}
+
+	/**
+	 * Generates the text of a comment.
+	 *
+	 * @return The described text.
+	 */
+	public String nextComment() {
+		final double kind = random.nextDouble();
+
+		if (kind < 0.03) {
+			return DELETED_TEXT;
+		} else if (kind < 0.045) {
+			return REMOVED_TEXT;
+		} else if (kind < 0.105) {
+			return STOCK_REPLIES[random.nextInt(STOCK_REPLIES.length)];
+		} else if (kind < 0.115) {
+			return BOT_COMMENT;
+		} else if (kind < 0.135) {
+			// Nothing is left once mentions are filtered
+			return random.nextBoolean() ? nextUserMention() : nextUserMention() + " " + nextSubredditMention();
+		} else if (kind < 0.14) {
+			return EMOJIS[random.nextInt(EMOJIS.length)].repeat(1 + random.nextInt(3));
+		} else {
+			// Most comments are short, but some are very long
+			return nextParagraphs(1 + (int) Math.min(-Math.log(1 - random.nextDouble()) * 2.5, 60));
+		}
+	}
+
+	/**
+	 * Generates the attributes of the given number of submissions, as they are
+	 * read from the database: their primary key, followed by their title and
+	 * text.
+	 *
+	 * @param count The number of submissions to generate.
+	 * @return The described attributes.
+	 */
+	public List<String[]> nextSubmissions(final int count) {
+		final List<String[]> submissions = new ArrayList<>(count);
+
+		for (int i = 0; i < count; ++i) {
+			submissions.add(new String[] { Integer.toString(nextPrimaryKey()), nextTitle(), nextSubmissionText() });
+		}
+
+		return submissions;
+	}
+
+	/**
+	 * Generates the attributes of the given number of comments, as they are read
+	 * from the database: their primary key, followed by their text.
+	 *
+	 * @param count The number of comments to generate.
+	 * @return The described attributes.
+	 */
+	public List<String[]> nextComments(final int count) {
+		final List<String[]> comments = new ArrayList<>(count);
+
+		for (int i = 0; i < count; ++i) {
+			comments.add(new String[] { Integer.toString(nextPrimaryKey()), nextComment() });
+		}
+
+		return comments;
+	}
+
+	/**
+	 * Returns a word of the vocabulary, as it is drawn for texts.
+	 *
+	 * @return The described word.
+	 */
+	public String nextWord() {
+		int index = Arrays.binarySearch(cumulativeWordProbabilities, random.nextDouble());
+
+		if (index < 0) {
+			index = -index - 1;
+		}
+
+		return vocabulary[Math.min(index, VOCABULARY_SIZE - 1)];
+	}
+
+	/**
+	 * Creates the submission and comment tables in a database, if they don't
+	 * exist, and inserts the given number of generated submissions and comments
+	 * in them, in a single transaction.
+	 *
+	 * @param connection  The connection to the database.
+	 * @param submissions The number of submissions to insert.
+	 * @param comments    The number of comments to insert.
+	 * @throws SQLException             If some error occurs while inserting the
+	 *                                  documents.
+	 * @throws IllegalArgumentException If {@code connection} is {@code null}.
+	 */
+	public void populate(@NonNull final Connection connection, final int submissions, final int comments) throws SQLException {
+		final boolean autoCommit = connection.getAutoCommit();
+
+		connection.setAutoCommit(false);
+
+		try {
+			try (final Statement statement = connection.createStatement()) {
+				statement.executeUpdate(
+					"CREATE TABLE IF NOT EXISTS " + SUBMISSION_TABLE_NAME +
+					" (id INTEGER PRIMARY KEY, title TEXT NOT NULL, text TEXT NOT NULL)"
+				);
+				statement.executeUpdate(
+					"CREATE TABLE IF NOT EXISTS " + COMMENT_TABLE_NAME + " (id INTEGER PRIMARY KEY, text TEXT NOT NULL)"
+				);
+			}
+
+			try (final PreparedStatement statement = connection.prepareStatement(
+				"INSERT INTO " + SUBMISSION_TABLE_NAME + " (id, title, text) VALUES (?, ?, ?)"
+			)) {
+				for (int i = 1; i <= submissions; ++i) {
+					statement.setInt(1, nextPrimaryKey());
+					statement.setString(2, nextTitle());
+					statement.setString(3, nextSubmissionText());
+					statement.addBatch();
+
+					if (i % INSERT_BATCH_SIZE == 0) {
+						statement.executeBatch();
+					}
+				}
+
+				statement.executeBatch();
+			}
+
+			try (final PreparedStatement statement = connection.prepareStatement(
+				"INSERT INTO " + COMMENT_TABLE_NAME + " (id, text) VALUES (?, ?)"
+			)) {
+				for (int i = 1; i <= comments; ++i) {
+					statement.setInt(1, nextPrimaryKey());
+					statement.setString(2, nextComment());
+					statement.addBatch();
+
+					if (i % INSERT_BATCH_SIZE == 0) {
+						statement.executeBatch();
+					}
+				}
+
+				statement.executeBatch();
+			}
+
+			connection.commit();
+		} catch (final SQLException exc) {
+			connection.rollback();
+			throw exc;
+		} finally {
+			connection.setAutoCommit(autoCommit);
+		}
+	}
+
+	/**
+	 * Returns the next primary key. Like the identifiers of Reddit posts, primary
+	 * keys grow, but with gaps between them.
+	 */
+	private int nextPrimaryKey() {
+		final int primaryKey = nextPrimaryKey;
+
+		nextPrimaryKey += 1 + random.nextInt(3);
+
+		return primaryKey;
+	}
+
+	/**
+	 * Generates the given number of sentences, grouped in paragraphs.
+	 */
+	private String nextParagraphs(final int sentences) {
+		final StringBuilder textBuilder = new StringBuilder();
+
+		for (int i = 0; i < sentences; ++i) {
+			if (i > 0) {
+				textBuilder.append(random.nextDouble() < 0.2 ? "\n\n" : " ");
+			}
+
+			if (random.nextDouble() < 0.03) {
+				// Quote someone
+				textBuilder.append("> ");
+			}
+
+			appendSentence(textBuilder, 3 + random.nextInt(23));
+		}
+
+		return textBuilder.toString();
+	}
+
+	/**
+	 * Appends a sentence with the given number of words to a text.
+	 */
+	private void appendSentence(final StringBuilder textBuilder, final int words) {
+		for (int i = 0; i < words; ++i) {
+			final double kind = random.nextDouble();
+			String word;
+
+			if (kind < 0.01) {
+				word = nextUserMention();
+			} else if (kind < 0.018) {
+				word = nextSubredditMention();
+			} else if (kind < 0.021) {
+				word = "https://www.example.com/" + nextWord() + "/" + random.nextInt(100000);
+			} else if (kind < 0.026) {
+				word = Integer.toString(random.nextInt(2021));
+			} else if (kind < 0.03) {
+				word = EMOJIS[random.nextInt(EMOJIS.length)];
+			} else if (kind < 0.036) {
+				word = "**" + nextWord() + "**";
+			} else {
+				word = nextWord();
+			}
+
+			if (i == 0) {
+				word = word.substring(0, 1).toUpperCase(Locale.ROOT) + word.substring(1);
+			} else {
+				textBuilder.append(random.nextDouble() < 0.06 ? ", " : " ");
+			}
+
+			textBuilder.append(word);
+		}
+
+		final double ending = random.nextDouble();
+		textBuilder.append(ending < 0.75 ? "." : ending < 0.9 ? "?" : ending < 0.97 ? "!" : "...");
+	}
+
+	/**
+	 * Generates a mention of a user, written in any of the ways people write
+	 * them.
+	 */
+	private String nextUserMention() {
+		return (random.nextBoolean() ? "/u/" : "u/") + nextWord() + "_" + nextWord() + random.nextInt(100);
+	}
+
+	/**
+	 * Generates a mention of a subreddit, written in any of the ways people write
+	 * them.
+	 */
+	private String nextSubredditMention() {
+		return (random.nextBoolean() ? "/r/" : "r/") + nextWord() + nextWord();
+	}
+}
@@ -0,0 +1,508 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.benchmark;
+
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+
+import es.uvigo.esei.sing.textproc.logging.TextProcLogging;
+import es.uvigo.esei.sing.textproc.persistence.TextProcPersistence;
+import es.uvigo.esei.sing.textproc.process.ProcessingProcess;
+import es.uvigo.esei.sing.textproc.step.ProcessingStepService;
+import es.uvigo.esei.sing.textproc.step.ProcessingStepServices;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+/**
+ * End-to-end throughput benchmark of TextProc. It creates a SQLite database
+ * with a synthetic Reddit-like corpus and the tables of {@code TextProc.sql},
+ * serves the Text Processing Python endpoints with an embedded stand-in, runs
+ * a process on the database, and reports the throughput of every step, the
+ * wall time and the peak memory usage as JSON.
+ * <p>
+ * The figures of every step are taken from the
+ * {@link es.uvigo.esei.sing.textproc.step.management.ProcessingStepExecutionEvent}
+ * Java Flight Recorder events the steps emit. Steps that are fused with the
+ * step before them are executed by it, so they share its time, but their own
+ * compute time is reported apart.
+ * </p>
+ * <p>
+ * The accepted options are:
+ * </p>
+ * <ul>
+ * <li>{@code --submissions <number>}: the number of submissions to generate.
+ * Defaults to 100000.</li>
+ * <li>{@code --comments <number>}: the number of comments to generate. Defaults
+ * to 1000000.</li>
+ * <li>{@code --seed <number>}: the seed of the corpus generator.</li>
+ * <li>{@code --database <path>}: the database file to create. Defaults to
+ * {@code corpus.db}.</li>
+ * <li>{@code --reuse-database}: runs the process on the database file if it
+ * exists, instead of creating it again.</li>
+ * <li>{@code --process <path>}: the process definition file to run. Defaults
+ * to a process like the sample process, with Text Processing Python steps.</li>
+ * <li>{@code --tpp-port <port>}: the port the stand-in listens on. It must
+ * match the endpoints of the process. Defaults to 5005.</li>
+ * <li>{@code --tpp-instances <number>}: the number of stand-in instances,
+ * which listen on consecutive ports from the stand-in port on, like several
+ * Text Processing Python containers would. Defaults to 1.</li>
+ * <li>{@code --tpp-threads <number>}: the number of threads of each stand-in
+ * instance. Defaults to the number of available processors.</li>
+ * <li>{@code --tpp-document-delay <microseconds>}: the time the stand-in takes
+ * to process each document of a request, on top of the actual processing, to
+ * simulate the cost of language models. Defaults to 0.</li>
+ * <li>{@code --tpp-poisoned-texts <fraction>}: the fraction of texts that make
+ * the requests of the stand-in that contain them fail. Defaults to 0.</li>
+ * <li>{@code --tpp-transient-failures <fraction>}: the fraction of requests the
+ * stand-in fails at random. Defaults to 0.</li>
+ * <li>{@code --report <path>}: the file to write the report to, or {@code -}
+ * for the standard output. Defaults to {@code throughput_report.json}.</li>
+ * </ul>
+ *
+ * @author Alejandro González García
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class ThroughputBenchmark {
+	private static final String DEFAULT_PROCESS_RESOURCE_NAME = "throughput_process.xml";
+	private static final String SCHEMA_RESOURCE_NAME = "/TextProc.sql";
+	private static final String PROCESSING_STEP_EXECUTION_EVENT_NAME = "es.uvigo.esei.sing.textproc.ProcessingStepExecution";
+	private static final String PROCESS_STATUS_FILE = "/proc/self/status";
+	private static final String CLEAR_REFERENCES_FILE = "/proc/self/clear_refs";
+	private static final String RESET_PEAK_RESIDENT_SET_SIZE_COMMAND = "5";
+	private static final Pattern SQL_COMMENT_REGEX = Pattern.compile("--[^\n]*");
+	private static final Pattern PEAK_RESIDENT_SET_SIZE_REGEX = Pattern.compile(
+		"^VmHWM:\\s*(\\d+)\\s*kB$", Pattern.MULTILINE
+	);
+	private static final double NANOSECONDS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private int submissions = 100000;
+	private int comments = 1000000;
+	private long seed = SyntheticRedditCorpus.DEFAULT_SEED;
+	private Path database = Paths.get("corpus.db");
+	private boolean reuseDatabase = false;
+	private String processFile = null;
+	private int tppPort = 5005;
+	private int tppInstances = 1;
+	private int tppThreads = Runtime.getRuntime().availableProcessors();
+	private long tppDocumentDelay = 0;
+	private double tppPoisonedTextRate = 0;
+	private double tppTransientFailureRate = 0;
+	private String reportFile = "throughput_report.json";
+
+	/**
+	 * Entry point of the benchmark. It should be called only by the JVM.
+	 *
+	 * @param args The command line parameters passed to the benchmark.
+	 */
+	public static void main(final String[] args) {
+		int exitStatus = 0;
+
+		TextProcLogging.initialize(ThroughputBenchmark.class.getSimpleName());
+
+		try {
+			final ThroughputBenchmark benchmark = new ThroughputBenchmark();
+
+			benchmark.parseArguments(args);
+			benchmark.run();
+		} catch (final Throwable exc) {
+			TextProcLogging.getLogger().log(Level.SEVERE, "An exception has occurred. Aborting the benchmark.", exc);
+
+			exitStatus = 1;
+		}
+
+		// Some libraries leave non-daemon threads behind
+		System.exit(exitStatus);
+	}
+
+	/**
+	 * Reads the options of the benchmark from its command line parameters.
+	 *
+	 * @param args The command line parameters.
+	 * @throws IllegalArgumentException If some parameter is not valid.
+	 */
+	private void parseArguments(final String[] args) {
+		for (int i = 0; i < args.length; ++i) {
+			final String option = args[i];
+
+			if ("--reuse-database".equals(option)) {
+				reuseDatabase = true;
+				continue;
+			}
+
+			if (i + 1 >= args.length) {
+				throw new IllegalArgumentException("Unknown option or missing value: " + option);
+			}
+
+			final String value = args[++i];
+			switch (option) {
+				case "--submissions":
+					submissions = Integer.parseInt(value);
+					break;
+				case "--comments":
+					comments = Integer.parseInt(value);
+					break;
+				case "--seed":
+					seed = Long.parseLong(value);
+					break;
+				case "--database":
+					database = Paths.get(value);
+					break;
+				case "--process":
+					processFile = value;
+					break;
+				case "--tpp-port":
+					tppPort = Integer.parseInt(value);
+					break;
+				case "--tpp-instances":
+					tppInstances = Integer.parseInt(value);
+					break;
+				case "--tpp-threads":
+					tppThreads = Integer.parseInt(value);
+					break;
+				case "--tpp-document-delay":
+					tppDocumentDelay = Long.parseLong(value);
+					break;
+				case "--tpp-poisoned-texts":
+					tppPoisonedTextRate = Double.parseDouble(value);
+					break;
+				case "--tpp-transient-failures":
+					tppTransientFailureRate = Double.parseDouble(value);
+					break;
+				case "--report":
+					reportFile = value;
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown option: " + option);
+			}
+		}
+
+		if (submissions < 0 || comments < 0 || tppInstances < 1 || tppThreads < 1) {
+			throw new IllegalArgumentException("The number of documents, instances and threads must be positive");
+		}
+
+		if (tppDocumentDelay < 0) {
+			throw new IllegalArgumentException("The document delay can't be negative");
+		}
+	}
+
+	/**
+	 * Runs the benchmark, and writes its report.
+	 *
+	 * @throws Exception If some error occurs during the benchmark.
+	 */
+	private void run() throws Exception {
+		final Set<Class<?>> processedDocumentTypes = new HashSet<>();
+		final List<RecordedEvent> stepExecutionEvents;
+		final long corpusCreationTime;
+		final long wallTime;
+		final long[] servedTppRequests = new long[tppInstances];
+		long failedTppRequests = 0;
+
+		final long corpusCreationStartTime = System.nanoTime();
+		if (!reuseDatabase || !Files.exists(database)) {
+			System.out.println("> Creating the corpus database...");
+			createDatabase();
+		}
+		corpusCreationTime = System.nanoTime() - corpusCreationStartTime;
+
+		for (final ProcessingStepService processingStepService : ProcessingStepServices.getServiceLoader()) {
+			processedDocumentTypes.addAll(processingStepService.getProcessedDocumentTypes());
+		}
+
+		// Measure the peak memory usage of the process alone, if possible
+		resetPeakMemoryUsage();
+
+		final List<TppStandIn> tppStandIns = new ArrayList<>(tppInstances);
+		try (
+			final InputStream processInputStream = processFile == null ?
+				ThroughputBenchmark.class.getResourceAsStream(DEFAULT_PROCESS_RESOURCE_NAME) :
+				new FileInputStream(processFile);
+			final Recording recording = new Recording()
+		) {
+			final Path recordingFile = Files.createTempFile("textproc-throughput-benchmark", ".jfr");
+
+			for (int i = 0; i < tppInstances; ++i) {
+				final TppStandIn tppStandIn = new TppStandIn(tppPort + i, tppThreads);
+
+				tppStandIns.add(tppStandIn);
+				tppStandIn.setPoisonedTextRate(tppPoisonedTextRate);
+				tppStandIn.setTransientFailureRate(tppTransientFailureRate);
+				tppStandIn.setDocumentDelay(tppDocumentDelay);
+			}
+
+			recording.enable(PROCESSING_STEP_EXECUTION_EVENT_NAME).withoutThreshold();
+			recording.start();
+
+			final long processStartTime = System.nanoTime();
+			TextProcPersistence.get().start(
+				processedDocumentTypes,
+				Map.of(
+					"hibernate.connection.url", "jdbc:sqlite:" + database,
+					"textproc.sqlite_tuning", "true"
+				)
+			);
+			try {
+				new ProcessingProcess().executeProcessDeclaration(processInputStream, false);
+			} finally {
+				TextProcPersistence.get().stop();
+			}
+			wallTime = System.nanoTime() - processStartTime;
+
+			recording.stop();
+			for (int i = 0; i < tppInstances; ++i) {
+				servedTppRequests[i] = tppStandIns.get(i).getServedRequests();
+				failedTppRequests += tppStandIns.get(i).getFailedRequests();
+			}
+
+			try {
+				recording.dump(recordingFile);
+				// The recording has events about itself too
+				stepExecutionEvents = RecordingFile.readAllEvents(recordingFile);
+				stepExecutionEvents.removeIf((final RecordedEvent event) ->
+					!PROCESSING_STEP_EXECUTION_EVENT_NAME.equals(event.getEventType().getName())
+				);
+			} finally {
+				Files.deleteIfExists(recordingFile);
+			}
+		} finally {
+			for (final TppStandIn tppStandIn : tppStandIns) {
+				tppStandIn.close();
+			}
+		}
+
+		// Fused steps end after the steps that execute them, so this is the process order
+		stepExecutionEvents.sort(Comparator.comparing(RecordedEvent::getEndTime));
+
+		System.out.println();
+		if ("-".equals(reportFile)) {
+			writeReport(
+				stepExecutionEvents, corpusCreationTime, wallTime, servedTppRequests, failedTppRequests,
+				new NonClosingOutputStream(System.out)
+			);
+			System.out.println();
+		} else {
+			try (final OutputStream reportOutputStream = Files.newOutputStream(Paths.get(reportFile))) {
+				writeReport(
+					stepExecutionEvents, corpusCreationTime, wallTime, servedTppRequests, failedTppRequests, reportOutputStream
+				);
+			}
+
+			System.out.println("> Report written to " + reportFile + ".");
+		}
+	}
+
+	/**
+	 * Creates the database file with a synthetic corpus and the tables of
+	 * {@code TextProc.sql}, replacing any existing one.
+	 *
+	 * @throws IOException  If some I/O error occurs while deleting the existing
+	 *                      database or reading {@code TextProc.sql}.
+	 * @throws SQLException If some error occurs while populating the database.
+	 */
+	private void createDatabase() throws IOException, SQLException {
+		final String schema;
+
+		try (final InputStream schemaInputStream = ThroughputBenchmark.class.getResourceAsStream(SCHEMA_RESOURCE_NAME)) {
+			schema = new String(schemaInputStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+
+		// Remove the database and its write-ahead log files
+		for (final String suffix : new String[] { "", "-wal", "-shm" }) {
+			Files.deleteIfExists(Paths.get(database + suffix));
+		}
+
+		try (
+			final Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+			final Statement statement = connection.createStatement()
+		) {
+			new SyntheticRedditCorpus(seed).populate(connection, submissions, comments);
+
+			for (final String schemaStatement : SQL_COMMENT_REGEX.matcher(schema).replaceAll("").split(";")) {
+				if (!schemaStatement.isBlank()) {
+					statement.execute(schemaStatement);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Writes the report of the benchmark as JSON to an output stream.
+	 */
+	private void writeReport(
+		final List<RecordedEvent> stepExecutionEvents, final long corpusCreationTime, final long wallTime,
+		final long[] servedTppRequests, final long failedTppRequests, final OutputStream reportOutputStream
+	) throws IOException {
+		try (final JsonGenerator reportJsonGenerator = Json.createGeneratorFactory(
+			Map.of(JsonGenerator.PRETTY_PRINTING, true)
+		).createGenerator(reportOutputStream, StandardCharsets.UTF_8)) {
+			reportJsonGenerator.writeStartObject()
+				.write("process", processFile == null ? DEFAULT_PROCESS_RESOURCE_NAME : processFile)
+				.write("javaVersion", System.getProperty("java.version"))
+				.write("availableProcessors", Runtime.getRuntime().availableProcessors())
+				.write("submissions", submissions)
+				.write("comments", comments)
+				.write("corpusCreationTime", TimeUnit.NANOSECONDS.toMillis(corpusCreationTime))
+				.write("wallTime", TimeUnit.NANOSECONDS.toMillis(wallTime))
+				.write("peakResidentSetSize", getPeakResidentSetSize())
+				.write("peakHeapUsage", getPeakHeapUsage())
+				.write("tppRequests", Arrays.stream(servedTppRequests).sum())
+				.write("failedTppRequests", failedTppRequests)
+				.writeStartArray("tppRequestsPerInstance");
+
+			for (final long instanceServedTppRequests : servedTppRequests) {
+				reportJsonGenerator.write(instanceServedTppRequests);
+			}
+
+			reportJsonGenerator.writeEnd()
+				.writeStartArray("steps");
+
+			for (int i = 0; i < stepExecutionEvents.size(); ++i) {
+				final RecordedEvent stepExecutionEvent = stepExecutionEvents.get(i);
+				final Duration stepTime = stepExecutionEvent.getDuration();
+				final Duration computeTime = stepExecutionEvent.getDuration("computeTime");
+				final long documents = stepExecutionEvent.getLong("documents");
+				Duration ownComputeTime = computeTime;
+
+				// The compute time of a step includes the compute time of the step fused with it,
+				// which is executed and ends in the same thread
+				for (int j = i + 1; j < stepExecutionEvents.size(); ++j) {
+					final RecordedEvent nextStepExecutionEvent = stepExecutionEvents.get(j);
+
+					if (nextStepExecutionEvent.getThread().getJavaThreadId() == stepExecutionEvent.getThread().getJavaThreadId()) {
+						if (nextStepExecutionEvent.getBoolean("fused")) {
+							ownComputeTime = ownComputeTime.minus(nextStepExecutionEvent.getDuration("computeTime"));
+						}
+
+						break;
+					}
+				}
+
+				reportJsonGenerator.writeStartObject()
+					.write("step", stepExecutionEvent.getString("stepName"))
+					.write("fused", stepExecutionEvent.getBoolean("fused"))
+					.write("documents", documents)
+					.write("characters", stepExecutionEvent.getLong("characters"))
+					.write("batches", stepExecutionEvent.getLong("batches"))
+					.write("time", stepTime.toMillis())
+					.write("readTime", stepExecutionEvent.getDuration("readTime").toMillis())
+					.write("computeTime", computeTime.toMillis())
+					.write("ownComputeTime", ownComputeTime.toMillis())
+					.write("writeTime", stepExecutionEvent.getDuration("writeTime").toMillis())
+					.write("documentsPerSecond", perSecond(documents, stepTime))
+					.write("documentsPerOwnComputeSecond", perSecond(documents, ownComputeTime))
+				.writeEnd();
+			}
+
+			reportJsonGenerator.writeEnd().writeEnd();
+		}
+	}
+
+	/**
+	 * Returns how many of something happened per second in the given time.
+	 */
+	private static double perSecond(final long amount, final Duration time) {
+		return time.isNegative() || time.isZero() ? 0 : amount / (time.toNanos() / NANOSECONDS_PER_SECOND);
+	}
+
+	/**
+	 * Resets the peak resident set size of this process, if the operating system
+	 * allows it, and the peak usage of the memory pools of the JVM.
+	 */
+	private static void resetPeakMemoryUsage() {
+		try {
+			Files.writeString(Paths.get(CLEAR_REFERENCES_FILE), RESET_PEAK_RESIDENT_SET_SIZE_COMMAND);
+		} catch (final IOException | UnsupportedOperationException | SecurityException exc) {
+			// Not Linux, or not allowed. The peak will include creating the corpus
+		}
+
+		for (final MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+			memoryPool.resetPeakUsage();
+		}
+	}
+
+	/**
+	 * Returns the peak resident set size of this process, in bytes, or -1 if the
+	 * operating system doesn't tell it. Only Linux does.
+	 */
+	private static long getPeakResidentSetSize() {
+		try {
+			final Matcher peakResidentSetSizeMatcher = PEAK_RESIDENT_SET_SIZE_REGEX.matcher(
+				Files.readString(Paths.get(PROCESS_STATUS_FILE))
+			);
+
+			return peakResidentSetSizeMatcher.find() ? Long.parseLong(peakResidentSetSizeMatcher.group(1)) * 1024 : -1;
+		} catch (final IOException | SecurityException exc) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Returns the sum of the peak usage of the heap memory pools of the JVM, in
+	 * bytes.
+	 */
+	private static long getPeakHeapUsage() {
+		long peakHeapUsage = 0;
+
+		for (final MemoryPoolMXBean memoryPool : ManagementFactory.getMemoryPoolMXBeans()) {
+			if (memoryPool.getType() == MemoryType.HEAP) {
+				peakHeapUsage += memoryPool.getPeakUsage().getUsed();
+			}
+		}
+
+		return peakHeapUsage;
+	}
+
+	/**
+	 * Prevents the standard output stream from being closed when the report is
+	 * written to it.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class NonClosingOutputStream extends FilterOutputStream {
+		NonClosingOutputStream(final OutputStream outputStream) {
+			super(outputStream);
+		}
+
+		@Override
+		public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+			out.write(bytes, offset, length);
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+}
@@ -0,0 +1,546 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.benchmark;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.json.Json;
+import javax.json.JsonException;
+import javax.json.JsonReader;
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import javax.json.JsonValue.ValueType;
+import javax.json.stream.JsonGenerator;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import lombok.NonNull;
+
+/**
+ * An embedded stand-in for the Text Processing Python web service, which
+ * serves its tokenization, stopword removal and lemmatization endpoints over
+ * HTTP with the same request and response formats, as well as those of the
+ * second TextProc protocol version. The text is processed with
+ * simple rules instead of language models, so the cost of the web service
+ * doesn't dominate the throughput of TextProc.
+ *
+ * @author Alejandro González García
+ */
+public final class TppStandIn implements AutoCloseable {
+	/**
+	 * The path the endpoints are served under.
+	 */
+	public static final String ENDPOINTS_PATH = "/tpp/v1/";
+
+	private static final String USER_AGENT_PREFIX = "TextProc/PROTOCOL-";
+	private static final String PROTOCOL_HEADER = "TextProc-Protocol";
+	private static final String FRAMED_CONTENT_TYPE = "application/x-ndjson";
+	private static final Pattern TOKEN_SEPARATOR_REGEX = Pattern.compile("\\s+|(?=[.,;:!?\"()])|(?<=[.,;:!?\"()])");
+	private static final Pattern WHITE_SPACE_REGEX = Pattern.compile("\\s+");
+	private static final Set<String> STOPWORDS = Set.of(
+		"a", "about", "after", "all", "also", "an", "and", "any", "are", "as", "at", "be", "because", "been",
+		"but", "by", "can", "could", "did", "do", "does", "for", "from", "had", "has", "have", "he", "her",
+		"his", "how", "i", "if", "in", "into", "is", "it", "its", "just", "me", "more", "my", "no", "not",
+		"of", "on", "one", "only", "or", "other", "our", "out", "she", "so", "some", "than", "that", "the",
+		"their", "them", "then", "there", "these", "they", "this", "to", "up", "us", "was", "we", "were",
+		"what", "when", "which", "who", "will", "with", "would", "you", "your"
+	);
+	private static final Map<String, BiConsumer<String, JsonGenerator>> ENDPOINTS = Map.of(
+		"casual-tokenize", TppStandIn::tokenize,
+		"tokenize", TppStandIn::tokenize,
+		"remove-stopwords", TppStandIn::removeStopwords,
+		"lemmatize", TppStandIn::lemmatize
+	);
+
+	private final HttpServer server;
+	private final ExecutorService requestExecutor;
+	private final LongAdder servedRequests = new LongAdder();
+	private final LongAdder failedRequests = new LongAdder();
+	private volatile double poisonedTextRate = 0;
+	private volatile double transientFailureRate = 0;
+	private volatile long documentDelay = 0;
+
+	/**
+	 * Starts serving the endpoints on the given port of the loopback interface.
+	 *
+	 * @param port    The port to listen on, or 0 to listen on any free port.
+	 * @param threads The number of threads that serve requests.
+	 * @throws IOException If the server can't listen on the port.
+	 */
+	public TppStandIn(final int port, final int threads) throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		this.requestExecutor = Executors.newFixedThreadPool(threads, (final Runnable runnable) -> {
+			final Thread requestThread = new Thread(runnable, "TPP stand-in request handler");
+			requestThread.setDaemon(true);
+			return requestThread;
+		});
+
+		server.createContext(ENDPOINTS_PATH, this::handle);
+		server.setExecutor(requestExecutor);
+		server.start();
+	}
+
+	/**
+	 * Returns the port the endpoints are served on.
+	 *
+	 * @return The described port.
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Returns the number of requests that were answered successfully so far.
+	 *
+	 * @return The described number.
+	 */
+	public long getServedRequests() {
+		return servedRequests.sum();
+	}
+
+	/**
+	 * Returns the number of requests that were answered with an error on purpose
+	 * so far.
+	 *
+	 * @return The described number.
+	 */
+	public long getFailedRequests() {
+		return failedRequests.sum();
+	}
+
+	/**
+	 * Sets the fraction of texts the stand-in can't process, which make every
+	 * request that contains them fail with an internal server error. Whether a
+	 * non-empty text can be processed depends on its hash code only, so it is
+	 * the same in every request.
+	 *
+	 * @param poisonedTextRate The described fraction, between 0 and 1.
+	 * @throws IllegalArgumentException If the fraction is out of range.
+	 */
+	public void setPoisonedTextRate(final double poisonedTextRate) {
+		if (poisonedTextRate < 0 || poisonedTextRate > 1) {
+			throw new IllegalArgumentException("The poisoned text rate must be between 0 and 1");
+		}
+
+		this.poisonedTextRate = poisonedTextRate;
+	}
+
+	/**
+	 * Sets the fraction of requests that fail at random with a service
+	 * unavailable status, as if the stand-in was overloaded.
+	 *
+	 * @param transientFailureRate The described fraction, between 0 and 1.
+	 * @throws IllegalArgumentException If the fraction is out of range.
+	 */
+	public void setTransientFailureRate(final double transientFailureRate) {
+		if (transientFailureRate < 0 || transientFailureRate > 1) {
+			throw new IllegalArgumentException("The transient failure rate must be between 0 and 1");
+		}
+
+		this.transientFailureRate = transientFailureRate;
+	}
+
+	/**
+	 * Sets the time the stand-in takes to process each document of a request, on
+	 * top of the time its simple rules take, as if it ran a language model. The
+	 * thread that serves the request is busy meanwhile.
+	 *
+	 * @param documentDelay The described time, in microseconds.
+	 * @throws IllegalArgumentException If the time is negative.
+	 */
+	public void setDocumentDelay(final long documentDelay) {
+		if (documentDelay < 0) {
+			throw new IllegalArgumentException("The document delay can't be negative");
+		}
+
+		this.documentDelay = documentDelay;
+	}
+
+	/**
+	 * Stops serving the endpoints, without waiting for requests in progress.
+	 */
+	@Override
+	public void close() {
+		server.stop(0);
+		requestExecutor.shutdownNow();
+	}
+
+	/**
+	 * Answers a request to an endpoint, like Text Processing Python does: every
+	 * member of the {@code documents} object of the request is returned in the
+	 * {@code documents} object of the response, with its {@code text} processed.
+	 * Clients that advertise the second TextProc protocol version in their
+	 * User-Agent are told that it is spoken, and their positional, framed or
+	 * compressed requests are answered in kind. Request parameters are ignored.
+	 */
+	private void handle(@NonNull final HttpExchange exchange) throws IOException {
+		try {
+			final BiConsumer<String, JsonGenerator> processingAction = ENDPOINTS.get(
+				exchange.getRequestURI().getPath().substring(ENDPOINTS_PATH.length())
+			);
+			final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+			final String acceptedEncodings = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			final String userAgent = exchange.getRequestHeaders().getFirst("User-Agent");
+			final boolean framed = contentType != null && contentType.startsWith(FRAMED_CONTENT_TYPE);
+			final boolean gzipResponse = acceptedEncodings != null && acceptedEncodings.contains("gzip");
+
+			if (processingAction == null) {
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+
+			if (!"POST".equals(exchange.getRequestMethod())) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+
+			final List<JsonValue> requestFrames = new ArrayList<>();
+			try (final InputStream requestBody = decode(
+				exchange.getRequestHeaders().getFirst("Content-Encoding"), exchange.getRequestBody()
+			)) {
+				if (framed) {
+					readFrames(requestBody, requestFrames);
+				} else {
+					try (final JsonReader requestJsonReader = Json.createReader(requestBody)) {
+						requestFrames.add(requestJsonReader.readObject().get("documents"));
+					}
+				}
+			} catch (final JsonException | ClassCastException | IllegalArgumentException | IOException exc) {
+				exchange.sendResponseHeaders(400, -1);
+				return;
+			}
+
+			if (requestFrames.isEmpty() || requestFrames.get(0) == null || requestFrames.get(0).getValueType() == ValueType.NULL) {
+				exchange.sendResponseHeaders(400, -1);
+				return;
+			}
+
+			if (ThreadLocalRandom.current().nextDouble() < transientFailureRate) {
+				failedRequests.increment();
+				exchange.sendResponseHeaders(503, -1);
+				return;
+			}
+
+			if (containsPoisonedText(framed ? requestFrames.subList(1, requestFrames.size()) : requestFrames)) {
+				failedRequests.increment();
+				exchange.sendResponseHeaders(500, -1);
+				return;
+			}
+
+			if (documentDelay > 0) {
+				try {
+					TimeUnit.MICROSECONDS.sleep(documentDelay * (
+						framed ? requestFrames.size() - 1 :
+						requestFrames.get(0).getValueType() == ValueType.ARRAY ?
+							requestFrames.get(0).asJsonArray().size() : requestFrames.get(0).asJsonObject().size()
+					));
+				} catch (final InterruptedException exc) {
+					Thread.currentThread().interrupt();
+					exchange.sendResponseHeaders(503, -1);
+					return;
+				}
+			}
+
+			if (getAdvertisedProtocolVersion(userAgent) >= 2) {
+				exchange.getResponseHeaders().set(PROTOCOL_HEADER, "2");
+			}
+			exchange.getResponseHeaders().set(
+				"Content-Type", framed ? FRAMED_CONTENT_TYPE : "application/json; charset=utf-8"
+			);
+			if (gzipResponse) {
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			}
+			exchange.sendResponseHeaders(200, 0);
+
+			try (
+				final OutputStream responseBody = gzipResponse ?
+					new GZIPOutputStream(exchange.getResponseBody(), 8192) : exchange.getResponseBody()
+			) {
+				if (framed) {
+					writeFrames(requestFrames.subList(1, requestFrames.size()), processingAction, responseBody);
+				} else {
+					try (final JsonGenerator responseJsonGenerator = Json.createGenerator(responseBody)) {
+						responseJsonGenerator.writeStartObject();
+						writeDocuments(requestFrames.get(0), processingAction, responseJsonGenerator);
+						responseJsonGenerator.writeEnd();
+					}
+				}
+			}
+
+			servedRequests.increment();
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Writes the {@code documents} member of a response, which is an object keyed
+	 * like the request one in the first protocol version, and an array of
+	 * positional documents in the second.
+	 */
+	private static void writeDocuments(
+		final JsonValue requestDocuments, final BiConsumer<String, JsonGenerator> processingAction,
+		final JsonGenerator responseJsonGenerator
+	) {
+		if (requestDocuments.getValueType() == ValueType.ARRAY) {
+			responseJsonGenerator.writeStartArray("documents");
+
+			for (final JsonValue document : requestDocuments.asJsonArray()) {
+				writeDocument(document, processingAction, responseJsonGenerator);
+			}
+
+			responseJsonGenerator.writeEnd();
+		} else {
+			responseJsonGenerator.writeStartObject("documents");
+
+			for (final Map.Entry<String, JsonValue> document : requestDocuments.asJsonObject().entrySet()) {
+				responseJsonGenerator.writeStartObject(document.getKey());
+				processingAction.accept(document.getValue().asJsonObject().getString("text", ""), responseJsonGenerator);
+				responseJsonGenerator.writeEnd();
+			}
+
+			responseJsonGenerator.writeEnd();
+		}
+	}
+
+	/**
+	 * Writes the array of processed attributes of a positional document, where
+	 * attributes that were not requested are {@code null}.
+	 */
+	private static void writeDocument(
+		final JsonValue document, final BiConsumer<String, JsonGenerator> processingAction,
+		final JsonGenerator responseJsonGenerator
+	) {
+		responseJsonGenerator.writeStartArray();
+
+		for (final JsonValue text : document.asJsonArray()) {
+			if (text.getValueType() == ValueType.STRING) {
+				responseJsonGenerator.writeStartObject();
+				processingAction.accept(((JsonString) text).getString(), responseJsonGenerator);
+				responseJsonGenerator.writeEnd();
+			} else {
+				responseJsonGenerator.writeNull();
+			}
+		}
+
+		responseJsonGenerator.writeEnd();
+	}
+
+	/**
+	 * Checks whether some text of the documents of a request can't be processed.
+	 */
+	private boolean containsPoisonedText(final List<JsonValue> requestDocuments) {
+		final double poisonedTextRate = this.poisonedTextRate;
+
+		if (poisonedTextRate <= 0) {
+			return false;
+		}
+
+		for (final JsonValue documents : requestDocuments) {
+			for (final JsonValue document : documents.getValueType() == ValueType.OBJECT ?
+				documents.asJsonObject().values() : documents.asJsonArray()
+			) {
+				for (final JsonValue text : document.getValueType() == ValueType.OBJECT ?
+					List.of(document.asJsonObject().getOrDefault("text", JsonValue.NULL)) : document.asJsonArray()
+				) {
+					if (
+						text.getValueType() == ValueType.STRING && !((JsonString) text).getString().isEmpty() &&
+						Math.floorMod(((JsonString) text).getString().hashCode(), 1_000_000) < poisonedTextRate * 1_000_000
+					) {
+						return true;
+					}
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Reads every length-prefixed JSON frame of a request body.
+	 */
+	private static void readFrames(final InputStream requestBody, final List<JsonValue> requestFrames) throws IOException {
+		final InputStream bufferedRequestBody = new BufferedInputStream(requestBody);
+		int frameLength;
+
+		while ((frameLength = readFrameLength(bufferedRequestBody)) >= 0) {
+			final byte[] frame = bufferedRequestBody.readNBytes(frameLength);
+
+			if (frame.length != frameLength || bufferedRequestBody.read() != '\n') {
+				throw new IOException("Truncated frame");
+			}
+
+			try (final JsonReader frameJsonReader = Json.createReader(new ByteArrayInputStream(frame))) {
+				requestFrames.add(frameJsonReader.readValue());
+			}
+		}
+	}
+
+	/**
+	 * Reads the length of the next frame of a request body, or returns -1 at its
+	 * end.
+	 */
+	private static int readFrameLength(final InputStream requestBody) throws IOException {
+		int frameLength = 0;
+		int readByte;
+
+		if ((readByte = requestBody.read()) < 0) {
+			return -1;
+		}
+
+		do {
+			if (readByte < '0' || readByte > '9') {
+				throw new IOException("Invalid frame length");
+			}
+
+			frameLength = Math.addExact(Math.multiplyExact(frameLength, 10), readByte - '0');
+		} while ((readByte = requestBody.read()) != '\n');
+
+		return frameLength;
+	}
+
+	/**
+	 * Writes a length-prefixed frame with the processed attributes of every
+	 * document frame of a request.
+	 */
+	private static void writeFrames(
+		final List<JsonValue> documentFrames, final BiConsumer<String, JsonGenerator> processingAction,
+		final OutputStream responseBody
+	) throws IOException {
+		final ByteArrayOutputStream frame = new ByteArrayOutputStream();
+
+		for (final JsonValue document : documentFrames) {
+			frame.reset();
+
+			try (final JsonGenerator frameJsonGenerator = Json.createGenerator(frame)) {
+				writeDocument(document, processingAction, frameJsonGenerator);
+			}
+
+			responseBody.write(Integer.toString(frame.size()).getBytes(StandardCharsets.US_ASCII));
+			responseBody.write('\n');
+			frame.writeTo(responseBody);
+			responseBody.write('\n');
+		}
+	}
+
+	/**
+	 * Returns the newest protocol version a client advertises in its User-Agent,
+	 * which is the first one for clients that advertise none.
+	 */
+	private static int getAdvertisedProtocolVersion(final String userAgent) {
+		try {
+			return userAgent != null && userAgent.startsWith(USER_AGENT_PREFIX) ?
+				Integer.parseInt(userAgent.substring(USER_AGENT_PREFIX.length()).strip()) : 1;
+		} catch (final NumberFormatException exc) {
+			return 1;
+		}
+	}
+
+	/**
+	 * Decompresses a request body with the content coding named by its
+	 * {@code Content-Encoding} header.
+	 */
+	private static InputStream decode(final String contentEncoding, final InputStream requestBody) throws IOException {
+		if (contentEncoding == null || "identity".equalsIgnoreCase(contentEncoding)) {
+			return requestBody;
+		} else if ("gzip".equalsIgnoreCase(contentEncoding)) {
+			return new GZIPInputStream(requestBody);
+		} else if ("deflate".equalsIgnoreCase(contentEncoding)) {
+			return new InflaterInputStream(requestBody);
+		} else {
+			throw new IOException("Unsupported content encoding: " + contentEncoding);
+		}
+	}
+
+	/**
+	 * Splits a text in tokens by white space and punctuation, and writes them as
+	 * a string array.
+	 */
+	private static void tokenize(final String text, final JsonGenerator responseJsonGenerator) {
+		responseJsonGenerator.writeStartArray("text");
+
+		for (final String token : TOKEN_SEPARATOR_REGEX.split(text)) {
+			if (!token.isEmpty()) {
+				responseJsonGenerator.write(token);
+			}
+		}
+
+		responseJsonGenerator.writeEnd();
+	}
+
+	/**
+	 * Removes common English words from a tokenized text, and writes it as a
+	 * string.
+	 */
+	private static void removeStopwords(final String text, final JsonGenerator responseJsonGenerator) {
+		final StringBuilder filteredTextBuilder = new StringBuilder(text.length());
+
+		for (final String token : WHITE_SPACE_REGEX.split(text)) {
+			if (!token.isEmpty() && !STOPWORDS.contains(token.toLowerCase(Locale.ROOT))) {
+				if (filteredTextBuilder.length() > 0) {
+					filteredTextBuilder.append(' ');
+				}
+
+				filteredTextBuilder.append(token);
+			}
+		}
+
+		responseJsonGenerator.write("text", filteredTextBuilder.toString());
+	}
+
+	/**
+	 * Lower-cases a text and strips some common English inflectional suffixes
+	 * from its words, and writes it as a string.
+	 */
+	private static void lemmatize(final String text, final JsonGenerator responseJsonGenerator) {
+		final StringBuilder lemmatizedTextBuilder = new StringBuilder(text.length());
+
+		for (final String word : WHITE_SPACE_REGEX.split(text)) {
+			if (word.isEmpty()) {
+				continue;
+			}
+
+			String lemma = word.toLowerCase(Locale.ROOT);
+
+			if (lemma.length() > 4 && lemma.endsWith("ing")) {
+				lemma = lemma.substring(0, lemma.length() - 3);
+			} else if (lemma.length() > 3 && lemma.endsWith("ed")) {
+				lemma = lemma.substring(0, lemma.length() - 2);
+			} else if (lemma.length() > 3 && lemma.endsWith("s") && !lemma.endsWith("ss")) {
+				lemma = lemma.substring(0, lemma.length() - 1);
+			}
+
+			if (lemmatizedTextBuilder.length() > 0) {
+				lemmatizedTextBuilder.append(' ');
+			}
+
+			lemmatizedTextBuilder.append(lemma);
+		}
+
+		responseJsonGenerator.write("text", lemmatizedTextBuilder.toString());
+	}
+}
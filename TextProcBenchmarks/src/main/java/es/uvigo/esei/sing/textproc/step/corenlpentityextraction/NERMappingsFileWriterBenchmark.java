@@ -0,0 +1,98 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.corenlpentityextraction;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import es.uvigo.esei.sing.textproc.benchmark.SyntheticRedditCorpus;
+
+/**
+ * Measures how many NER mappings per second {@link NERMappingsFileWriter}
+ * writes to a temporary file, from one thread and from several threads that
+ * contend for its writer thread, as the worker threads of the entity
+ * extraction step do. The file is created again for every iteration.
+ *
+ * @author Alejandro González García
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class NERMappingsFileWriterBenchmark {
+	private static final int TOKENS = 16384;
+	private static final List<String> OVERWRITABLE_TYPES = List.of("CAUSE_OF_DEATH", "IDEOLOGY", "PERSON", "ORGANIZATION");
+
+	private final String[] tokens = new String[TOKENS];
+	private Path mappingsFile;
+	private NERMappingsFileWriter mappingsFileWriter;
+
+	@Setup(Level.Trial)
+	public void generateTokens() {
+		final SyntheticRedditCorpus corpus = new SyntheticRedditCorpus(SyntheticRedditCorpus.DEFAULT_SEED);
+
+		for (int i = 0; i < TOKENS; ++i) {
+			tokens[i] = corpus.nextWord();
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void openWriter() throws IOException {
+		mappingsFile = Files.createTempFile("textproc-ner-mappings-benchmark", ".tsv");
+		mappingsFileWriter = new NERMappingsFileWriter(mappingsFile);
+	}
+
+	@TearDown(Level.Iteration)
+	public void deleteWriter() throws IOException {
+		mappingsFileWriter.close();
+		Files.delete(mappingsFile);
+	}
+
+	@Benchmark
+	public void writeMapping(final TokenCursor tokenCursor) throws IOException {
+		mappingsFileWriter.writeMapping(tokens[tokenCursor.next()], "ideology", OVERWRITABLE_TYPES);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void writeMappingConcurrently(final TokenCursor tokenCursor) throws IOException {
+		mappingsFileWriter.writeMapping(tokens[tokenCursor.next()], "ideology", OVERWRITABLE_TYPES);
+	}
+
+	/**
+	 * The token each benchmark thread writes a mapping for next.
+	 *
+	 * @author Alejandro González García
+	 */
+	@State(Scope.Thread)
+	public static class TokenCursor {
+		private int nextToken = 0;
+
+		int next() {
+			final int token = nextToken;
+
+			nextToken = (nextToken + 1) % TOKENS;
+
+			return token;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.emptyfiltering;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import es.uvigo.esei.sing.textproc.benchmark.InMemoryCorpusDatabase;
+import es.uvigo.esei.sing.textproc.benchmark.SyntheticRedditCorpus;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import es.uvigo.esei.sing.textproc.step.ProcessingStepService;
+import es.uvigo.esei.sing.textproc.step.emptyfiltering.xml.definition.IncludeRedditDeletedProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.TextDocumentTableNameProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.TextDocumentWithTitleTableNameProcessingStepParameter;
+
+/**
+ * Measures how long the empty filtering step takes to tell which submissions
+ * and comments of an in-memory corpus are empty, and to store the rest, with
+ * and without Reddit deleted posts counting as empty.
+ *
+ * @author Alejandro González García
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EmptyFilteringBenchmark {
+	private static final String[] PROCESSED_DOCUMENT_TABLE_NAMES = {
+		"non_empty_text_with_title_document", "non_empty_text_document"
+	};
+
+	@Param({ "true", "false" })
+	private boolean includeRedditDeleted;
+	@Param({ "20000" })
+	private int comments;
+
+	private final ProcessingStepService stepService = new EmptyFilteringProcessingStepService();
+	private InMemoryCorpusDatabase database;
+	private Map<String, String> stepParameters;
+
+	@Setup
+	public void setUp() throws SQLException {
+		// Steps print their progress, which would get mixed with the JMH output
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		database = new InMemoryCorpusDatabase(
+			comments / 10, comments, PROCESSED_DOCUMENT_TABLE_NAMES,
+			new HashSet<>(stepService.getProcessedDocumentTypes())
+		);
+
+		stepParameters = Map.of(
+			new TextDocumentWithTitleTableNameProcessingStepParameter().getName(), SyntheticRedditCorpus.SUBMISSION_TABLE_NAME,
+			new TextDocumentTableNameProcessingStepParameter().getName(), SyntheticRedditCorpus.COMMENT_TABLE_NAME,
+			new IncludeRedditDeletedProcessingStepParameter().getName(), Boolean.toString(includeRedditDeleted)
+		);
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		database.close();
+	}
+
+	/**
+	 * Executes the step, which first deletes the documents stored by the
+	 * previous invocation.
+	 */
+	@Benchmark
+	public void execute() throws ProcessingException {
+		stepService.create().execute(stepParameters);
+	}
+}
@@ -0,0 +1,100 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.luceneindex;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import es.uvigo.esei.sing.textproc.benchmark.InMemoryCorpusDatabase;
+import es.uvigo.esei.sing.textproc.benchmark.SyntheticRedditCorpus;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import es.uvigo.esei.sing.textproc.step.ProcessingStepService;
+import es.uvigo.esei.sing.textproc.step.luceneindex.xml.definition.FolderPathProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.TextDocumentTableNameProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.TextDocumentWithTitleTableNameProcessingStepParameter;
+
+/**
+ * Measures how long the Lucene index step takes to index every submission and
+ * comment of an in-memory corpus. The index is stored in a temporary folder,
+ * which the step empties for every invocation.
+ *
+ * @author Alejandro González García
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LuceneIndexBenchmark {
+	@Param({ "20000" })
+	private int comments;
+
+	private final ProcessingStepService stepService = new LuceneIndexProcessingStepService();
+	private InMemoryCorpusDatabase database;
+	private Path indexFolder;
+	private Map<String, String> stepParameters;
+
+	@Setup
+	public void setUp() throws SQLException, IOException {
+		// Steps print their progress, which would get mixed with the JMH output
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		// The step stores no processed documents
+		database = new InMemoryCorpusDatabase(
+			comments / 10, comments, new String[0], new HashSet<>(stepService.getProcessedDocumentTypes())
+		);
+		indexFolder = Files.createTempDirectory("textproc-lucene-benchmark");
+
+		stepParameters = Map.of(
+			new TextDocumentWithTitleTableNameProcessingStepParameter().getName(), SyntheticRedditCorpus.SUBMISSION_TABLE_NAME,
+			new TextDocumentTableNameProcessingStepParameter().getName(), SyntheticRedditCorpus.COMMENT_TABLE_NAME,
+			new FolderPathProcessingStepParameter().getName(), indexFolder.toString()
+		);
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException, IOException {
+		try {
+			database.close();
+		} finally {
+			try (final Stream<Path> indexFiles = Files.walk(indexFolder)) {
+				// Delete files before the folders that contain them
+				for (final Path indexFile : (Iterable<Path>) indexFiles.sorted(Comparator.reverseOrder())::iterator) {
+					Files.delete(indexFile);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Executes the step, which first deletes the documents indexed by the
+	 * previous invocation.
+	 */
+	@Benchmark
+	public void execute() throws ProcessingException {
+		stepService.create().execute(stepParameters);
+	}
+}
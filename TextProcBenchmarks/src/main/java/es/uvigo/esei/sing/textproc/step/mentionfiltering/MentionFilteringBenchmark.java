@@ -0,0 +1,90 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.mentionfiltering;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import es.uvigo.esei.sing.textproc.benchmark.InMemoryCorpusDatabase;
+import es.uvigo.esei.sing.textproc.benchmark.SyntheticRedditCorpus;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import es.uvigo.esei.sing.textproc.step.ProcessingStepService;
+import es.uvigo.esei.sing.textproc.step.mentionfiltering.xml.definition.MentionTypeProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.TextDocumentTableNameProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.TextDocumentWithTitleTableNameProcessingStepParameter;
+
+/**
+ * Measures how long the mention filtering step takes to remove the mentions of
+ * every submission and comment of an in-memory corpus, and to store them, for
+ * every mention type.
+ *
+ * @author Alejandro González García
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class MentionFilteringBenchmark {
+	private static final String[] PROCESSED_DOCUMENT_TABLE_NAMES = {
+		"mention_filtered_text_with_title_document", "mention_filtered_text_document"
+	};
+
+	@Param({ "reddit_all", "reddit_user", "subreddit" })
+	private String mentionType;
+	@Param({ "20000" })
+	private int comments;
+
+	private final ProcessingStepService stepService = new MentionFilteringProcessingStepService();
+	private InMemoryCorpusDatabase database;
+	private Map<String, String> stepParameters;
+
+	@Setup
+	public void setUp() throws SQLException {
+		// Steps print their progress, which would get mixed with the JMH output
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		database = new InMemoryCorpusDatabase(
+			comments / 10, comments, PROCESSED_DOCUMENT_TABLE_NAMES,
+			new HashSet<>(stepService.getProcessedDocumentTypes())
+		);
+
+		stepParameters = Map.of(
+			new TextDocumentWithTitleTableNameProcessingStepParameter().getName(), SyntheticRedditCorpus.SUBMISSION_TABLE_NAME,
+			new TextDocumentTableNameProcessingStepParameter().getName(), SyntheticRedditCorpus.COMMENT_TABLE_NAME,
+			new MentionTypeProcessingStepParameter().getName(), mentionType
+		);
+	}
+
+	@TearDown
+	public void tearDown() throws SQLException {
+		database.close();
+	}
+
+	/**
+	 * Executes the step, which first deletes the documents stored by the
+	 * previous invocation.
+	 */
+	@Benchmark
+	public void execute() throws ProcessingException {
+		stepService.create().execute(stepParameters);
+	}
+}
@@ -38,6 +38,12 @@ public final class TextProc {
 	 */
 	public static final String APP_NAME = TextProc.class.getSimpleName();
 
+	/**
+	 * The command line option that resumes the execution of a process that was
+	 * interrupted.
+	 */
+	private static final String RESUME_OPTION = "--resume";
+
 	private static final TextProc APP_INSTANCE = new TextProc();
 
 	@Getter(AccessLevel.PRIVATE)
@@ -80,6 +86,13 @@ public final class TextProc {
 	/**
 	 * Entry point of the application, executed within the context of the only
 	 * instance of this class in the JVM.
+	 * <p>
+	 * The application accepts the path of the process definition file as its only
+	 * positional argument, which is read from standard input if it is not given or
+	 * is {@code -}. If the {@code --resume} option is given, the steps completed
+	 * by the last execution of the process are skipped, and the step that was
+	 * interrupted is resumed from its last committed page of documents.
+	 * </p>
 	 *
 	 * @param args The command line parameters passed to the application.
 	 * @return The exit status of the application process.
@@ -89,9 +102,17 @@ public final class TextProc {
 		InputStream processInputStream;
 		int exitStatus = 0;
 		final Set<Class<?>> processedDocumentTypes = new HashSet<>();
-
-		if (args.length > 1) {
-			throw new IllegalArgumentException("Unexpected number of arguments");
+		String processFile = null;
+		boolean resume = false;
+
+		for (final String arg : args) {
+			if (RESUME_OPTION.equals(arg)) {
+				resume = true;
+			} else if (processFile == null) {
+				processFile = arg;
+			} else {
+				throw new IllegalArgumentException("Unexpected number of arguments");
+			}
 		}
 
 		printStartBanners();
@@ -107,21 +128,21 @@ public final class TextProc {
 
 			printProgressMessage("JPA entity management factory initialized.");
 
-			if (args.length == 0 || (args.length == 1 && args[0] == "-")) {
+			if (processFile == null || "-".equals(processFile)) {
 				// Read the process from standard input
 				processInputStream = System.in;
 			} else {
 				// One argument. Read the process from a file
-				processInputStream = new FileInputStream(args[0]);
+				processInputStream = new FileInputStream(processFile);
 			}
 
 			printProgressMessage(
-				"Executing process definined in " + (processInputStream == System.in ? "standard input" : args[0]) + "."
+				"Executing process definined in " + (processInputStream == System.in ? "standard input" : processFile) + "."
 			);
 
 			// Do the actual work
 			final long startTimestamp = System.currentTimeMillis();
-			new ProcessingProcess().executeProcessDeclaration(processInputStream);
+			new ProcessingProcess().executeProcessDeclaration(processInputStream, resume);
 			final long endTimestamp = System.currentTimeMillis();
 
 			final Duration elapsedTime = Duration.ofMillis(endTimestamp - startTimestamp);
@@ -0,0 +1,25 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.persistence;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event emitted when the persistence access layer
+ * flushes the entities of every thread, finishing their transactions.
+ *
+ * @author Alejandro González García
+ * @see TransactionEndEvent
+ */
+@Name("es.uvigo.esei.sing.textproc.EntityFlush")
+@Label("Entity Flush")
+@Description("The transactions and entity managers of every thread finished by TextProc")
+@Category({ "TextProc", "Persistence" })
+final class EntityFlushEvent extends jdk.jfr.Event {
+	@Label("Transactions")
+	@Description("The number of dirty transactions that were finished")
+	int transactions;
+}
@@ -0,0 +1,24 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.persistence;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Represents a unit of work that directly uses the JDBC connection of a entity
+ * manager, bypassing the JPA provider.
+ *
+ * @author Alejandro González García
+ */
+@FunctionalInterface
+public interface JdbcWork {
+	/**
+	 * Executes this unit of work.
+	 *
+	 * @param connection The JDBC connection to use. It must not be closed, and its
+	 *                   transaction must not be finished by this method.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	public void execute(final Connection connection) throws SQLException;
+}
@@ -4,9 +4,18 @@ package es.uvigo.esei.sing.textproc.persistence;
 
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import javax.persistence.EntityManager;
@@ -15,6 +24,7 @@ import javax.persistence.EntityTransaction;
 import javax.persistence.MappedSuperclass;
 import javax.persistence.PersistenceException;
 
+import org.hibernate.Session;
 import org.hibernate.cfg.Configuration;
 import org.hibernate.jpa.boot.internal.ParsedPersistenceXmlDescriptor;
 import org.hibernate.jpa.boot.internal.PersistenceXmlParser;
@@ -34,7 +44,33 @@ import lombok.NonNull;
 public class TextProcPersistence {
 	private static final String NOT_RUNNING_ERROR_MESSAGE = "The persistence access layer is not running";
 
+	// SQLite tuning. The PRAGMAs are executed by the SQLite JDBC driver for every new connection
+	private static final String SQLITE_CONNECTION_URL_PREFIX = "jdbc:sqlite:";
+	private static final String SQLITE_TUNING_PROPERTY_NAME = "textproc.sqlite_tuning";
+	private static final String CONNECTION_URL_PROPERTY_NAME = "hibernate.connection.url";
+	private static final String JPA_CONNECTION_URL_PROPERTY_NAME = "javax.persistence.jdbc.url";
+	private static final String DRIVER_PROPERTY_NAME_PREFIX = "hibernate.connection.";
+	private static final String JOURNAL_MODE_PRAGMA_NAME = "journal_mode";
+	private static final String WRITE_AHEAD_LOG_JOURNAL_MODE = "WAL";
+	private static final Map<String, String> SQLITE_TUNING_PRAGMAS = Map.of(
+		// Readers don't block the writer, and the writer doesn't block readers
+		JOURNAL_MODE_PRAGMA_NAME, WRITE_AHEAD_LOG_JOURNAL_MODE,
+		// Durable across application crashes, and only syncs to disk on checkpoints
+		"synchronous", "NORMAL",
+		// Truncate the write-ahead log to 64 MiB after checkpoints
+		"journal_size_limit", Integer.toString(64 * 1024 * 1024),
+		// Read the first 256 MiB of the database from memory mapped pages
+		"mmap_size", Integer.toString(256 * 1024 * 1024),
+		// Negative values are KiB, so this is a 64 MiB page cache
+		"cache_size", Integer.toString(-64 * 1024)
+	);
+
+	// How many units of work may wait for the writer thread before their submitters wait too
+	private static final int MAXIMUM_PENDING_WRITE_WORKS = 2;
+
 	private volatile EntityManagerFactory entityManagerFactory = null;
+	private volatile ExecutorService writerExecutor = null;
+	private volatile boolean serializeWrites = false;
 	private final Map<Thread, EntityManager> threadEntityManager = new ConcurrentHashMap<>();
 	private final Set<TimestampedEntityTransaction> dirtyTransactions = new ConcurrentSkipListSet<>();
 	private final Object runningStatusChangeLock = new Object();
@@ -86,6 +122,29 @@ public class TextProcPersistence {
 	 *                                  contains a {@code null} element.
 	 */
 	public void start(@NonNull final Set<Class<?>> entityTypes) {
+		start(entityTypes, Map.of());
+	}
+
+	/**
+	 * Starts the TextProc persistence access layer, so it becomes ready to process
+	 * data access operations, with some properties of the persistence unit
+	 * replaced. This allows, for instance, to access a database other than the
+	 * one the application was built for.
+	 *
+	 * @param entityTypes        A set of entity types that the JPA provider will
+	 *                           analyze, in order to make them available for use.
+	 *                           The set doesn't need to be modifiable.
+	 * @param propertyOverrides  The properties of the persistence unit to replace
+	 *                           or add, by name.
+	 *
+	 * @throws PersistenceException     If some error occurs while instantiating a
+	 *                                  entity manager factory for the persistence
+	 *                                  unit.
+	 * @throws IllegalArgumentException If some parameter is {@code null}, or
+	 *                                  {@code entityTypes} contains a {@code null}
+	 *                                  element.
+	 */
+	public void start(@NonNull final Set<Class<?>> entityTypes, @NonNull final Map<String, String> propertyOverrides) {
 		synchronized (runningStatusChangeLock) {
 			if (entityManagerFactory == null) {
 				final Configuration entityManagerFactoryConfiguration = new Configuration();
@@ -123,13 +182,84 @@ public class TextProcPersistence {
 					throw new PersistenceException("Couldn't parse the persistence descriptor");
 				}
 
+				final Properties persistenceProperties = persistenceDescriptor.getProperties();
+				persistenceProperties.putAll(propertyOverrides);
+				serializeWrites = tuneSQLite(persistenceProperties);
+
 				entityManagerFactory = entityManagerFactoryConfiguration.addProperties(
-					persistenceDescriptor.getProperties()
+					persistenceProperties
 				).buildSessionFactory();
+
+				// Readers block the writer of SQLite databases that are not in write-ahead
+				// log mode, so the writer thread would wait for the threads that wait for it
+				if (serializeWrites || !isSQLiteDatabase(persistenceProperties)) {
+					writerExecutor = new ThreadPoolExecutor(
+						1, 1, 0, TimeUnit.MILLISECONDS,
+						new ArrayBlockingQueue<>(MAXIMUM_PENDING_WRITE_WORKS),
+						(final Runnable runnable) -> {
+							final Thread writerThread = new Thread(runnable, "TextProc database writer");
+							writerThread.setDaemon(true);
+							return writerThread;
+						},
+						(final Runnable runnable, final ThreadPoolExecutor executor) -> {
+							// The queue is full. Wait for it to have room, instead of rejecting the work
+							if (executor.isShutdown()) {
+								throw new RejectedExecutionException("The database writer is stopped");
+							}
+
+							try {
+								executor.getQueue().put(runnable);
+							} catch (final InterruptedException exc) {
+								Thread.currentThread().interrupt();
+								throw new RejectedExecutionException(exc);
+							}
+						}
+					);
+				}
 			}
 		}
 	}
 
+	/**
+	 * Adds the SQLite tuning PRAGMAs to the given persistence unit properties, if
+	 * the database is a SQLite database and tuning was not disabled. PRAGMAs that
+	 * are already set are not changed.
+	 *
+	 * @param persistenceProperties The persistence unit properties.
+	 * @return True if the database will be accessed in write-ahead log mode, so
+	 *         writes can be serialized through a single connection while other
+	 *         connections read, false otherwise.
+	 */
+	private static boolean tuneSQLite(final Properties persistenceProperties) {
+		if (
+			!isSQLiteDatabase(persistenceProperties) ||
+			!Boolean.parseBoolean(persistenceProperties.getProperty(SQLITE_TUNING_PROPERTY_NAME, "true"))
+		) {
+			return false;
+		}
+
+		for (final Map.Entry<String, String> pragma : SQLITE_TUNING_PRAGMAS.entrySet()) {
+			persistenceProperties.putIfAbsent(DRIVER_PROPERTY_NAME_PREFIX + pragma.getKey(), pragma.getValue());
+		}
+
+		return WRITE_AHEAD_LOG_JOURNAL_MODE.equalsIgnoreCase(
+			persistenceProperties.getProperty(DRIVER_PROPERTY_NAME_PREFIX + JOURNAL_MODE_PRAGMA_NAME)
+		);
+	}
+
+	/**
+	 * Checks whether the persistence unit connects to a SQLite database.
+	 *
+	 * @param persistenceProperties The persistence unit properties.
+	 * @return True if the persistence unit connects to a SQLite database, false
+	 *         otherwise.
+	 */
+	private static boolean isSQLiteDatabase(final Properties persistenceProperties) {
+		return persistenceProperties.getProperty(
+			CONNECTION_URL_PROPERTY_NAME, persistenceProperties.getProperty(JPA_CONNECTION_URL_PROPERTY_NAME, "")
+		).startsWith(SQLITE_CONNECTION_URL_PREFIX);
+	}
+
 	/**
 	 * Stops the TextProc persistence access layer, so that all pending transactions
 	 * are finished and no new data access operations can start until it is started
@@ -139,6 +269,20 @@ public class TextProcPersistence {
 		synchronized (runningStatusChangeLock) {
 			final EntityManagerFactory currentEntityManagerFactory = entityManagerFactory;
 			if (currentEntityManagerFactory != null) {
+				final ExecutorService currentWriterExecutor = writerExecutor;
+
+				// Let the writer thread finish its pending units of work
+				if (currentWriterExecutor != null) {
+					writerExecutor = null;
+
+					currentWriterExecutor.shutdown();
+					try {
+						currentWriterExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+					} catch (final InterruptedException exc) {
+						Thread.currentThread().interrupt();
+					}
+				}
+
 				// Null the attribute first, so other threads see us as stopped
 				entityManagerFactory = null;
 
@@ -175,6 +319,167 @@ public class TextProcPersistence {
 		);
 	}
 
+	/**
+	 * Executes a unit of work with the JDBC connection of the entity manager of the
+	 * current thread, as returned by {@link #getEntityManager()}. Therefore, the
+	 * work takes part in the transaction of that entity manager, if it is active.
+	 * This is meant for data access operations that would be too slow if done
+	 * through the JPA provider, like inserting lots of rows.
+	 *
+	 * @param work The unit of work to execute.
+	 * @throws IllegalStateException    If the persistence access layer is not
+	 *                                  running.
+	 * @throws IllegalArgumentException If {@code work} is {@code null}.
+	 * @throws PersistenceException     If some data access error occurs during the
+	 *                                  unit of work.
+	 */
+	public void doWork(@NonNull final JdbcWork work) {
+		getEntityManager().unwrap(Session.class).doWork(work::execute);
+	}
+
+	/**
+	 * Checks whether writes to the database are serialized through a single writer
+	 * thread, as done by {@link #doWriteWork(JdbcWork)}. This happens when the
+	 * database only allows a writer at a time, but readers don't block it, like
+	 * SQLite in write-ahead log mode. Then, the threads that only read and write
+	 * through {@link #doWriteWork(JdbcWork)} can access the database concurrently.
+	 *
+	 * @return True if writes are serialized through a single writer thread, false
+	 *         otherwise.
+	 * @throws IllegalStateException If the persistence access layer is not running.
+	 */
+	public boolean isSerializingWrites() {
+		if (!isRunning()) {
+			throw new IllegalStateException(NOT_RUNNING_ERROR_MESSAGE);
+		}
+
+		return serializeWrites;
+	}
+
+	/**
+	 * Executes a unit of work that writes to the database. If writes are
+	 * serialized, as told by {@link #isSerializingWrites()}, the work is executed
+	 * by the writer thread in a transaction of its own, which is committed before
+	 * this method returns, and the calling thread waits for it. Otherwise, this
+	 * method is equivalent to {@link #doWork(JdbcWork)}, so the work takes part in
+	 * the transaction of the entity manager of the current thread.
+	 * <p>
+	 * When writes are serialized, the current thread should not have written to
+	 * the database in its own transaction, because then the writer thread would
+	 * wait for that transaction to finish.
+	 * </p>
+	 *
+	 * @param work The unit of work to execute.
+	 * @throws IllegalStateException    If the persistence access layer is not
+	 *                                  running.
+	 * @throws IllegalArgumentException If {@code work} is {@code null}.
+	 * @throws PersistenceException     If some data access error occurs during the
+	 *                                  unit of work. Then, nothing it did is
+	 *                                  committed when writes are serialized.
+	 */
+	public void doWriteWork(@NonNull final JdbcWork work) {
+		if (serializeWrites) {
+			awaitWriteWork(doWriteWorkAsynchronously(work));
+		} else {
+			doWork(work);
+		}
+	}
+
+	/**
+	 * Queues a unit of work that writes to the database, so it is executed by the
+	 * writer thread after the units of work queued before, in a transaction of its
+	 * own. This way, the calling thread can keep doing something else while the
+	 * work is done. If too many units of work are waiting for the writer thread,
+	 * this method blocks until there is room for another one.
+	 * <p>
+	 * When the database doesn't allow to read while the writer thread writes, like
+	 * SQLite databases not in write-ahead log mode, the work is executed by the
+	 * calling thread before this method returns instead, as done by
+	 * {@link #doWork(JdbcWork)}.
+	 * </p>
+	 *
+	 * @param work The unit of work to execute.
+	 * @return The result of the unit of work, which can be waited for with
+	 *         {@link #awaitWriteWork(Future)}. It is completed after the
+	 *         transaction of the unit of work is committed or rolled back.
+	 * @throws IllegalStateException    If the persistence access layer is not
+	 *                                  running.
+	 * @throws IllegalArgumentException If {@code work} is {@code null}.
+	 */
+	public CompletableFuture<Void> doWriteWorkAsynchronously(@NonNull final JdbcWork work) {
+		final ExecutorService currentWriterExecutor = writerExecutor;
+
+		if (!isRunning()) {
+			throw new IllegalStateException(NOT_RUNNING_ERROR_MESSAGE);
+		}
+
+		if (currentWriterExecutor == null) {
+			try {
+				doWork(work);
+				return CompletableFuture.completedFuture(null);
+			} catch (final PersistenceException exc) {
+				return CompletableFuture.failedFuture(exc);
+			}
+		}
+
+		try {
+			return CompletableFuture.runAsync(() -> {
+				// Get the transaction without decorating it, so it is never seen as dirty
+				final EntityTransaction transaction = getEntityManager().unwrap(Session.class).getTransaction();
+
+				final TransactionEndEvent transactionEndEvent = new TransactionEndEvent();
+
+				transactionEndEvent.origin = "doWriteWork";
+				transactionEndEvent.failed = true;
+
+				transaction.begin();
+				try {
+					doWork(work);
+
+					transactionEndEvent.begin();
+					transaction.commit();
+					transactionEndEvent.failed = false;
+				} finally {
+					if (transaction.isActive()) {
+						transactionEndEvent.begin();
+						transactionEndEvent.rolledBack = true;
+						transaction.rollback();
+						transactionEndEvent.failed = false;
+					}
+
+					transactionEndEvent.commit();
+				}
+			}, currentWriterExecutor);
+		} catch (final RejectedExecutionException exc) {
+			return CompletableFuture.failedFuture(exc);
+		}
+	}
+
+	/**
+	 * Waits for a unit of work queued by {@link #doWriteWorkAsynchronously(JdbcWork)}
+	 * to be done.
+	 *
+	 * @param writeWork The result of the unit of work.
+	 * @throws IllegalArgumentException If {@code writeWork} is {@code null}.
+	 * @throws PersistenceException     If some data access error occurred during
+	 *                                  the unit of work, so nothing it did was
+	 *                                  committed, or the wait was interrupted.
+	 */
+	public void awaitWriteWork(@NonNull final Future<?> writeWork) {
+		try {
+			writeWork.get();
+		} catch (final ExecutionException exc) {
+			final Throwable cause = exc.getCause();
+			throw cause instanceof PersistenceException ?
+				(PersistenceException) cause :
+				new PersistenceException("An exception occurred while writing to the database", cause);
+		} catch (final InterruptedException exc) {
+			// The writer thread will finish the work anyway
+			Thread.currentThread().interrupt();
+			throw new PersistenceException("Interrupted while waiting for a write to the database", exc);
+		}
+	}
+
 	/**
 	 * Commits the dirty transactions which were not rolled back, and then closes
 	 * all the opened entity managers. If other parts of the application are using
@@ -220,44 +525,110 @@ public class TextProcPersistence {
 		// that schedule transactions in a way that doesn't guarantee that no
 		// deadlocks will occur when committing them in any order. See:
 		// https://stackoverflow.com/questions/13966467/how-to-avoid-lock-wait-timeout-exceeded-exception
+		final EntityFlushEvent entityFlushEvent = new EntityFlushEvent();
 		final Iterator<TimestampedEntityTransaction> dirtyTransactionsIter = dirtyTransactions.iterator();
+
+		entityFlushEvent.begin();
 		while (dirtyTransactionsIter.hasNext()) {
-			final EntityTransaction transaction = dirtyTransactionsIter.next().getEntityTransaction();
+			finishTransaction(dirtyTransactionsIter.next().getEntityTransaction(), "flushEntities");
+			dirtyTransactionsIter.remove();
+			++entityFlushEvent.transactions;
+		}
 
-			try {
-				if (transaction.isActive()) {
-					if (transaction.getRollbackOnly()) {
-						transaction.rollback();
-					} else {
-						transaction.commit();
-					}
-				}
-			} catch (final Exception exc) {
-				TextProcLogging.getLogger().log(
-					Level.WARNING,
-					"An exception occurred while committing or rolling back a transaction. The database status may be inconsistent",
-					exc
+		threadEntityManager
+			.values().parallelStream()
+			.forEach(TextProcPersistence::closeEntityManager);
+		threadEntityManager.clear();
+
+		entityFlushEvent.commit();
+	}
+
+	/**
+	 * Commits the transaction of the entity manager of the current thread, unless
+	 * it was marked for roll back, and then closes that entity manager. Unlike
+	 * {@link #flushEntities()}, the transactions and entity managers of other
+	 * threads are left untouched, so threads that access the database concurrently
+	 * can finish their units of work independently. Subsequent calls to
+	 * {@link #getEntityManager()} in the current thread will return a new entity
+	 * manager object.
+	 *
+	 * @throws IllegalStateException If the application is not running.
+	 */
+	public void flushThreadEntities() {
+		if (!isRunning()) {
+			throw new IllegalStateException(NOT_RUNNING_ERROR_MESSAGE);
+		}
+
+		final EntityManager entityManager = threadEntityManager.remove(Thread.currentThread());
+		if (entityManager != null) {
+			if (entityManager.isOpen()) {
+				// Get the transaction without decorating it, so it doesn't become dirty again
+				final EntityTransaction transaction = entityManager.unwrap(Session.class).getTransaction();
+
+				dirtyTransactions.removeIf(
+					(final TimestampedEntityTransaction dirtyTransaction) ->
+						dirtyTransaction.getEntityTransaction() == transaction
 				);
+
+				finishTransaction(transaction, "flushThreadEntities");
 			}
 
-			dirtyTransactionsIter.remove();
+			closeEntityManager(entityManager);
 		}
+	}
 
-		threadEntityManager
-			.values().parallelStream()
-			.forEach(
-				(final EntityManager entityManager) -> {
-					try {
-						if (entityManager.isOpen()) {
-							entityManager.close();
-						}
-					} catch (final Exception exc) {
-						TextProcLogging.getLogger().log(
-							Level.WARNING, "An exception occurred while closing a entity manager", exc
-						);
-					}
+	/**
+	 * Commits or rolls back the given transaction, if it is active, depending on
+	 * whether it was marked for roll back. Any exception is logged.
+	 *
+	 * @param transaction The transaction to finish.
+	 * @param origin      What finishes the transaction, for diagnostic purposes.
+	 */
+	private static void finishTransaction(final EntityTransaction transaction, final String origin) {
+		final TransactionEndEvent transactionEndEvent = new TransactionEndEvent();
+
+		transactionEndEvent.origin = origin;
+		transactionEndEvent.failed = true;
+
+		try {
+			if (transaction.isActive()) {
+				transactionEndEvent.begin();
+
+				if (transaction.getRollbackOnly()) {
+					transactionEndEvent.rolledBack = true;
+					transaction.rollback();
+				} else {
+					transaction.commit();
 				}
+
+				transactionEndEvent.failed = false;
+				transactionEndEvent.commit();
+			}
+		} catch (final Exception exc) {
+			transactionEndEvent.commit();
+
+			TextProcLogging.getLogger().log(
+				Level.WARNING,
+				"An exception occurred while committing or rolling back a transaction. The database status may be inconsistent",
+				exc
 			);
-		threadEntityManager.clear();
+		}
+	}
+
+	/**
+	 * Closes the given entity manager, if it is open. Any exception is logged.
+	 *
+	 * @param entityManager The entity manager to close.
+	 */
+	private static void closeEntityManager(final EntityManager entityManager) {
+		try {
+			if (entityManager.isOpen()) {
+				entityManager.close();
+			}
+		} catch (final Exception exc) {
+			TextProcLogging.getLogger().log(
+				Level.WARNING, "An exception occurred while closing a entity manager", exc
+			);
+		}
 	}
 }
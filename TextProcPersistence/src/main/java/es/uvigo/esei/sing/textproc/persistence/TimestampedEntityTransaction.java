@@ -38,7 +38,7 @@ final class TimestampedEntityTransaction implements Comparable<TimestampedEntity
 
 	@Override
 	public int compareTo(final TimestampedEntityTransaction o) {
-		return (int) Math.max(Math.min(Integer.MIN_VALUE, creationId - o.creationId), Integer.MAX_VALUE);
+		return Long.compare(creationId, o.creationId);
 	}
 
 	@Override
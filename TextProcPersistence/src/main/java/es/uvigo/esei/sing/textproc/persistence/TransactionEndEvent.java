@@ -0,0 +1,33 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.persistence;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event emitted when the persistence access layer
+ * commits or rolls back a database transaction. Its duration is the time that
+ * committing or rolling back took.
+ *
+ * @author Alejandro González García
+ */
+@Name("es.uvigo.esei.sing.textproc.TransactionEnd")
+@Label("Transaction End")
+@Description("A database transaction committed or rolled back by TextProc")
+@Category({ "TextProc", "Persistence" })
+final class TransactionEndEvent extends jdk.jfr.Event {
+	@Label("Origin")
+	@Description("What ended the transaction")
+	String origin;
+
+	@Label("Rolled Back")
+	@Description("Whether the transaction was rolled back instead of committed")
+	boolean rolledBack;
+
+	@Label("Failed")
+	@Description("Whether committing or rolling back the transaction failed")
+	boolean failed;
+}
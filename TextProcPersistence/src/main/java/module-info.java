@@ -12,6 +12,7 @@ module es.uvigo.esei.sing.textproc.persistence {
 	requires transitive java.sql;
 	requires org.hibernate.orm.core;
 	requires lombok;
+	requires jdk.jfr;
 
 	exports es.uvigo.esei.sing.textproc.persistence;
 }
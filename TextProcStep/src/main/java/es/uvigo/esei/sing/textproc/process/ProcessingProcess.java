@@ -3,13 +3,20 @@
 package es.uvigo.esei.sing.textproc.process;
 
 import java.io.InputStream;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
 import javax.xml.XMLConstants;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
@@ -24,12 +31,19 @@ import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
+import es.uvigo.esei.sing.textproc.persistence.JdbcWork;
+import es.uvigo.esei.sing.textproc.persistence.TextProcPersistence;
 import es.uvigo.esei.sing.textproc.process.xml.definition.ProcessingProcessDefinition;
+import es.uvigo.esei.sing.textproc.step.AbstractProcessingStep;
 import es.uvigo.esei.sing.textproc.step.ProcessingException;
 import es.uvigo.esei.sing.textproc.step.ProcessingStepService;
 import es.uvigo.esei.sing.textproc.step.ProcessingStepServices;
+import es.uvigo.esei.sing.textproc.step.internal.ProcessingStepInterface;
+import es.uvigo.esei.sing.textproc.step.internal.ProcessingStepMetadata;
+import es.uvigo.esei.sing.textproc.step.util.VariableHolder;
 import es.uvigo.esei.sing.textproc.step.xml.definition.ProcessingStepDefinition;
 import es.uvigo.esei.sing.textproc.step.xml.definition.ProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.WorkerThreadsProcessingStepParameter;
 import lombok.NonNull;
 
 /**
@@ -41,6 +55,9 @@ import lombok.NonNull;
  */
 public final class ProcessingProcess {
 	private static final String PROCESS_DECLARATION_XSD_RESOURCE = "/process_definition.xsd";
+	private static final String WORKER_THREADS_PROCESSING_STEP_PARAMETER_NAME = new WorkerThreadsProcessingStepParameter().getName();
+	// SQLite locks the whole database to write, so steps that write concurrently would time out
+	private static final String SINGLE_WRITER_DATABASE_PRODUCT_NAME = "SQLite";
 
 	/**
 	 * Parses and executes the process declaration defined in the given input
@@ -53,6 +70,32 @@ public final class ProcessingProcess {
 	 * @throws IllegalArgumentException If {@code declarationInput} is {@code null}.
 	 */
 	public void executeProcessDeclaration(@NonNull final InputStream declarationInput) throws ProcessingException {
+		executeProcessDeclaration(declarationInput, false);
+	}
+
+	/**
+	 * Parses and executes the process declaration defined in the given input
+	 * stream, optionally resuming a previous execution of it that was interrupted.
+	 * Steps that don't depend on each other are executed concurrently, as
+	 * scheduled by {@link ProcessingStepScheduler}. The steps that started and
+	 * completed are recorded in the database as the process is executed. When
+	 * resuming, the steps that the previous execution completed with the same
+	 * parameters are skipped, and the steps that it started are resumed as
+	 * described in {@link ProcessingStepInterface#resume(Map)}, unless some step
+	 * they depend on is executed again. This method doesn't return until all
+	 * processes were executed.
+	 *
+	 * @param declarationInput The input stream which contains the process
+	 *                         declaration, in XML.
+	 * @param resume           Whether to resume the previous execution of the
+	 *                         process.
+	 * @throws ProcessingException      If an exception occurs during parsing or
+	 *                                  execution.
+	 * @throws IllegalArgumentException If {@code declarationInput} is {@code null}.
+	 */
+	public void executeProcessDeclaration(
+		@NonNull final InputStream declarationInput, final boolean resume
+	) throws ProcessingException {
 		ProcessingProcessDefinition processDefinition;
 
 		// Unmarshall the process definition
@@ -115,8 +158,15 @@ public final class ProcessingProcess {
 			);
 		}
 
-		// We have the process definition loaded to a object graph. Execute each step in order
-		for (final ProcessingStepDefinition stepDefinition : processDefinition.getProcessingSteps()) {
+		// We have the process definition loaded to a object graph. Convert the parameters of each step to a map
+		final List<ProcessingStepDefinition> stepDefinitions = processDefinition.getProcessingSteps();
+		final List<ProcessingStepInterface> steps = new ArrayList<>(stepDefinitions.size());
+		final List<Map<String, String>> stepsParameters = new ArrayList<>(stepDefinitions.size());
+		final List<List<String>> stepsInputs = new ArrayList<>(stepDefinitions.size());
+		final List<List<String>> stepsOutputs = new ArrayList<>(stepDefinitions.size());
+
+		for (final ProcessingStepDefinition stepDefinition : stepDefinitions) {
+			final ProcessingStepInterface step = stepDefinition.getAction();
 			Map<String, String> parametersMap;
 			final List<ProcessingStepParameter> parameters = stepDefinition.getParameters();
 
@@ -128,7 +178,190 @@ public final class ProcessingProcess {
 				parametersMap.put(parameter.getName(), parameter.getValue());
 			}
 
-			stepDefinition.getAction().execute(Collections.unmodifiableMap(parametersMap));
+			step.setStepIndex(steps.size());
+			steps.add(step);
+			stepsParameters.add(Collections.unmodifiableMap(parametersMap));
+			stepsInputs.add(stepDefinition.getInputs());
+			stepsOutputs.add(stepDefinition.getOutputs());
+		}
+
+		// Find out which steps depend on each other, and which steps the execution we resume
+		// started or completed, or forget about them
+		final ProcessingStepScheduler scheduler = new ProcessingStepScheduler(steps, stepsParameters, stepsInputs, stepsOutputs);
+		final Boolean[] stepsStatus = new Boolean[steps.size()];
+		final String[] stepsParametersDigests = new String[steps.size()];
+		for (int i = 0; i < steps.size(); ++i) {
+			stepsParametersDigests[i] = ProcessingStepMetadata.digestParameters(stepsParameters.get(i));
+		}
+
+		final VariableHolder<Boolean> singleWriterDatabase = new VariableHolder<>(false);
+		doWorkInTransaction((final Connection connection) -> {
+			singleWriterDatabase.setVariable(
+				SINGLE_WRITER_DATABASE_PRODUCT_NAME.equalsIgnoreCase(connection.getMetaData().getDatabaseProductName())
+			);
+
+			if (resume) {
+				for (int i = 0; i < steps.size(); ++i) {
+					stepsStatus[i] = ProcessingStepMetadata.getStepStatus(
+						connection, i, steps.get(i).getClass().getSimpleName(), stepsParametersDigests[i]
+					);
+				}
+			} else {
+				ProcessingStepMetadata.clearSteps(connection);
+			}
+		});
+
+		// Steps write to the database concurrently, but some databases only allow a writer at a time,
+		// unless the persistence layer serializes writes for them
+		final int cpuBudget = processDefinition.getCpuBudget() != null ?
+			processDefinition.getCpuBudget() : Runtime.getRuntime().availableProcessors();
+		final int maximumConcurrentSteps = singleWriterDatabase.getVariable() && !TextProcPersistence.get().isSerializingWrites() ?
+			1 : scheduler.getMaximumConcurrency();
+
+		// Share the CPU budget between the steps that can be executed at the same time,
+		// unless they say how many worker threads they use
+		final List<Map<String, String>> scheduledStepsParameters = new ArrayList<>(steps.size());
+		final int[] stepsWorkerThreads = new int[steps.size()];
+		for (int i = 0; i < steps.size(); ++i) {
+			Map<String, String> parameters = stepsParameters.get(i);
+
+			stepsWorkerThreads[i] = 1;
+			if (steps.get(i) instanceof AbstractProcessingStep) {
+				if (!parameters.containsKey(WORKER_THREADS_PROCESSING_STEP_PARAMETER_NAME)) {
+					final Map<String, String> parametersWithWorkerThreads = new HashMap<>(parameters);
+					parametersWithWorkerThreads.put(
+						WORKER_THREADS_PROCESSING_STEP_PARAMETER_NAME, Integer.toString(Math.max(1, cpuBudget / maximumConcurrentSteps))
+					);
+					parameters = Collections.unmodifiableMap(parametersWithWorkerThreads);
+				}
+
+				try {
+					stepsWorkerThreads[i] = Integer.parseInt(parameters.get(WORKER_THREADS_PROCESSING_STEP_PARAMETER_NAME));
+				} catch (final NumberFormatException exc) {
+					// The step will complain about it when validating its parameters
+				}
+			}
+
+			scheduledStepsParameters.add(parameters);
+		}
+
+		// Fuse steps that read the documents processed by the previous step, so
+		// they are handed over in memory
+		final boolean[] executedByNextStep = ProcessingStepFusion.fuseSteps(steps, scheduledStepsParameters);
+
+		if (resume) {
+			System.out.println();
+			System.out.println(
+				"> Resuming process execution. " +
+				Arrays.stream(stepsStatus).filter(Boolean.TRUE::equals).count() + " of " + steps.size() +
+				" steps were completed."
+			);
+		}
+
+		// Execute the steps as soon as the steps they depend on are done. Fused steps are executed by the next step
+		final Set<Integer> executedSteps = ConcurrentHashMap.newKeySet();
+		scheduler.execute(
+			executedByNextStep, stepsWorkerThreads, cpuBudget, maximumConcurrentSteps,
+			(final int firstStep, final int lastStep) -> {
+				boolean completed = true;
+				boolean started = false;
+
+				// Steps must be executed again if some step they depend on is executed again
+				for (int i = firstStep; i <= lastStep; ++i) {
+					completed = completed && Boolean.TRUE.equals(stepsStatus[i]);
+					started = started || stepsStatus[i] != null;
+
+					for (int j = 0; j < firstStep; ++j) {
+						if (scheduler.dependsOn(i, j) && executedSteps.contains(j)) {
+							completed = started = false;
+						}
+					}
+				}
+
+				// Fused steps are completed together
+				if (completed) {
+					return;
+				}
+
+				setStepsStatus(firstStep, lastStep, steps, stepsParametersDigests, false);
+
+				if (started) {
+					steps.get(lastStep).resume(scheduledStepsParameters.get(lastStep));
+				} else {
+					steps.get(lastStep).execute(scheduledStepsParameters.get(lastStep));
+				}
+
+				setStepsStatus(firstStep, lastStep, steps, stepsParametersDigests, true);
+
+				for (int i = firstStep; i <= lastStep; ++i) {
+					executedSteps.add(i);
+				}
+			}
+		);
+	}
+
+	/**
+	 * Records that a group of consecutive steps of the process was started or
+	 * completed.
+	 *
+	 * @param firstStep         The index of the first step of the group.
+	 * @param lastStep          The index of the last step of the group.
+	 * @param steps             The steps of the process.
+	 * @param parametersDigests The digests of the parameters of each step, as
+	 *                          declared.
+	 * @param completed         Whether to record the steps as completed, or
+	 *                          just started.
+	 * @throws ProcessingException If some data access error occurs.
+	 */
+	private static void setStepsStatus(
+		final int firstStep, final int lastStep, final List<ProcessingStepInterface> steps,
+		final String[] parametersDigests, final boolean completed
+	) throws ProcessingException {
+		doWorkInTransaction((final Connection connection) -> {
+			for (int i = firstStep; i <= lastStep; ++i) {
+				final String step = steps.get(i).getClass().getSimpleName();
+
+				if (completed) {
+					ProcessingStepMetadata.setStepCompleted(connection, i, step, parametersDigests[i]);
+				} else {
+					ProcessingStepMetadata.setStepStarted(connection, i, step, parametersDigests[i]);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Executes a unit of work that writes to the database, in a transaction that
+	 * is committed if the work completes. Unless writes are serialized, the work
+	 * is executed with the JDBC connection of the entity manager of the current
+	 * thread.
+	 *
+	 * @param work The unit of work to execute.
+	 * @throws ProcessingException If some data access error occurs.
+	 */
+	private static void doWorkInTransaction(final JdbcWork work) throws ProcessingException {
+		final EntityTransaction transaction = TextProcPersistence.get().getEntityManager().getTransaction();
+		final boolean startedTransaction = !transaction.isActive();
+		boolean transactionSuccessful = false;
+
+		if (startedTransaction) {
+			transaction.begin();
+		}
+
+		try {
+			TextProcPersistence.get().doWriteWork(work);
+
+			transactionSuccessful = true;
+		} catch (final PersistenceException exc) {
+			throw new ProcessingException("An exception occurred while accessing the process checkpoint", exc);
+		} finally {
+			if (startedTransaction) {
+				if (transactionSuccessful) {
+					transaction.commit();
+				} else {
+					transaction.rollback();
+				}
+			}
 		}
 	}
 }
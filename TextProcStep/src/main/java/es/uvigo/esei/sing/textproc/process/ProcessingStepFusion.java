@@ -0,0 +1,484 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.process;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+
+import es.uvigo.esei.sing.textproc.entity.ProcessedDocument;
+import es.uvigo.esei.sing.textproc.entity.ProcessedDocumentWithTitle;
+import es.uvigo.esei.sing.textproc.logging.TextProcLogging;
+import es.uvigo.esei.sing.textproc.persistence.TextProcPersistence;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import es.uvigo.esei.sing.textproc.step.ProcessingStepService;
+import es.uvigo.esei.sing.textproc.step.ProcessingStepServices;
+import es.uvigo.esei.sing.textproc.step.internal.ProcessedDocumentMapping;
+import es.uvigo.esei.sing.textproc.step.internal.ProcessingStepInterface;
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.IncrementalProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.PersistResultsProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.PrimaryKeyColumnProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.TextColumnProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.TextDocumentTableNameProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.TextDocumentWithTitleTableNameProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.TitleColumnProcessingStepParameter;
+import lombok.NonNull;
+
+/**
+ * Plans the fusion of consecutive processing steps of a process, where a step
+ * reads the documents processed by the previous step, so the documents are
+ * handed over between them in memory instead of round-tripping through the
+ * database.
+ * <p>
+ * A step reads the documents processed by the previous step when its input
+ * tables are the tables of the processed document types of the previous step,
+ * either directly or through views that just rename them (like
+ * {@code CREATE VIEW tokenized_submission AS SELECT * FROM tokenized_text_with_title_document}),
+ * and the column names of its input match the columns of those tables.
+ * </p>
+ *
+ * @author Alejandro González García
+ */
+final class ProcessingStepFusion {
+	private static final String TEXT_DOCUMENT_WITH_TITLE_TABLE_NAME_PROCESSING_STEP_PARAMETER_NAME = new TextDocumentWithTitleTableNameProcessingStepParameter().getName();
+	private static final String TEXT_DOCUMENT_TABLE_NAME_PROCESSING_STEP_PARAMETER_NAME = new TextDocumentTableNameProcessingStepParameter().getName();
+	private static final String PRIMARY_KEY_COLUMN_PROCESSING_STEP_PARAMETER_NAME = new PrimaryKeyColumnProcessingStepParameter().getName();
+	private static final String TEXT_COLUMN_PROCESSING_STEP_PARAMETER_NAME = new TextColumnProcessingStepParameter().getName();
+	private static final String TITLE_COLUMN_PROCESSING_STEP_PARAMETER_NAME = new TitleColumnProcessingStepParameter().getName();
+	private static final String PERSIST_RESULTS_PROCESSING_STEP_PARAMETER_NAME = new PersistResultsProcessingStepParameter().getName();
+	private static final String INCREMENTAL_PROCESSING_STEP_PARAMETER_NAME = new IncrementalProcessingStepParameter().getName();
+
+	// Keep in sync with the defaults of AbstractProcessingStep
+	private static final String DEFAULT_PRIMARY_KEY_COLUMN = "id";
+	private static final String DEFAULT_TEXT_COLUMN = "text";
+	private static final String DEFAULT_TITLE_COLUMN = "title";
+
+	// Views may be defined in terms of other views. Don't follow cycles forever
+	private static final int MAXIMUM_VIEW_DEPTH = 8;
+
+	private static final Pattern VIEW_DEFINITION_PATTERN = Pattern.compile(
+		"^\\s*(?:CREATE\\b.*?\\bAS\\s+)?SELECT\\s+(.+?)\\s+FROM\\s+([^\\s;(),]+)\\s*;?\\s*$",
+		Pattern.CASE_INSENSITIVE | Pattern.DOTALL
+	);
+	private static final Pattern PROJECTED_COLUMN_PATTERN = Pattern.compile(
+		"^(?:[^\\s.]+\\.)?([^\\s.]+)(?:\\s+(?:AS\\s+)?([^\\s.]+))?$",
+		Pattern.CASE_INSENSITIVE
+	);
+
+	private ProcessingStepFusion() {}
+
+	/**
+	 * Fuses every pair of consecutive processing steps of a process that can be
+	 * fused, and tells which steps will be executed by the step next to them as a
+	 * result.
+	 * <p>
+	 * The processed documents of a fused upstream step are stored in the database
+	 * only if its {@code persistResults} parameter is true, or a later step that
+	 * is not fused with it reads them.
+	 * </p>
+	 *
+	 * @param steps      The processing steps of the process, in execution order.
+	 * @param parameters The parameters of each processing step.
+	 * @return An array whose elements are true if and only if the step at the same
+	 *         position will be executed by the next step, so it must not be
+	 *         executed on its own.
+	 * @throws ProcessingException      If some step parameter is invalid.
+	 * @throws IllegalArgumentException If some parameter is {@code null}, or both
+	 *                                  lists differ in size.
+	 */
+	static boolean[] fuseSteps(
+		@NonNull final List<ProcessingStepInterface> steps, @NonNull final List<Map<String, String>> parameters
+	) throws ProcessingException {
+		return fuseSteps(steps, parameters, getProcessedDocumentTypes(steps));
+	}
+
+	/**
+	 * Fuses every pair of consecutive processing steps of a process that can be
+	 * fused, as {@link #fuseSteps(List, List)} does, but with the given processed
+	 * document types instead of the ones their services declare.
+	 *
+	 * @param steps                  The processing steps of the process, in
+	 *                               execution order.
+	 * @param parameters             The parameters of each processing step.
+	 * @param processedDocumentTypes The processed document types of each
+	 *                               processing step.
+	 * @return An array whose elements are true if and only if the step at the same
+	 *         position will be executed by the next step, so it must not be
+	 *         executed on its own.
+	 * @throws ProcessingException      If some step parameter is invalid.
+	 * @throws IllegalArgumentException If some parameter is {@code null}, or the
+	 *                                  lists differ in size.
+	 */
+	static boolean[] fuseSteps(
+		@NonNull final List<ProcessingStepInterface> steps, @NonNull final List<Map<String, String>> parameters,
+		@NonNull final List<Set<Class<? extends ProcessedDocument>>> processedDocumentTypes
+	) throws ProcessingException {
+		final boolean[] executedByNextStep = new boolean[steps.size()];
+
+		if (steps.size() != parameters.size() || steps.size() != processedDocumentTypes.size()) {
+			throw new IllegalArgumentException("There must be parameters and processed document types for every step");
+		}
+
+		if (steps.size() < 2) {
+			return executedByNextStep;
+		}
+
+		final List<List<String>> inputTables;
+		try {
+			inputTables = resolveInputTables(parameters);
+		} catch (final PersistenceException exc) {
+			// Fusing steps is an optimization. Don't fail if we can't know how to
+			TextProcLogging.getLogger().log(
+				Level.WARNING, "Couldn't resolve the input tables of the steps. Steps won't be fused", exc
+			);
+
+			return executedByNextStep;
+		}
+
+		for (int i = 1; i < steps.size(); ++i) {
+			final Set<Class<? extends ProcessedDocument>> upstreamTypes = processedDocumentTypes.get(i - 1);
+
+			if (
+				!readsDocumentsOf(inputTables.get(i), parameters.get(i), upstreamTypes) ||
+				isIncremental(parameters.get(i - 1)) != isIncremental(parameters.get(i))
+			) {
+				// A full step can't process just the new documents of an incremental step, and vice versa
+				continue;
+			}
+
+			// Persist results explicitly requested or read later by another step
+			boolean persistUpstreamResults = AbstractProcessingStepParameter.convertValueToBoolean(
+				parameters.get(i - 1).getOrDefault(PERSIST_RESULTS_PROCESSING_STEP_PARAMETER_NAME, "false")
+			);
+			for (int j = i + 1; j < steps.size() && !persistUpstreamResults; ++j) {
+				persistUpstreamResults = readsTablesOf(inputTables.get(j), upstreamTypes);
+			}
+
+			executedByNextStep[i - 1] = steps.get(i).fuseWith(
+				steps.get(i - 1), parameters.get(i - 1), persistUpstreamResults
+			);
+		}
+
+		return executedByNextStep;
+	}
+
+	/**
+	 * Retrieves the processed document types of each processing step, according
+	 * to their services.
+	 *
+	 * @param steps The processing steps.
+	 * @return The processed document types of each step, in the same order. Steps
+	 *         without a service have no processed document types.
+	 */
+	static List<Set<Class<? extends ProcessedDocument>>> getProcessedDocumentTypes(
+		final List<ProcessingStepInterface> steps
+	) {
+		final Map<Class<?>, Set<Class<? extends ProcessedDocument>>> serviceTypes = new HashMap<>();
+		final List<Set<Class<? extends ProcessedDocument>>> processedDocumentTypes = new ArrayList<>(steps.size());
+
+		for (final ProcessingStepService stepService : ProcessingStepServices.getServiceLoader()) {
+			serviceTypes.put(stepService.create().getClass(), stepService.getProcessedDocumentTypes());
+		}
+
+		for (final ProcessingStepInterface step : steps) {
+			processedDocumentTypes.add(serviceTypes.getOrDefault(step.getClass(), Collections.emptySet()));
+		}
+
+		return processedDocumentTypes;
+	}
+
+	/**
+	 * Resolves the input tables of every processing step to the tables they read
+	 * documents from, following views that just rename tables.
+	 *
+	 * @param parameters The parameters of each processing step.
+	 * @return The lowercase names of the input tables of each step, with the table
+	 *         for documents with title first, and the table for documents without
+	 *         title last. A table name is {@code null} if it couldn't be resolved.
+	 * @throws PersistenceException If a data access error occurs.
+	 */
+	private static List<List<String>> resolveInputTables(final List<Map<String, String>> parameters) {
+		final List<List<String>> inputTableNames = new ArrayList<>(parameters.size());
+
+		for (final Map<String, String> stepParameters : parameters) {
+			inputTableNames.add(getInputTableNames(stepParameters));
+		}
+
+		return resolveTables(inputTableNames);
+	}
+
+	/**
+	 * Retrieves the names of the input tables of a processing step, as given in
+	 * its parameters.
+	 *
+	 * @param parameters The parameters of the step.
+	 * @return The names of the input tables of the step, with the table for
+	 *         documents with title first, and the table for documents without
+	 *         title last. A table name is {@code null} if it was not given.
+	 */
+	static List<String> getInputTableNames(final Map<String, String> parameters) {
+		return Arrays.asList(
+			parameters.get(TEXT_DOCUMENT_WITH_TITLE_TABLE_NAME_PROCESSING_STEP_PARAMETER_NAME),
+			parameters.get(TEXT_DOCUMENT_TABLE_NAME_PROCESSING_STEP_PARAMETER_NAME)
+		);
+	}
+
+	/**
+	 * Resolves groups of table or view names to the tables that actually hold
+	 * their rows, following views that just rename tables.
+	 *
+	 * @param tableNames The groups of table or view names. Names may be
+	 *                   {@code null}.
+	 * @return The lowercase names of the resolved tables, grouped and ordered like
+	 *         the given names. A table name is {@code null} if it was {@code null}
+	 *         or couldn't be resolved.
+	 * @throws PersistenceException If a data access error occurs.
+	 */
+	static List<List<String>> resolveTables(final List<List<String>> tableNames) {
+		final List<List<String>> resolvedTableNames = new ArrayList<>(tableNames.size());
+		final EntityTransaction transaction = TextProcPersistence.get().getEntityManager().getTransaction();
+		final boolean startedTransaction = !transaction.isActive();
+
+		boolean transactionSuccessful = false;
+
+		if (startedTransaction) {
+			transaction.begin();
+		}
+
+		try {
+			TextProcPersistence.get().doWork((final Connection connection) -> {
+				final Map<String, String> resolvedTables = new HashMap<>();
+
+				for (final List<String> tableNameGroup : tableNames) {
+					final List<String> resolvedTableNameGroup = new ArrayList<>(tableNameGroup.size());
+
+					for (final String tableName : tableNameGroup) {
+						resolvedTableNameGroup.add(tableName == null ? null : resolvedTables.computeIfAbsent(
+							tableName.toLowerCase(Locale.ROOT), (final String name) -> {
+								try {
+									return resolveTable(connection, name);
+								} catch (final SQLException exc) {
+									throw new PersistenceException(exc);
+								}
+							}
+						));
+					}
+
+					resolvedTableNames.add(resolvedTableNameGroup);
+				}
+			});
+
+			transactionSuccessful = true;
+		} finally {
+			if (startedTransaction) {
+				// Nothing was written, but release any lock held by the reads
+				if (transactionSuccessful) {
+					transaction.commit();
+				} else {
+					transaction.rollback();
+				}
+			}
+		}
+
+		return resolvedTableNames;
+	}
+
+	/**
+	 * Resolves a table or view name to the table that actually holds its rows,
+	 * following views that just select columns of another table or view, without
+	 * filtering or transforming them.
+	 *
+	 * @param connection The connection to query view definitions with.
+	 * @param tableName  The lowercase table or view name.
+	 * @return The lowercase name of the table that holds the rows, or {@code null}
+	 *         if it's a view that doesn't just rename a table.
+	 * @throws SQLException If a data access error occurs.
+	 */
+	private static String resolveTable(final Connection connection, final String tableName) throws SQLException {
+		final boolean sqlite = "SQLite".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+		final String viewDefinitionQuery = sqlite ?
+			"SELECT sql FROM sqlite_master WHERE type = 'view' AND LOWER(name) = ?" :
+			"SELECT view_definition FROM information_schema.views WHERE LOWER(table_name) = ?";
+		String resolvedTable = tableName;
+
+		try (final PreparedStatement viewDefinitionStatement = connection.prepareStatement(viewDefinitionQuery)) {
+			for (int depth = 0; depth < MAXIMUM_VIEW_DEPTH; ++depth) {
+				final String viewDefinition;
+
+				viewDefinitionStatement.setString(1, resolvedTable);
+				try (final ResultSet viewDefinitionResult = viewDefinitionStatement.executeQuery()) {
+					if (!viewDefinitionResult.next()) {
+						// Not a view, so it must be a table
+						return resolvedTable;
+					}
+
+					viewDefinition = viewDefinitionResult.getString(1);
+				}
+
+				final Matcher viewDefinitionMatcher = viewDefinition == null ?
+					null : VIEW_DEFINITION_PATTERN.matcher(viewDefinition);
+
+				if (viewDefinitionMatcher == null || !viewDefinitionMatcher.matches() || !isIdentityProjection(viewDefinitionMatcher.group(1))) {
+					return null;
+				}
+
+				resolvedTable = unquote(viewDefinitionMatcher.group(2)).toLowerCase(Locale.ROOT);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Checks whether the projection of a select statement returns the selected
+	 * columns as they are, without transforming or renaming them.
+	 *
+	 * @param projection The projection of the select statement.
+	 * @return True if the projection is an identity projection, false otherwise.
+	 */
+	private static boolean isIdentityProjection(final String projection) {
+		if ("*".equals(projection.trim())) {
+			return true;
+		}
+
+		for (final String projectedColumn : projection.split(",")) {
+			final Matcher projectedColumnMatcher = PROJECTED_COLUMN_PATTERN.matcher(projectedColumn.trim());
+
+			if (!projectedColumnMatcher.matches()) {
+				return false;
+			}
+
+			final String columnAlias = projectedColumnMatcher.group(2);
+
+			if (
+				columnAlias != null &&
+				!unquote(columnAlias).equalsIgnoreCase(unquote(projectedColumnMatcher.group(1)))
+			) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Checks whether a processing step reads the processed documents of the given
+	 * types, and nothing else, with the column names they are stored with.
+	 *
+	 * @param inputTables            The resolved input tables of the step.
+	 * @param parameters             The parameters of the step.
+	 * @param processedDocumentTypes The processed document types.
+	 * @return True if the step reads the described documents, false otherwise.
+	 * @throws ProcessingException If some processed document type is not a mapped
+	 *                             entity.
+	 */
+	private static boolean readsDocumentsOf(
+		final List<String> inputTables, final Map<String, String> parameters,
+		final Set<Class<? extends ProcessedDocument>> processedDocumentTypes
+	) throws ProcessingException {
+		final String primaryKeyColumn = parameters.getOrDefault(
+			PRIMARY_KEY_COLUMN_PROCESSING_STEP_PARAMETER_NAME, DEFAULT_PRIMARY_KEY_COLUMN
+		);
+		final String textColumn = parameters.getOrDefault(TEXT_COLUMN_PROCESSING_STEP_PARAMETER_NAME, DEFAULT_TEXT_COLUMN);
+		final String titleColumn = parameters.getOrDefault(TITLE_COLUMN_PROCESSING_STEP_PARAMETER_NAME, DEFAULT_TITLE_COLUMN);
+		final Set<String> readTables = new HashSet<>(2);
+
+		if (processedDocumentTypes.size() != inputTables.size()) {
+			return false;
+		}
+
+		for (final Class<? extends ProcessedDocument> processedDocumentType : processedDocumentTypes) {
+			final ProcessedDocumentMapping mapping = ProcessedDocumentMapping.of(processedDocumentType);
+			final boolean withTitle = ProcessedDocumentWithTitle.class.isAssignableFrom(processedDocumentType);
+			final String tableName = mapping.getTableName().toLowerCase(Locale.ROOT);
+
+			if (
+				!tableName.equals(inputTables.get(withTitle ? 0 : 1)) ||
+				!primaryKeyColumn.equalsIgnoreCase(mapping.getPrimaryKeyColumnName()) ||
+				!textColumn.equalsIgnoreCase(mapping.getColumnName("text")) ||
+				(withTitle && !titleColumn.equalsIgnoreCase(mapping.getColumnName("title")))
+			) {
+				return false;
+			}
+
+			readTables.add(tableName);
+		}
+
+		// Both input tables must be covered
+		return readTables.size() == inputTables.size();
+	}
+
+	/**
+	 * Checks whether a processing step reads any table of the given processed
+	 * document types.
+	 *
+	 * @param inputTables            The resolved input tables of the step.
+	 * @param processedDocumentTypes The processed document types.
+	 * @return True if the step reads some of those tables, false otherwise.
+	 * @throws ProcessingException If some processed document type is not a mapped
+	 *                             entity.
+	 */
+	private static boolean readsTablesOf(
+		final List<String> inputTables, final Set<Class<? extends ProcessedDocument>> processedDocumentTypes
+	) throws ProcessingException {
+		for (final Class<? extends ProcessedDocument> processedDocumentType : processedDocumentTypes) {
+			if (inputTables.contains(ProcessedDocumentMapping.of(processedDocumentType).getTableName().toLowerCase(Locale.ROOT))) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Checks whether a step processes documents incrementally, according to its
+	 * parameters.
+	 *
+	 * @param parameters The parameters of the step.
+	 * @return True if the step processes documents incrementally, false
+	 *         otherwise.
+	 */
+	private static boolean isIncremental(final Map<String, String> parameters) {
+		return AbstractProcessingStepParameter.convertValueToBoolean(
+			parameters.getOrDefault(INCREMENTAL_PROCESSING_STEP_PARAMETER_NAME, "false")
+		);
+	}
+
+	/**
+	 * Removes the quotes around a SQL identifier, if any.
+	 *
+	 * @param identifier The SQL identifier.
+	 * @return The unquoted identifier.
+	 */
+	private static String unquote(final String identifier) {
+		final int length = identifier.length();
+
+		if (length >= 2) {
+			final char first = identifier.charAt(0);
+			final char last = identifier.charAt(length - 1);
+
+			if ((first == '"' && last == '"') || (first == '`' && last == '`') || (first == '[' && last == ']')) {
+				return identifier.substring(1, length - 1);
+			}
+		}
+
+		return identifier;
+	}
+}
@@ -0,0 +1,426 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.process;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import javax.persistence.PersistenceException;
+
+import es.uvigo.esei.sing.textproc.entity.ProcessedDocument;
+import es.uvigo.esei.sing.textproc.logging.TextProcLogging;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import es.uvigo.esei.sing.textproc.step.internal.ProcessedDocumentMapping;
+import es.uvigo.esei.sing.textproc.step.internal.ProcessingStepInterface;
+import lombok.NonNull;
+
+/**
+ * Schedules the processing steps of a process according to the tables they
+ * read and write, so that steps which don't depend on each other are executed
+ * concurrently, sharing a budget of processor cores.
+ * <p>
+ * A step depends on a previous step when it reads a table the previous step
+ * writes, writes a table the previous step reads, or both write the same table.
+ * Otherwise, they can be executed in any order. The tables a step reads are
+ * inferred from its input table parameters, following views that just rename
+ * tables, and the tables it writes are the tables of its processed document
+ * types. A step whose input tables can't be inferred is assumed to read every
+ * table, and steps whose output can't be inferred, like steps that write to
+ * files, are assumed to write to the same place. Steps may declare the names of
+ * what they read and write instead, in their {@code inputs} and
+ * {@code outputs} attributes of the process definition.
+ * </p>
+ *
+ * @author Alejandro González García
+ */
+final class ProcessingStepScheduler {
+	private final boolean[][] dependencies; // A step can only depend on previous steps
+
+	/**
+	 * Executes a group of consecutive processing steps, which are executed
+	 * together because they were fused.
+	 *
+	 * @author Alejandro González García
+	 */
+	@FunctionalInterface
+	static interface StepGroupAction {
+		/**
+		 * Executes the group of processing steps.
+		 *
+		 * @param firstStep The index of the first step of the group.
+		 * @param lastStep  The index of the last step of the group, which executes
+		 *                  the other steps.
+		 * @throws ProcessingException If some error occurs during the execution.
+		 */
+		public void execute(final int firstStep, final int lastStep) throws ProcessingException;
+	}
+
+	/**
+	 * Creates a scheduler for the given processing steps, inferring what they read
+	 * and write when it is not declared.
+	 *
+	 * @param steps           The processing steps of the process, in declaration
+	 *                        order.
+	 * @param parameters      The parameters of each processing step.
+	 * @param declaredInputs  The names of what each step declares to read, or
+	 *                        {@code null} for steps that don't declare them.
+	 * @param declaredOutputs The names of what each step declares to write, or
+	 *                        {@code null} for steps that don't declare them.
+	 * @throws ProcessingException      If some processed document type is not a
+	 *                                  mapped entity.
+	 * @throws IllegalArgumentException If some parameter is {@code null}, or the
+	 *                                  lists differ in size.
+	 */
+	ProcessingStepScheduler(
+		@NonNull final List<ProcessingStepInterface> steps, @NonNull final List<Map<String, String>> parameters,
+		@NonNull final List<List<String>> declaredInputs, @NonNull final List<List<String>> declaredOutputs
+	) throws ProcessingException {
+		final int stepCount = steps.size();
+
+		if (parameters.size() != stepCount || declaredInputs.size() != stepCount || declaredOutputs.size() != stepCount) {
+			throw new IllegalArgumentException("There must be parameters, inputs and outputs for every step");
+		}
+
+		final List<Set<String>> inputs = new ArrayList<>(stepCount); // A null set stands for every table
+		final List<Set<String>> outputs = new ArrayList<>(stepCount); // A null set stands for an unknown place
+		final List<Set<Class<? extends ProcessedDocument>>> processedDocumentTypes = ProcessingStepFusion.getProcessedDocumentTypes(steps);
+		// Inputs first, then outputs, so they are all resolved at once
+		final List<List<String>> names = new ArrayList<>(stepCount * 2);
+		List<List<String>> resolvedNames;
+
+		for (int i = 0; i < stepCount; ++i) {
+			names.add(declaredInputs.get(i) != null ?
+				declaredInputs.get(i) :
+				ProcessingStepFusion.getInputTableNames(parameters.get(i))
+			);
+		}
+		for (int i = 0; i < stepCount; ++i) {
+			names.add(declaredOutputs.get(i) != null ? declaredOutputs.get(i) : Collections.emptyList());
+		}
+
+		try {
+			resolvedNames = ProcessingStepFusion.resolveTables(names);
+		} catch (final PersistenceException exc) {
+			// Assume the worst about every step, so they are executed in order
+			TextProcLogging.getLogger().log(
+				Level.WARNING, "Couldn't resolve the input and output tables of the steps. Steps will be executed in order", exc
+			);
+
+			resolvedNames = null;
+		}
+
+		for (int i = 0; i < stepCount; ++i) {
+			final List<String> stepInputs = resolvedNames == null ? null : resolvedNames.get(i);
+			final List<String> stepDeclaredOutputs = declaredOutputs.get(i);
+			Set<String> stepOutputs = null;
+
+			// Names that can't be resolved to a table are read from somewhere unknown
+			inputs.add(stepInputs == null || stepInputs.contains(null) ? null : new HashSet<>(stepInputs));
+
+			if (stepDeclaredOutputs != null) {
+				stepOutputs = new HashSet<>(stepDeclaredOutputs.size());
+
+				for (int j = 0; j < stepDeclaredOutputs.size(); ++j) {
+					final String resolvedOutput = resolvedNames == null ? null : resolvedNames.get(stepCount + i).get(j);
+
+					stepOutputs.add(
+						resolvedOutput != null ? resolvedOutput : stepDeclaredOutputs.get(j).toLowerCase(Locale.ROOT)
+					);
+				}
+			} else if (resolvedNames != null && !processedDocumentTypes.get(i).isEmpty()) {
+				stepOutputs = new HashSet<>(processedDocumentTypes.get(i).size());
+
+				for (final Class<? extends ProcessedDocument> processedDocumentType : processedDocumentTypes.get(i)) {
+					stepOutputs.add(ProcessedDocumentMapping.of(processedDocumentType).getTableName().toLowerCase(Locale.ROOT));
+				}
+			}
+
+			outputs.add(stepOutputs);
+		}
+
+		this.dependencies = computeDependencies(inputs, outputs);
+	}
+
+	/**
+	 * Creates a scheduler for processing steps that read and write the given
+	 * tables.
+	 *
+	 * @param inputs  The lowercase names of the tables each step reads, or
+	 *                {@code null} for steps that may read any table.
+	 * @param outputs The lowercase names of the tables each step writes, or
+	 *                {@code null} for steps that write to an unknown place.
+	 * @throws IllegalArgumentException If some parameter is {@code null}, or the
+	 *                                  lists differ in size.
+	 */
+	ProcessingStepScheduler(@NonNull final List<Set<String>> inputs, @NonNull final List<Set<String>> outputs) {
+		if (inputs.size() != outputs.size()) {
+			throw new IllegalArgumentException("There must be inputs and outputs for every step");
+		}
+
+		this.dependencies = computeDependencies(inputs, outputs);
+	}
+
+	/**
+	 * Returns the maximum number of processing steps that can be executed at the
+	 * same time, which is the maximum number of steps that are at the same depth
+	 * in the dependency graph of the steps.
+	 *
+	 * @return The described number, which is at least one.
+	 */
+	int getMaximumConcurrency() {
+		final int[] stepDepths = new int[dependencies.length];
+		final int[] stepsPerDepth = new int[dependencies.length + 1];
+		int maximumConcurrency = 1;
+
+		for (int i = 0; i < dependencies.length; ++i) {
+			for (int j = 0; j < i; ++j) {
+				if (dependencies[i][j]) {
+					stepDepths[i] = Math.max(stepDepths[i], stepDepths[j] + 1);
+				}
+			}
+
+			maximumConcurrency = Math.max(maximumConcurrency, ++stepsPerDepth[stepDepths[i]]);
+		}
+
+		return maximumConcurrency;
+	}
+
+	/**
+	 * Checks whether a processing step depends on a previous step, so it can't be
+	 * executed until the previous step completes.
+	 *
+	 * @param step         The index of the step.
+	 * @param previousStep The index of the previous step.
+	 * @return True if the step depends on the previous step, false otherwise.
+	 */
+	boolean dependsOn(final int step, final int previousStep) {
+		return previousStep < step && dependencies[step][previousStep];
+	}
+
+	/**
+	 * Executes the processing steps, in groups of fused steps. A group is executed
+	 * when the groups that contain the steps its steps depend on are completed,
+	 * and there are enough processor cores left in the budget for its worker
+	 * threads. Groups are started in declaration order when possible.
+	 * <p>
+	 * If a group fails, no more groups are started, and this method waits for the
+	 * running groups to complete before throwing the exception of the first group
+	 * that failed.
+	 * </p>
+	 *
+	 * @param executedByNextStep      Whether each step is executed by the next
+	 *                                step, because they were fused.
+	 * @param workerThreads           The number of worker threads of each step.
+	 * @param cpuBudget               The number of processor cores that the worker
+	 *                                threads of running steps may use at most.
+	 * @param maximumConcurrentGroups The maximum number of groups to execute
+	 *                                concurrently.
+	 * @param action                  The action that executes a group of steps.
+	 * @throws ProcessingException      If some group fails, or this thread is
+	 *                                  interrupted while waiting for groups to
+	 *                                  complete.
+	 * @throws IllegalArgumentException If some parameter is {@code null}, or some
+	 *                                  number is less than one.
+	 */
+	void execute(
+		@NonNull final boolean[] executedByNextStep, @NonNull final int[] workerThreads, final int cpuBudget,
+		final int maximumConcurrentGroups, @NonNull final StepGroupAction action
+	) throws ProcessingException {
+		if (cpuBudget < 1 || maximumConcurrentGroups < 1) {
+			throw new IllegalArgumentException("The CPU budget and maximum concurrent groups must be positive");
+		}
+
+		// Groups are identified by the index of their last step
+		final List<Integer> groups = new ArrayList<>();
+		final int[] groupOfStep = new int[dependencies.length];
+		for (int i = 0, groupStart = 0; i < dependencies.length; ++i) {
+			if (!executedByNextStep[i]) {
+				Arrays.fill(groupOfStep, groupStart, i + 1, groups.size());
+				groups.add(i);
+				groupStart = i + 1;
+			}
+		}
+
+		if (maximumConcurrentGroups == 1 || groups.size() < 2) {
+			for (int i = 0, groupStart = 0; i < groups.size(); groupStart = groups.get(i++) + 1) {
+				action.execute(groupStart, groups.get(i));
+			}
+
+			return;
+		}
+
+		// Count the dependencies of every group, and remember their dependents
+		final int[] pendingDependencies = new int[groups.size()];
+		final List<Set<Integer>> dependents = new ArrayList<>(groups.size());
+		for (int i = 0; i < groups.size(); ++i) {
+			dependents.add(new HashSet<>());
+		}
+		for (int i = 0; i < dependencies.length; ++i) {
+			for (int j = 0; j < i; ++j) {
+				if (dependencies[i][j] && groupOfStep[i] != groupOfStep[j] && dependents.get(groupOfStep[j]).add(groupOfStep[i])) {
+					++pendingDependencies[groupOfStep[i]];
+				}
+			}
+		}
+
+		final AtomicInteger createdThreads = new AtomicInteger();
+		final ExecutorService executor = Executors.newFixedThreadPool(
+			Math.min(maximumConcurrentGroups, groups.size()),
+			(final Runnable runnable) -> {
+				final Thread thread = new Thread(runnable, "Processing step scheduler " + createdThreads.incrementAndGet());
+
+				// Don't prevent the JVM from exiting if something goes wrong
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		);
+		final CompletionService<Integer> completionService = new ExecutorCompletionService<>(executor);
+		// Fair, so groups that need many cores are not starved by groups that need few
+		final Semaphore availableCores = new Semaphore(cpuBudget, true);
+		final Queue<Integer> readyGroups = new PriorityQueue<>();
+		Throwable failure = null;
+		int runningGroups = 0;
+
+		for (int i = 0; i < groups.size(); ++i) {
+			if (pendingDependencies[i] == 0) {
+				readyGroups.add(i);
+			}
+		}
+
+		try {
+			do {
+				while (failure == null && !readyGroups.isEmpty()) {
+					final int group = readyGroups.remove();
+					final int firstStep = group == 0 ? 0 : groups.get(group - 1) + 1;
+					final int lastStep = groups.get(group);
+					final int requiredCores = Math.min(cpuBudget, Math.max(1, workerThreads[lastStep]));
+
+					completionService.submit(() -> {
+						availableCores.acquire(requiredCores);
+						try {
+							action.execute(firstStep, lastStep);
+						} finally {
+							availableCores.release(requiredCores);
+						}
+
+						return group;
+					});
+
+					++runningGroups;
+				}
+
+				if (runningGroups > 0) {
+					final Future<Integer> completedGroup = completionService.take();
+					--runningGroups;
+
+					try {
+						for (final int dependent : dependents.get(completedGroup.get())) {
+							if (--pendingDependencies[dependent] == 0) {
+								readyGroups.add(dependent);
+							}
+						}
+					} catch (final ExecutionException exc) {
+						if (failure == null) {
+							failure = exc.getCause();
+						}
+					}
+				}
+			} while (runningGroups > 0 || (failure == null && !readyGroups.isEmpty()));
+		} catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+			failure = exc;
+		} finally {
+			executor.shutdown();
+		}
+
+		if (failure instanceof ProcessingException) {
+			throw (ProcessingException) failure;
+		} else if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure instanceof Error) {
+			throw (Error) failure;
+		} else if (failure != null) {
+			throw new ProcessingException("An exception occurred while executing the processing steps", failure);
+		}
+	}
+
+	/**
+	 * Computes which processing steps depend on which previous steps, according to
+	 * what they read and write.
+	 *
+	 * @param inputs  The tables each step reads, or {@code null} for steps that
+	 *                may read any table.
+	 * @param outputs What each step writes, or {@code null} for steps that write
+	 *                to an unknown place.
+	 * @return A matrix whose element at row {@code i} and column {@code j} is true
+	 *         if and only if the step {@code i} depends on the previous step
+	 *         {@code j}.
+	 */
+	private static boolean[][] computeDependencies(final List<Set<String>> inputs, final List<Set<String>> outputs) {
+		final boolean[][] dependencies = new boolean[inputs.size()][inputs.size()];
+
+		for (int i = 0; i < dependencies.length; ++i) {
+			for (int j = 0; j < i; ++j) {
+				dependencies[i][j] =
+					reads(inputs.get(i), outputs.get(j)) ||
+					reads(inputs.get(j), outputs.get(i)) ||
+					writesSamePlace(outputs.get(i), outputs.get(j));
+			}
+		}
+
+		return dependencies;
+	}
+
+	/**
+	 * Checks whether a processing step reads what another step writes.
+	 *
+	 * @param inputs  The tables the step reads, or {@code null} if it may read any
+	 *                table.
+	 * @param outputs What the other step writes, or {@code null} if it writes to
+	 *                an unknown place.
+	 * @return True if the step reads what the other step writes, false otherwise.
+	 */
+	private static boolean reads(final Set<String> inputs, final Set<String> outputs) {
+		if (outputs == null) {
+			// Steps don't read from unknown places by themselves
+			return false;
+		}
+
+		return inputs == null ? !outputs.isEmpty() : !Collections.disjoint(inputs, outputs);
+	}
+
+	/**
+	 * Checks whether two processing steps write to the same place.
+	 *
+	 * @param outputs      What the step writes, or {@code null} if it writes to an
+	 *                     unknown place.
+	 * @param otherOutputs What the other step writes, or {@code null} if it writes
+	 *                     to an unknown place.
+	 * @return True if both steps may write to the same place, false otherwise.
+	 */
+	private static boolean writesSamePlace(final Set<String> outputs, final Set<String> otherOutputs) {
+		if (outputs == null || otherOutputs == null) {
+			return outputs == otherOutputs;
+		}
+
+		return !Collections.disjoint(outputs, otherOutputs);
+	}
+}
@@ -4,6 +4,7 @@ package es.uvigo.esei.sing.textproc.process.xml.definition;
 
 import java.util.List;
 
+import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElementRef;
 import javax.xml.bind.annotation.XmlRootElement;
 
@@ -19,4 +20,6 @@ import lombok.Getter;
 public final class ProcessingProcessDefinition {
 	@XmlElementRef(required = true) @Getter
 	private List<ProcessingStepDefinition> processingSteps; // Never null or empty, at least one step
+	@XmlAttribute @Getter
+	private Integer cpuBudget; // Null if not given. Positive otherwise
 }
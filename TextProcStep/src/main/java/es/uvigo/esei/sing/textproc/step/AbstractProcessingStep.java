@@ -3,37 +3,71 @@
 package es.uvigo.esei.sing.textproc.step;
 
 import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.stream.Stream;
 
-import javax.persistence.EntityManager;
 import javax.persistence.EntityTransaction;
 import javax.persistence.PersistenceException;
 import javax.persistence.Query;
-import javax.persistence.criteria.CriteriaDelete;
 
 import es.uvigo.esei.sing.textproc.entity.ProcessedDocument;
 import es.uvigo.esei.sing.textproc.logging.TextProcLogging;
 import es.uvigo.esei.sing.textproc.persistence.TextProcPersistence;
+import es.uvigo.esei.sing.textproc.step.internal.AdaptiveBatchSizer;
+import es.uvigo.esei.sing.textproc.step.internal.BatchWorkerPool;
+import es.uvigo.esei.sing.textproc.step.internal.ProcessedDocumentBulkWriter;
+import es.uvigo.esei.sing.textproc.step.internal.ProcessedDocumentMapping;
 import es.uvigo.esei.sing.textproc.step.internal.ProcessingStepInterface;
+import es.uvigo.esei.sing.textproc.step.internal.ProcessingStepMetadata;
+import es.uvigo.esei.sing.textproc.step.internal.ProcessingStepMetrics;
+import es.uvigo.esei.sing.textproc.step.internal.ProgressTotalStrategy;
+import es.uvigo.esei.sing.textproc.step.internal.TableClearStrategy;
+import es.uvigo.esei.sing.textproc.step.management.BatchProcessingEvent;
+import es.uvigo.esei.sing.textproc.step.management.PageFetchEvent;
+import es.uvigo.esei.sing.textproc.step.management.ProcessedDocumentsWriteEvent;
+import es.uvigo.esei.sing.textproc.step.management.ProcessingStepMetricsMXBean;
+import es.uvigo.esei.sing.textproc.step.util.VariableHolder;
+import es.uvigo.esei.sing.textproc.step.xml.definition.AbstractProcessingStepParameter;
 import es.uvigo.esei.sing.textproc.step.xml.definition.BatchSizeProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.FetchSizeProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.IncrementalProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.MaximumBatchSizeProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.MinimumBatchSizeProcessingStepParameter;
 import es.uvigo.esei.sing.textproc.step.xml.definition.PageSizeProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.PagingModeProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.PersistResultsProcessingStepParameter;
 import es.uvigo.esei.sing.textproc.step.xml.definition.PrimaryKeyColumnProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.ProgressTotalProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.StreamResultsProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.TableClearStrategyProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.TargetBatchLatencyProcessingStepParameter;
 import es.uvigo.esei.sing.textproc.step.xml.definition.TextColumnProcessingStepParameter;
 import es.uvigo.esei.sing.textproc.step.xml.definition.TextDocumentTableNameProcessingStepParameter;
 import es.uvigo.esei.sing.textproc.step.xml.definition.TextDocumentWithTitleTableNameProcessingStepParameter;
 import es.uvigo.esei.sing.textproc.step.xml.definition.TitleColumnProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.WorkerThreadsProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.WriteBatchSizeProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.WriteIntervalProcessingStepParameter;
+import lombok.AllArgsConstructor;
 import lombok.NonNull;
 import me.tongfei.progressbar.DelegatingProgressBarConsumer;
 import me.tongfei.progressbar.ProgressBar;
@@ -52,6 +86,19 @@ public abstract class AbstractProcessingStep implements ProcessingStepInterface
 	// Common step parameter names
 	protected static final String PAGE_SIZE_STEP_PARAMETER_NAME = new PageSizeProcessingStepParameter().getName();
 	protected static final String BATCH_SIZE_STEP_PARAMETER_NAME = new BatchSizeProcessingStepParameter().getName();
+	protected static final String TARGET_BATCH_LATENCY_STEP_PARAMETER_NAME = new TargetBatchLatencyProcessingStepParameter().getName();
+	protected static final String MINIMUM_BATCH_SIZE_STEP_PARAMETER_NAME = new MinimumBatchSizeProcessingStepParameter().getName();
+	protected static final String MAXIMUM_BATCH_SIZE_STEP_PARAMETER_NAME = new MaximumBatchSizeProcessingStepParameter().getName();
+	protected static final String PROGRESS_TOTAL_STEP_PARAMETER_NAME = new ProgressTotalProcessingStepParameter().getName();
+	protected static final String TABLE_CLEAR_STRATEGY_STEP_PARAMETER_NAME = new TableClearStrategyProcessingStepParameter().getName();
+	protected static final String WRITE_BATCH_SIZE_STEP_PARAMETER_NAME = new WriteBatchSizeProcessingStepParameter().getName();
+	protected static final String WRITE_INTERVAL_STEP_PARAMETER_NAME = new WriteIntervalProcessingStepParameter().getName();
+	protected static final String PAGING_MODE_STEP_PARAMETER_NAME = new PagingModeProcessingStepParameter().getName();
+	protected static final String STREAM_RESULTS_STEP_PARAMETER_NAME = new StreamResultsProcessingStepParameter().getName();
+	protected static final String FETCH_SIZE_STEP_PARAMETER_NAME = new FetchSizeProcessingStepParameter().getName();
+	protected static final String WORKER_THREADS_STEP_PARAMETER_NAME = new WorkerThreadsProcessingStepParameter().getName();
+	protected static final String PERSIST_RESULTS_STEP_PARAMETER_NAME = new PersistResultsProcessingStepParameter().getName();
+	protected static final String INCREMENTAL_STEP_PARAMETER_NAME = new IncrementalProcessingStepParameter().getName();
 	protected static final String TEXT_DOCUMENT_WITH_TITLE_TABLE_NAME_PROCESSING_STEP_PARAMETER_NAME = new TextDocumentWithTitleTableNameProcessingStepParameter().getName();
 	protected static final String TEXT_DOCUMENT_TABLE_NAME_PROCESSING_STEP_PARAMETER_NAME = new TextDocumentTableNameProcessingStepParameter().getName();
 	protected static final String PRIMARY_KEY_COLUMN_PROCESSING_STEP_PARAMETER_NAME = new PrimaryKeyColumnProcessingStepParameter().getName();
@@ -71,6 +118,65 @@ public abstract class AbstractProcessingStep implements ProcessingStepInterface
 	 * be processed together, in the same thread.
 	 */
 	protected static final String DEFAULT_BATCH_SIZE_STEP_PARAMETER = "512";
+	/**
+	 * The default minimum batch size, when batches are resized to take a target
+	 * time. By default, the maximum batch size is the page size divided by the
+	 * number of worker threads, so every worker thread gets a batch of each page,
+	 * unless that is less than the minimum batch size.
+	 */
+	protected static final String DEFAULT_MINIMUM_BATCH_SIZE_STEP_PARAMETER = "1";
+	/**
+	 * The default maximum number of processed documents kept in memory before they
+	 * are handed over to the database writer. Processed documents are handed over
+	 * at the end of every page too.
+	 */
+	protected static final String DEFAULT_WRITE_BATCH_SIZE_STEP_PARAMETER = "8192";
+	/**
+	 * The default maximum time, in milliseconds, processed documents are kept in
+	 * memory before they are handed over to the database writer.
+	 */
+	protected static final String DEFAULT_WRITE_INTERVAL_STEP_PARAMETER = "10000";
+	/**
+	 * The default paging mode. Keyset paging retrieves every page in about the same
+	 * time, no matter how many documents were retrieved before, but requires
+	 * integer primary keys.
+	 */
+	protected static final String DEFAULT_PAGING_MODE_STEP_PARAMETER = "keyset";
+	/**
+	 * The default way of obtaining the number of documents to process, which is
+	 * only used to show progress. The primary key range is retrieved with an
+	 * index lookup, while counting documents takes a full scan.
+	 */
+	protected static final String DEFAULT_PROGRESS_TOTAL_STEP_PARAMETER = ProgressTotalStrategy.KEY_RANGE.getParameterValue();
+	/**
+	 * The default way of deleting previously processed documents, which chooses
+	 * the fastest one that the database supports.
+	 */
+	protected static final String DEFAULT_TABLE_CLEAR_STRATEGY_STEP_PARAMETER = TableClearStrategy.AUTOMATIC.getParameterValue();
+	/**
+	 * Whether documents are streamed by default. When streamed, the documents of a
+	 * page are read from a forward-only cursor as they are processed, so memory
+	 * usage doesn't depend on the page size.
+	 */
+	protected static final String DEFAULT_STREAM_RESULTS_STEP_PARAMETER = "true";
+	/**
+	 * The default number of documents the database driver is hinted to fetch at a
+	 * time when streaming documents.
+	 */
+	protected static final String DEFAULT_FETCH_SIZE_STEP_PARAMETER = "1024";
+	/**
+	 * The default number of threads that process batches of documents, which is
+	 * the number of processors available to the JVM.
+	 */
+	protected static final String DEFAULT_WORKER_THREADS_STEP_PARAMETER = Integer.toString(
+		Runtime.getRuntime().availableProcessors()
+	);
+	/**
+	 * Whether steps process documents incrementally by default. Full processing
+	 * is the default because incremental processing doesn't notice changes in
+	 * documents that were already processed.
+	 */
+	protected static final String DEFAULT_INCREMENTAL_STEP_PARAMETER = "false";
 	protected static final String DEFAULT_PRIMARY_KEY_COLUMN_PROCESSING_STEP_PARAMETER = "id";
 	protected static final String DEFAULT_TEXT_COLUMN_PROCESSING_STEP_PARAMETER = "text";
 	protected static final String DEFAULT_TITLE_COLUMN_PROCESSING_STEP_PARAMETER = "title";
@@ -78,7 +184,27 @@ public abstract class AbstractProcessingStep implements ProcessingStepInterface
 	private final Map<String, Predicate<String>> validationPredicates;
 	private final Set<String> requiredParameters;
 	private Map<String, String> parameters = null;
+	private int stepIndex = -1;
+	private boolean resuming = false;
 	private volatile boolean databaseEntitiesChanged = false;
+	private ProcessedDocumentBulkWriter processedDocumentWriter = new ProcessedDocumentBulkWriter();
+
+	// Step fusion state. Upstream steps are executed by their downstream step
+	private AbstractProcessingStep upstreamStep = null;
+	private Map<String, String> upstreamStepParameters = null;
+	private boolean persistResults = true;
+	private List<ProcessingConsumer<List<String[]>>> downstreamActions = null;
+	private List<String> downstreamTaskNames = null;
+	private List<ExternalResultsCheckpointer> downstreamCheckpointers = null;
+	private boolean downstreamActionsComposed = false;
+	private final ThreadLocal<FusedOutputBatch> fusedOutputBatch = new ThreadLocal<>();
+
+	// Paging modes and the query parameter used to seek pages
+	private static final String KEYSET_PAGING_MODE = "keyset";
+	private static final String OFFSET_PAGING_MODE = "offset";
+	private static final String LAST_PRIMARY_KEY_QUERY_PARAMETER_NAME = "lastPrimaryKey";
+	// Hibernate specific query hint. Other JPA providers ignore unknown hints
+	private static final String FETCH_SIZE_QUERY_HINT_NAME = "org.hibernate.fetchSize";
 
 	// Save System.out value at class initialization time so
 	// we're not affected by steps reassigning System.out
@@ -114,13 +240,24 @@ public abstract class AbstractProcessingStep implements ProcessingStepInterface
 		new String[] { "title", "text" },
 		new String[] { "text" }
 	);
+	// The parameters with the table names of every unprocessed document type
+	private final List<String> unprocessedDocumentsTableParameterNames = List.of(
+		TEXT_DOCUMENT_WITH_TITLE_TABLE_NAME_PROCESSING_STEP_PARAMETER_NAME,
+		TEXT_DOCUMENT_TABLE_NAME_PROCESSING_STEP_PARAMETER_NAME
+	);
 	/**
-	 * Suppliers that count how many unprocessed entities of a type there are. The
-	 * list is in the same order as {@code unprocessedDocumentTypesNames}.
+	 * Suppliers that tell how many unprocessed entities of a type there are, as
+	 * obtained by the configured progress total strategy. A negative number means
+	 * that it is not known. The list is in the same order as
+	 * {@code unprocessedDocumentTypesNames}.
 	 */
 	protected final List<Supplier<Long>> numberOfUnprocessedEntitiesProviders = List.of(
-		() -> getUnprocessedDocumentsWithTitle(),
-		() -> getUnprocessedDocuments()
+		() -> getExpectedNumberOfDocumentsAfter(
+			getParameters().get(TEXT_DOCUMENT_WITH_TITLE_TABLE_NAME_PROCESSING_STEP_PARAMETER_NAME), Long.MIN_VALUE
+		),
+		() -> getExpectedNumberOfDocumentsAfter(
+			getParameters().get(TEXT_DOCUMENT_TABLE_NAME_PROCESSING_STEP_PARAMETER_NAME), Long.MIN_VALUE
+		)
 	);
 
 	/**
@@ -137,8 +274,8 @@ public abstract class AbstractProcessingStep implements ProcessingStepInterface
 	protected AbstractProcessingStep(
 		@NonNull final Map<String, Predicate<String>> validationPredicates, @NonNull final Set<String> requiredParameters
 	) {
-		final Map<String, Predicate<String>> commonValidationPredicates = Map.of(
-			PAGE_SIZE_STEP_PARAMETER_NAME, (final String value) -> {
+		final Map<String, Predicate<String>> commonValidationPredicates = Map.ofEntries(
+			Map.entry(PAGE_SIZE_STEP_PARAMETER_NAME, (final String value) -> {
 				try {
 					if (Integer.parseInt(value) < 1) {
 						throw new NumberFormatException();
@@ -148,8 +285,8 @@ public abstract class AbstractProcessingStep implements ProcessingStepInterface
 				} catch (final NumberFormatException exc) {
 					return false;
 				}
-			},
-			BATCH_SIZE_STEP_PARAMETER_NAME, (final String value) -> {
+			}),
+			Map.entry(BATCH_SIZE_STEP_PARAMETER_NAME, (final String value) -> {
 				try {
 					final int actualValue = Integer.parseInt(value);
 					if (actualValue < 1) {
@@ -163,17 +300,77 @@ public abstract class AbstractProcessingStep implements ProcessingStepInterface
 				} catch (final NumberFormatException exc) {
 					return false;
 				}
-			},
-			TEXT_DOCUMENT_WITH_TITLE_TABLE_NAME_PROCESSING_STEP_PARAMETER_NAME, (final String value) ->
-				value != null && !value.isBlank(),
-			TEXT_DOCUMENT_TABLE_NAME_PROCESSING_STEP_PARAMETER_NAME, (final String value) ->
-				value != null && !value.isBlank(),
-			PRIMARY_KEY_COLUMN_PROCESSING_STEP_PARAMETER_NAME, (final String value) ->
-				value != null && !value.isBlank(),
-			TEXT_COLUMN_PROCESSING_STEP_PARAMETER_NAME, (final String value) ->
-				value != null && !value.isBlank(),
-			TITLE_COLUMN_PROCESSING_STEP_PARAMETER_NAME, (final String value) ->
-				value != null && !value.isBlank()
+			}),
+			Map.entry(TARGET_BATCH_LATENCY_STEP_PARAMETER_NAME, (final String value) -> {
+				try {
+					return Integer.parseInt(value) > 0;
+				} catch (final NumberFormatException exc) {
+					return false;
+				}
+			}),
+			Map.entry(MINIMUM_BATCH_SIZE_STEP_PARAMETER_NAME, (final String value) -> {
+				try {
+					return Integer.parseInt(value) > 0;
+				} catch (final NumberFormatException exc) {
+					return false;
+				}
+			}),
+			Map.entry(MAXIMUM_BATCH_SIZE_STEP_PARAMETER_NAME, (final String value) -> {
+				try {
+					return Integer.parseInt(value) >= Integer.parseInt(
+						getParameters().getOrDefault(MINIMUM_BATCH_SIZE_STEP_PARAMETER_NAME, DEFAULT_MINIMUM_BATCH_SIZE_STEP_PARAMETER)
+					);
+				} catch (final NumberFormatException exc) {
+					return false;
+				}
+			}),
+			Map.entry(PAGING_MODE_STEP_PARAMETER_NAME, (final String value) ->
+				KEYSET_PAGING_MODE.equals(value) || OFFSET_PAGING_MODE.equals(value)),
+			Map.entry(WRITE_BATCH_SIZE_STEP_PARAMETER_NAME, (final String value) -> {
+				try {
+					return Integer.parseInt(value) > 0;
+				} catch (final NumberFormatException exc) {
+					return false;
+				}
+			}),
+			Map.entry(WRITE_INTERVAL_STEP_PARAMETER_NAME, (final String value) -> {
+				try {
+					return Integer.parseInt(value) > 0;
+				} catch (final NumberFormatException exc) {
+					return false;
+				}
+			}),
+			Map.entry(PROGRESS_TOTAL_STEP_PARAMETER_NAME, (final String value) ->
+				ProgressTotalStrategy.fromParameterValue(value) != null),
+			Map.entry(TABLE_CLEAR_STRATEGY_STEP_PARAMETER_NAME, (final String value) ->
+				TableClearStrategy.fromParameterValue(value) != null),
+			Map.entry(STREAM_RESULTS_STEP_PARAMETER_NAME, (final String value) -> value != null),
+			Map.entry(FETCH_SIZE_STEP_PARAMETER_NAME, (final String value) -> {
+				try {
+					return Integer.parseInt(value) > 0;
+				} catch (final NumberFormatException exc) {
+					return false;
+				}
+			}),
+			Map.entry(WORKER_THREADS_STEP_PARAMETER_NAME, (final String value) -> {
+				try {
+					return Integer.parseInt(value) > 0;
+				} catch (final NumberFormatException exc) {
+					return false;
+				}
+			}),
+			Map.entry(PERSIST_RESULTS_STEP_PARAMETER_NAME, (final String value) -> value != null),
+			Map.entry(INCREMENTAL_STEP_PARAMETER_NAME, (final String value) -> value != null),
+			Map.entry(TEXT_DOCUMENT_WITH_TITLE_TABLE_NAME_PROCESSING_STEP_PARAMETER_NAME, (final String value) ->
+				value != null && !value.isBlank()),
+			Map.entry(TEXT_DOCUMENT_TABLE_NAME_PROCESSING_STEP_PARAMETER_NAME, (final String value) ->
+				value != null && !value.isBlank()),
+			Map.entry(PRIMARY_KEY_COLUMN_PROCESSING_STEP_PARAMETER_NAME, (final String value) ->
+				value != null && !value.isBlank()),
+			Map.entry(TEXT_COLUMN_PROCESSING_STEP_PARAMETER_NAME, (final String value) ->
+				value != null && !value.isBlank()),
+			Map.entry(TITLE_COLUMN_PROCESSING_STEP_PARAMETER_NAME, (final String value) ->
+				value != null && !value.isBlank())
 		);
 
 		final Set<String> commonRequiredParameters = Set.of(
@@ -239,13 +436,87 @@ public abstract class AbstractProcessingStep implements ProcessingStepInterface
 			transactionSuccessful = false;
 			throw new ProcessingException(DATA_ACCESS_EXCEPTION_MESSAGE, exc);
 		} finally {
-			if (startedTransaction && !transactionSuccessful) {
-				entityTransaction.setRollbackOnly();
+			try {
+				if (transactionSuccessful) {
+					writeProcessedDocuments();
+				}
+			} catch (final PersistenceException exc) {
+				transactionSuccessful = false;
+				throw new ProcessingException(DATA_ACCESS_EXCEPTION_MESSAGE, exc);
+			} finally {
+				processedDocumentWriter.discard();
+
+				if (startedTransaction && !transactionSuccessful) {
+					entityTransaction.setRollbackOnly();
+				}
+
+				// Silently flush changes, just in case it was not done per page
+				TextProcPersistence.get().flushThreadEntities();
 			}
+		}
+	}
 
-			// Silently flush changes, just in case it was not done per page
-			TextProcPersistence.get().flushEntities();
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @implNote The implementation of this method executes this step as
+	 *           {@link #execute(Map)} does, but without deleting previous results,
+	 *           and starting after the high-water marks recorded when pages of
+	 *           documents were committed. Steps that don't process documents with
+	 *           {@link #processDocuments(List, String, BatchActionFactory, ExternalResultsCheckpointer)}
+	 *           process every document again.
+	 */
+	@Override
+	public final void resume(@NonNull final Map<String, String> parameters) throws ProcessingException {
+		resuming = true;
+
+		try {
+			execute(parameters);
+		} finally {
+			resuming = false;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @implNote The high-water marks of this step are recorded with its index, as
+	 *           returned by {@link #getMetadataStepName()}.
+	 */
+	@Override
+	public final void setStepIndex(final int stepIndex) {
+		if (stepIndex < 0) {
+			throw new IllegalArgumentException("The index of a step can't be negative");
+		}
+
+		this.stepIndex = stepIndex;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * @implNote Steps can only be fused with other steps that extend this class.
+	 *           The upstream step hands its processed documents over to this step
+	 *           only if it processes documents with
+	 *           {@link #processDocuments(List, String, BatchActionFactory)}.
+	 *           Otherwise, it is executed as usual before this step reads any
+	 *           document, and its processed documents are stored in the database
+	 *           no matter what.
+	 */
+	@Override
+	public final boolean fuseWith(
+		@NonNull final ProcessingStepInterface upstreamStep, @NonNull final Map<String, String> upstreamParameters,
+		final boolean persistUpstreamResults
+	) {
+		if (!(upstreamStep instanceof AbstractProcessingStep) || upstreamStep == this) {
+			return false;
 		}
+
+		this.upstreamStep = (AbstractProcessingStep) upstreamStep;
+		this.upstreamStepParameters = upstreamParameters;
+		this.upstreamStep.persistResults = persistUpstreamResults;
+
+		return true;
 	}
 
 	/**
@@ -283,6 +554,218 @@ public abstract class AbstractProcessingStep implements ProcessingStepInterface
 		return parameters;
 	}
 
+	/**
+	 * Processes every unprocessed document, of every unprocessed document type,
+	 * with the batch actions created by the given factory, after deleting any
+	 * previous results. This is the preferred way for steps to process documents,
+	 * because it allows fusing them with the steps next to them: when this step
+	 * is fused with the step that produces its input documents, the upstream step
+	 * reads documents, and hands its processed documents over to this step in
+	 * memory, instead of storing them in the database for this step to read them
+	 * back. In that case, the documents are paged and batched as configured by the
+	 * parameters of the first step of the fused steps.
+	 * <p>
+	 * Unprocessed document types are processed at the same time: a page of
+	 * documents of each type is read in turn, in the order given by
+	 * {@code unprocessedDocumentTypesNames}, and their batches are processed by
+	 * the same pool of worker threads, as in
+	 * {@link #forEachDocumentInNativeQuery(Supplier, String, long, ProcessingConsumer, Runnable)}.
+	 * The pages read in the same turn are committed together. Therefore, worker
+	 * threads are kept busy while the last batches of a page are processed, and a
+	 * type with few documents doesn't make the whole step wait for its pages.
+	 * </p>
+	 *
+	 * @param processedDocumentTypes The processed document types stored by this
+	 *                               step, in the same order as
+	 *                               {@code unprocessedDocumentTypesNames}, or an
+	 *                               empty list if this step doesn't store
+	 *                               processed documents.
+	 * @param taskNameFormat         The format string of the names of the tasks
+	 *                               that will be performed with the documents,
+	 *                               whose only argument is the name of the
+	 *                               unprocessed document type. It will be shown to
+	 *                               the user.
+	 * @param batchActionFactory     The factory of the actions to execute for every
+	 *                               batch of documents, for each unprocessed
+	 *                               document type.
+	 * @throws ProcessingException      If some error occurs during the processing.
+	 * @throws IllegalArgumentException If some parameter is {@code null}, or the
+	 *                                  processed document types don't match the
+	 *                                  unprocessed document types.
+	 */
+	protected final void processDocuments(
+		@NonNull final List<Class<? extends ProcessedDocument>> processedDocumentTypes, @NonNull final String taskNameFormat,
+		@NonNull final BatchActionFactory batchActionFactory
+	) throws ProcessingException {
+		processDocuments(processedDocumentTypes, taskNameFormat, batchActionFactory, null);
+	}
+
+	/**
+	 * Processes every unprocessed document, as
+	 * {@link #processDocuments(List, String, BatchActionFactory)} does, keeping
+	 * the results this step stores outside the database consistent with the
+	 * high-water marks recorded in the database. Therefore, if the execution of
+	 * this step is interrupted, it can be resumed with {@link #resume(Map)}.
+	 *
+	 * @param processedDocumentTypes The processed document types stored by this
+	 *                               step, or an empty list.
+	 * @param taskNameFormat         The format string of the names of the tasks.
+	 * @param batchActionFactory     The factory of the actions to execute for every
+	 *                               batch of documents.
+	 * @param checkpointer           The checkpointer of the results this step
+	 *                               stores outside the database. It might be
+	 *                               {@code null}, if there are none.
+	 * @throws ProcessingException      If some error occurs during the processing.
+	 * @throws IllegalArgumentException If some parameter is {@code null}, or the
+	 *                                  processed document types don't match the
+	 *                                  unprocessed document types.
+	 */
+	protected final void processDocuments(
+		@NonNull final List<Class<? extends ProcessedDocument>> processedDocumentTypes, @NonNull final String taskNameFormat,
+		@NonNull final BatchActionFactory batchActionFactory, final ExternalResultsCheckpointer checkpointer
+	) throws ProcessingException {
+		final int unprocessedDocumentTypes = unprocessedDocumentTypesNames.size();
+		final List<ProcessingConsumer<List<String[]>>> actions = new ArrayList<>(unprocessedDocumentTypes);
+		final List<String> taskNames = new ArrayList<>(unprocessedDocumentTypes);
+		final List<ExternalResultsCheckpointer> checkpointers = new ArrayList<>(2);
+		final boolean incremental = isIncremental();
+		final boolean keepResults = incremental || resuming;
+		final boolean keysetPaging = KEYSET_PAGING_MODE.equals(
+			getParameters().getOrDefault(PAGING_MODE_STEP_PARAMETER_NAME, DEFAULT_PAGING_MODE_STEP_PARAMETER)
+		);
+
+		if (!processedDocumentTypes.isEmpty() && processedDocumentTypes.size() != unprocessedDocumentTypes) {
+			throw new IllegalArgumentException("There must be a processed document type per unprocessed document type");
+		}
+
+		if (incremental && processedDocumentTypes.isEmpty()) {
+			throw new ProcessingException("This step doesn't store processed documents, so it can't process them incrementally");
+		}
+
+		if (incremental && !keysetPaging) {
+			throw new ProcessingException("Incremental processing requires keyset paging");
+		}
+
+		// Delete previous results and forget what was processed, unless we just
+		// add the documents after the high-water marks to them
+		if (!keepResults) {
+			final List<ProcessedDocumentMapping> processedDocumentMappings = new ArrayList<>(processedDocumentTypes.size());
+			for (final Class<? extends ProcessedDocument> processedDocumentType : processedDocumentTypes) {
+				processedDocumentMappings.add(ProcessedDocumentMapping.of(processedDocumentType));
+			}
+
+			// Do it in a single unit of work, so it is atomic even if writes are serialized.
+			// The high-water marks are reset first, because some databases commit before
+			// clearing a table, and processing again documents that were cleared is harmless
+			TextProcPersistence.get().doWriteWork((final Connection connection) -> {
+				for (final String tableParameterName : unprocessedDocumentsTableParameterNames) {
+					ProcessingStepMetadata.setHighWaterMark(
+						connection, getMetadataStepName(), getParameters().get(tableParameterName), Long.MIN_VALUE
+					);
+				}
+
+				for (int i = 0; i < processedDocumentMappings.size(); ++i) {
+					deleteAllProcessedDocuments(connection, processedDocumentTypes.get(i), processedDocumentMappings.get(i));
+				}
+			});
+			databaseEntitiesChanged = true;
+		}
+
+		if (checkpointer != null) {
+			checkpointers.add(checkpointer);
+		}
+		if (downstreamActions != null) {
+			checkpointers.addAll(downstreamCheckpointers);
+		}
+
+		// The worker threads of the upstream step we are fused with process our batches
+		// within theirs. Measure them apart, so our share of the work is known
+		final ProcessingStepMetrics fusedMetrics = upstreamStep == null ? null : ProcessingStepMetrics.publish(
+			getClass().getSimpleName(), true, () -> 0, () -> 0
+		);
+
+		for (int i = 0; i < unprocessedDocumentTypes; ++i) {
+			ProcessingConsumer<List<String[]>> action = batchActionFactory.create(
+				unprocessedDocumentTypesNames.get(i), unprocessedDocumentsAttributes.get(i),
+				processedDocumentTypes.isEmpty() ? null : processedDocumentTypes.get(i)
+			);
+			String taskName = String.format(taskNameFormat, unprocessedDocumentTypesNames.get(i));
+
+			// Hand our processed documents over to the downstream step we are fused with
+			if (downstreamActions != null) {
+				action = composeWithDownstreamAction(action, downstreamActions.get(i), unprocessedDocumentsAttributes.get(i));
+				taskName = taskName + " + " + downstreamTaskNames.get(i);
+				downstreamActionsComposed = true;
+			}
+
+			if (fusedMetrics != null) {
+				action = measureBatchAction(action, fusedMetrics);
+			}
+
+			actions.add(action);
+			taskNames.add(taskName);
+		}
+
+		// If we are fused with an upstream step, it will execute our actions
+		boolean executedByUpstreamStep = false;
+		try {
+			executedByUpstreamStep = executeUpstreamStep(actions, taskNames, checkpointers);
+		} finally {
+			if (fusedMetrics != null) {
+				if (executedByUpstreamStep) {
+					fusedMetrics.close();
+				} else {
+					fusedMetrics.discard();
+				}
+			}
+		}
+
+		if (executedByUpstreamStep) {
+			return;
+		}
+
+		if (!keepResults) {
+			// Commit the deletions and the reset high-water marks before discarding the
+			// results stored outside the database, so the marks never cover missing results
+			TextProcPersistence.get().flushThreadEntities();
+			databaseEntitiesChanged = false;
+
+			for (final ExternalResultsCheckpointer resultsCheckpointer : checkpointers) {
+				resultsCheckpointer.discardAllResults();
+			}
+		}
+
+		final List<DocumentSource> documentSources = new ArrayList<>(unprocessedDocumentTypes);
+		for (int i = 0; i < unprocessedDocumentTypes; ++i) {
+			final String sourceTable = getParameters().get(unprocessedDocumentsTableParameterNames.get(i));
+			final long highWaterMark;
+			final long numberOfDocuments;
+
+			if (keepResults && keysetPaging) {
+				highWaterMark = getHighWaterMark(sourceTable);
+				numberOfDocuments = getExpectedNumberOfDocumentsAfter(sourceTable, highWaterMark);
+			} else {
+				highWaterMark = Long.MIN_VALUE;
+				numberOfDocuments = numberOfUnprocessedEntitiesProviders.get(i).get();
+			}
+
+			// Results stored outside the database may be ahead of the high-water mark
+			if (keepResults) {
+				for (final ExternalResultsCheckpointer resultsCheckpointer : checkpointers) {
+					resultsCheckpointer.discardResultsAfter(unprocessedDocumentTypesNames.get(i), highWaterMark);
+				}
+			}
+
+			// High-water marks are recorded in full processing mode too, so it can be followed by incremental runs
+			documentSources.add(new DocumentSource(
+				unprocessedDocumentsQuerySuppliers.get(i), taskNames.get(i), numberOfDocuments, actions.get(i),
+				keysetPaging ? sourceTable : null, highWaterMark
+			));
+		}
+
+		forEachDocument(documentSources, null, checkpointers);
+	}
+
 	/**
 	 * Executes the given action for each batch of documents retrieved by a native
 	 * JPA query. For the purposes of this method, native JPA queries are to be used
@@ -290,9 +773,34 @@ public abstract class AbstractProcessingStep implements ProcessingStepInterface
 	 * it returns the value of the queried columns as strings, not performing any
 	 * relational to object mapping beyond that.
 	 * <p>
-	 * To maximize performance, the processing action may be executed in any thread,
-	 * so thread-safety must be guaranteed in its implementation if shared state is
-	 * to be accessed.
+	 * To maximize performance, the processing action is executed by a pool of
+	 * worker threads, whose size is given by the corresponding step parameter,
+	 * while the calling thread keeps reading documents. Therefore, thread-safety
+	 * must be guaranteed in its implementation if shared state is to be accessed.
+	 * </p>
+	 * <p>
+	 * Documents are retrieved in pages, whose size is given by the corresponding
+	 * step parameter. In keyset paging mode, which is the default, the query must
+	 * return the primary key as the first column, sort the results by it, and
+	 * only select documents whose primary key is greater than the
+	 * {@code :lastPrimaryKey} named parameter, as the statements built by
+	 * {@link #buildUnprocessedDocumentSelectStatement()} and
+	 * {@link #buildUnprocessedDocumentWithTitleSelectStatement()} do. Then, every
+	 * page is retrieved in about the same time, no matter how many documents were
+	 * retrieved before.
+	 * </p>
+	 * <p>
+	 * Unless disabled by the corresponding step parameter, the documents of a page
+	 * are streamed from a forward-only database cursor, and divided in batches as
+	 * they are read. Therefore, only the batches being processed are kept in
+	 * memory, no matter how big pages are.
+	 * </p>
+	 * <p>
+	 * If a target batch latency step parameter is given, batches are not divided
+	 * by a fixed number of documents. Instead, the time processing each batch took
+	 * is measured, and documents are added to a batch until processing its
+	 * characters is expected to take that time, within the configured minimum and
+	 * maximum batch sizes.
 	 * </p>
 	 * <p>
 	 * This method assumes a transaction is already active.
@@ -304,7 +812,10 @@ public abstract class AbstractProcessingStep implements ProcessingStepInterface
 	 * @param taskName          The name of the task that will be performed with the
 	 *                          documents. It will be shown to the user.
 	 * @param numberOfDocuments The total number of documents that will be processed
-	 *                          by the action. It must be zero or greater.
+	 *                          by the action, or a negative number if it is not
+	 *                          known. It is only used to show progress
+	 *                          information, so the processing ends when the query
+	 *                          returns no more documents.
 	 * @param action            The action to execute for every batch of documents.
 	 *                          A batch contains at least one document. The list
 	 *                          supplied to the consumer is not modifiable.
@@ -314,7 +825,9 @@ public abstract class AbstractProcessingStep implements ProcessingStepInterface
 	 *                          any case, no matter if processing is successful or
 	 *                          not, any database transactions made by calling
 	 *                          methods of this class are committed or rolled back
-	 *                          before invoking this action.
+	 *                          before invoking this action, except the writes of
+	 *                          processed documents, which may still be queued to be
+	 *                          committed in the background.
 	 * @throws ProcessingException If any parameter is invalid, or an exception
 	 *                             occurred during the processing.
 	 */
@@ -323,121 +836,302 @@ public abstract class AbstractProcessingStep implements ProcessingStepInterface
 		@NonNull final ProcessingConsumer<List<String[]>> action,
 		final Runnable pageEndAction
 	) throws ProcessingException {
-		long numberOfPages;
-		long numberOfSteps;
+		forEachDocument(
+			List.of(new DocumentSource(querySupplier, taskName, numberOfDocuments, action, null, Long.MIN_VALUE)),
+			pageEndAction, List.of()
+		);
+	}
+
+	/**
+	 * Executes the action of each document source for each batch of documents
+	 * retrieved by its native JPA query, as described in
+	 * {@link #forEachDocumentInNativeQuery(Supplier, String, long, ProcessingConsumer, Runnable)},
+	 * optionally starting after a primary key and recording the high-water mark of
+	 * the processed documents. Sources are read in turns of a page each, and the
+	 * batches of every source are processed by the same pool of worker threads,
+	 * which is only waited for after every page of a turn was read. The pages of a
+	 * turn are committed together, and the given checkpointers commit the results
+	 * stored outside the database before, so those results are never behind the
+	 * recorded high-water marks.
+	 * <p>
+	 * The processed documents of a turn are committed in the background by the
+	 * database writer, while the next turn is read and processed. They are handed
+	 * over to it before the turn ends too, if enough documents or time pile up.
+	 * Every write is committed before this method returns.
+	 * </p>
+	 * <p>
+	 * While documents are processed, the metrics of this step are published
+	 * through JMX, as described in {@link ProcessingStepMetricsMXBean}.
+	 * </p>
+	 *
+	 * @param documentSources The sources of the documents to process. Their
+	 *                        reading progress is updated as they are read.
+	 * @param pageEndAction   The action to execute after each turn of pages, or
+	 *                        {@code null}.
+	 * @param checkpointers   The checkpointers of the results stored outside the
+	 *                        database by the actions.
+	 * @throws ProcessingException If any parameter is invalid, or an exception
+	 *                             occurred during the processing.
+	 */
+	private void forEachDocument(
+		final List<DocumentSource> documentSources, final Runnable pageEndAction,
+		final List<ExternalResultsCheckpointer> checkpointers
+	) throws ProcessingException {
+		// Any upstream step we are fused with must store its results before we can read them
+		executeUpstreamStep(null, null, null);
+
+		final Map<String, String> parameters = getParameters();
 		final int pageSize = Integer.parseInt(
-			getParameters().getOrDefault(PAGE_SIZE_STEP_PARAMETER_NAME, DEFAULT_PAGE_SIZE_STEP_PARAMETER)
+			parameters.getOrDefault(PAGE_SIZE_STEP_PARAMETER_NAME, DEFAULT_PAGE_SIZE_STEP_PARAMETER)
 		);
 		final int batchSize = Integer.parseInt(
-			getParameters().getOrDefault(BATCH_SIZE_STEP_PARAMETER_NAME, DEFAULT_BATCH_SIZE_STEP_PARAMETER)
+			parameters.getOrDefault(BATCH_SIZE_STEP_PARAMETER_NAME, DEFAULT_BATCH_SIZE_STEP_PARAMETER)
+		);
+		final boolean keysetPaging = KEYSET_PAGING_MODE.equals(
+			parameters.getOrDefault(PAGING_MODE_STEP_PARAMETER_NAME, DEFAULT_PAGING_MODE_STEP_PARAMETER)
+		);
+		final boolean streamResults = AbstractProcessingStepParameter.convertValueToBoolean(
+			parameters.getOrDefault(STREAM_RESULTS_STEP_PARAMETER_NAME, DEFAULT_STREAM_RESULTS_STEP_PARAMETER)
+		);
+		final int fetchSize = Integer.parseInt(
+			parameters.getOrDefault(FETCH_SIZE_STEP_PARAMETER_NAME, DEFAULT_FETCH_SIZE_STEP_PARAMETER)
+		);
+		final int workerThreads = Integer.parseInt(
+			parameters.getOrDefault(WORKER_THREADS_STEP_PARAMETER_NAME, DEFAULT_WORKER_THREADS_STEP_PARAMETER)
+		);
+		final int minimumBatchSize = Integer.parseInt(
+			parameters.getOrDefault(MINIMUM_BATCH_SIZE_STEP_PARAMETER_NAME, DEFAULT_MINIMUM_BATCH_SIZE_STEP_PARAMETER)
 		);
-		final List<String[]> entityAttributesBatch = new ArrayList<>(batchSize);
-
-		numberOfPages = numberOfDocuments / pageSize + (numberOfDocuments % pageSize == 0 ? 0 : 1);
-		numberOfSteps =
-			// At least one step per page
-			numberOfPages +
-			// For each surely complete page (every page except the last), there can be an extra step
-			// because of documents that didn't complete a batch
-			(numberOfPages - 1) * (pageSize % batchSize == 0 ? 0 : 1) +
-			// For the last page, there can be an extra step too (but it might not be a complete page)
-			((numberOfDocuments % pageSize) % batchSize == 0 ? 0 : 1);
+		final AdaptiveBatchSizer batchSizer = parameters.containsKey(TARGET_BATCH_LATENCY_STEP_PARAMETER_NAME) ?
+			new AdaptiveBatchSizer(
+				TimeUnit.MILLISECONDS.toNanos(Integer.parseInt(parameters.get(TARGET_BATCH_LATENCY_STEP_PARAMETER_NAME))),
+				batchSize,
+				minimumBatchSize,
+				Integer.parseInt(
+					parameters.getOrDefault(
+						MAXIMUM_BATCH_SIZE_STEP_PARAMETER_NAME,
+						Integer.toString(Math.max(minimumBatchSize, pageSize / workerThreads))
+					)
+				)
+			) : null;
+		final int writeBatchSize = Integer.parseInt(
+			parameters.getOrDefault(WRITE_BATCH_SIZE_STEP_PARAMETER_NAME, DEFAULT_WRITE_BATCH_SIZE_STEP_PARAMETER)
+		);
+		final long writeInterval = TimeUnit.MILLISECONDS.toNanos(Integer.parseInt(
+			parameters.getOrDefault(WRITE_INTERVAL_STEP_PARAMETER_NAME, DEFAULT_WRITE_INTERVAL_STEP_PARAMETER)
+		));
+		final Queue<Future<?>> pendingWrites = new ArrayDeque<>();
+		long lastWriteTime = System.nanoTime();
+		final List<DocumentSource> pendingSources = new ArrayList<>(documentSources);
+		boolean recordHighWaterMarks = false;
+		long numberOfPages = 0;
+
+		for (final DocumentSource source : documentSources) {
+			// The number of pages is unknown if the number of documents of some source is unknown
+			numberOfPages = numberOfPages < 0 || source.numberOfDocuments < 0 ? -1 : Math.max(
+				numberOfPages, source.numberOfDocuments / pageSize + (source.numberOfDocuments % pageSize == 0 ? 0 : 1)
+			);
+			recordHighWaterMarks = recordHighWaterMarks || source.highWaterMarkSource != null;
+		}
 
-		try {
-			for (int page = 0; page < numberOfPages; ++page) {
-				final Query query = querySupplier.get();
+		// Queue enough batches for every worker thread to have another batch ready when it is done
+		try (
+			final BatchWorkerPool batchWorkerPool = new BatchWorkerPool(getClass().getSimpleName(), workerThreads, workerThreads);
+			final ProcessingStepMetrics metrics = ProcessingStepMetrics.publish(
+				getClass().getSimpleName(), false, batchWorkerPool::getPendingBatches,
+				() -> processedDocumentWriter.getPendingDocuments()
+			)
+		) {
+			for (long page = 0; !pendingSources.isEmpty(); ++page) {
+				final EntityTransaction readTransaction = TextProcPersistence.get().getEntityManager().getTransaction();
+				ProgressBar progressBar = null;
+				int pageDocuments = 0;
+
+				// Read documents in a transaction that is committed with the page changes,
+				// so any lock the database holds because of the reads is released
+				if (!readTransaction.isActive()) {
+					readTransaction.begin();
+				}
 
-				if (query == null) {
-					throw new ProcessingException("The query supplier returned a null query");
+				for (final DocumentSource source : documentSources) {
+					source.pageDocuments = 0;
 				}
 
-				query.setFirstResult(page * pageSize);
-				query.setMaxResults(pageSize);
-
-				// We do not use getResultStream() to increase the chance that the resulting stream has a defined size
-				final Stream<?> resultStream = query.getResultList().parallelStream();
-
-				ProgressBar.wrap(
-					resultStream,
-					new ProgressBarBuilder()
-						.setConsumer(progressBarConsumer)
-						.setTaskName(taskName + " (" + (page + 1) + "/" + numberOfSteps + ")")
-						.setStyle(ProgressBarStyle.ASCII)
-						.showSpeed()
-				).forEach((final Object result) -> {
-					String[] attributes;
-					List<String[]> currentBatch = null;
-
-					try {
-						if (result.getClass().isArray()) {
-							// Several columns in result. Convert them to strings
-							// (casting Object[] to String[] doesn't work)
-							attributes = new String[((Object[]) result).length];
-	
-							for (int i = 0; i < attributes.length; ++i) {
-								attributes[i] = columnAttributeToString(((Object[]) result)[i]);
-							}
+				try {
+					for (final DocumentSource source : pendingSources) {
+						final Query query = source.querySupplier.get();
+
+						if (query == null) {
+							throw new ProcessingException("The query supplier returned a null query");
+						}
+
+						if (keysetPaging) {
+							query.setParameter(LAST_PRIMARY_KEY_QUERY_PARAMETER_NAME, source.lastPrimaryKey);
 						} else {
-							// One column in result. Wrap it in an array
-							attributes = new String[] { columnAttributeToString(result) };
+							try {
+								query.setFirstResult(Math.toIntExact(page * pageSize));
+							} catch (final ArithmeticException exc) {
+								throw new ProcessingException(
+									"Too many documents to retrieve them with offset paging. Use keyset paging instead", exc
+								);
+							}
 						}
+						query.setMaxResults(pageSize);
 
-						synchronized (entityAttributesBatch) {
-							entityAttributesBatch.add(attributes);
+						if (streamResults) {
+							query.setHint(FETCH_SIZE_QUERY_HINT_NAME, fetchSize);
+						}
+
+						final PageFetchEvent pageFetchEvent = new PageFetchEvent();
+						long pageCharacters = 0;
+						long pageReadTime = 0;
+
+						pageFetchEvent.begin();
+						long readStartTime = System.nanoTime();
+						try (final Stream<?> resultStream = streamResults ? query.getResultStream() : query.getResultList().stream()) {
+							final Iterator<?> resultIterator = resultStream.iterator();
+							List<String[]> entityAttributesBatch = new ArrayList<>(batchSize);
+							long batchFirstPrimaryKey = source.lastPrimaryKey;
+							long batchCharacters = 0;
+
+							while (resultIterator.hasNext()) {
+								final Object result = resultIterator.next();
+								final long readTime = System.nanoTime() - readStartTime;
+
+								metrics.recordRead(readTime);
+								pageReadTime += readTime;
+
+								if (progressBar == null) {
+									progressBar = buildPageProgressBar(pendingSources, page, numberOfPages, pageSize);
+								}
+
+								if (++pageDocuments > progressBar.getMax()) {
+									progressBar.maxHint(pageDocuments);
+								}
+								++source.pageDocuments;
+
+								if (keysetPaging) {
+									source.lastPrimaryKey = getPrimaryKey(result);
+
+									if (entityAttributesBatch.isEmpty()) {
+										batchFirstPrimaryKey = source.lastPrimaryKey;
+									}
+								}
+
+								try {
+									final String[] entityAttributes = resultToAttributes(result);
+
+									final long documentCharacters = getCharacters(entityAttributes);
+
+									entityAttributesBatch.add(entityAttributes);
+									batchCharacters += documentCharacters;
+									pageCharacters += documentCharacters;
+								} catch (final ProcessingException exc) {
+									TextProcLogging.getLogger().log(
+										Level.WARNING, "An exception occurred while reading a document. Skipping...", exc
+									);
+									progressBar.step();
+								}
+
+								// Batch completed. Hand it over to a worker thread, and start a new one
+								if (
+									batchSizer == null ?
+										entityAttributesBatch.size() >= batchSize :
+										batchSizer.isBatchComplete(entityAttributesBatch.size(), batchCharacters)
+								) {
+									processBatchAsynchronously(
+										entityAttributesBatch, batchFirstPrimaryKey, batchCharacters, source, batchWorkerPool,
+										batchSizer, metrics, progressBar
+									);
+									entityAttributesBatch = new ArrayList<>(batchSize);
+									batchCharacters = 0;
+
+									// Don't let processed documents pile up in memory until the page ends
+									if (
+										processedDocumentWriter.getPendingDocuments() >= writeBatchSize || (
+											System.nanoTime() - lastWriteTime >= writeInterval &&
+											processedDocumentWriter.hasPendingDocuments()
+										)
+									) {
+										writeProcessedDocumentsBehind(Map.of(), pendingWrites, metrics);
+										lastWriteTime = System.nanoTime();
+									}
+								}
+
+								readStartTime = System.nanoTime();
+							}
 
-							// Batch completed. Copy it so we exit the critical section ASAP,
-							// and we can add documents to a new batch without the consumer noticing
-							if (entityAttributesBatch.size() >= batchSize) {
-								currentBatch = List.copyOf(entityAttributesBatch);
-								entityAttributesBatch.clear();
+							final long readTime = System.nanoTime() - readStartTime;
+							metrics.recordRead(readTime);
+							pageReadTime += readTime;
+
+							// Process any remaining document that did not make it to a complete batch.
+							// Don't wait for it to be processed before reading the page of the next source
+							if (!entityAttributesBatch.isEmpty()) {
+								processBatchAsynchronously(
+									entityAttributesBatch, batchFirstPrimaryKey, batchCharacters, source, batchWorkerPool,
+									batchSizer, metrics, progressBar
+								);
 							}
 						}
 
-						// Accept the batch. This can block until the batch is processed,
-						// but as we are outside a critical section it's not a bottleneck
-						if (currentBatch != null) {
-							action.accept(currentBatch);
+						pageFetchEvent.end();
+						if (pageFetchEvent.shouldCommit()) {
+							pageFetchEvent.setStepName(getClass().getSimpleName());
+							pageFetchEvent.setTaskName(source.taskName);
+							pageFetchEvent.setPage(page);
+							pageFetchEvent.setDocuments(source.pageDocuments);
+							pageFetchEvent.setCharacters(pageCharacters);
+							pageFetchEvent.setReadTime(pageReadTime);
+							pageFetchEvent.commit();
 						}
-					} catch (final Exception exc) {
-						// Exceptions thrown by this method get silently discarded.
-						// Handle that by logging them
-						TextProcLogging.getLogger().log(
-							Level.WARNING, "An exception occurred while processing a batch of documents. Skipping...", exc
-						);
 					}
-				});
-
-				// Accept any remaining entity that did not make it to a complete batch
-				try {
-					synchronized (entityAttributesBatch) {
-						final int lastBatchSize = entityAttributesBatch.size();
-
-						if (lastBatchSize > 0) {
-							try (final ProgressBar progressBar =
-								new ProgressBarBuilder()
-									.setConsumer(progressBarConsumer)
-									.setTaskName(taskName + " (" + (page + 2) + "/" + numberOfSteps + ")")
-									.setStyle(ProgressBarStyle.ASCII)
-									.showSpeed()
-									.setInitialMax(lastBatchSize)
-									.build()
-							) {
-								action.accept(Collections.unmodifiableList(entityAttributesBatch));
-								progressBar.stepTo(lastBatchSize);
-							}
+				} finally {
+					// Wait for every batch of the pages to be processed
+					batchWorkerPool.awaitBatches();
+
+					if (progressBar != null) {
+						// Pages are expected to be full when the number of documents is not known
+						if (numberOfPages < 0) {
+							progressBar.maxHint(progressBar.getCurrent());
 						}
+
+						progressBar.close();
 					}
-				} catch (final Exception exc) {
-					TextProcLogging.getLogger().log(
-						Level.WARNING, "An exception occurred while processing a batch of documents. Skipping...", exc
-					);
+				}
+
+				// A page that is not full is the last one of its source
+				for (final DocumentSource source : pendingSources) {
+					source.documentsRead += source.pageDocuments;
+				}
+				pendingSources.removeIf((final DocumentSource source) -> source.pageDocuments < pageSize);
+
+				// If no source had documents, there's nothing to do
+				if (pageDocuments == 0) {
+					break;
 				}
 
 				System.out.println();
-				if (databaseEntitiesChanged) {
-					System.out.println("> Committing changes to the database...");
-					TextProcPersistence.get().flushEntities();
-					System.out.print("> Changes committed.");
+				if (databaseEntitiesChanged || processedDocumentWriter.hasPendingDocuments() || recordHighWaterMarks) {
+					final Map<String, Long> highWaterMarks = new HashMap<>();
+
+					System.out.println("> Committing changes to the database in the background...");
+					for (final ExternalResultsCheckpointer checkpointer : checkpointers) {
+						checkpointer.commit();
+					}
+
+					// Documents of failed batches are not processed yet, so the marks stop before them
+					for (final DocumentSource source : documentSources) {
+						if (source.highWaterMarkSource != null && source.pageDocuments > 0) {
+							highWaterMarks.put(source.highWaterMarkSource, source.getHighWaterMark());
+						}
+					}
+
+					writeProcessedDocumentsBehind(highWaterMarks, pendingWrites, metrics);
+					lastWriteTime = System.nanoTime();
+
+					// Release the locks of our reads, so the database writer doesn't wait for them
+					TextProcPersistence.get().flushThreadEntities();
 
 					databaseEntitiesChanged = false;
 				}
@@ -446,78 +1140,259 @@ public abstract class AbstractProcessingStep implements ProcessingStepInterface
 					pageEndAction.run();
 				}
 			}
+
+			// Downstream steps may read what we wrote, so it must be committed before we are done
+			while (!pendingWrites.isEmpty()) {
+				TextProcPersistence.get().awaitWriteWork(pendingWrites.poll());
+			}
+			System.out.print("> Changes committed.");
 		} catch (final PersistenceException exc) {
 			throw new ProcessingException(DATA_ACCESS_EXCEPTION_MESSAGE, exc);
+		} catch (final RejectedExecutionException exc) {
+			throw new ProcessingException("Interrupted while waiting for a worker thread to process a batch", exc);
+		} finally {
+			// If something went wrong, the pages that were processed before can still be committed
+			while (!pendingWrites.isEmpty()) {
+				try {
+					TextProcPersistence.get().awaitWriteWork(pendingWrites.poll());
+				} catch (final PersistenceException exc) {
+					TextProcLogging.getLogger().log(
+						Level.WARNING, "An exception occurred while committing the changes of a page", exc
+					);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Hands the processed documents saved so far over to the database writer, so
+	 * they are committed in the background while more documents are processed.
+	 * Any failure of the writes handed over before that are already done is
+	 * reported.
+	 *
+	 * @param highWaterMarks The high-water marks to commit with the documents,
+	 *                       which cover them, by source table.
+	 * @param pendingWrites  The results of the writes that were handed over, and
+	 *                       may not be done yet. The result of this write is added
+	 *                       to it.
+	 * @param metrics        The metrics to record the duration of the write in.
+	 * @throws PersistenceException If some data access error occurred during a
+	 *                              write that was handed over before.
+	 * @see TextProcPersistence#doWriteWorkAsynchronously(es.uvigo.esei.sing.textproc.persistence.JdbcWork)
+	 */
+	private void writeProcessedDocumentsBehind(
+		final Map<String, Long> highWaterMarks, final Queue<Future<?>> pendingWrites, final ProcessingStepMetrics metrics
+	) {
+		final ProcessedDocumentBulkWriter documentsToWrite = processedDocumentWriter.drain();
+		final boolean replaceExisting = isIncremental() || resuming;
+		final String stepName = getClass().getSimpleName();
+		final String metadataStepName = getMetadataStepName();
+		// Set by the database writer when it starts the write
+		final VariableHolder<Long> writeStartTime = new VariableHolder<>(null);
+
+		metrics.recordWriteHandedOver();
+		pendingWrites.add(TextProcPersistence.get().doWriteWorkAsynchronously((final Connection connection) -> {
+			final ProcessedDocumentsWriteEvent writeEvent = new ProcessedDocumentsWriteEvent();
+			final int documents = documentsToWrite.getPendingDocuments();
+
+			writeStartTime.setVariable(System.nanoTime());
+			writeEvent.begin();
+
+			documentsToWrite.write(connection, replaceExisting);
+
+			for (final Entry<String, Long> highWaterMark : highWaterMarks.entrySet()) {
+				ProcessingStepMetadata.setHighWaterMark(
+					connection, metadataStepName, highWaterMark.getKey(), highWaterMark.getValue()
+				);
+			}
+
+			metrics.recordWrite(System.nanoTime() - writeStartTime.getVariable());
+
+			writeEvent.end();
+			if (writeEvent.shouldCommit()) {
+				writeEvent.setStepName(stepName);
+				writeEvent.setDocuments(documents);
+				writeEvent.setHighWaterMarks(highWaterMarks.size());
+				writeEvent.commit();
+			}
+		}).whenComplete((final Void result, final Throwable exc) -> {
+			final Long startTime = writeStartTime.getVariable();
+
+			metrics.recordWriteDone(startTime == null ? 0 : System.nanoTime() - startTime, exc == null);
+		}));
+
+		while (!pendingWrites.isEmpty() && pendingWrites.peek().isDone()) {
+			TextProcPersistence.get().awaitWriteWork(pendingWrites.poll());
 		}
 	}
 
+	/**
+	 * Returns the number of characters of the attributes of a document.
+	 *
+	 * @param entityAttributes The attributes of the document.
+	 * @return The described number. Missing attributes have no characters.
+	 */
+	private static long getCharacters(final String[] entityAttributes) {
+		long characters = 0;
+
+		for (final String entityAttribute : entityAttributes) {
+			characters += entityAttribute == null ? 0 : entityAttribute.length();
+		}
+
+		return characters;
+	}
+
+	/**
+	 * Builds the progress bar of a turn of pages of the given document sources.
+	 *
+	 * @param documentSources The document sources whose pages are read in the
+	 *                        turn.
+	 * @param page            The index of the turn, starting at 0.
+	 * @param numberOfPages   The expected number of turns, or a negative number if
+	 *                        it is not known.
+	 * @param pageSize        The maximum number of documents of a page.
+	 * @return The described progress bar.
+	 */
+	private ProgressBar buildPageProgressBar(
+		final List<DocumentSource> documentSources, final long page, final long numberOfPages, final int pageSize
+	) {
+		final StringBuilder taskNameBuilder = new StringBuilder();
+		long expectedDocuments = 0;
+
+		for (final DocumentSource source : documentSources) {
+			if (taskNameBuilder.length() > 0) {
+				taskNameBuilder.append(" & ");
+			}
+			taskNameBuilder.append(source.taskName);
+
+			// Expect a full page if the number of documents is not known
+			expectedDocuments += source.numberOfDocuments < 0 ?
+				pageSize :
+				Math.min(pageSize, Math.max(source.numberOfDocuments - source.documentsRead, 1));
+		}
+
+		taskNameBuilder.append(" (").append(page + 1).append('/');
+		if (numberOfPages < 0) {
+			taskNameBuilder.append('?');
+		} else {
+			taskNameBuilder.append(Math.max(numberOfPages, page + 1));
+		}
+		taskNameBuilder.append(')');
+
+		return new ProgressBarBuilder()
+			.setConsumer(progressBarConsumer)
+			.setTaskName(taskNameBuilder.toString())
+			.setStyle(ProgressBarStyle.ASCII)
+			.showSpeed()
+			.setInitialMax(expectedDocuments)
+			.build();
+	}
+
+	/**
+	 * Executes the action of a document source for a batch of its documents in a
+	 * worker thread. If every worker thread is busy and the queue of pending
+	 * batches is full, this method blocks until some batch is processed, so
+	 * documents are not read faster than they can be processed. If the action
+	 * fails, the batch is skipped, and the source is told so its high-water mark
+	 * doesn't go past the batch.
+	 *
+	 * @param batch                The batch of documents to process.
+	 * @param batchFirstPrimaryKey The primary key of the first document of the
+	 *                             batch, when keyset paging is used.
+	 * @param batchCharacters      The number of characters of the documents of
+	 *                             the batch.
+	 * @param source               The source the documents were read from.
+	 * @param batchWorkerPool      The pool of worker threads that will process the
+	 *                             batch.
+	 * @param batchSizer           The sizer to tell how long processing the batch
+	 *                             took, or {@code null} if batches are not
+	 *                             resized.
+	 * @param metrics              The metrics to record the processed batch in.
+	 * @param progressBar          The progress bar to step when the batch is
+	 *                             processed.
+	 */
+	private void processBatchAsynchronously(
+		final List<String[]> batch, final long batchFirstPrimaryKey, final long batchCharacters, final DocumentSource source,
+		final BatchWorkerPool batchWorkerPool, final AdaptiveBatchSizer batchSizer, final ProcessingStepMetrics metrics,
+		final ProgressBar progressBar
+	) {
+		final List<String[]> unmodifiableBatch = Collections.unmodifiableList(batch);
+
+		batchWorkerPool.submit(() -> {
+			final BatchProcessingEvent batchProcessingEvent = new BatchProcessingEvent();
+
+			batchProcessingEvent.begin();
+			try {
+				final long batchStartTime = System.nanoTime();
+				final long batchProcessingTime;
+
+				source.action.accept(unmodifiableBatch);
+
+				batchProcessingTime = System.nanoTime() - batchStartTime;
+				metrics.recordBatch(unmodifiableBatch.size(), batchCharacters, batchProcessingTime);
+				if (batchSizer != null) {
+					batchSizer.recordBatch(batchCharacters, batchProcessingTime);
+				}
+
+				batchProcessingEvent.setSuccessful(true);
+			} catch (final Exception exc) {
+				// Exceptions thrown by this method get silently discarded.
+				// Handle that by logging them
+				TextProcLogging.getLogger().log(
+					Level.WARNING, "An exception occurred while processing a batch of documents. Skipping...", exc
+				);
+				source.recordFailedBatch(batchFirstPrimaryKey);
+			} finally {
+				batchProcessingEvent.end();
+				if (batchProcessingEvent.shouldCommit()) {
+					batchProcessingEvent.setStepName(getClass().getSimpleName());
+					batchProcessingEvent.setDocuments(unmodifiableBatch.size());
+					batchProcessingEvent.setCharacters(batchCharacters);
+					batchProcessingEvent.commit();
+				}
+
+				progressBar.stepBy(unmodifiableBatch.size());
+			}
+		});
+	}
 
 	/**
 	 * Stores a processed document in the database, from its processed attributes.
-	 * This method starts and commits or rollbacks a JPA transaction, if no
-	 * transaction is already active.
+	 * For performance, the document is not stored immediately: documents are
+	 * buffered in memory, and inserted in JDBC batches by the thread that reads
+	 * documents after each page is processed, or when the step ends, within its
+	 * transaction.
+	 * <p>
+	 * If this step is fused with a downstream step, the document is handed over to
+	 * it too, and it is only stored if results of fused steps are to be persisted.
+	 * </p>
 	 *
 	 * @param documentType        The type of document that is being processed, and
-	 *                            will be stored. It will be instantiated via
-	 *                            reflection, so the module containing the type
-	 *                            definition must open its package for deep
-	 *                            reflection to the module containing this code.
+	 *                            will be stored. Its table and columns are read from
+	 *                            its JPA mapping annotations.
 	 * @param primaryKey          The primary key of the processed document.
 	 * @param processedAttributes The processed attributes of the document. Their
 	 *                            names (keys) must match the attributes of the
-	 *                            concrete document type.
+	 *                            concrete document type. Attributes that are not
+	 *                            present are stored as empty strings.
 	 * @throws ProcessingException      If some error occurs during the operation.
 	 * @throws IllegalArgumentException If any parameter is {@code null}.
-	 * @throws PersistenceException     If some data access error occurs.
 	 */
 	protected final void saveProcessedDocument(
 		@NonNull final Class<? extends ProcessedDocument> documentType, final int primaryKey, @NonNull final Map<String, String> processedAttributes
 	) throws ProcessingException {
-		final EntityManager thisThreadEntityManager = TextProcPersistence.get().getEntityManager();
-		final EntityTransaction entityTransaction = thisThreadEntityManager.getTransaction();
-		final ProcessedDocument entityToPersist;
-		boolean startedTransaction = false;
-		boolean transactionSuccessful = true;
+		final FusedOutputBatch fusedOutput = fusedOutputBatch.get();
 
-		try {
-			entityToPersist = documentType.getConstructor(Integer.class).newInstance(primaryKey);
-		} catch (final ReflectiveOperationException exc) {
-			throw new ProcessingException(
-				"Document class implementation contract violation, or unappropriate permissions for reflective operation", exc
-			);
-		}
+		if (fusedOutput != null) {
+			fusedOutput.add(primaryKey, processedAttributes);
 
-		if (!entityTransaction.isActive()) {
-			entityTransaction.begin();
-			startedTransaction = true;
-		}
-
-		try {
-			thisThreadEntityManager.persist(entityToPersist);
-			databaseEntitiesChanged = true;
-		} catch (final PersistenceException exc) {
-			transactionSuccessful = false;
-			throw exc;
-		} finally {
-			if (startedTransaction && !transactionSuccessful) {
-				entityTransaction.setRollbackOnly();
+			if (!persistResults) {
+				return;
 			}
 		}
 
-		// Change the entity processed data
-		for (final Entry<String, String> processedAttribute : processedAttributes.entrySet()) {
-			try {
-				final String attributeName = processedAttribute.getKey();
-
-				documentType
-					.getMethod("set" + attributeName.substring(0, 1).toUpperCase() + attributeName.substring(1), String.class)
-					.invoke(entityToPersist, processedAttribute.getValue());
-			} catch (final ReflectiveOperationException exc) {
-				throw new ProcessingException(
-					"Couldn't invoke attribute setter", exc
-				);
-			}
-		}
+		processedDocumentWriter.add(documentType, primaryKey, processedAttributes);
+		databaseEntitiesChanged = true;
 	}
 
 	/**
@@ -546,6 +1421,7 @@ public abstract class AbstractProcessingStep implements ProcessingStepInterface
 		dmlSentenceBuilder.append(
 			parameters.get(TEXT_DOCUMENT_WITH_TITLE_TABLE_NAME_PROCESSING_STEP_PARAMETER_NAME)
 		);
+		appendPagingClauses(dmlSentenceBuilder);
 
 		return dmlSentenceBuilder.toString();
 	}
@@ -572,10 +1448,36 @@ public abstract class AbstractProcessingStep implements ProcessingStepInterface
 		dmlSentenceBuilder.append(
 			parameters.get(TEXT_DOCUMENT_TABLE_NAME_PROCESSING_STEP_PARAMETER_NAME)
 		);
+		appendPagingClauses(dmlSentenceBuilder);
 
 		return dmlSentenceBuilder.toString();
 	}
 
+	/**
+	 * Appends to a SELECT SQL statement the clauses needed to retrieve its results
+	 * in pages, according to the paging mode of this step. The results are always
+	 * sorted by primary key, so every page contains different documents.
+	 *
+	 * @param dmlSentenceBuilder The builder of the statement to append the clauses
+	 *                           to.
+	 */
+	private void appendPagingClauses(final StringBuilder dmlSentenceBuilder) {
+		final Map<String, String> parameters = getParameters();
+		final String primaryKeyColumn = parameters.getOrDefault(
+			PRIMARY_KEY_COLUMN_PROCESSING_STEP_PARAMETER_NAME, DEFAULT_PRIMARY_KEY_COLUMN_PROCESSING_STEP_PARAMETER
+		);
+
+		if (KEYSET_PAGING_MODE.equals(parameters.getOrDefault(PAGING_MODE_STEP_PARAMETER_NAME, DEFAULT_PAGING_MODE_STEP_PARAMETER))) {
+			dmlSentenceBuilder.append(" WHERE ");
+			dmlSentenceBuilder.append(primaryKeyColumn);
+			dmlSentenceBuilder.append(" > :");
+			dmlSentenceBuilder.append(LAST_PRIMARY_KEY_QUERY_PARAMETER_NAME);
+		}
+
+		dmlSentenceBuilder.append(" ORDER BY ");
+		dmlSentenceBuilder.append(primaryKeyColumn);
+	}
+
 	/**
 	 * Returns the number of unprocessed text documents with title in the database.
 	 * This method assumes a transaction is already active.
@@ -607,31 +1509,149 @@ public abstract class AbstractProcessingStep implements ProcessingStepInterface
 	}
 
 	/**
-	 * Deletes all the processed documents of a given type from the database.
+	 * Returns the expected number of unprocessed documents in a table whose
+	 * primary key is greater than the given one, as obtained by the configured
+	 * progress total strategy. This method assumes a transaction is already
+	 * active.
+	 *
+	 * @param tableName      The table of the unprocessed documents.
+	 * @param lastPrimaryKey The primary key documents must be greater than, or
+	 *                       the least long value to take every document into
+	 *                       account.
+	 * @return The described number, or a negative number if it is not known.
+	 * @throws PersistenceException If some error occurs while executing SQL
+	 *                              statements in the database.
+	 */
+	private long getExpectedNumberOfDocumentsAfter(final String tableName, final long lastPrimaryKey) {
+		final ProgressTotalStrategy progressTotalStrategy = ProgressTotalStrategy.fromParameterValue(
+			getParameters().getOrDefault(PROGRESS_TOTAL_STEP_PARAMETER_NAME, DEFAULT_PROGRESS_TOTAL_STEP_PARAMETER)
+		);
+		final String primaryKeyColumn = getParameters().getOrDefault(
+			PRIMARY_KEY_COLUMN_PROCESSING_STEP_PARAMETER_NAME, DEFAULT_PRIMARY_KEY_COLUMN_PROCESSING_STEP_PARAMETER
+		);
+		final VariableHolder<Long> numberOfDocuments = new VariableHolder<>(ProgressTotalStrategy.UNKNOWN_TOTAL);
+
+		// Don't even borrow a connection if nothing is going to be queried
+		if (progressTotalStrategy != ProgressTotalStrategy.UNKNOWN) {
+			TextProcPersistence.get().doWork((final Connection connection) ->
+				numberOfDocuments.setVariable(
+					progressTotalStrategy.getTotal(connection, tableName, primaryKeyColumn, lastPrimaryKey)
+				)
+			);
+		}
+
+		return numberOfDocuments.getVariable();
+	}
+
+	/**
+	 * Returns the greatest primary key of the documents this step has processed
+	 * from a table, as recorded in the metadata table.
+	 *
+	 * @param sourceTable The table this step reads documents from.
+	 * @return The described primary key, or the least long value if this step has
+	 *         not processed documents of the table yet.
+	 * @throws PersistenceException If some error occurs while executing SQL
+	 *                              statements in the database.
+	 */
+	private long getHighWaterMark(final String sourceTable) {
+		final VariableHolder<Long> highWaterMark = new VariableHolder<>(null);
+
+		TextProcPersistence.get().doWork((final Connection connection) ->
+			highWaterMark.setVariable(
+				ProcessingStepMetadata.getHighWaterMark(connection, getMetadataStepName(), sourceTable)
+			)
+		);
+
+		return highWaterMark.getVariable() == null ? Long.MIN_VALUE : highWaterMark.getVariable();
+	}
+
+	/**
+	 * Returns the name this step records its high-water marks with. Several steps
+	 * of the same type may read the same tables in a process, so the name includes
+	 * the index of this step in its process, if it was told.
+	 *
+	 * @return The described name.
+	 */
+	private String getMetadataStepName() {
+		return stepIndex < 0 ? getClass().getSimpleName() : getClass().getSimpleName() + '#' + stepIndex;
+	}
+
+	/**
+	 * Checks whether this step only processes the documents added since its last
+	 * execution, according to its parameters.
+	 *
+	 * @return True if this step processes documents incrementally, false
+	 *         otherwise.
+	 */
+	private boolean isIncremental() {
+		return AbstractProcessingStepParameter.convertValueToBoolean(
+			getParameters().getOrDefault(INCREMENTAL_STEP_PARAMETER_NAME, DEFAULT_INCREMENTAL_STEP_PARAMETER)
+		);
+	}
+
+	/**
+	 * Deletes all the processed documents of a given type from the database, as a
+	 * unit of work that writes to the database.
 	 *
 	 * @param <T>          The type of documents to delete.
 	 * @param documentType The type of documents to delete.
-	 * @throws IllegalArgumentException If {@code documentType} is {@code null}.
+	 * @throws IllegalArgumentException If {@code documentType} is {@code null}, or
+	 *                                  is not a mapped entity.
 	 * @throws PersistenceException     If some error occurs while executing SQL
 	 *                                  statements in the database.
+	 * @see TextProcPersistence#doWriteWork(es.uvigo.esei.sing.textproc.persistence.JdbcWork)
 	 */
 	protected final <T extends ProcessedDocument> void deleteAllProcessedDocumentsOfType(@NonNull final Class<T> documentType) {
-		final EntityManager entityManager = TextProcPersistence.get().getEntityManager();
+		final ProcessedDocumentMapping processedDocumentMapping;
 
-		final CriteriaDelete<T> deleteCriteria = entityManager.getCriteriaBuilder().createCriteriaDelete(documentType);
-		deleteCriteria.from(documentType);
+		try {
+			processedDocumentMapping = ProcessedDocumentMapping.of(documentType);
+		} catch (final ProcessingException exc) {
+			throw new IllegalArgumentException(exc);
+		}
 
-		System.out.println("> Deleting " + documentType.getSimpleName() + " entities...");
-		entityManager.createQuery(deleteCriteria).executeUpdate();
+		TextProcPersistence.get().doWriteWork(
+			(final Connection connection) -> deleteAllProcessedDocuments(connection, documentType, processedDocumentMapping)
+		);
 
 		databaseEntitiesChanged = true;
 	}
 
+	/**
+	 * Deletes all the processed documents of a given type from the database,
+	 * using the given connection and the table clear strategy of this step.
+	 *
+	 * @param connection               The connection to delete the documents
+	 *                                 with.
+	 * @param documentType             The type of documents to delete.
+	 * @param processedDocumentMapping The mapping of that type.
+	 * @throws SQLException If some data access error occurs.
+	 * @see TableClearStrategy
+	 */
+	private void deleteAllProcessedDocuments(
+		final Connection connection, final Class<? extends ProcessedDocument> documentType,
+		final ProcessedDocumentMapping processedDocumentMapping
+	) throws SQLException {
+		System.out.println("> Deleting " + documentType.getSimpleName() + " entities...");
+
+		TableClearStrategy.fromParameterValue(
+			getParameters().getOrDefault(TABLE_CLEAR_STRATEGY_STEP_PARAMETER_NAME, DEFAULT_TABLE_CLEAR_STRATEGY_STEP_PARAMETER)
+		).clear(connection, processedDocumentMapping.getTableName());
+	}
+
 	/**
 	 * Executes the processing step implemented by this object. The processing step
 	 * parameters are already validated and available upon request on
 	 * {@link #getParameters()}. This method is invoked in the context of a JPA
 	 * transaction that is started and committed or rolled back automatically.
+	 * <p>
+	 * Implementations should process documents with
+	 * {@link #processDocuments(List, String, BatchActionFactory)} when possible,
+	 * so this step can be fused with the steps next to it, and its execution can
+	 * be resumed. Steps that store results outside the database should use
+	 * {@link #processDocuments(List, String, BatchActionFactory, ExternalResultsCheckpointer)}
+	 * to that end.
+	 * </p>
 	 *
 	 * @throws ProcessingException If an exception occurs during execution.
 	 */
@@ -652,6 +1672,194 @@ public abstract class AbstractProcessingStep implements ProcessingStepInterface
 		}
 	}
 
+	/**
+	 * Executes the upstream step this step is fused with, if any and if it was not
+	 * executed already. The upstream step shares the processed document writer of
+	 * this step, so its results are stored along ours.
+	 *
+	 * @param actions       The batch actions of this step, for each unprocessed
+	 *                      document type, that the upstream step will execute
+	 *                      with its processed documents. If {@code null}, the
+	 *                      upstream step will store its results in the database
+	 *                      instead.
+	 * @param taskNames     The names of the tasks performed by the batch actions.
+	 *                      They are ignored if {@code actions} is {@code null}.
+	 * @param checkpointers The checkpointers of the results stored outside the
+	 *                      database by the batch actions. They are ignored if
+	 *                      {@code actions} is {@code null}.
+	 * @return True if the upstream step executed the given actions, so no more
+	 *         work is needed for this step to process its documents, false
+	 *         otherwise.
+	 * @throws ProcessingException If an exception occurs during the execution of
+	 *                             the upstream step.
+	 */
+	private boolean executeUpstreamStep(
+		final List<ProcessingConsumer<List<String[]>>> actions, final List<String> taskNames,
+		final List<ExternalResultsCheckpointer> checkpointers
+	) throws ProcessingException {
+		final AbstractProcessingStep upstream = upstreamStep;
+
+		if (upstream == null) {
+			return false;
+		}
+
+		// Upstream steps are executed once
+		upstreamStep = null;
+
+		upstream.processedDocumentWriter = processedDocumentWriter;
+		upstream.downstreamActions = actions;
+		upstream.downstreamTaskNames = taskNames;
+		upstream.downstreamCheckpointers = checkpointers;
+		upstream.resuming = resuming;
+		if (actions == null) {
+			upstream.persistResults = true;
+		}
+
+		upstream.parameters = upstreamStepParameters;
+		upstream.validateParameters();
+
+		System.out.print("> Executing ");
+		System.out.print(upstream.getClass().getSimpleName());
+		System.out.print(actions == null ? " before " : " fused with ");
+		System.out.print(getClass().getSimpleName());
+		System.out.println("...");
+
+		upstream.run();
+
+		return upstream.downstreamActionsComposed;
+	}
+
+	/**
+	 * Composes a batch action of this step with the corresponding batch action of
+	 * the downstream step this step is fused with, so that the processed documents
+	 * of each batch are handed over to the downstream step, in the same thread.
+	 *
+	 * @param action                    The batch action of this step.
+	 * @param downstreamAction          The batch action of the downstream step.
+	 * @param unprocessedAttributeNames The non primary key attribute names of the
+	 *                                  documents the downstream step expects, in
+	 *                                  order.
+	 * @return The composed batch action.
+	 */
+	private ProcessingConsumer<List<String[]>> composeWithDownstreamAction(
+		final ProcessingConsumer<List<String[]>> action, final ProcessingConsumer<List<String[]>> downstreamAction,
+		final String[] unprocessedAttributeNames
+	) {
+		return (final List<String[]> batch) -> {
+			final FusedOutputBatch outputBatch = new FusedOutputBatch(unprocessedAttributeNames, new ArrayList<>(batch.size()));
+
+			fusedOutputBatch.set(outputBatch);
+			try {
+				action.accept(batch);
+			} finally {
+				fusedOutputBatch.remove();
+			}
+
+			if (!outputBatch.documents.isEmpty()) {
+				downstreamAction.accept(Collections.unmodifiableList(outputBatch.documents));
+			}
+		};
+	}
+
+	/**
+	 * Wraps a batch action of this step so that the batches it processes are
+	 * recorded in the given metrics.
+	 *
+	 * @param action  The batch action of this step.
+	 * @param metrics The metrics to record the batches in.
+	 * @return The wrapped batch action.
+	 */
+	private static ProcessingConsumer<List<String[]>> measureBatchAction(
+		final ProcessingConsumer<List<String[]>> action, final ProcessingStepMetrics metrics
+	) {
+		return (final List<String[]> batch) -> {
+			final long batchStartTime = System.nanoTime();
+			long batchCharacters = 0;
+
+			action.accept(batch);
+
+			for (final String[] documentAttributes : batch) {
+				batchCharacters += getCharacters(documentAttributes);
+			}
+
+			metrics.recordBatch(batch.size(), batchCharacters, System.nanoTime() - batchStartTime);
+		};
+	}
+
+	/**
+	 * Inserts the processed documents saved so far in the database, as a unit of
+	 * work that writes to the database.
+	 *
+	 * @throws PersistenceException If some data access error occurs.
+	 * @see TextProcPersistence#doWriteWork(es.uvigo.esei.sing.textproc.persistence.JdbcWork)
+	 */
+	private void writeProcessedDocuments() {
+		if (processedDocumentWriter.hasPendingDocuments()) {
+			TextProcPersistence.get().doWriteWork(this::writeProcessedDocuments);
+		}
+	}
+
+	/**
+	 * Inserts the processed documents saved so far in the database, using the
+	 * given connection.
+	 *
+	 * @param connection The connection to insert the documents with.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	private void writeProcessedDocuments(final Connection connection) throws SQLException {
+		if (processedDocumentWriter.hasPendingDocuments()) {
+			processedDocumentWriter.write(connection, isIncremental() || resuming);
+		}
+	}
+
+	/**
+	 * Converts a document retrieved by a native query to an array with the string
+	 * values of its columns.
+	 *
+	 * @param result The document retrieved by the native query.
+	 * @return The described array.
+	 * @throws ProcessingException If some column value could not be converted.
+	 */
+	private String[] resultToAttributes(final Object result) throws ProcessingException {
+		final String[] attributes;
+
+		if (result.getClass().isArray()) {
+			// Several columns in result. Convert them to strings
+			// (casting Object[] to String[] doesn't work)
+			attributes = new String[((Object[]) result).length];
+
+			for (int i = 0; i < attributes.length; ++i) {
+				attributes[i] = columnAttributeToString(((Object[]) result)[i]);
+			}
+		} else {
+			// One column in result. Wrap it in an array
+			attributes = new String[] { columnAttributeToString(result) };
+		}
+
+		return attributes;
+	}
+
+	/**
+	 * Gets the primary key of a document retrieved by a native query, which is
+	 * the value of its first column.
+	 *
+	 * @param result The document retrieved by the native query.
+	 * @return The primary key of the document.
+	 * @throws ProcessingException If the primary key is not an integer.
+	 */
+	private long getPrimaryKey(final Object result) throws ProcessingException {
+		final Object primaryKey = result.getClass().isArray() ? ((Object[]) result)[0] : result;
+
+		try {
+			return primaryKey instanceof Number ?
+				((Number) primaryKey).longValue() : Long.parseLong(columnAttributeToString(primaryKey));
+		} catch (final NumberFormatException exc) {
+			throw new ProcessingException(
+				"Keyset paging requires integer primary keys. Use offset paging instead", exc
+			);
+		}
+	}
+
 	/**
 	 * A consumer of data to be processed, which can throw a checked
 	 * {@link ProcessingException}.
@@ -671,6 +1879,180 @@ public abstract class AbstractProcessingStep implements ProcessingStepInterface
 		public void accept(final T t) throws ProcessingException;
 	}
 
+	/**
+	 * Creates the action to execute for every batch of documents of an unprocessed
+	 * document type.
+	 *
+	 * @author Alejandro González García
+	 * @see AbstractProcessingStep#processDocuments(List, String, BatchActionFactory)
+	 */
+	@FunctionalInterface
+	public static interface BatchActionFactory {
+		/**
+		 * Creates the action to execute for every batch of documents of an
+		 * unprocessed document type.
+		 *
+		 * @param unprocessedDocumentTypeName The name of the unprocessed document
+		 *                                    type, as it appears in
+		 *                                    {@code unprocessedDocumentTypesNames}.
+		 * @param unprocessedAttributeNames   The non primary key attribute names of
+		 *                                    the unprocessed document type, in the
+		 *                                    order they appear in the documents of a
+		 *                                    batch, after the primary key.
+		 * @param processedDocumentType       The processed document type to store
+		 *                                    the results as, or {@code null} if the
+		 *                                    step doesn't store processed documents.
+		 * @return The described action.
+		 * @throws ProcessingException If the action couldn't be created.
+		 */
+		public ProcessingConsumer<List<String[]>> create(
+			final String unprocessedDocumentTypeName, final String[] unprocessedAttributeNames,
+			final Class<? extends ProcessedDocument> processedDocumentType
+		) throws ProcessingException;
+	}
+
+	/**
+	 * Keeps the results a step stores outside the database, like search indexes or
+	 * knowledge bases, consistent with the high-water marks of the documents it
+	 * has processed, so an interrupted execution of the step can be resumed.
+	 *
+	 * @author Alejandro González García
+	 * @see AbstractProcessingStep#processDocuments(List, String, BatchActionFactory, ExternalResultsCheckpointer)
+	 */
+	public static interface ExternalResultsCheckpointer {
+		/**
+		 * Discards every result, because the step is about to process every document
+		 * again. Discarded results may remain until the next commit.
+		 *
+		 * @throws ProcessingException If the results couldn't be discarded.
+		 */
+		public void discardAllResults() throws ProcessingException;
+
+		/**
+		 * Discards the results of the documents of an unprocessed document type
+		 * whose primary key is greater than the given one, because they were stored
+		 * after the last commit of an interrupted execution, and will be processed
+		 * again.
+		 *
+		 * @param unprocessedDocumentTypeName The name of the unprocessed document
+		 *                                    type.
+		 * @param lastPrimaryKey              The greatest primary key whose results
+		 *                                    are kept.
+		 * @throws ProcessingException If the results couldn't be discarded.
+		 */
+		public void discardResultsAfter(final String unprocessedDocumentTypeName, final long lastPrimaryKey) throws ProcessingException;
+
+		/**
+		 * Durably stores the results of every document processed so far. This is
+		 * invoked before the high-water marks of the processed documents are
+		 * committed to the database.
+		 *
+		 * @throws ProcessingException If the results couldn't be stored.
+		 */
+		public void commit() throws ProcessingException;
+	}
+
+	/**
+	 * A source of documents to process, retrieved by a native JPA query, with its
+	 * reading progress.
+	 *
+	 * @author Alejandro González García
+	 */
+	private static final class DocumentSource {
+		private final Supplier<? extends Query> querySupplier;
+		private final String taskName;
+		private final long numberOfDocuments;
+		private final ProcessingConsumer<List<String[]>> action;
+		private final String highWaterMarkSource; // Null if no high-water mark is recorded
+		private long lastPrimaryKey;
+		private long firstFailedPrimaryKey = Long.MAX_VALUE; // Long.MAX_VALUE if no batch failed
+		private long documentsRead = 0;
+		private int pageDocuments = 0;
+
+		/**
+		 * Creates a new document source.
+		 *
+		 * @param querySupplier       The supplier of the query that retrieves the
+		 *                            documents.
+		 * @param taskName            The name of the task performed with the
+		 *                            documents.
+		 * @param numberOfDocuments   The expected number of documents to process,
+		 *                            or a negative number if it is not known.
+		 * @param action              The action to execute for each batch of
+		 *                            documents.
+		 * @param highWaterMarkSource The table to record the high-water mark of the
+		 *                            processed documents for, or {@code null}.
+		 * @param lastPrimaryKey      The primary key after which documents are
+		 *                            retrieved, when keyset paging is used.
+		 */
+		public DocumentSource(
+			final Supplier<? extends Query> querySupplier, final String taskName, final long numberOfDocuments,
+			final ProcessingConsumer<List<String[]>> action, final String highWaterMarkSource, final long lastPrimaryKey
+		) {
+			this.querySupplier = querySupplier;
+			this.taskName = taskName;
+			this.numberOfDocuments = numberOfDocuments;
+			this.action = action;
+			this.highWaterMarkSource = highWaterMarkSource;
+			this.lastPrimaryKey = lastPrimaryKey;
+		}
+
+		/**
+		 * Records that the action of this source failed for a batch of documents,
+		 * which were not processed. Worker threads may call this method
+		 * concurrently.
+		 *
+		 * @param firstPrimaryKey The primary key of the first document of the
+		 *                        batch.
+		 */
+		public synchronized void recordFailedBatch(final long firstPrimaryKey) {
+			firstFailedPrimaryKey = Math.min(firstFailedPrimaryKey, firstPrimaryKey);
+		}
+
+		/**
+		 * Returns the high-water mark of the documents of this source that were
+		 * processed: the primary key of the last read document, unless some batch
+		 * failed, in which case the mark stops right before its first document, so
+		 * the next incremental or resumed execution processes it again.
+		 *
+		 * @return The described high-water mark.
+		 */
+		public synchronized long getHighWaterMark() {
+			return firstFailedPrimaryKey == Long.MAX_VALUE ?
+				lastPrimaryKey : Math.min(lastPrimaryKey, firstFailedPrimaryKey - 1);
+		}
+	}
+
+	/**
+	 * The processed documents of a batch that are handed over to a downstream
+	 * step, in the format it reads documents.
+	 *
+	 * @author Alejandro González García
+	 */
+	@AllArgsConstructor
+	private static final class FusedOutputBatch {
+		private final String[] unprocessedAttributeNames;
+		private final List<String[]> documents;
+
+		/**
+		 * Adds a processed document to this batch. Attributes that are not present
+		 * are added as empty strings.
+		 *
+		 * @param primaryKey          The primary key of the processed document.
+		 * @param processedAttributes The processed attributes of the document.
+		 */
+		public void add(final int primaryKey, final Map<String, String> processedAttributes) {
+			final String[] document = new String[unprocessedAttributeNames.length + 1];
+
+			document[0] = Integer.toString(primaryKey);
+			for (int i = 0; i < unprocessedAttributeNames.length; ++i) {
+				document[i + 1] = processedAttributes.getOrDefault(unprocessedAttributeNames[i], "");
+			}
+
+			documents.add(document);
+		}
+	}
+
 	/**
 	 * A processing consumer that does nothing. It never throws exceptions.
 	 *
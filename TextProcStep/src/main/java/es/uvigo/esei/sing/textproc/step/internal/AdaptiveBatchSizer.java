@@ -0,0 +1,101 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.internal;
+
+/**
+ * Decides how many documents to put in a batch so that processing it takes
+ * about a target time, from the time that processing previous batches took per
+ * character of their documents. Measuring characters instead of documents
+ * keeps batches of long documents as quick as batches of short ones.
+ * <p>
+ * Until the first batch is measured, batches have an initial number of
+ * documents. The number of documents of a batch is always kept between the
+ * given bounds.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ */
+public final class AdaptiveBatchSizer {
+	// How much the last measured batch weighs in the estimated processing time per character
+	private static final double SMOOTHING_FACTOR = 0.25;
+
+	private final long targetLatency;
+	private final int initialBatchSize;
+	private final int minimumBatchSize;
+	private final int maximumBatchSize;
+	private volatile double nanosecondsPerCharacter = Double.NaN; // Not a number until a batch is measured
+
+	/**
+	 * Creates a new adaptive batch sizer.
+	 *
+	 * @param targetLatency    The time that processing a batch should take, in
+	 *                         nanoseconds.
+	 * @param initialBatchSize The number of documents of the batches that are
+	 *                         completed before any batch is measured.
+	 * @param minimumBatchSize The minimum number of documents of a batch.
+	 * @param maximumBatchSize The maximum number of documents of a batch.
+	 * @throws IllegalArgumentException If some number is less than one, or the
+	 *                                  minimum batch size is greater than the
+	 *                                  maximum batch size.
+	 */
+	public AdaptiveBatchSizer(
+		final long targetLatency, final int initialBatchSize, final int minimumBatchSize, final int maximumBatchSize
+	) {
+		if (targetLatency < 1 || initialBatchSize < 1 || minimumBatchSize < 1 || minimumBatchSize > maximumBatchSize) {
+			throw new IllegalArgumentException("Invalid target latency or batch size bounds");
+		}
+
+		this.targetLatency = targetLatency;
+		this.initialBatchSize = Math.max(minimumBatchSize, Math.min(initialBatchSize, maximumBatchSize));
+		this.minimumBatchSize = minimumBatchSize;
+		this.maximumBatchSize = maximumBatchSize;
+	}
+
+	/**
+	 * Checks whether a batch that is being filled with documents should be
+	 * processed now.
+	 *
+	 * @param documents  The number of documents of the batch.
+	 * @param characters The number of characters of the documents of the batch.
+	 * @return True if the batch should be processed now, false if more documents
+	 *         should be added to it.
+	 */
+	public boolean isBatchComplete(final int documents, final long characters) {
+		final double estimatedNanosecondsPerCharacter = nanosecondsPerCharacter;
+
+		if (documents >= maximumBatchSize) {
+			return true;
+		}
+
+		if (documents < minimumBatchSize) {
+			return false;
+		}
+
+		return Double.isNaN(estimatedNanosecondsPerCharacter) ?
+			documents >= initialBatchSize :
+			characters * estimatedNanosecondsPerCharacter >= targetLatency;
+	}
+
+	/**
+	 * Records the time that processing a batch took, so the size of the next
+	 * batches is adjusted accordingly.
+	 *
+	 * @param characters     The number of characters of the documents of the
+	 *                       batch.
+	 * @param processingTime The time that processing the batch took, in
+	 *                       nanoseconds.
+	 */
+	public synchronized void recordBatch(final long characters, final long processingTime) {
+		// Batches without characters don't tell anything about the time per character
+		if (characters < 1 || processingTime < 0) {
+			return;
+		}
+
+		final double measuredNanosecondsPerCharacter = processingTime / (double) characters;
+
+		nanosecondsPerCharacter = Double.isNaN(nanosecondsPerCharacter) ?
+			measuredNanosecondsPerCharacter :
+			nanosecondsPerCharacter + SMOOTHING_FACTOR * (measuredNanosecondsPerCharacter - nanosecondsPerCharacter);
+	}
+}
@@ -0,0 +1,129 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.internal;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.NonNull;
+
+/**
+ * A fixed-size pool of worker threads that process batches of documents handed
+ * over by a single reader thread, through a bounded queue. When the queue is
+ * full, the reader thread blocks until a worker thread takes a batch from it,
+ * so documents are not read faster than they can be processed.
+ * <p>
+ * Worker threads are dedicated to this pool, so long running batches don't
+ * starve other users of shared thread pools, like the common fork-join pool.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe, but batches are
+ *           meant to be submitted by a single thread.
+ */
+public final class BatchWorkerPool implements AutoCloseable {
+	private final ThreadPoolExecutor executor;
+	// The reader thread is always registered, and every submitted batch registers until processed
+	private final Phaser pendingBatches = new Phaser(1);
+
+	/**
+	 * Creates a new batch worker pool, whose worker threads are started on demand.
+	 *
+	 * @param name          The name of the pool, used to name its threads.
+	 * @param workerThreads The number of worker threads of the pool.
+	 * @param queueCapacity The maximum number of batches that can wait for a
+	 *                      worker thread to be available.
+	 * @throws IllegalArgumentException If {@code name} is {@code null}, or some
+	 *                                  number is less than one.
+	 */
+	public BatchWorkerPool(@NonNull final String name, final int workerThreads, final int queueCapacity) {
+		final AtomicInteger createdThreads = new AtomicInteger();
+		final ThreadFactory threadFactory = (final Runnable runnable) -> {
+			final Thread thread = new Thread(runnable, name + " worker " + createdThreads.incrementAndGet());
+
+			// Don't prevent the JVM from exiting if something goes wrong
+			thread.setDaemon(true);
+
+			return thread;
+		};
+
+		this.executor = new ThreadPoolExecutor(
+			workerThreads, workerThreads, 0, TimeUnit.MILLISECONDS,
+			new ArrayBlockingQueue<>(queueCapacity), threadFactory,
+			(final Runnable runnable, final ThreadPoolExecutor pool) -> {
+				// The queue is full. Wait for it to have room, instead of rejecting the batch
+				if (pool.isShutdown()) {
+					throw new RejectedExecutionException("The batch worker pool is closed");
+				}
+
+				try {
+					pool.getQueue().put(runnable);
+				} catch (final InterruptedException exc) {
+					Thread.currentThread().interrupt();
+					throw new RejectedExecutionException(exc);
+				}
+			}
+		);
+	}
+
+	/**
+	 * Submits a batch to be processed by a worker thread. This method blocks while
+	 * the queue of pending batches is full.
+	 *
+	 * @param batchTask The task that processes the batch. It should handle any
+	 *                  exception it might throw.
+	 * @throws IllegalArgumentException   If {@code batchTask} is {@code null}.
+	 * @throws RejectedExecutionException If this pool is closed, or the calling
+	 *                                    thread was interrupted while waiting for
+	 *                                    room in the queue.
+	 */
+	public void submit(@NonNull final Runnable batchTask) {
+		pendingBatches.register();
+
+		try {
+			executor.execute(() -> {
+				try {
+					batchTask.run();
+				} finally {
+					pendingBatches.arriveAndDeregister();
+				}
+			});
+		} catch (final RejectedExecutionException exc) {
+			pendingBatches.arriveAndDeregister();
+			throw exc;
+		}
+	}
+
+	/**
+	 * Returns the number of submitted batches that are not processed yet.
+	 *
+	 * @return The described number.
+	 */
+	public int getPendingBatches() {
+		// Don't count the reader thread
+		return Math.max(pendingBatches.getRegisteredParties() - 1, 0);
+	}
+
+	/**
+	 * Waits for every submitted batch to be processed. This method must be invoked
+	 * from the thread that submits batches.
+	 */
+	public void awaitBatches() {
+		pendingBatches.arriveAndAwaitAdvance();
+	}
+
+	/**
+	 * Waits for every submitted batch to be processed, and then stops the worker
+	 * threads. Batches can't be submitted after this method is invoked.
+	 */
+	@Override
+	public void close() {
+		awaitBatches();
+		executor.shutdown();
+	}
+}
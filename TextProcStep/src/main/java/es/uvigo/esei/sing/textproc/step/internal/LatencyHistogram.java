@@ -0,0 +1,161 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.internal;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations, in nanoseconds, that can be recorded concurrently
+ * and tells their percentiles with bounded memory. Like HdrHistogram does,
+ * durations are counted in buckets whose width grows with their magnitude, so
+ * every reported percentile is at most about 6% greater than the exact one.
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe. Percentiles that
+ *           are read while durations are recorded may not take into account
+ *           the latest durations.
+ */
+public final class LatencyHistogram {
+	// Each power of two range is split in this many buckets. Must be a power of two
+	private static final int SUB_BUCKETS = 16;
+	private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+	// Durations less than this get a bucket each
+	private static final long LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+	private static final int BUCKETS = (int) LINEAR_BUCKETS + (Long.SIZE - 1 - SUB_BUCKET_BITS - 1) * SUB_BUCKETS;
+
+	private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * Records a duration.
+	 *
+	 * @param duration The duration to record, in nanoseconds. Negative durations
+	 *                 are recorded as zero.
+	 */
+	public void record(final long duration) {
+		final long nonNegativeDuration = Math.max(duration, 0);
+
+		bucketCounts.incrementAndGet(getBucketIndex(nonNegativeDuration));
+		count.increment();
+		sum.add(nonNegativeDuration);
+		max.accumulate(nonNegativeDuration);
+	}
+
+	/**
+	 * Returns the number of recorded durations.
+	 *
+	 * @return The described number.
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * Returns the sum of the recorded durations.
+	 *
+	 * @return The described sum, in nanoseconds.
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * Returns the mean of the recorded durations.
+	 *
+	 * @return The described mean, in nanoseconds, or zero if no duration was
+	 *         recorded.
+	 */
+	public double getMean() {
+		final long currentCount = count.sum();
+
+		return currentCount == 0 ? 0 : sum.sum() / (double) currentCount;
+	}
+
+	/**
+	 * Returns the maximum recorded duration.
+	 *
+	 * @return The described duration, in nanoseconds, or zero if no duration was
+	 *         recorded.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns a duration that is greater than or equal to a given percentage of
+	 * the recorded durations.
+	 *
+	 * @param percentile The percentage, between 0 and 100.
+	 * @return The described duration, in nanoseconds, or zero if no duration was
+	 *         recorded. It is the greatest duration that is counted in the same
+	 *         bucket as the exact percentile, bounded by the maximum recorded
+	 *         duration.
+	 * @throws IllegalArgumentException If the percentage is not between 0 and
+	 *                                  100.
+	 */
+	public long getPercentile(final double percentile) {
+		long remainingCount;
+		long countedDurations = 0;
+
+		if (!(percentile >= 0 && percentile <= 100)) {
+			throw new IllegalArgumentException("The percentile must be between 0 and 100");
+		}
+
+		for (int i = 0; i < BUCKETS; ++i) {
+			countedDurations += bucketCounts.get(i);
+		}
+
+		if (countedDurations == 0) {
+			return 0;
+		}
+
+		// The rank of the duration to return, starting at 1
+		remainingCount = Math.max((long) Math.ceil(percentile / 100 * countedDurations), 1);
+
+		for (int i = 0; i < BUCKETS; ++i) {
+			remainingCount -= bucketCounts.get(i);
+
+			if (remainingCount <= 0) {
+				return Math.min(getBucketUpperBound(i), max.get());
+			}
+		}
+
+		return max.get();
+	}
+
+	/**
+	 * Returns the index of the bucket a non-negative duration is counted in.
+	 */
+	private static int getBucketIndex(final long duration) {
+		if (duration < LINEAR_BUCKETS) {
+			return (int) duration;
+		}
+
+		// Keep the most significant bits of the duration
+		final int magnitude = Long.SIZE - 1 - Long.numberOfLeadingZeros(duration);
+		final int shift = magnitude - SUB_BUCKET_BITS;
+		final int subBucket = (int) (duration >>> shift) - SUB_BUCKETS;
+
+		return (int) LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + subBucket;
+	}
+
+	/**
+	 * Returns the greatest duration that is counted in a bucket.
+	 */
+	private static long getBucketUpperBound(final int bucketIndex) {
+		if (bucketIndex < LINEAR_BUCKETS) {
+			return bucketIndex;
+		}
+
+		final int shift = (bucketIndex - (int) LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+		final long subBucket = (bucketIndex - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+		final long nextBucketLowerBound = (subBucket + 1) << shift;
+
+		// Don't overflow for the last bucket
+		return nextBucketLowerBound > 0 ? nextBucketLowerBound - 1 : Long.MAX_VALUE;
+	}
+}
@@ -0,0 +1,199 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.internal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import es.uvigo.esei.sing.textproc.entity.ProcessedDocument;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import lombok.NonNull;
+
+/**
+ * Buffers processed documents in memory, so they can be inserted in the
+ * database later in JDBC batches, bypassing the JPA provider. The SQL
+ * statements are derived from the {@link ProcessedDocumentMapping} of the
+ * processed document types.
+ * <p>
+ * Documents can be added from any thread, but they should be written by a
+ * single thread, so a single database connection writes them. The documents
+ * added so far can be moved to another writer, so they are written by another
+ * thread while more documents are added to this one.
+ * </p>
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ */
+public final class ProcessedDocumentBulkWriter {
+	// Rows per executeBatch call, so drivers don't buffer too many rows at once
+	private static final int JDBC_BATCH_SIZE = 1024;
+
+	private final Map<Class<? extends ProcessedDocument>, Queue<Object[]>> pendingDocuments = new ConcurrentHashMap<>();
+	private final AtomicInteger pendingDocumentCount = new AtomicInteger();
+
+	/**
+	 * Adds a processed document to be written later.
+	 *
+	 * @param documentType        The type of the processed document.
+	 * @param primaryKey          The primary key of the processed document.
+	 * @param processedAttributes The processed attributes of the document. Their
+	 *                            names (keys) must match the attributes of the
+	 *                            concrete document type. Attributes that are not
+	 *                            present are stored as empty strings.
+	 * @throws ProcessingException      If the document type is not a mapped
+	 *                                  entity, or some attribute doesn't belong
+	 *                                  to it.
+	 * @throws IllegalArgumentException If any parameter is {@code null}.
+	 */
+	public void add(
+		@NonNull final Class<? extends ProcessedDocument> documentType, final int primaryKey,
+		@NonNull final Map<String, String> processedAttributes
+	) throws ProcessingException {
+		final ProcessedDocumentMapping mapping = ProcessedDocumentMapping.of(documentType);
+		final Object[] row = mapping.toRow(primaryKey, processedAttributes);
+
+		pendingDocuments.computeIfAbsent(
+			documentType, (final Class<? extends ProcessedDocument> key) -> new ConcurrentLinkedQueue<>()
+		).add(row);
+		pendingDocumentCount.incrementAndGet();
+	}
+
+	/**
+	 * Moves every document added so far to a new writer, so this writer can keep
+	 * accepting documents while they are written.
+	 *
+	 * @return The new writer, with the moved documents.
+	 */
+	public ProcessedDocumentBulkWriter drain() {
+		final ProcessedDocumentBulkWriter drainedWriter = new ProcessedDocumentBulkWriter();
+
+		for (final Map.Entry<Class<? extends ProcessedDocument>, Queue<Object[]>> documentsOfType : pendingDocuments.entrySet()) {
+			final Queue<Object[]> rows = documentsOfType.getValue();
+			final Queue<Object[]> drainedRows = new ConcurrentLinkedQueue<>();
+			Object[] row;
+
+			while ((row = rows.poll()) != null) {
+				drainedRows.add(row);
+				pendingDocumentCount.decrementAndGet();
+			}
+
+			if (!drainedRows.isEmpty()) {
+				drainedWriter.pendingDocuments.put(documentsOfType.getKey(), drainedRows);
+				drainedWriter.pendingDocumentCount.addAndGet(drainedRows.size());
+			}
+		}
+
+		return drainedWriter;
+	}
+
+	/**
+	 * Inserts every document added so far using the given connection, and forgets
+	 * about them.
+	 *
+	 * @param connection      The connection to insert documents with.
+	 * @param replaceExisting If true, any stored document with the same primary
+	 *                        key as a written document is deleted first, so
+	 *                        documents are upserted.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	public void write(@NonNull final Connection connection, final boolean replaceExisting) throws SQLException {
+		for (final Map.Entry<Class<? extends ProcessedDocument>, Queue<Object[]>> documentsOfType : pendingDocuments.entrySet()) {
+			final ProcessedDocumentMapping mapping;
+			try {
+				mapping = ProcessedDocumentMapping.of(documentsOfType.getKey());
+			} catch (final ProcessingException exc) {
+				// Documents are only added if their type mapping is valid
+				throw new AssertionError(exc);
+			}
+			final Queue<Object[]> rows = documentsOfType.getValue();
+
+			if (rows.isEmpty()) {
+				continue;
+			}
+
+			try (
+				final PreparedStatement insertStatement = connection.prepareStatement(mapping.getInsertStatement());
+				final PreparedStatement deleteStatement = replaceExisting ?
+					connection.prepareStatement(mapping.getDeleteStatement()) : null
+			) {
+				int batchedRows = 0;
+				Object[] row;
+
+				while ((row = rows.poll()) != null) {
+					pendingDocumentCount.decrementAndGet();
+
+					if (deleteStatement != null) {
+						deleteStatement.setInt(1, (Integer) row[0]);
+						deleteStatement.addBatch();
+					}
+
+					insertStatement.setInt(1, (Integer) row[0]);
+					for (int i = 1; i < row.length; ++i) {
+						insertStatement.setString(i + 1, (String) row[i]);
+					}
+					insertStatement.addBatch();
+
+					if (++batchedRows >= JDBC_BATCH_SIZE) {
+						executeBatches(deleteStatement, insertStatement);
+						batchedRows = 0;
+					}
+				}
+
+				if (batchedRows > 0) {
+					executeBatches(deleteStatement, insertStatement);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forgets about every document added so far, without writing them.
+	 */
+	public void discard() {
+		pendingDocuments.clear();
+		pendingDocumentCount.set(0);
+	}
+
+	/**
+	 * Checks whether there are documents waiting to be written.
+	 *
+	 * @return True if there are such documents, false otherwise.
+	 */
+	public boolean hasPendingDocuments() {
+		return pendingDocuments.values().stream().anyMatch((final Queue<Object[]> rows) -> !rows.isEmpty());
+	}
+
+	/**
+	 * Returns how many documents are waiting to be written. Documents added or
+	 * written concurrently may not be accounted for yet.
+	 *
+	 * @return The described number.
+	 */
+	public int getPendingDocuments() {
+		return pendingDocumentCount.get();
+	}
+
+	/**
+	 * Executes the batched deletions, if any, and then the batched insertions.
+	 *
+	 * @param deleteStatement The statement with the batched deletions. It may be
+	 *                        {@code null}.
+	 * @param insertStatement The statement with the batched insertions.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	private static void executeBatches(
+		final PreparedStatement deleteStatement, final PreparedStatement insertStatement
+	) throws SQLException {
+		if (deleteStatement != null) {
+			deleteStatement.executeBatch();
+		}
+
+		insertStatement.executeBatch();
+	}
+}
@@ -0,0 +1,173 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.internal;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+
+import es.uvigo.esei.sing.textproc.entity.ProcessedDocument;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * The table and columns a processed document type is mapped to, as read from
+ * its JPA mapping annotations. Mappings are analyzed only once per type.
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ */
+public final class ProcessedDocumentMapping {
+	private static final Map<Class<? extends ProcessedDocument>, ProcessedDocumentMapping> MAPPINGS = new ConcurrentHashMap<>();
+
+	@Getter
+	private final String tableName;
+	@Getter
+	private final String primaryKeyColumnName;
+	@Getter
+	private final String insertStatement;
+	@Getter
+	private final String deleteStatement;
+	// Attribute names of the columns after the primary key, in insert statement order
+	private final List<String> attributeNames;
+	private final List<String> columnNames;
+
+	/**
+	 * Analyzes the JPA mapping annotations of a processed document type.
+	 *
+	 * @param documentType The processed document type.
+	 * @throws ProcessingException If the document type is not a mapped entity.
+	 */
+	private ProcessedDocumentMapping(final Class<? extends ProcessedDocument> documentType) throws ProcessingException {
+		final Entity entityAnnotation = documentType.getAnnotation(Entity.class);
+		final Table tableAnnotation = documentType.getAnnotation(Table.class);
+		final List<String> attributeNames = new ArrayList<>();
+		final List<String> columnNames = new ArrayList<>();
+		String primaryKeyColumnName = null;
+
+		if (entityAnnotation == null) {
+			throw new ProcessingException(documentType.getName() + " is not a entity");
+		}
+
+		// Mapped superclasses declare the common attributes
+		for (Class<?> mappedClass = documentType; mappedClass != null; mappedClass = mappedClass.getSuperclass()) {
+			for (final Field field : mappedClass.getDeclaredFields()) {
+				final Column columnAnnotation = field.getAnnotation(Column.class);
+				final String columnName = columnAnnotation == null || columnAnnotation.name().isEmpty() ?
+					field.getName() : columnAnnotation.name();
+
+				if (field.getAnnotation(Id.class) != null) {
+					primaryKeyColumnName = columnName;
+				} else if (columnAnnotation != null) {
+					attributeNames.add(field.getName());
+					columnNames.add(columnName);
+				}
+			}
+		}
+
+		if (primaryKeyColumnName == null) {
+			throw new ProcessingException(documentType.getName() + " has no primary key attribute");
+		}
+
+		if (tableAnnotation != null && !tableAnnotation.name().isEmpty()) {
+			this.tableName = tableAnnotation.name();
+		} else if (!entityAnnotation.name().isEmpty()) {
+			this.tableName = entityAnnotation.name();
+		} else {
+			this.tableName = documentType.getSimpleName();
+		}
+
+		final StringBuilder insertStatementBuilder = new StringBuilder("INSERT INTO ");
+
+		insertStatementBuilder.append(tableName).append(" (").append(primaryKeyColumnName);
+		for (final String columnName : columnNames) {
+			insertStatementBuilder.append(", ").append(columnName);
+		}
+		insertStatementBuilder.append(") VALUES (?");
+		for (int i = 0; i < columnNames.size(); ++i) {
+			insertStatementBuilder.append(", ?");
+		}
+		insertStatementBuilder.append(')');
+
+		this.primaryKeyColumnName = primaryKeyColumnName;
+		this.insertStatement = insertStatementBuilder.toString();
+		this.deleteStatement = "DELETE FROM " + tableName + " WHERE " + primaryKeyColumnName + " = ?";
+		this.attributeNames = Collections.unmodifiableList(attributeNames);
+		this.columnNames = Collections.unmodifiableList(columnNames);
+	}
+
+	/**
+	 * Returns the mapping of a processed document type, analyzing it if needed.
+	 *
+	 * @param documentType The processed document type.
+	 * @return The described mapping.
+	 * @throws ProcessingException      If the document type is not a mapped
+	 *                                  entity.
+	 * @throws IllegalArgumentException If {@code documentType} is {@code null}.
+	 */
+	public static ProcessedDocumentMapping of(
+		@NonNull final Class<? extends ProcessedDocument> documentType
+	) throws ProcessingException {
+		ProcessedDocumentMapping mapping = MAPPINGS.get(documentType);
+
+		if (mapping == null) {
+			mapping = new ProcessedDocumentMapping(documentType);
+			MAPPINGS.putIfAbsent(documentType, mapping);
+		}
+
+		return mapping;
+	}
+
+	/**
+	 * Returns the name of the column an attribute is mapped to.
+	 *
+	 * @param attributeName The name of the attribute.
+	 * @return The described column name, or {@code null} if the attribute is not
+	 *         mapped to a column.
+	 */
+	public String getColumnName(final String attributeName) {
+		final int attributeIndex = attributeNames.indexOf(attributeName);
+
+		return attributeIndex < 0 ? null : columnNames.get(attributeIndex);
+	}
+
+	/**
+	 * Converts a processed document to the row values to bind to the insert
+	 * statement, whose first parameter is the primary key, followed by the
+	 * attributes.
+	 *
+	 * @param primaryKey          The primary key of the document.
+	 * @param processedAttributes The processed attributes of the document.
+	 *                            Attributes that are not present are converted
+	 *                            to empty strings.
+	 * @return The described row values.
+	 * @throws ProcessingException If some attribute doesn't belong to the
+	 *                             document type.
+	 */
+	public Object[] toRow(final int primaryKey, final Map<String, String> processedAttributes) throws ProcessingException {
+		final Object[] row = new Object[attributeNames.size() + 1];
+
+		for (final String attributeName : processedAttributes.keySet()) {
+			if (!attributeNames.contains(attributeName)) {
+				throw new ProcessingException("Unknown processed document attribute: " + attributeName);
+			}
+		}
+
+		row[0] = primaryKey;
+		for (int i = 0; i < attributeNames.size(); ++i) {
+			final String value = processedAttributes.get(attributeNames.get(i));
+			row[i + 1] = value == null ? "" : value;
+		}
+
+		return row;
+	}
+}
@@ -27,4 +27,55 @@ public interface ProcessingStepInterface {
 	 *                             {@code null}).
 	 */
 	public void execute(final Map<String, String> parameters) throws ProcessingException;
+
+	/**
+	 * Resumes an execution of the processing step implemented by this object that
+	 * was interrupted before completing, with the given parameters. The results
+	 * committed by the interrupted execution are kept, and only the documents
+	 * after its last checkpoint are processed. If there is no checkpoint to resume
+	 * from, every document is processed, but previous results are not deleted.
+	 *
+	 * @param parameters The parameters of the step, as in {@link #execute(Map)}.
+	 *                   They should be the same as the parameters of the
+	 *                   interrupted execution.
+	 * @throws ProcessingException If an exception occurs during execution
+	 *                             (including if {@code parameters} is
+	 *                             {@code null}).
+	 */
+	public void resume(final Map<String, String> parameters) throws ProcessingException;
+
+	/**
+	 * Tells this processing step its index in the process it belongs to, before
+	 * it is executed. Steps record what they processed by their index, because a
+	 * process may have several steps of the same type that read the same
+	 * documents, and each of them must keep track of its own progress. Steps
+	 * that are not part of a process don't need to be told anything.
+	 *
+	 * @param stepIndex The index of the step in its process, starting at 0.
+	 * @throws IllegalArgumentException If the index is negative.
+	 */
+	public void setStepIndex(final int stepIndex);
+
+	/**
+	 * Fuses this processing step with the processing step that produces its input
+	 * documents. When this step is executed, it executes the upstream step too, in
+	 * the same pass over the documents read by the upstream step, so the
+	 * documents processed by the upstream step are handed over to this step in
+	 * memory. Therefore, the upstream step must not be executed on its own.
+	 *
+	 * @param upstreamStep           The processing step that produces the input
+	 *                               documents of this step.
+	 * @param upstreamParameters     The parameters to execute the upstream step
+	 *                               with, as in {@link #execute(Map)}.
+	 * @param persistUpstreamResults Whether the documents processed by the
+	 *                               upstream step are stored in the database too.
+	 * @return True if the steps were fused, false if they can't be fused. In the
+	 *         latter case, the upstream step must be executed on its own, as
+	 *         usual.
+	 * @throws IllegalArgumentException If some parameter is {@code null}.
+	 */
+	public boolean fuseWith(
+		final ProcessingStepInterface upstreamStep, final Map<String, String> upstreamParameters,
+		final boolean persistUpstreamResults
+	);
 }
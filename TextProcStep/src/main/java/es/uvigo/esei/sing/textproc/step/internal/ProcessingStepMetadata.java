@@ -0,0 +1,345 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.internal;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import lombok.NonNull;
+
+/**
+ * Reads and writes the bookkeeping data TextProc keeps about processing steps
+ * in its metadata tables, like the high-water mark of the documents a step has
+ * processed from a table, or which steps of a process were completed. The
+ * metadata tables are created on demand if they do not exist, every time they
+ * are accessed, so they are there no matter which database is used or whether
+ * the transaction that created them before was rolled back.
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ */
+public final class ProcessingStepMetadata {
+	/**
+	 * The name of the metadata table.
+	 */
+	public static final String METADATA_TABLE_NAME = "textproc_step_metadata";
+	/**
+	 * The name of the table that records the started and completed steps of the
+	 * last executed process.
+	 */
+	public static final String PROCESS_CHECKPOINT_TABLE_NAME = "textproc_process_checkpoint";
+
+	private static final String CREATE_METADATA_TABLE_STATEMENT =
+		"CREATE TABLE IF NOT EXISTS " + METADATA_TABLE_NAME + " (" +
+			"step VARCHAR(255) NOT NULL, " +
+			"source_table VARCHAR(255) NOT NULL, " +
+			"last_primary_key BIGINT NOT NULL, " +
+			"PRIMARY KEY (step, source_table)" +
+		")";
+	private static final String SELECT_HIGH_WATER_MARK_STATEMENT =
+		"SELECT last_primary_key FROM " + METADATA_TABLE_NAME + " WHERE step = ? AND source_table = ?";
+	private static final String UPDATE_HIGH_WATER_MARK_STATEMENT =
+		"UPDATE " + METADATA_TABLE_NAME + " SET last_primary_key = ? WHERE step = ? AND source_table = ?";
+	private static final String INSERT_HIGH_WATER_MARK_STATEMENT =
+		"INSERT INTO " + METADATA_TABLE_NAME + " (step, source_table, last_primary_key) VALUES (?, ?, ?)";
+
+	private static final String CREATE_PROCESS_CHECKPOINT_TABLE_STATEMENT =
+		"CREATE TABLE IF NOT EXISTS " + PROCESS_CHECKPOINT_TABLE_NAME + " (" +
+			"step_index INTEGER NOT NULL PRIMARY KEY, " +
+			"step VARCHAR(255) NOT NULL, " +
+			"parameters_digest VARCHAR(64) NOT NULL, " +
+			"completed SMALLINT NOT NULL" +
+		")";
+	private static final String SELECT_STEP_STATUS_STATEMENT =
+		"SELECT completed FROM " + PROCESS_CHECKPOINT_TABLE_NAME + " WHERE step_index = ? AND step = ? AND parameters_digest = ?";
+	private static final String DELETE_STEP_STATEMENT =
+		"DELETE FROM " + PROCESS_CHECKPOINT_TABLE_NAME + " WHERE step_index = ?";
+	private static final String INSERT_STEP_STATEMENT =
+		"INSERT INTO " + PROCESS_CHECKPOINT_TABLE_NAME + " (step_index, step, parameters_digest, completed) VALUES (?, ?, ?, ?)";
+	private static final String UPDATE_COMPLETED_STEP_STATEMENT =
+		"UPDATE " + PROCESS_CHECKPOINT_TABLE_NAME + " SET completed = 1 WHERE step_index = ? AND step = ? AND parameters_digest = ?";
+	private static final String DELETE_STEPS_STATEMENT =
+		"DELETE FROM " + PROCESS_CHECKPOINT_TABLE_NAME;
+
+	private static final String PARAMETERS_DIGEST_ALGORITHM = "SHA-256";
+
+	private ProcessingStepMetadata() {}
+
+	/**
+	 * Computes the digest of the parameters of a step that the process
+	 * checkpoint table records, to tell whether a step is executed with the same
+	 * parameters again. The digest does not depend on the order of the
+	 * parameters in the map.
+	 *
+	 * @param parameters The parameters of the step.
+	 * @return The hexadecimal SHA-256 digest of the parameters, sorted by name.
+	 * @throws IllegalArgumentException If {@code parameters} is {@code null}.
+	 */
+	public static String digestParameters(@NonNull final Map<String, String> parameters) {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance(PARAMETERS_DIGEST_ALGORITHM);
+		} catch (final NoSuchAlgorithmException exc) {
+			// Every Java platform implementation must support SHA-256
+			throw new AssertionError(exc);
+		}
+
+		for (final Entry<String, String> parameter : new TreeMap<>(parameters).entrySet()) {
+			updateDigest(digest, parameter.getKey());
+			updateDigest(digest, parameter.getValue());
+		}
+
+		final byte[] digestBytes = digest.digest();
+		final StringBuilder digestBuilder = new StringBuilder(digestBytes.length * 2);
+		for (final byte digestByte : digestBytes) {
+			digestBuilder.append(Character.forDigit((digestByte >> 4) & 0xF, 16));
+			digestBuilder.append(Character.forDigit(digestByte & 0xF, 16));
+		}
+
+		return digestBuilder.toString();
+	}
+
+	/**
+	 * Retrieves the greatest primary key of the documents a step has processed
+	 * from a table.
+	 *
+	 * @param connection  The connection to retrieve the high-water mark with.
+	 * @param step        The name of the step.
+	 * @param sourceTable The name of the table the step reads documents from.
+	 * @return The described primary key, or {@code null} if the step has not
+	 *         recorded any high-water mark for the table yet.
+	 * @throws SQLException             If some data access error occurs.
+	 * @throws IllegalArgumentException If any parameter is {@code null}.
+	 */
+	public static Long getHighWaterMark(
+		@NonNull final Connection connection, @NonNull final String step, @NonNull final String sourceTable
+	) throws SQLException {
+		createMetadataTable(connection);
+
+		try (final PreparedStatement selectStatement = connection.prepareStatement(SELECT_HIGH_WATER_MARK_STATEMENT)) {
+			selectStatement.setString(1, step);
+			selectStatement.setString(2, sourceTable);
+
+			try (final ResultSet result = selectStatement.executeQuery()) {
+				return result.next() ? result.getLong(1) : null;
+			}
+		}
+	}
+
+	/**
+	 * Records the greatest primary key of the documents a step has processed from
+	 * a table, replacing any previous high-water mark.
+	 *
+	 * @param connection     The connection to record the high-water mark with.
+	 * @param step           The name of the step.
+	 * @param sourceTable    The name of the table the step reads documents from.
+	 * @param lastPrimaryKey The greatest processed primary key.
+	 * @throws SQLException             If some data access error occurs.
+	 * @throws IllegalArgumentException If any parameter is {@code null}.
+	 */
+	public static void setHighWaterMark(
+		@NonNull final Connection connection, @NonNull final String step, @NonNull final String sourceTable,
+		final long lastPrimaryKey
+	) throws SQLException {
+		createMetadataTable(connection);
+
+		// UPDATE, and INSERT if there was nothing to update, is the most portable upsert
+		try (final PreparedStatement updateStatement = connection.prepareStatement(UPDATE_HIGH_WATER_MARK_STATEMENT)) {
+			updateStatement.setLong(1, lastPrimaryKey);
+			updateStatement.setString(2, step);
+			updateStatement.setString(3, sourceTable);
+
+			if (updateStatement.executeUpdate() > 0) {
+				return;
+			}
+		}
+
+		try (final PreparedStatement insertStatement = connection.prepareStatement(INSERT_HIGH_WATER_MARK_STATEMENT)) {
+			insertStatement.setString(1, step);
+			insertStatement.setString(2, sourceTable);
+			insertStatement.setLong(3, lastPrimaryKey);
+			insertStatement.executeUpdate();
+		}
+	}
+
+	/**
+	 * Retrieves the status of a step of the last executed process, if it was
+	 * executed with the same parameters.
+	 *
+	 * @param connection       The connection to check the step with.
+	 * @param stepIndex        The index of the step in the process, starting at 0.
+	 * @param step             The name of the step.
+	 * @param parametersDigest The digest of the parameters of the step, as
+	 *                         returned by {@link #digestParameters(Map)}.
+	 * @return {@code null} if the step was not started, false if it was started
+	 *         but not completed, and true if it was completed.
+	 * @throws SQLException             If some data access error occurs.
+	 * @throws IllegalArgumentException If any parameter is {@code null}.
+	 */
+	public static Boolean getStepStatus(
+		@NonNull final Connection connection, final int stepIndex, @NonNull final String step,
+		@NonNull final String parametersDigest
+	) throws SQLException {
+		createProcessCheckpointTable(connection);
+
+		try (final PreparedStatement selectStatement = connection.prepareStatement(SELECT_STEP_STATUS_STATEMENT)) {
+			selectStatement.setInt(1, stepIndex);
+			selectStatement.setString(2, step);
+			selectStatement.setString(3, parametersDigest);
+
+			try (final ResultSet result = selectStatement.executeQuery()) {
+				return result.next() ? result.getInt(1) != 0 : null;
+			}
+		}
+	}
+
+	/**
+	 * Records that a step of the process being executed was started, replacing
+	 * whatever was recorded for its index before.
+	 *
+	 * @param connection       The connection to record the step with.
+	 * @param stepIndex        The index of the step in the process, starting at 0.
+	 * @param step             The name of the step.
+	 * @param parametersDigest The digest of the parameters of the step, as
+	 *                         returned by {@link #digestParameters(Map)}.
+	 * @throws SQLException             If some data access error occurs.
+	 * @throws IllegalArgumentException If any parameter is {@code null}.
+	 */
+	public static void setStepStarted(
+		@NonNull final Connection connection, final int stepIndex, @NonNull final String step,
+		@NonNull final String parametersDigest
+	) throws SQLException {
+		createProcessCheckpointTable(connection);
+
+		try (final PreparedStatement deleteStatement = connection.prepareStatement(DELETE_STEP_STATEMENT)) {
+			deleteStatement.setInt(1, stepIndex);
+			deleteStatement.executeUpdate();
+		}
+
+		insertStep(connection, stepIndex, step, parametersDigest, false);
+	}
+
+	/**
+	 * Records that a step of the process being executed was completed.
+	 *
+	 * @param connection       The connection to record the step with.
+	 * @param stepIndex        The index of the step in the process, starting at 0.
+	 * @param step             The name of the step.
+	 * @param parametersDigest The digest of the parameters of the step, as
+	 *                         returned by {@link #digestParameters(Map)}.
+	 * @throws SQLException             If some data access error occurs, like a
+	 *                                  different step being recorded with the same
+	 *                                  index.
+	 * @throws IllegalArgumentException If any parameter is {@code null}.
+	 */
+	public static void setStepCompleted(
+		@NonNull final Connection connection, final int stepIndex, @NonNull final String step,
+		@NonNull final String parametersDigest
+	) throws SQLException {
+		createProcessCheckpointTable(connection);
+
+		try (final PreparedStatement updateStatement = connection.prepareStatement(UPDATE_COMPLETED_STEP_STATEMENT)) {
+			updateStatement.setInt(1, stepIndex);
+			updateStatement.setString(2, step);
+			updateStatement.setString(3, parametersDigest);
+
+			if (updateStatement.executeUpdate() > 0) {
+				return;
+			}
+		}
+
+		insertStep(connection, stepIndex, step, parametersDigest, true);
+	}
+
+	/**
+	 * Forgets which steps were started and completed, so a new process can be
+	 * executed.
+	 *
+	 * @param connection The connection to forget the steps with.
+	 * @throws SQLException             If some data access error occurs.
+	 * @throws IllegalArgumentException If {@code connection} is {@code null}.
+	 */
+	public static void clearSteps(@NonNull final Connection connection) throws SQLException {
+		createProcessCheckpointTable(connection);
+
+		try (final Statement statement = connection.createStatement()) {
+			statement.executeUpdate(DELETE_STEPS_STATEMENT);
+		}
+	}
+
+	/**
+	 * Inserts a step of the process being executed in the process checkpoint
+	 * table.
+	 *
+	 * @param connection       The connection to insert the step with.
+	 * @param stepIndex        The index of the step in the process, starting at 0.
+	 * @param step             The name of the step.
+	 * @param parametersDigest The digest of the parameters of the step, as
+	 *                         returned by {@link #digestParameters(Map)}.
+	 * @param completed        Whether the step was completed.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	private static void insertStep(
+		final Connection connection, final int stepIndex, final String step, final String parametersDigest,
+		final boolean completed
+	) throws SQLException {
+		try (final PreparedStatement insertStatement = connection.prepareStatement(INSERT_STEP_STATEMENT)) {
+			insertStatement.setInt(1, stepIndex);
+			insertStatement.setString(2, step);
+			insertStatement.setString(3, parametersDigest);
+			insertStatement.setInt(4, completed ? 1 : 0);
+			insertStatement.executeUpdate();
+		}
+	}
+
+	/**
+	 * Adds a parameter name or value to a digest, preceded by its length, so
+	 * that different parameters can't produce the same input to the digest.
+	 *
+	 * @param digest The digest to update.
+	 * @param string The parameter name or value. It may be {@code null}.
+	 */
+	private static void updateDigest(final MessageDigest digest, final String string) {
+		final byte[] stringBytes = string == null ? new byte[0] : string.getBytes(StandardCharsets.UTF_8);
+		final int length = string == null ? -1 : stringBytes.length;
+
+		digest.update((byte) (length >>> 24));
+		digest.update((byte) (length >>> 16));
+		digest.update((byte) (length >>> 8));
+		digest.update((byte) length);
+		digest.update(stringBytes);
+	}
+
+	/**
+	 * Creates the metadata table, if it doesn't exist.
+	 *
+	 * @param connection The connection to create the table with.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	private static void createMetadataTable(final Connection connection) throws SQLException {
+		try (final Statement statement = connection.createStatement()) {
+			statement.execute(CREATE_METADATA_TABLE_STATEMENT);
+		}
+	}
+
+	/**
+	 * Creates the process checkpoint table, if it doesn't exist.
+	 *
+	 * @param connection The connection to create the table with.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	private static void createProcessCheckpointTable(final Connection connection) throws SQLException {
+		try (final Statement statement = connection.createStatement()) {
+			statement.execute(CREATE_PROCESS_CHECKPOINT_TABLE_STATEMENT);
+		}
+	}
+}
@@ -0,0 +1,337 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.internal;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.logging.Level;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import es.uvigo.esei.sing.textproc.logging.TextProcLogging;
+import es.uvigo.esei.sing.textproc.step.management.ProcessingStepExecutionEvent;
+import es.uvigo.esei.sing.textproc.step.management.ProcessingStepMetricsMXBean;
+import lombok.NonNull;
+
+/**
+ * The metrics of a running processing step, which are published through JMX
+ * in the platform MBean server while they are open. Their totals are recorded
+ * in a {@link ProcessingStepExecutionEvent} when they are closed.
+ *
+ * @author Alejandro González García
+ * @implNote The implementation of this class is thread-safe.
+ * @see ProcessingStepMetricsMXBean
+ */
+public final class ProcessingStepMetrics implements ProcessingStepMetricsMXBean, AutoCloseable {
+	private static final double NANOSECONDS_PER_MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final double NANOSECONDS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final String stepName;
+	private final boolean fused;
+	private final IntSupplier inFlightBatchesSupplier;
+	private final IntSupplier pendingDocumentsSupplier;
+	private final long startTime = System.nanoTime();
+	private final LongAdder processedDocuments = new LongAdder();
+	private final LongAdder processedCharacters = new LongAdder();
+	private final LatencyHistogram batchLatencies = new LatencyHistogram();
+	private final LatencyHistogram commitDurations = new LatencyHistogram();
+	private final LongAdder readTime = new LongAdder();
+	private final LongAdder writeTime = new LongAdder();
+	private final AtomicInteger pendingWrites = new AtomicInteger();
+	private final ProcessingStepExecutionEvent executionEvent = new ProcessingStepExecutionEvent();
+	private volatile ObjectName objectName = null;
+
+	/**
+	 * Creates the metrics of a running processing step, and publishes them. If
+	 * they can't be published, the error is logged, and they are returned anyway.
+	 *
+	 * @param stepName                 The name of the processing step.
+	 * @param fused                    Whether the step is fused with the step
+	 *                                 before it, which reads the documents and
+	 *                                 processes the batches of both.
+	 * @param inFlightBatchesSupplier  The supplier of the number of batches that
+	 *                                 were handed over to worker threads, but are
+	 *                                 not processed yet.
+	 * @param pendingDocumentsSupplier The supplier of the number of processed
+	 *                                 documents that were not handed over to the
+	 *                                 database writer yet.
+	 * @return The created metrics, which must be closed when the step is done.
+	 * @throws IllegalArgumentException If some parameter is {@code null}.
+	 */
+	public static ProcessingStepMetrics publish(
+		@NonNull final String stepName, final boolean fused, @NonNull final IntSupplier inFlightBatchesSupplier,
+		@NonNull final IntSupplier pendingDocumentsSupplier
+	) {
+		final ProcessingStepMetrics metrics = new ProcessingStepMetrics(
+			stepName, fused, inFlightBatchesSupplier, pendingDocumentsSupplier
+		);
+		final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+		try {
+			// Steps of the same class may run concurrently. Tell their metrics apart
+			for (int instance = 1; metrics.objectName == null; ++instance) {
+				final ObjectName objectName = new ObjectName(
+					OBJECT_NAME_DOMAIN + ":type=ProcessingStep,name=" + ObjectName.quote(
+						instance > 1 ? stepName + " #" + instance : stepName
+					)
+				);
+
+				try {
+					mBeanServer.registerMBean(metrics, objectName);
+					metrics.objectName = objectName;
+				} catch (final InstanceAlreadyExistsException exc) {
+					// Try the next instance number
+				}
+			}
+		} catch (final JMException exc) {
+			TextProcLogging.getLogger().log(
+				Level.WARNING, "Couldn't publish the metrics of the processing step through JMX", exc
+			);
+		}
+
+		return metrics;
+	}
+
+	private ProcessingStepMetrics(
+		final String stepName, final boolean fused, final IntSupplier inFlightBatchesSupplier,
+		final IntSupplier pendingDocumentsSupplier
+	) {
+		this.stepName = stepName;
+		this.fused = fused;
+		this.inFlightBatchesSupplier = inFlightBatchesSupplier;
+		this.pendingDocumentsSupplier = pendingDocumentsSupplier;
+
+		executionEvent.begin();
+	}
+
+	/**
+	 * Records that a batch of documents was processed.
+	 *
+	 * @param documents      The number of documents of the batch.
+	 * @param characters     The number of characters of the documents of the
+	 *                       batch.
+	 * @param processingTime The time that processing the batch took, in
+	 *                       nanoseconds.
+	 */
+	public void recordBatch(final int documents, final long characters, final long processingTime) {
+		processedDocuments.add(documents);
+		processedCharacters.add(characters);
+		batchLatencies.record(processingTime);
+	}
+
+	/**
+	 * Records time spent reading documents from the database.
+	 *
+	 * @param time The time, in nanoseconds.
+	 */
+	public void recordRead(final long time) {
+		readTime.add(time);
+	}
+
+	/**
+	 * Records that a write of processed documents was handed over to the database
+	 * writer.
+	 */
+	public void recordWriteHandedOver() {
+		pendingWrites.incrementAndGet();
+	}
+
+	/**
+	 * Records time spent executing the statements of a write of processed
+	 * documents.
+	 *
+	 * @param time The time, in nanoseconds.
+	 */
+	public void recordWrite(final long time) {
+		writeTime.add(time);
+	}
+
+	/**
+	 * Records that a write of processed documents that was handed over to the
+	 * database writer is done.
+	 *
+	 * @param duration  The time that executing and committing the write took, in
+	 *                  nanoseconds.
+	 * @param committed Whether the write was committed. If it was not, its
+	 *                  duration is not recorded.
+	 */
+	public void recordWriteDone(final long duration, final boolean committed) {
+		pendingWrites.decrementAndGet();
+
+		if (committed) {
+			commitDurations.record(duration);
+		}
+	}
+
+	/**
+	 * Stops publishing these metrics, and records their totals in a Java Flight
+	 * Recorder event.
+	 */
+	@Override
+	public void close() {
+		executionEvent.end();
+		if (executionEvent.shouldCommit()) {
+			executionEvent.setStepName(stepName);
+			executionEvent.setFused(fused);
+			executionEvent.setDocuments(processedDocuments.sum());
+			executionEvent.setCharacters(processedCharacters.sum());
+			executionEvent.setBatches(batchLatencies.getCount());
+			executionEvent.setReadTime(readTime.sum());
+			executionEvent.setComputeTime(batchLatencies.getSum());
+			executionEvent.setWriteTime(writeTime.sum());
+			executionEvent.commit();
+		}
+
+		discard();
+	}
+
+	/**
+	 * Stops publishing these metrics, without recording their totals, because the
+	 * step didn't process documents with them after all.
+	 */
+	public void discard() {
+		final ObjectName currentObjectName = objectName;
+
+		if (currentObjectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(currentObjectName);
+			} catch (final JMException exc) {
+				TextProcLogging.getLogger().log(
+					Level.WARNING, "Couldn't stop publishing the metrics of the processing step through JMX", exc
+				);
+			}
+
+			objectName = null;
+		}
+	}
+
+	@Override
+	public String getStepName() {
+		return stepName;
+	}
+
+	@Override
+	public long getElapsedTime() {
+		return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+	}
+
+	@Override
+	public long getProcessedDocuments() {
+		return processedDocuments.sum();
+	}
+
+	@Override
+	public long getProcessedCharacters() {
+		return processedCharacters.sum();
+	}
+
+	@Override
+	public double getDocumentsPerSecond() {
+		return perSecond(processedDocuments.sum());
+	}
+
+	@Override
+	public double getCharactersPerSecond() {
+		return perSecond(processedCharacters.sum());
+	}
+
+	@Override
+	public long getProcessedBatches() {
+		return batchLatencies.getCount();
+	}
+
+	@Override
+	public double getBatchLatencyMean() {
+		return batchLatencies.getMean() / NANOSECONDS_PER_MILLISECOND;
+	}
+
+	@Override
+	public double getBatchLatency50thPercentile() {
+		return batchLatencies.getPercentile(50) / NANOSECONDS_PER_MILLISECOND;
+	}
+
+	@Override
+	public double getBatchLatency90thPercentile() {
+		return batchLatencies.getPercentile(90) / NANOSECONDS_PER_MILLISECOND;
+	}
+
+	@Override
+	public double getBatchLatency99thPercentile() {
+		return batchLatencies.getPercentile(99) / NANOSECONDS_PER_MILLISECOND;
+	}
+
+	@Override
+	public double getBatchLatency999thPercentile() {
+		return batchLatencies.getPercentile(99.9) / NANOSECONDS_PER_MILLISECOND;
+	}
+
+	@Override
+	public double getBatchLatencyMax() {
+		return batchLatencies.getMax() / NANOSECONDS_PER_MILLISECOND;
+	}
+
+	@Override
+	public long getReadTime() {
+		return TimeUnit.NANOSECONDS.toMillis(readTime.sum());
+	}
+
+	@Override
+	public long getComputeTime() {
+		return TimeUnit.NANOSECONDS.toMillis(batchLatencies.getSum());
+	}
+
+	@Override
+	public long getWriteTime() {
+		return TimeUnit.NANOSECONDS.toMillis(writeTime.sum());
+	}
+
+	@Override
+	public int getInFlightBatches() {
+		return inFlightBatchesSupplier.getAsInt();
+	}
+
+	@Override
+	public int getPendingDocuments() {
+		return pendingDocumentsSupplier.getAsInt();
+	}
+
+	@Override
+	public int getPendingWrites() {
+		return pendingWrites.get();
+	}
+
+	@Override
+	public long getCommits() {
+		return commitDurations.getCount();
+	}
+
+	@Override
+	public double getCommitDurationMean() {
+		return commitDurations.getMean() / NANOSECONDS_PER_MILLISECOND;
+	}
+
+	@Override
+	public double getCommitDuration99thPercentile() {
+		return commitDurations.getPercentile(99) / NANOSECONDS_PER_MILLISECOND;
+	}
+
+	@Override
+	public double getCommitDurationMax() {
+		return commitDurations.getMax() / NANOSECONDS_PER_MILLISECOND;
+	}
+
+	/**
+	 * Returns how many of something happened per second since the step started.
+	 */
+	private double perSecond(final long amount) {
+		final long elapsedTime = System.nanoTime() - startTime;
+
+		return elapsedTime > 0 ? amount / (elapsedTime / NANOSECONDS_PER_SECOND) : 0;
+	}
+}
@@ -0,0 +1,206 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.internal;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import lombok.Getter;
+
+/**
+ * The ways of telling how many documents a processing step will read from a
+ * table, which is only used to show progress information. Counting every
+ * document is exact, but takes a full scan of the table, so cheaper strategies
+ * that may not be exact, or not tell anything at all, are available.
+ *
+ * @author Alejandro González García
+ */
+public enum ProgressTotalStrategy {
+	/**
+	 * Counts the documents of the table.
+	 */
+	EXACT("exact") {
+		@Override
+		public long getTotal(
+			final Connection connection, final String tableName, final String primaryKeyColumn, final long lastPrimaryKey
+		) throws SQLException {
+			try (final PreparedStatement statement = prepareStatement(
+				connection, "COUNT(*)", tableName, primaryKeyColumn, lastPrimaryKey
+			)) {
+				try (final ResultSet resultSet = statement.executeQuery()) {
+					return resultSet.next() ? resultSet.getLong(1) : 0;
+				}
+			}
+		}
+	},
+	/**
+	 * Uses the row count the database keeps in its catalog statistics, bounded by
+	 * the primary key range after the last processed document, if any. The total
+	 * is unknown if the database does not keep statistics for the table, as it
+	 * usually happens with views.
+	 */
+	ESTIMATE("estimate") {
+		@Override
+		public long getTotal(
+			final Connection connection, final String tableName, final String primaryKeyColumn, final long lastPrimaryKey
+		) throws SQLException {
+			final long estimatedRows = getCatalogRowCount(connection, tableName);
+
+			if (estimatedRows < 0 || lastPrimaryKey == Long.MIN_VALUE) {
+				return estimatedRows;
+			}
+
+			final long primaryKeyRange = KEY_RANGE.getTotal(connection, tableName, primaryKeyColumn, lastPrimaryKey);
+			return primaryKeyRange < 0 ? estimatedRows : Math.min(estimatedRows, primaryKeyRange);
+		}
+	},
+	/**
+	 * Uses the difference between the greatest and least primary keys, which is
+	 * exact if primary keys have no gaps, and an upper bound otherwise. When the
+	 * primary key is indexed, retrieving them takes no table scan. The total is
+	 * unknown if the primary keys are not numbers.
+	 */
+	KEY_RANGE("keyRange") {
+		@Override
+		public long getTotal(
+			final Connection connection, final String tableName, final String primaryKeyColumn, final long lastPrimaryKey
+		) throws SQLException {
+			try (final PreparedStatement statement = prepareStatement(
+				connection, "MIN(" + primaryKeyColumn + "), MAX(" + primaryKeyColumn + ")",
+				tableName, primaryKeyColumn, lastPrimaryKey
+			)) {
+				try (final ResultSet resultSet = statement.executeQuery()) {
+					if (!resultSet.next()) {
+						return 0;
+					}
+
+					final Object leastPrimaryKey = resultSet.getObject(1);
+					final Object greatestPrimaryKey = resultSet.getObject(2);
+
+					if (leastPrimaryKey == null || greatestPrimaryKey == null) {
+						// No documents
+						return 0;
+					} else if (leastPrimaryKey instanceof Number && greatestPrimaryKey instanceof Number) {
+						return ((Number) greatestPrimaryKey).longValue() - ((Number) leastPrimaryKey).longValue() + 1;
+					} else {
+						return UNKNOWN_TOTAL;
+					}
+				}
+			}
+		}
+	},
+	/**
+	 * Does not tell anything, so no statement is executed. Progress is shown page
+	 * by page, as documents are read.
+	 */
+	UNKNOWN("unknown") {
+		@Override
+		public long getTotal(
+			final Connection connection, final String tableName, final String primaryKeyColumn, final long lastPrimaryKey
+		) {
+			return UNKNOWN_TOTAL;
+		}
+	};
+
+	/**
+	 * The total number of documents returned when it is not known.
+	 */
+	public static final long UNKNOWN_TOTAL = -1;
+
+	/**
+	 * The value of the step parameter that selects this strategy.
+	 */
+	@Getter
+	private final String parameterValue;
+
+	private ProgressTotalStrategy(final String parameterValue) {
+		this.parameterValue = parameterValue;
+	}
+
+	/**
+	 * Returns how many documents a table has, according to this strategy.
+	 *
+	 * @param connection       The connection to query the table with.
+	 * @param tableName        The name of the table.
+	 * @param primaryKeyColumn The name of the primary key column of the table.
+	 * @param lastPrimaryKey   Only documents whose primary key is greater than
+	 *                         this will be taken into account. If it is the least
+	 *                         long value, every document is taken into account,
+	 *                         even if its primary key is not a number.
+	 * @return The described number, or {@link #UNKNOWN_TOTAL} if it is not known.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	public abstract long getTotal(
+		final Connection connection, final String tableName, final String primaryKeyColumn, final long lastPrimaryKey
+	) throws SQLException;
+
+	/**
+	 * Returns the strategy that is selected by a step parameter value.
+	 *
+	 * @param parameterValue The step parameter value.
+	 * @return The described strategy, or {@code null} if no strategy is selected
+	 *         by that value.
+	 */
+	public static ProgressTotalStrategy fromParameterValue(final String parameterValue) {
+		for (final ProgressTotalStrategy strategy : values()) {
+			if (strategy.parameterValue.equals(parameterValue)) {
+				return strategy;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Prepares a statement that selects an aggregate of the documents of a table
+	 * whose primary key is greater than a given one.
+	 */
+	private static PreparedStatement prepareStatement(
+		final Connection connection, final String aggregates, final String tableName, final String primaryKeyColumn,
+		final long lastPrimaryKey
+	) throws SQLException {
+		final boolean filterDocuments = lastPrimaryKey != Long.MIN_VALUE;
+		final PreparedStatement statement = connection.prepareStatement(
+			"SELECT " + aggregates + " FROM " + tableName + (filterDocuments ? " WHERE " + primaryKeyColumn + " > ?" : "")
+		);
+
+		if (filterDocuments) {
+			statement.setLong(1, lastPrimaryKey);
+		}
+
+		return statement;
+	}
+
+	/**
+	 * Returns the row count of a table as kept by the catalog statistics of the
+	 * database, or {@link #UNKNOWN_TOTAL} if they are not available.
+	 */
+	private static long getCatalogRowCount(final Connection connection, final String tableName) throws SQLException {
+		final DatabaseMetaData databaseMetaData = connection.getMetaData();
+		final String catalogTableName;
+
+		if (databaseMetaData.storesUpperCaseIdentifiers()) {
+			catalogTableName = tableName.toUpperCase();
+		} else if (databaseMetaData.storesLowerCaseIdentifiers()) {
+			catalogTableName = tableName.toLowerCase();
+		} else {
+			catalogTableName = tableName;
+		}
+
+		try (final ResultSet resultSet = databaseMetaData.getIndexInfo(
+			connection.getCatalog(), null, catalogTableName, false, true
+		)) {
+			while (resultSet.next()) {
+				if (resultSet.getShort("TYPE") == DatabaseMetaData.tableIndexStatistic) {
+					final long cardinality = resultSet.getLong("CARDINALITY");
+					return resultSet.wasNull() ? UNKNOWN_TOTAL : cardinality;
+				}
+			}
+		}
+
+		return UNKNOWN_TOTAL;
+	}
+}
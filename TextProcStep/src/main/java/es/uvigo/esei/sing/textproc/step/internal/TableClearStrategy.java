@@ -0,0 +1,165 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.internal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import lombok.Getter;
+
+/**
+ * The ways of deleting every row of a table that stores processed documents.
+ * Deleting rows with a {@code DELETE} statement visits, checks the constraints
+ * of and journals every row, so faster strategies that discard the contents of
+ * the table as a whole are available for the databases that support them.
+ *
+ * @author Alejandro González García
+ */
+public enum TableClearStrategy {
+	/**
+	 * Chooses the fastest strategy that the database supports: {@link #RECREATE}
+	 * on SQLite, {@link #TRUNCATE} on databases known to support that statement,
+	 * and {@link #DELETE} on the rest.
+	 */
+	AUTOMATIC("auto") {
+		@Override
+		public void clear(final Connection connection, final String tableName) throws SQLException {
+			final String databaseProductName = connection.getMetaData().getDatabaseProductName();
+			final TableClearStrategy strategy;
+
+			if (SQLITE_DATABASE_PRODUCT_NAME.equalsIgnoreCase(databaseProductName)) {
+				strategy = RECREATE;
+			} else if (TRUNCATE_DATABASE_PRODUCT_NAMES.contains(databaseProductName)) {
+				strategy = TRUNCATE;
+			} else {
+				strategy = DELETE;
+			}
+
+			strategy.clear(connection, tableName);
+		}
+	},
+	/**
+	 * Executes a {@code DELETE} statement without conditions, which every database
+	 * supports.
+	 */
+	DELETE("delete") {
+		@Override
+		public void clear(final Connection connection, final String tableName) throws SQLException {
+			try (final Statement statement = connection.createStatement()) {
+				statement.executeUpdate("DELETE FROM " + tableName);
+			}
+		}
+	},
+	/**
+	 * Executes a {@code TRUNCATE TABLE} statement, which deallocates the storage
+	 * of the table without visiting its rows. Some databases commit the current
+	 * transaction before truncating, and refuse to truncate tables that other
+	 * tables reference.
+	 */
+	TRUNCATE("truncate") {
+		@Override
+		public void clear(final Connection connection, final String tableName) throws SQLException {
+			try (final Statement statement = connection.createStatement()) {
+				statement.executeUpdate("TRUNCATE TABLE " + tableName);
+			}
+		}
+	},
+	/**
+	 * Drops the table and creates it again, with its indexes and triggers, from
+	 * the exact statements that created them, so the definition of the table is
+	 * kept. Only SQLite databases are supported, because they keep those
+	 * statements in their schema table. SQLite drops tables that reference
+	 * others without checking their rows, unlike it deletes them when foreign
+	 * keys are enforced.
+	 */
+	RECREATE("recreate") {
+		@Override
+		public void clear(final Connection connection, final String tableName) throws SQLException {
+			final List<String> tableCreationStatements = new ArrayList<>();
+
+			if (!SQLITE_DATABASE_PRODUCT_NAME.equalsIgnoreCase(connection.getMetaData().getDatabaseProductName())) {
+				throw new SQLException("Tables can only be recreated in SQLite databases");
+			}
+
+			// Retrieve the statements in creation order, so the table comes first
+			try (final PreparedStatement statement = connection.prepareStatement(
+				"SELECT type, sql FROM sqlite_master WHERE tbl_name = ? COLLATE NOCASE AND sql IS NOT NULL ORDER BY rowid"
+			)) {
+				statement.setString(1, tableName);
+
+				try (final ResultSet resultSet = statement.executeQuery()) {
+					while (resultSet.next()) {
+						final String type = resultSet.getString(1);
+
+						if (!"table".equals(type) && !"index".equals(type) && !"trigger".equals(type)) {
+							// Views don't belong to the table, even if they are named like it
+							continue;
+						}
+
+						tableCreationStatements.add(resultSet.getString(2));
+					}
+				}
+			}
+
+			if (tableCreationStatements.isEmpty()) {
+				throw new SQLException("The table " + tableName + " does not exist");
+			}
+
+			try (final Statement statement = connection.createStatement()) {
+				statement.executeUpdate("DROP TABLE " + tableName);
+
+				for (final String tableCreationStatement : tableCreationStatements) {
+					statement.executeUpdate(tableCreationStatement);
+				}
+			}
+		}
+	};
+
+	private static final String SQLITE_DATABASE_PRODUCT_NAME = "SQLite";
+	private static final Set<String> TRUNCATE_DATABASE_PRODUCT_NAMES = Set.of(
+		"PostgreSQL", "MySQL", "MariaDB", "Oracle", "Microsoft SQL Server", "H2", "HSQL Database Engine"
+	);
+
+	/**
+	 * The value of the step parameter that selects this strategy.
+	 */
+	@Getter
+	private final String parameterValue;
+
+	private TableClearStrategy(final String parameterValue) {
+		this.parameterValue = parameterValue;
+	}
+
+	/**
+	 * Deletes every row of a table, according to this strategy.
+	 *
+	 * @param connection The connection to delete the rows with.
+	 * @param tableName  The name of the table.
+	 * @throws SQLException If some data access error occurs, or the database does
+	 *                      not support this strategy.
+	 */
+	public abstract void clear(final Connection connection, final String tableName) throws SQLException;
+
+	/**
+	 * Returns the strategy that is selected by a step parameter value.
+	 *
+	 * @param parameterValue The step parameter value.
+	 * @return The described strategy, or {@code null} if no strategy is selected
+	 *         by that value.
+	 */
+	public static TableClearStrategy fromParameterValue(final String parameterValue) {
+		for (final TableClearStrategy strategy : values()) {
+			if (strategy.parameterValue.equals(parameterValue)) {
+				return strategy;
+			}
+		}
+
+		return null;
+	}
+}
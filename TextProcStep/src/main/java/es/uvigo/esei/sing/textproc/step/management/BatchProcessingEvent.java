@@ -0,0 +1,36 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.management;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import lombok.Setter;
+
+/**
+ * A Java Flight Recorder event emitted when a worker thread of a processing
+ * step processes a batch of documents.
+ *
+ * @author Alejandro González García
+ */
+@Name("es.uvigo.esei.sing.textproc.BatchProcessing")
+@Label("Batch Processing")
+@Description("A batch of documents processed by a worker thread of a processing step")
+@Category({ "TextProc", "Processing Step" })
+@Setter
+public final class BatchProcessingEvent extends jdk.jfr.Event {
+	@Label("Step")
+	private String stepName;
+
+	@Label("Documents")
+	private int documents;
+
+	@Label("Characters")
+	@Description("The number of characters of the attributes of the documents")
+	private long characters;
+
+	@Label("Successful")
+	@Description("Whether the batch was processed without exceptions")
+	private boolean successful;
+}
@@ -0,0 +1,61 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.management;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import lombok.NonNull;
+import lombok.Setter;
+
+/**
+ * A Java Flight Recorder event that processing steps emit when a natural
+ * language processing library annotates some text in process, like a CoreNLP
+ * pipeline does.
+ *
+ * @author Alejandro González García
+ */
+@Name("es.uvigo.esei.sing.textproc.NlpAnnotation")
+@Label("NLP Annotation")
+@Description("Text annotated by a natural language processing library")
+@Category({ "TextProc", "Natural Language Processing" })
+@Setter
+public final class NlpAnnotationEvent extends jdk.jfr.Event {
+	@Label("Annotator")
+	@Description("The library or pipeline that annotated the text")
+	private String annotator;
+
+	@Label("Documents")
+	private int documents;
+
+	@Label("Characters")
+	private long characters;
+
+	/**
+	 * Annotates some text, emitting this event for it.
+	 *
+	 * @param annotator  The library or pipeline that annotates the text.
+	 * @param documents  The number of documents the text comes from.
+	 * @param characters The number of characters of the text.
+	 * @param annotation The action that annotates the text.
+	 */
+	public static void annotate(
+		final String annotator, final int documents, final long characters, @NonNull final Runnable annotation
+	) {
+		final NlpAnnotationEvent annotationEvent = new NlpAnnotationEvent();
+
+		annotationEvent.begin();
+		try {
+			annotation.run();
+		} finally {
+			annotationEvent.end();
+			if (annotationEvent.shouldCommit()) {
+				annotationEvent.setAnnotator(annotator);
+				annotationEvent.setDocuments(documents);
+				annotationEvent.setCharacters(characters);
+				annotationEvent.commit();
+			}
+		}
+	}
+}
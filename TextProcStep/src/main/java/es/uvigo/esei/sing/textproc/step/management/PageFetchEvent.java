@@ -0,0 +1,48 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.management;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import lombok.Setter;
+
+/**
+ * A Java Flight Recorder event emitted when a processing step reads a page of
+ * documents from a source. When documents are streamed, its duration also
+ * covers waiting for worker threads to take the batches of the page, so the
+ * time spent reading from the database is recorded apart.
+ *
+ * @author Alejandro González García
+ */
+@Name("es.uvigo.esei.sing.textproc.PageFetch")
+@Label("Page Fetch")
+@Description("A page of documents read by a processing step")
+@Category({ "TextProc", "Processing Step" })
+@Setter
+public final class PageFetchEvent extends jdk.jfr.Event {
+	@Label("Step")
+	private String stepName;
+
+	@Label("Task")
+	@Description("The task the documents of the page are read for")
+	private String taskName;
+
+	@Label("Page")
+	@Description("The index of the page, starting at 0")
+	private long page;
+
+	@Label("Documents")
+	private int documents;
+
+	@Label("Characters")
+	@Description("The number of characters of the attributes of the documents")
+	private long characters;
+
+	@Label("Read Time")
+	@Description("The time spent executing the query and retrieving its results")
+	@Timespan(Timespan.NANOSECONDS)
+	private long readTime;
+}
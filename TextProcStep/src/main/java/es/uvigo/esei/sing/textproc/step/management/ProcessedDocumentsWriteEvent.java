@@ -0,0 +1,33 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.management;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import lombok.Setter;
+
+/**
+ * A Java Flight Recorder event emitted when the processed documents of a
+ * processing step are written to the database, before the transaction they
+ * are written in is committed.
+ *
+ * @author Alejandro González García
+ */
+@Name("es.uvigo.esei.sing.textproc.ProcessedDocumentsWrite")
+@Label("Processed Documents Write")
+@Description("Processed documents written to the database by a processing step")
+@Category({ "TextProc", "Processing Step" })
+@Setter
+public final class ProcessedDocumentsWriteEvent extends jdk.jfr.Event {
+	@Label("Step")
+	private String stepName;
+
+	@Label("Documents")
+	private int documents;
+
+	@Label("High-Water Marks")
+	@Description("The number of high-water marks written with the documents")
+	private int highWaterMarks;
+}
@@ -0,0 +1,58 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.management;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+import lombok.Setter;
+
+/**
+ * A Java Flight Recorder event emitted when a processing step is done
+ * processing its documents, with the totals of its metrics. The compute time
+ * of a step includes the time the steps it hands its processed documents over
+ * to spent on them, when it is fused with them.
+ *
+ * @author Alejandro González García
+ * @see ProcessingStepMetricsMXBean
+ */
+@Name("es.uvigo.esei.sing.textproc.ProcessingStepExecution")
+@Label("Processing Step Execution")
+@Description("The documents processed by an execution of a processing step")
+@Category({ "TextProc", "Processing Step" })
+@Setter
+public final class ProcessingStepExecutionEvent extends jdk.jfr.Event {
+	@Label("Step")
+	private String stepName;
+
+	@Label("Fused")
+	@Description("Whether the step was fused with the step before it, so its batches were processed within the batches of that step")
+	private boolean fused;
+
+	@Label("Documents")
+	private long documents;
+
+	@Label("Characters")
+	@Description("The number of characters of the attributes of the documents")
+	private long characters;
+
+	@Label("Batches")
+	private long batches;
+
+	@Label("Read Time")
+	@Description("The time spent reading documents from the database")
+	@Timespan(Timespan.NANOSECONDS)
+	private long readTime;
+
+	@Label("Compute Time")
+	@Description("The time worker threads spent processing batches, added up")
+	@Timespan(Timespan.NANOSECONDS)
+	private long computeTime;
+
+	@Label("Write Time")
+	@Description("The time spent writing processed documents to the database")
+	@Timespan(Timespan.NANOSECONDS)
+	private long writeTime;
+}
@@ -0,0 +1,197 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.management;
+
+/**
+ * The management interface of the metrics of a running processing step, which
+ * are published through JMX while the step processes documents, so they can be
+ * watched with JConsole or any other JMX client. Every processing step
+ * publishes an object named like
+ * {@code es.uvigo.esei.sing.textproc:type=ProcessingStep,name=<step class simple name>}.
+ * <p>
+ * Durations are measured in milliseconds. Rates and durations are measured
+ * since the step started processing documents.
+ * </p>
+ *
+ * @author Alejandro González García
+ */
+public interface ProcessingStepMetricsMXBean {
+	/**
+	 * The domain of the names of the published metrics objects.
+	 */
+	public static final String OBJECT_NAME_DOMAIN = "es.uvigo.esei.sing.textproc";
+
+	/**
+	 * Returns the name of the processing step, which is the simple name of its
+	 * class.
+	 *
+	 * @return The described name.
+	 */
+	public String getStepName();
+
+	/**
+	 * Returns the time elapsed since the step started processing documents.
+	 *
+	 * @return The described time, in milliseconds.
+	 */
+	public long getElapsedTime();
+
+	/**
+	 * Returns the number of documents processed so far.
+	 *
+	 * @return The described number.
+	 */
+	public long getProcessedDocuments();
+
+	/**
+	 * Returns the number of characters of the documents processed so far.
+	 *
+	 * @return The described number.
+	 */
+	public long getProcessedCharacters();
+
+	/**
+	 * Returns the number of documents processed per second.
+	 *
+	 * @return The described number.
+	 */
+	public double getDocumentsPerSecond();
+
+	/**
+	 * Returns the number of characters of the documents processed per second.
+	 *
+	 * @return The described number.
+	 */
+	public double getCharactersPerSecond();
+
+	/**
+	 * Returns the number of batches of documents processed so far.
+	 *
+	 * @return The described number.
+	 */
+	public long getProcessedBatches();
+
+	/**
+	 * Returns the mean time that processing a batch of documents took.
+	 *
+	 * @return The described time, in milliseconds.
+	 */
+	public double getBatchLatencyMean();
+
+	/**
+	 * Returns the time that processing 50% of the batches of documents took at
+	 * most.
+	 *
+	 * @return The described time, in milliseconds.
+	 */
+	public double getBatchLatency50thPercentile();
+
+	/**
+	 * Returns the time that processing 90% of the batches of documents took at
+	 * most.
+	 *
+	 * @return The described time, in milliseconds.
+	 */
+	public double getBatchLatency90thPercentile();
+
+	/**
+	 * Returns the time that processing 99% of the batches of documents took at
+	 * most.
+	 *
+	 * @return The described time, in milliseconds.
+	 */
+	public double getBatchLatency99thPercentile();
+
+	/**
+	 * Returns the time that processing 99.9% of the batches of documents took at
+	 * most.
+	 *
+	 * @return The described time, in milliseconds.
+	 */
+	public double getBatchLatency999thPercentile();
+
+	/**
+	 * Returns the maximum time that processing a batch of documents took.
+	 *
+	 * @return The described time, in milliseconds.
+	 */
+	public double getBatchLatencyMax();
+
+	/**
+	 * Returns the time spent reading documents from the database.
+	 *
+	 * @return The described time, in milliseconds.
+	 */
+	public long getReadTime();
+
+	/**
+	 * Returns the time spent processing batches of documents, added up for every
+	 * worker thread.
+	 *
+	 * @return The described time, in milliseconds.
+	 */
+	public long getComputeTime();
+
+	/**
+	 * Returns the time spent writing processed documents to the database, not
+	 * counting commits.
+	 *
+	 * @return The described time, in milliseconds.
+	 */
+	public long getWriteTime();
+
+	/**
+	 * Returns the number of batches of documents that were handed over to worker
+	 * threads, but are not processed yet.
+	 *
+	 * @return The described number.
+	 */
+	public int getInFlightBatches();
+
+	/**
+	 * Returns the number of processed documents kept in memory, which were not
+	 * handed over to the database writer yet.
+	 *
+	 * @return The described number.
+	 */
+	public int getPendingDocuments();
+
+	/**
+	 * Returns the number of writes of processed documents that were handed over
+	 * to the database writer, but are not committed yet.
+	 *
+	 * @return The described number.
+	 */
+	public int getPendingWrites();
+
+	/**
+	 * Returns the number of writes of processed documents committed so far.
+	 *
+	 * @return The described number.
+	 */
+	public long getCommits();
+
+	/**
+	 * Returns the mean time that a write of processed documents took to be
+	 * executed and committed.
+	 *
+	 * @return The described time, in milliseconds.
+	 */
+	public double getCommitDurationMean();
+
+	/**
+	 * Returns the time that 99% of the writes of processed documents took at most
+	 * to be executed and committed.
+	 *
+	 * @return The described time, in milliseconds.
+	 */
+	public double getCommitDuration99thPercentile();
+
+	/**
+	 * Returns the maximum time that a write of processed documents took to be
+	 * executed and committed.
+	 *
+	 * @return The described time, in milliseconds.
+	 */
+	public double getCommitDurationMax();
+}
@@ -0,0 +1,14 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Parameter for processing steps which represents the number of documents the
+ * database driver is hinted to fetch at a time when streaming results.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "fetchSize")
+public final class FetchSizeProcessingStepParameter extends AbstractProcessingStepParameter {}
@@ -0,0 +1,16 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Parameter for processing steps which represents whether a step only processes
+ * the documents added since its last execution, upserting their processed
+ * documents, instead of deleting every previous result and processing every
+ * document again.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "incremental")
+public final class IncrementalProcessingStepParameter extends AbstractProcessingStepParameter {}
@@ -0,0 +1,14 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Parameter for processing steps which represents the minimum number of
+ * documents of a batch, when batches are resized to take a target time.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "minDocumentsPerBatch")
+public final class MinimumBatchSizeProcessingStepParameter extends AbstractProcessingStepParameter {}
@@ -0,0 +1,17 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Parameter for processing steps which represents how documents are divided in
+ * pages when retrieved from the database. The {@code keyset} mode seeks to the
+ * next page by comparing primary keys, so every page takes about the same time
+ * to retrieve, while the {@code offset} mode skips the documents of previous
+ * pages, which works with any primary key type.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "pagingMode")
+public final class PagingModeProcessingStepParameter extends AbstractProcessingStepParameter {}
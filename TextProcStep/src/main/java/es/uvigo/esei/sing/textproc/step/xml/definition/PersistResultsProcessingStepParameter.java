@@ -0,0 +1,15 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Parameter for processing steps which represents whether the processed
+ * documents of a step are stored in the database even when they are handed
+ * over in memory to the next step, because both steps were fused.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "persistResults")
+public final class PersistResultsProcessingStepParameter extends AbstractProcessingStepParameter {}
@@ -10,6 +10,7 @@ import java.util.ServiceLoader.Provider;
 import javax.xml.bind.annotation.XmlAnyElement;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlList;
 import javax.xml.bind.annotation.XmlRootElement;
 import javax.xml.bind.annotation.XmlSeeAlso;
 import javax.xml.bind.annotation.XmlTransient;
@@ -33,6 +34,19 @@ import lombok.NonNull;
 	// Common step parameter definitions
 	PageSizeProcessingStepParameter.class,
 	BatchSizeProcessingStepParameter.class,
+	ProgressTotalProcessingStepParameter.class,
+	TableClearStrategyProcessingStepParameter.class,
+	WriteBatchSizeProcessingStepParameter.class,
+	WriteIntervalProcessingStepParameter.class,
+	TargetBatchLatencyProcessingStepParameter.class,
+	MinimumBatchSizeProcessingStepParameter.class,
+	MaximumBatchSizeProcessingStepParameter.class,
+	PagingModeProcessingStepParameter.class,
+	StreamResultsProcessingStepParameter.class,
+	FetchSizeProcessingStepParameter.class,
+	WorkerThreadsProcessingStepParameter.class,
+	PersistResultsProcessingStepParameter.class,
+	IncrementalProcessingStepParameter.class,
 	TextDocumentWithTitleTableNameProcessingStepParameter.class,
 	TextDocumentTableNameProcessingStepParameter.class,
 	PrimaryKeyColumnProcessingStepParameter.class,
@@ -47,6 +61,10 @@ public final class ProcessingStepDefinition {
 
 	@XmlAttribute @XmlJavaTypeAdapter(ProcessingStepAdapter.class) @Getter
 	private ProcessingStepInterface action; // Never null due to how the adapter works
+	@XmlAttribute @XmlList @Getter
+	private List<String> inputs; // Null if they should be inferred from the parameters
+	@XmlAttribute @XmlList @Getter
+	private List<String> outputs; // Null if they should be inferred from the step
 	@XmlElementWrapper @XmlAnyElement(lax = true)
 	private List<ProcessingStepParameter> parameters; // Can be null if there are no parameters
 	@XmlTransient
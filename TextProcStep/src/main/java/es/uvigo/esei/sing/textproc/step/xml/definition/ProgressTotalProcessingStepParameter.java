@@ -0,0 +1,17 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Parameter for processing steps which represents how the number of documents
+ * to process is obtained, to show progress information. The {@code exact}
+ * strategy counts them, {@code estimate} uses the catalog statistics of the
+ * database, {@code keyRange} uses the range of primary keys, and
+ * {@code unknown} does not obtain it, showing progress as documents are read.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "progressTotal")
+public final class ProgressTotalProcessingStepParameter extends AbstractProcessingStepParameter {}
@@ -0,0 +1,15 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Parameter for processing steps which represents whether the documents of a
+ * page are read from a forward-only database cursor as they are processed,
+ * instead of loading the whole page to memory before processing it.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "streamResults")
+public final class StreamResultsProcessingStepParameter extends AbstractProcessingStepParameter {}
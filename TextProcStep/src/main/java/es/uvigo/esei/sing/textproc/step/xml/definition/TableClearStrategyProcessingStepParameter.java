@@ -0,0 +1,18 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Parameter for processing steps which represents how the previously processed
+ * documents are deleted before processing documents again. The {@code delete}
+ * strategy deletes them row by row, {@code truncate} truncates their tables,
+ * {@code recreate} drops and creates their tables again, which is only
+ * supported on SQLite, and {@code auto} chooses the fastest one that the
+ * database supports.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "clearStrategy")
+public final class TableClearStrategyProcessingStepParameter extends AbstractProcessingStepParameter {}
@@ -0,0 +1,15 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Parameter for processing steps which represents the time, in milliseconds,
+ * that processing a batch of documents should take. When given, batches are
+ * resized as documents are processed to take about that time.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "targetBatchLatency")
+public final class TargetBatchLatencyProcessingStepParameter extends AbstractProcessingStepParameter {}
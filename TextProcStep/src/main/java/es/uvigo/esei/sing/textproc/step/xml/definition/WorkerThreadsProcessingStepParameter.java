@@ -0,0 +1,14 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Parameter for processing steps which represents the number of threads that
+ * process batches of documents while they are read from the database.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "workerThreads")
+public final class WorkerThreadsProcessingStepParameter extends AbstractProcessingStepParameter {}
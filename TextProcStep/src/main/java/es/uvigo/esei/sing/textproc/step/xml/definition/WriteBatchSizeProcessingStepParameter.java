@@ -0,0 +1,15 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Parameter for processing steps which represents how many processed documents
+ * are kept in memory at most before they are handed over to the database writer,
+ * even if the page they belong to is not processed yet.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "documentsPerWrite")
+public final class WriteBatchSizeProcessingStepParameter extends AbstractProcessingStepParameter {}
@@ -0,0 +1,16 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.xml.definition;
+
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * Parameter for processing steps which represents the maximum time, in
+ * milliseconds, processed documents are kept in memory before they are handed
+ * over to the database writer, even if the page they belong to is not
+ * processed yet.
+ *
+ * @author Alejandro González García
+ */
+@XmlRootElement(name = "writeInterval")
+public final class WriteIntervalProcessingStepParameter extends AbstractProcessingStepParameter {}
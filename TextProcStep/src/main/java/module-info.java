@@ -14,6 +14,9 @@ module es.uvigo.esei.sing.textproc.step {
 
 	requires lombok;
 	requires transitive java.xml.bind;
+	requires java.management;
+	// Our Java Flight Recorder events are part of our API
+	requires transitive jdk.jfr;
 
 	// FIXME Required libraries that do not define a module name
 	// (automatic modules). Nag their authors for proper JPMS
@@ -31,6 +34,7 @@ module es.uvigo.esei.sing.textproc.step {
 	exports es.uvigo.esei.sing.textproc.process;
 	exports es.uvigo.esei.sing.textproc.step;
 	exports es.uvigo.esei.sing.textproc.step.xml.definition;
+	exports es.uvigo.esei.sing.textproc.step.management;
 	exports es.uvigo.esei.sing.textproc.step.util;
 
 	uses es.uvigo.esei.sing.textproc.step.ProcessingStepService;
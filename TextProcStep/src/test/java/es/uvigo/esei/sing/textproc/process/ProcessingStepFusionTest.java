@@ -0,0 +1,460 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.process;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import es.uvigo.esei.sing.textproc.entity.ProcessedDocument;
+import es.uvigo.esei.sing.textproc.entity.ProcessedDocumentWithTitle;
+import es.uvigo.esei.sing.textproc.logging.TextProcLogging;
+import es.uvigo.esei.sing.textproc.persistence.TextProcPersistence;
+import es.uvigo.esei.sing.textproc.step.AbstractProcessingStep;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import es.uvigo.esei.sing.textproc.step.internal.ProcessingStepInterface;
+import es.uvigo.esei.sing.textproc.step.xml.definition.BatchSizeProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.IncrementalProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.PageSizeProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.TextColumnProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.TextDocumentTableNameProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.TextDocumentWithTitleTableNameProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.WorkerThreadsProcessingStepParameter;
+
+/**
+ * Tests which consecutive steps {@link ProcessingStepFusion} fuses, and that
+ * fused steps process documents like the same steps executed on their own, on
+ * a SQLite database.
+ *
+ * @author Alejandro González García
+ */
+public class ProcessingStepFusionTest {
+	private static final String CONNECTION_URL_PROPERTY_NAME = "hibernate.connection.url";
+	private static final String TEXT_DOCUMENT_WITH_TITLE_TABLE_NAME_PARAMETER_NAME = new TextDocumentWithTitleTableNameProcessingStepParameter().getName();
+	private static final String TEXT_DOCUMENT_TABLE_NAME_PARAMETER_NAME = new TextDocumentTableNameProcessingStepParameter().getName();
+	private static final String TEXT_COLUMN_PARAMETER_NAME = new TextColumnProcessingStepParameter().getName();
+	private static final String PAGE_SIZE_PARAMETER_NAME = new PageSizeProcessingStepParameter().getName();
+	private static final String BATCH_SIZE_PARAMETER_NAME = new BatchSizeProcessingStepParameter().getName();
+	private static final String WORKER_THREADS_PARAMETER_NAME = new WorkerThreadsProcessingStepParameter().getName();
+	private static final String INCREMENTAL_PARAMETER_NAME = new IncrementalProcessingStepParameter().getName();
+	private static final List<Set<Class<? extends ProcessedDocument>>> PROCESSED_DOCUMENT_TYPES = List.of(
+		Set.of(UppercasedTextWithTitleDocument.class, UppercasedTextDocument.class),
+		Set.of(SuffixedTextWithTitleDocument.class, SuffixedTextDocument.class),
+		Set.of(SuffixedTextWithTitleDocument.class, SuffixedTextDocument.class)
+	);
+
+	@TempDir
+	static Path databaseFolder;
+	private static String connectionUrl;
+
+	@BeforeAll
+	static void startPersistence() {
+		connectionUrl = "jdbc:sqlite:" + databaseFolder.resolve("corpus.db");
+
+		TextProcLogging.initialize(ProcessingStepFusionTest.class.getSimpleName());
+		TextProcPersistence.get().start(
+			Set.of(
+				UppercasedTextWithTitleDocument.class, UppercasedTextDocument.class,
+				SuffixedTextWithTitleDocument.class, SuffixedTextDocument.class
+			),
+			Map.of(CONNECTION_URL_PROPERTY_NAME, connectionUrl)
+		);
+	}
+
+	@AfterAll
+	static void stopPersistence() {
+		TextProcPersistence.get().stop();
+	}
+
+	@BeforeEach
+	void createTables() throws SQLException {
+		executeStatements(
+			"DROP VIEW IF EXISTS uppercased_submission",
+			"DROP VIEW IF EXISTS uppercased_comment",
+			"DROP TABLE IF EXISTS submission",
+			"DROP TABLE IF EXISTS comment",
+			"DROP TABLE IF EXISTS uppercased_text_with_title_document",
+			"DROP TABLE IF EXISTS uppercased_text_document",
+			"DROP TABLE IF EXISTS suffixed_text_with_title_document",
+			"DROP TABLE IF EXISTS suffixed_text_document",
+			"CREATE TABLE submission (id INT PRIMARY KEY, title TEXT NOT NULL, text TEXT NOT NULL)",
+			"CREATE TABLE comment (id INT PRIMARY KEY, text TEXT NOT NULL)",
+			"CREATE TABLE uppercased_text_with_title_document (id INT PRIMARY KEY, text TEXT NOT NULL, title TEXT NOT NULL)",
+			"CREATE TABLE uppercased_text_document (id INT PRIMARY KEY, text TEXT NOT NULL)",
+			"CREATE TABLE suffixed_text_with_title_document (id INT PRIMARY KEY, text TEXT NOT NULL, title TEXT NOT NULL)",
+			"CREATE TABLE suffixed_text_document (id INT PRIMARY KEY, text TEXT NOT NULL)",
+			"CREATE VIEW uppercased_submission AS SELECT * FROM uppercased_text_with_title_document",
+			"CREATE VIEW uppercased_comment AS SELECT * FROM uppercased_text_document"
+		);
+
+		final String[] insertStatements = new String[20];
+		for (int i = 1, j = 0; i <= 10; ++i) {
+			insertStatements[j++] = "INSERT INTO submission VALUES (" + i + ", 'Title " + i + "', 'Submission " + i + "')";
+			insertStatements[j++] = "INSERT INTO comment VALUES (" + i + ", 'Comment " + i + "')";
+		}
+		executeStatements(insertStatements);
+	}
+
+	/**
+	 * Checks that a step that reads the documents processed by the previous step,
+	 * through views that just rename its tables, is fused with it, and that the
+	 * fused steps store the same documents as the steps executed on their own.
+	 */
+	@Test
+	void fusedStepsProcessDocumentsLikeUnfusedSteps() throws ProcessingException, SQLException {
+		final TransformingProcessingStep uppercasingStep = new TransformingProcessingStep(
+			UppercasedTextWithTitleDocument.class, UppercasedTextDocument.class, String::toUpperCase
+		);
+		final TransformingProcessingStep suffixingStep = new TransformingProcessingStep(
+			SuffixedTextWithTitleDocument.class, SuffixedTextDocument.class, (final String text) -> text + " (suffixed)"
+		);
+
+		uppercasingStep.execute(getParameters("submission", "comment", false));
+		suffixingStep.execute(getParameters("uppercased_submission", "uppercased_comment", false));
+		final List<String> unfusedDocuments = getSuffixedDocuments();
+
+		executeStatements(
+			"DELETE FROM uppercased_text_with_title_document",
+			"DELETE FROM uppercased_text_document",
+			"DELETE FROM suffixed_text_with_title_document",
+			"DELETE FROM suffixed_text_document"
+		);
+
+		final TransformingProcessingStep fusedUppercasingStep = new TransformingProcessingStep(
+			UppercasedTextWithTitleDocument.class, UppercasedTextDocument.class, String::toUpperCase
+		);
+		final TransformingProcessingStep fusedSuffixingStep = new TransformingProcessingStep(
+			SuffixedTextWithTitleDocument.class, SuffixedTextDocument.class, (final String text) -> text + " (suffixed)"
+		);
+		final List<Map<String, String>> parameters = List.of(
+			getParameters("submission", "comment", false),
+			getParameters("uppercased_submission", "uppercased_comment", false)
+		);
+
+		assertArrayEquals(
+			new boolean[] { true, false },
+			fuseSteps(List.of(fusedUppercasingStep, fusedSuffixingStep), parameters)
+		);
+
+		fusedSuffixingStep.execute(parameters.get(1));
+
+		assertEquals(20, unfusedDocuments.size());
+		assertEquals("1 TITLE 1 (suffixed) SUBMISSION 1 (suffixed)", unfusedDocuments.get(0));
+		assertEquals(unfusedDocuments, getSuffixedDocuments());
+		assertEquals(20, fusedUppercasingStep.getProcessedDocuments());
+		assertEquals(20, fusedSuffixingStep.getProcessedDocuments());
+		// Nothing reads the documents of the upstream step later
+		assertEquals(0, countRows("uppercased_text_with_title_document"));
+		assertEquals(0, countRows("uppercased_text_document"));
+	}
+
+	/**
+	 * Checks that the documents processed by a fused upstream step are stored if a
+	 * later step, that is not fused with it, reads them.
+	 */
+	@Test
+	void fusedStepResultsReadByLaterStepsAreStored() throws ProcessingException, SQLException {
+		final TransformingProcessingStep uppercasingStep = new TransformingProcessingStep(
+			UppercasedTextWithTitleDocument.class, UppercasedTextDocument.class, String::toUpperCase
+		);
+		final TransformingProcessingStep suffixingStep = new TransformingProcessingStep(
+			SuffixedTextWithTitleDocument.class, SuffixedTextDocument.class, (final String text) -> text + " (suffixed)"
+		);
+		final List<Map<String, String>> parameters = List.of(
+			getParameters("submission", "comment", false),
+			getParameters("uppercased_text_with_title_document", "uppercased_text_document", false),
+			getParameters("uppercased_submission", "uppercased_comment", false)
+		);
+
+		assertArrayEquals(
+			new boolean[] { true, false, false },
+			fuseSteps(List.of(uppercasingStep, suffixingStep, new TransformingProcessingStep(
+				SuffixedTextWithTitleDocument.class, SuffixedTextDocument.class, (final String text) -> text
+			)), parameters)
+		);
+
+		suffixingStep.execute(parameters.get(1));
+
+		assertEquals(10, countRows("uppercased_text_with_title_document"));
+		assertEquals(10, countRows("uppercased_text_document"));
+		assertEquals(10, countRows("suffixed_text_with_title_document"));
+		assertEquals(10, countRows("suffixed_text_document"));
+	}
+
+	/**
+	 * Checks that steps are not fused with the previous step if they don't read
+	 * the documents it processed, or only one of them processes documents
+	 * incrementally.
+	 */
+	@Test
+	void otherStepsAreNotFused() throws ProcessingException {
+		final Map<String, String> firstStepParameters = getParameters("submission", "comment", false);
+
+		// Reads the same documents as the previous step
+		assertArrayEquals(
+			new boolean[] { false, false },
+			fuseSteps(createSteps(), List.of(firstStepParameters, firstStepParameters))
+		);
+
+		// Reads a single table of the previous step
+		assertArrayEquals(
+			new boolean[] { false, false },
+			fuseSteps(createSteps(), List.of(firstStepParameters, getParameters("uppercased_submission", "comment", false)))
+		);
+
+		// Reads the documents of the previous step with other column names
+		final Map<String, String> otherColumnParameters = new HashMap<>(
+			getParameters("uppercased_submission", "uppercased_comment", false)
+		);
+		otherColumnParameters.put(TEXT_COLUMN_PARAMETER_NAME, "title");
+		assertArrayEquals(
+			new boolean[] { false, false },
+			fuseSteps(createSteps(), List.of(firstStepParameters, otherColumnParameters))
+		);
+
+		// Processes documents incrementally, unlike the previous step
+		assertArrayEquals(
+			new boolean[] { false, false },
+			fuseSteps(createSteps(), List.of(firstStepParameters, getParameters("uppercased_submission", "uppercased_comment", true)))
+		);
+	}
+
+	/**
+	 * Fuses the given steps, whose processed document types are the ones in
+	 * {@link #PROCESSED_DOCUMENT_TYPES}.
+	 *
+	 * @param steps      The steps to fuse.
+	 * @param parameters The parameters of each step.
+	 * @return Whether each step will be executed by the next step.
+	 * @throws ProcessingException If some step parameter is invalid.
+	 */
+	private static boolean[] fuseSteps(
+		final List<ProcessingStepInterface> steps, final List<Map<String, String>> parameters
+	) throws ProcessingException {
+		return ProcessingStepFusion.fuseSteps(steps, parameters, PROCESSED_DOCUMENT_TYPES.subList(0, steps.size()));
+	}
+
+	/**
+	 * Creates an uppercasing step and a suffixing step, in that order.
+	 *
+	 * @return The described steps.
+	 */
+	private static List<ProcessingStepInterface> createSteps() {
+		return List.of(
+			new TransformingProcessingStep(UppercasedTextWithTitleDocument.class, UppercasedTextDocument.class, String::toUpperCase),
+			new TransformingProcessingStep(SuffixedTextWithTitleDocument.class, SuffixedTextDocument.class, UnaryOperator.identity())
+		);
+	}
+
+	/**
+	 * Returns the parameters to execute a {@link TransformingProcessingStep} with,
+	 * which make it read several pages of documents.
+	 *
+	 * @param textDocumentWithTitleTableName The table to read documents with title
+	 *                                       from.
+	 * @param textDocumentTableName          The table to read documents without
+	 *                                       title from.
+	 * @param incremental                    Whether to process documents
+	 *                                       incrementally.
+	 * @return The described parameters.
+	 */
+	private static Map<String, String> getParameters(
+		final String textDocumentWithTitleTableName, final String textDocumentTableName, final boolean incremental
+	) {
+		return Map.of(
+			TEXT_DOCUMENT_WITH_TITLE_TABLE_NAME_PARAMETER_NAME, textDocumentWithTitleTableName,
+			TEXT_DOCUMENT_TABLE_NAME_PARAMETER_NAME, textDocumentTableName,
+			PAGE_SIZE_PARAMETER_NAME, "4",
+			BATCH_SIZE_PARAMETER_NAME, "2",
+			WORKER_THREADS_PARAMETER_NAME, "2",
+			INCREMENTAL_PARAMETER_NAME, Boolean.toString(incremental)
+		);
+	}
+
+	/**
+	 * Retrieves the documents stored by the suffixing step, with and without
+	 * title, as strings.
+	 *
+	 * @return The described documents, ordered by type and primary key.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	private static List<String> getSuffixedDocuments() throws SQLException {
+		final List<String> documents = new ArrayList<>();
+
+		try (
+			final Connection connection = DriverManager.getConnection(connectionUrl);
+			final Statement statement = connection.createStatement()
+		) {
+			try (final ResultSet result = statement.executeQuery("SELECT id, title, text FROM suffixed_text_with_title_document ORDER BY id")) {
+				while (result.next()) {
+					documents.add(result.getInt(1) + " " + result.getString(2) + " " + result.getString(3));
+				}
+			}
+
+			try (final ResultSet result = statement.executeQuery("SELECT id, text FROM suffixed_text_document ORDER BY id")) {
+				while (result.next()) {
+					documents.add(result.getInt(1) + " " + result.getString(2));
+				}
+			}
+		}
+
+		return documents;
+	}
+
+	/**
+	 * Counts the rows of a table.
+	 *
+	 * @param table The table whose rows will be counted.
+	 * @return The number of rows of the table.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	private static int countRows(final String table) throws SQLException {
+		try (
+			final Connection connection = DriverManager.getConnection(connectionUrl);
+			final Statement statement = connection.createStatement();
+			final ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM " + table)
+		) {
+			result.next();
+			return result.getInt(1);
+		}
+	}
+
+	/**
+	 * Executes SQL statements in the test database, outside of the persistence
+	 * layer.
+	 *
+	 * @param statements The statements to execute.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	private static void executeStatements(final String... statements) throws SQLException {
+		try (
+			final Connection connection = DriverManager.getConnection(connectionUrl);
+			final Statement statement = connection.createStatement()
+		) {
+			for (final String sql : statements) {
+				statement.execute(sql);
+			}
+		}
+	}
+
+	/**
+	 * A step that transforms every attribute of its input documents with a
+	 * function, counting the documents it processes.
+	 *
+	 * @author Alejandro González García
+	 */
+	static final class TransformingProcessingStep extends AbstractProcessingStep {
+		private final List<Class<? extends ProcessedDocument>> processedDocumentTypes;
+		private final UnaryOperator<String> transformation;
+		private final AtomicInteger processedDocuments = new AtomicInteger();
+
+		TransformingProcessingStep(
+			final Class<? extends ProcessedDocumentWithTitle> processedDocumentWithTitleType,
+			final Class<? extends ProcessedDocument> processedDocumentType,
+			final UnaryOperator<String> transformation
+		) {
+			super(Map.of(), Set.of());
+
+			this.processedDocumentTypes = List.of(processedDocumentWithTitleType, processedDocumentType);
+			this.transformation = transformation;
+		}
+
+		@Override
+		protected void run() throws ProcessingException {
+			processDocuments(
+				processedDocumentTypes, "Transforming %s",
+				(
+					final String unprocessedDocumentTypeName, final String[] unprocessedAttributeNames,
+					final Class<? extends ProcessedDocument> processedDocumentType
+				) ->
+					(final List<String[]> batchAttributes) -> {
+						for (final String[] documentAttributes : batchAttributes) {
+							final Map<String, String> processedAttributes = new HashMap<>();
+
+							for (int i = 0; i < unprocessedAttributeNames.length; ++i) {
+								processedAttributes.put(
+									unprocessedAttributeNames[i], transformation.apply(documentAttributes[i + 1])
+								);
+							}
+
+							saveProcessedDocument(
+								processedDocumentType, Integer.parseInt(documentAttributes[0]), processedAttributes
+							);
+							processedDocuments.incrementAndGet();
+						}
+					}
+			);
+		}
+
+		/**
+		 * Returns how many documents this step processed in all its executions.
+		 *
+		 * @return The described number of documents.
+		 */
+		int getProcessedDocuments() {
+			return processedDocuments.get();
+		}
+	}
+
+	@Entity
+	@Table(name = "uppercased_text_with_title_document")
+	public static class UppercasedTextWithTitleDocument extends ProcessedDocumentWithTitle {
+		public UppercasedTextWithTitleDocument(final Integer id) {
+			super(id);
+		}
+
+		protected UppercasedTextWithTitleDocument() {}
+	}
+
+	@Entity
+	@Table(name = "uppercased_text_document")
+	public static class UppercasedTextDocument extends ProcessedDocument {
+		public UppercasedTextDocument(final Integer id) {
+			super(id, "");
+		}
+
+		protected UppercasedTextDocument() {}
+	}
+
+	@Entity
+	@Table(name = "suffixed_text_with_title_document")
+	public static class SuffixedTextWithTitleDocument extends ProcessedDocumentWithTitle {
+		public SuffixedTextWithTitleDocument(final Integer id) {
+			super(id);
+		}
+
+		protected SuffixedTextWithTitleDocument() {}
+	}
+
+	@Entity
+	@Table(name = "suffixed_text_document")
+	public static class SuffixedTextDocument extends ProcessedDocument {
+		public SuffixedTextDocument(final Integer id) {
+			super(id, "");
+		}
+
+		protected SuffixedTextDocument() {}
+	}
+}
@@ -0,0 +1,265 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.process;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+
+/**
+ * Tests the dependencies that {@link ProcessingStepScheduler} infers between
+ * processing steps, and the order and concurrency it executes them with.
+ *
+ * @author Alejandro González García
+ */
+public class ProcessingStepSchedulerTest {
+	// Long enough for steps that can be executed concurrently to overlap
+	private static final long STEP_DURATION = 200;
+
+	/**
+	 * Checks that steps depend on the previous steps that write what they read,
+	 * read what they write, or write the same tables.
+	 */
+	@Test
+	void dependenciesAreInferredFromTables() {
+		final ProcessingStepScheduler scheduler = new ProcessingStepScheduler(
+			Arrays.asList(Set.of("submission"), Set.of("tokenized"), Set.of("comment"), Set.of("submission"), null),
+			Arrays.asList(Set.of("tokenized"), Set.of("lemmatized"), Set.of("submission"), Set.of("lemmatized"), null)
+		);
+
+		// Reads what the previous step writes
+		assertTrue(scheduler.dependsOn(1, 0));
+		// Writes what a previous step reads
+		assertTrue(scheduler.dependsOn(2, 0));
+		// Writes the same table as a previous step
+		assertTrue(scheduler.dependsOn(3, 1));
+		// Reads the same table as a previous step, but the previous step doesn't write it
+		assertFalse(scheduler.dependsOn(3, 0));
+		// Reads something else than a previous step writes
+		assertFalse(scheduler.dependsOn(2, 1));
+		// Reads any table, and writes somewhere unknown
+		assertTrue(scheduler.dependsOn(4, 0));
+		assertTrue(scheduler.dependsOn(4, 3));
+		// Steps never depend on later steps
+		assertFalse(scheduler.dependsOn(0, 1));
+	}
+
+	/**
+	 * Checks that steps that write to unknown places depend on each other, but
+	 * not on steps that only write tables nobody reads.
+	 */
+	@Test
+	void stepsThatWriteToUnknownPlacesDependOnEachOther() {
+		final ProcessingStepScheduler scheduler = new ProcessingStepScheduler(
+			Arrays.asList(Set.of("submission"), Set.of("comment"), Set.of("submission")),
+			Arrays.asList(null, Set.of("tokenized"), null)
+		);
+
+		assertFalse(scheduler.dependsOn(1, 0));
+		assertFalse(scheduler.dependsOn(2, 1));
+		assertTrue(scheduler.dependsOn(2, 0));
+	}
+
+	/**
+	 * Checks that the maximum concurrency is the maximum number of steps at the
+	 * same depth of the dependency graph.
+	 */
+	@Test
+	void maximumConcurrencyIsTheWidthOfTheDependencyGraph() {
+		assertEquals(2, createDiamondScheduler().getMaximumConcurrency());
+		assertEquals(1, new ProcessingStepScheduler(
+			Arrays.asList(Set.of("a"), Set.of("b"), Set.of("c")),
+			Arrays.asList(Set.of("b"), Set.of("c"), Set.of("d"))
+		).getMaximumConcurrency());
+		assertEquals(3, new ProcessingStepScheduler(
+			Arrays.asList(Set.of("a"), Set.of("a"), Set.of("a")),
+			Arrays.asList(Set.of("b"), Set.of("c"), Set.of("d"))
+		).getMaximumConcurrency());
+	}
+
+	/**
+	 * Checks that steps are executed after the steps they depend on complete,
+	 * and that independent steps are executed concurrently.
+	 */
+	@Test
+	void stepsAreExecutedAfterTheirDependencies() throws ProcessingException {
+		final ProcessingStepScheduler scheduler = createDiamondScheduler();
+		final List<String> events = new CopyOnWriteArrayList<>();
+		final AtomicInteger runningSteps = new AtomicInteger();
+		final AtomicInteger maximumRunningSteps = new AtomicInteger();
+
+		scheduler.execute(new boolean[4], new int[] { 1, 1, 1, 1 }, 4, 4, (final int firstStep, final int lastStep) -> {
+			events.add("start " + lastStep);
+			maximumRunningSteps.accumulateAndGet(runningSteps.incrementAndGet(), Math::max);
+			sleep();
+			runningSteps.decrementAndGet();
+			events.add("end " + lastStep);
+		});
+
+		assertEquals(8, events.size());
+		assertEquals("start 0", events.get(0));
+		assertTrue(events.indexOf("end 0") < events.indexOf("start 1"));
+		assertTrue(events.indexOf("end 0") < events.indexOf("start 2"));
+		assertTrue(events.indexOf("end 1") < events.indexOf("start 3"));
+		assertTrue(events.indexOf("end 2") < events.indexOf("start 3"));
+		assertEquals(2, maximumRunningSteps.get());
+	}
+
+	/**
+	 * Checks that the worker threads of the running steps never exceed the CPU
+	 * budget, and that steps that want more worker threads than the budget are
+	 * still executed.
+	 */
+	@Test
+	void runningStepsStayWithinTheCpuBudget() throws ProcessingException {
+		final ProcessingStepScheduler scheduler = createIndependentScheduler(5);
+		final int[] workerThreads = { 2, 2, 2, 2, 8 };
+		final int cpuBudget = 4;
+		final AtomicInteger usedCores = new AtomicInteger();
+		final AtomicInteger maximumUsedCores = new AtomicInteger();
+		final AtomicInteger runningSteps = new AtomicInteger();
+		final AtomicInteger maximumRunningSteps = new AtomicInteger();
+		final Set<Integer> executedSteps = ConcurrentHashMap.newKeySet();
+
+		scheduler.execute(new boolean[5], workerThreads, cpuBudget, 5, (final int firstStep, final int lastStep) -> {
+			final int stepCores = Math.min(cpuBudget, workerThreads[lastStep]);
+
+			maximumUsedCores.accumulateAndGet(usedCores.addAndGet(stepCores), Math::max);
+			maximumRunningSteps.accumulateAndGet(runningSteps.incrementAndGet(), Math::max);
+			sleep();
+			runningSteps.decrementAndGet();
+			usedCores.addAndGet(-stepCores);
+			executedSteps.add(lastStep);
+		});
+
+		assertEquals(Set.of(0, 1, 2, 3, 4), executedSteps);
+		assertEquals(cpuBudget, maximumUsedCores.get());
+		// Two steps with two worker threads fit in the budget together, but not three
+		assertEquals(2, maximumRunningSteps.get());
+	}
+
+	/**
+	 * Checks that fused steps are executed as a group, by their last step.
+	 */
+	@Test
+	void fusedStepsAreExecutedTogether() throws ProcessingException {
+		final List<String> groups = new CopyOnWriteArrayList<>();
+
+		createIndependentScheduler(4).execute(
+			new boolean[] { true, false, false, false }, new int[] { 1, 1, 1, 1 }, 4, 4,
+			(final int firstStep, final int lastStep) -> groups.add(firstStep + "-" + lastStep)
+		);
+
+		Collections.sort(groups);
+		assertEquals(List.of("0-1", "2-2", "3-3"), groups);
+	}
+
+	/**
+	 * Checks that the failure of a step is thrown once the running steps complete,
+	 * and that the steps that depend on it are not executed.
+	 */
+	@Test
+	void failuresArePropagated() {
+		for (final int maximumConcurrentGroups : new int[] { 1, 4 }) {
+			final ProcessingException failure = new ProcessingException("Step 1 failed");
+			final Set<Integer> executedSteps = ConcurrentHashMap.newKeySet();
+
+			assertSame(failure, assertThrows(ProcessingException.class, () ->
+				createDiamondScheduler().execute(
+					new boolean[4], new int[] { 1, 1, 1, 1 }, 4, maximumConcurrentGroups,
+					(final int firstStep, final int lastStep) -> {
+						if (lastStep == 1) {
+							throw failure;
+						}
+
+						sleep();
+						executedSteps.add(lastStep);
+					}
+				)
+			));
+
+			assertTrue(executedSteps.contains(0));
+			assertFalse(executedSteps.contains(3), "Executed a step that depends on a failed step");
+		}
+	}
+
+	/**
+	 * Checks that unchecked exceptions thrown by steps are propagated as they
+	 * are.
+	 */
+	@Test
+	void uncheckedExceptionsArePropagated() {
+		final IllegalStateException failure = new IllegalStateException();
+
+		assertSame(failure, assertThrows(IllegalStateException.class, () ->
+			createIndependentScheduler(2).execute(
+				new boolean[2], new int[] { 1, 1 }, 2, 2,
+				(final int firstStep, final int lastStep) -> {
+					throw failure;
+				}
+			)
+		));
+	}
+
+	/**
+	 * Creates a scheduler for four steps, where the second and third steps
+	 * depend on the first one, and the last step depends on the second and third
+	 * ones.
+	 *
+	 * @return The described scheduler.
+	 */
+	private static ProcessingStepScheduler createDiamondScheduler() {
+		return new ProcessingStepScheduler(
+			Arrays.asList(Set.of("submission"), Set.of("tokenized"), Set.of("tokenized"), Set.of("lemmatized", "filtered")),
+			Arrays.asList(Set.of("tokenized"), Set.of("lemmatized"), Set.of("filtered"), Set.of("indexed"))
+		);
+	}
+
+	/**
+	 * Creates a scheduler for steps that don't depend on each other.
+	 *
+	 * @param steps The number of steps.
+	 * @return The described scheduler.
+	 */
+	private static ProcessingStepScheduler createIndependentScheduler(final int steps) {
+		final Set<String>[] inputs = newSetArray(steps);
+		final Set<String>[] outputs = newSetArray(steps);
+
+		for (int i = 0; i < steps; ++i) {
+			inputs[i] = Set.of("submission");
+			outputs[i] = Set.of("output " + i);
+		}
+
+		return new ProcessingStepScheduler(Arrays.asList(inputs), Arrays.asList(outputs));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Set<String>[] newSetArray(final int length) {
+		return new Set[length];
+	}
+
+	/**
+	 * Simulates the work of a step.
+	 */
+	private static void sleep() {
+		try {
+			Thread.sleep(STEP_DURATION);
+		} catch (final InterruptedException exc) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,322 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.Entity;
+import javax.persistence.Table;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import es.uvigo.esei.sing.textproc.entity.ProcessedDocument;
+import es.uvigo.esei.sing.textproc.entity.ProcessedDocumentWithTitle;
+import es.uvigo.esei.sing.textproc.logging.TextProcLogging;
+import es.uvigo.esei.sing.textproc.persistence.TextProcPersistence;
+
+/**
+ * Tests how {@link AbstractProcessingStep} keeps track of the documents it
+ * processed, on a SQLite database.
+ *
+ * @author Alejandro González García
+ */
+public class AbstractProcessingStepTest {
+	private static final String CONNECTION_URL_PROPERTY_NAME = "hibernate.connection.url";
+
+	@TempDir
+	static Path databaseFolder;
+	private static String connectionUrl;
+
+	@BeforeAll
+	static void startPersistence() {
+		connectionUrl = "jdbc:sqlite:" + databaseFolder.resolve("corpus.db");
+
+		TextProcLogging.initialize(AbstractProcessingStepTest.class.getSimpleName());
+		TextProcPersistence.get().start(
+			Set.of(CopiedTextWithTitleDocument.class, CopiedTextDocument.class),
+			Map.of(CONNECTION_URL_PROPERTY_NAME, connectionUrl)
+		);
+	}
+
+	@AfterAll
+	static void stopPersistence() {
+		TextProcPersistence.get().stop();
+	}
+
+	@BeforeEach
+	void createTables() throws SQLException {
+		executeStatements(
+			"DROP TABLE IF EXISTS submission",
+			"DROP TABLE IF EXISTS comment",
+			"DROP TABLE IF EXISTS copied_text_with_title_document",
+			"DROP TABLE IF EXISTS copied_text_document",
+			"CREATE TABLE submission (id INT PRIMARY KEY, title TEXT NOT NULL, text TEXT NOT NULL)",
+			"CREATE TABLE comment (id INT PRIMARY KEY, text TEXT NOT NULL)",
+			"CREATE TABLE copied_text_with_title_document (id INT PRIMARY KEY, text TEXT NOT NULL, title TEXT NOT NULL)",
+			"CREATE TABLE copied_text_document (id INT PRIMARY KEY, text TEXT NOT NULL)"
+		);
+		insertDocuments(1, 10);
+	}
+
+	/**
+	 * Checks that steps of the same type that read the same tables in a process
+	 * keep their own high-water marks, so each of them processes the documents
+	 * added since it was executed, no matter what the other steps did.
+	 */
+	@Test
+	void stepsOfTheSameTypeKeepTheirOwnHighWaterMarks() throws ProcessingException, SQLException {
+		final CopyingProcessingStep firstStep = new CopyingProcessingStep();
+		final CopyingProcessingStep secondStep = new CopyingProcessingStep();
+
+		firstStep.setStepIndex(2);
+		secondStep.setStepIndex(5);
+
+		firstStep.execute(getParameters(false));
+		secondStep.execute(getParameters(false));
+		assertEquals(20, firstStep.getCopiedDocuments());
+		assertEquals(20, secondStep.getCopiedDocuments());
+
+		insertDocuments(11, 13);
+
+		firstStep.execute(getParameters(true));
+		secondStep.execute(getParameters(true));
+		assertEquals(26, firstStep.getCopiedDocuments());
+		assertEquals(26, secondStep.getCopiedDocuments());
+		assertEquals(13, countRows("copied_text_with_title_document"));
+		assertEquals(13, countRows("copied_text_document"));
+	}
+
+	/**
+	 * Checks that the high-water marks stop before the documents of batches that
+	 * failed to be processed, so the next incremental execution processes them.
+	 */
+	@Test
+	void failedBatchesAreProcessedInTheNextIncrementalExecution() throws ProcessingException, SQLException {
+		final CopyingProcessingStep step = new CopyingProcessingStep();
+
+		step.setStepIndex(0);
+
+		// Batches of 2 documents, so the batch of documents 5 and 6 fails for both tables
+		step.setPoisonedPrimaryKey(6);
+		step.execute(getParameters(false));
+		assertEquals(16, step.getCopiedDocuments());
+		assertEquals(8, countRows("copied_text_with_title_document"));
+		assertEquals(8, countRows("copied_text_document"));
+
+		// Documents after the failed batch are processed again, which is harmless
+		step.setPoisonedPrimaryKey(-1);
+		step.execute(getParameters(true));
+		assertEquals(28, step.getCopiedDocuments());
+		assertEquals(10, countRows("copied_text_with_title_document"));
+		assertEquals(10, countRows("copied_text_document"));
+	}
+
+	/**
+	 * Checks that the default maximum batch size, which depends on the page size,
+	 * is not less than an explicit minimum batch size.
+	 */
+	@Test
+	void defaultMaximumBatchSizeIsNotLessThanTheMinimum() throws ProcessingException, SQLException {
+		final CopyingProcessingStep step = new CopyingProcessingStep();
+		final Map<String, String> parameters = new HashMap<>(getParameters(false));
+
+		parameters.put(AbstractProcessingStep.TARGET_BATCH_LATENCY_STEP_PARAMETER_NAME, "1000");
+		parameters.put(AbstractProcessingStep.MINIMUM_BATCH_SIZE_STEP_PARAMETER_NAME, "8");
+
+		step.execute(parameters);
+		assertEquals(20, step.getCopiedDocuments());
+		assertEquals(10, countRows("copied_text_with_title_document"));
+		assertEquals(10, countRows("copied_text_document"));
+	}
+
+	/**
+	 * Checks that steps whose table clear strategy is unknown are rejected before
+	 * they process any document.
+	 */
+	@Test
+	void unknownTableClearStrategiesAreRejected() throws SQLException {
+		final CopyingProcessingStep step = new CopyingProcessingStep();
+		final Map<String, String> parameters = new HashMap<>(getParameters(false));
+
+		parameters.put(AbstractProcessingStep.TABLE_CLEAR_STRATEGY_STEP_PARAMETER_NAME, "bogus");
+
+		assertThrows(ProcessingException.class, () -> step.execute(parameters));
+		assertEquals(0, step.getCopiedDocuments());
+		assertEquals(0, countRows("copied_text_with_title_document"));
+	}
+
+	/**
+	 * Returns the parameters to execute a {@link CopyingProcessingStep} with, which
+	 * make it read several pages of documents.
+	 *
+	 * @param incremental Whether to process documents incrementally.
+	 * @return The described parameters.
+	 */
+	private static Map<String, String> getParameters(final boolean incremental) {
+		return Map.of(
+			AbstractProcessingStep.TEXT_DOCUMENT_WITH_TITLE_TABLE_NAME_PROCESSING_STEP_PARAMETER_NAME, "submission",
+			AbstractProcessingStep.TEXT_DOCUMENT_TABLE_NAME_PROCESSING_STEP_PARAMETER_NAME, "comment",
+			AbstractProcessingStep.PAGE_SIZE_STEP_PARAMETER_NAME, "4",
+			AbstractProcessingStep.BATCH_SIZE_STEP_PARAMETER_NAME, "2",
+			AbstractProcessingStep.WORKER_THREADS_STEP_PARAMETER_NAME, "2",
+			AbstractProcessingStep.INCREMENTAL_STEP_PARAMETER_NAME, Boolean.toString(incremental)
+		);
+	}
+
+	/**
+	 * Inserts a submission and a comment for every primary key in a range.
+	 *
+	 * @param firstPrimaryKey The first primary key of the range.
+	 * @param lastPrimaryKey  The last primary key of the range, inclusive.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	private static void insertDocuments(final int firstPrimaryKey, final int lastPrimaryKey) throws SQLException {
+		final String[] statements = new String[(lastPrimaryKey - firstPrimaryKey + 1) * 2];
+
+		for (int i = firstPrimaryKey, j = 0; i <= lastPrimaryKey; ++i) {
+			statements[j++] = "INSERT INTO submission VALUES (" + i + ", 'Title " + i + "', 'Submission " + i + "')";
+			statements[j++] = "INSERT INTO comment VALUES (" + i + ", 'Comment " + i + "')";
+		}
+
+		executeStatements(statements);
+	}
+
+	/**
+	 * Counts the rows of a table.
+	 *
+	 * @param table The table whose rows will be counted.
+	 * @return The number of rows of the table.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	private static int countRows(final String table) throws SQLException {
+		try (
+			final Connection connection = DriverManager.getConnection(connectionUrl);
+			final Statement statement = connection.createStatement();
+			final ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM " + table)
+		) {
+			result.next();
+			return result.getInt(1);
+		}
+	}
+
+	/**
+	 * Executes SQL statements in the test database, outside of the persistence
+	 * layer.
+	 *
+	 * @param statements The statements to execute.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	private static void executeStatements(final String... statements) throws SQLException {
+		try (
+			final Connection connection = DriverManager.getConnection(connectionUrl);
+			final Statement statement = connection.createStatement()
+		) {
+			for (final String sql : statements) {
+				statement.execute(sql);
+			}
+		}
+	}
+
+	/**
+	 * A step that copies its input documents as they are, counting them. It fails
+	 * to process the batches that contain a poisoned document, if any.
+	 *
+	 * @author Alejandro González García
+	 */
+	static final class CopyingProcessingStep extends AbstractProcessingStep {
+		private final AtomicInteger copiedDocuments = new AtomicInteger();
+		private volatile int poisonedPrimaryKey = -1;
+
+		CopyingProcessingStep() {
+			super(Map.of(), Set.of());
+		}
+
+		@Override
+		protected void run() throws ProcessingException {
+			processDocuments(
+				List.of(CopiedTextWithTitleDocument.class, CopiedTextDocument.class), "Copying %s",
+				(
+					final String unprocessedDocumentTypeName, final String[] unprocessedAttributeNames,
+					final Class<? extends ProcessedDocument> processedDocumentType
+				) ->
+					(final List<String[]> batchAttributes) -> {
+						for (final String[] documentAttributes : batchAttributes) {
+							if (Integer.parseInt(documentAttributes[0]) == poisonedPrimaryKey) {
+								throw new ProcessingException("Poisoned document");
+							}
+						}
+
+						for (final String[] documentAttributes : batchAttributes) {
+							final Map<String, String> processedAttributes = new HashMap<>();
+
+							for (int i = 0; i < unprocessedAttributeNames.length; ++i) {
+								processedAttributes.put(unprocessedAttributeNames[i], documentAttributes[i + 1]);
+							}
+
+							saveProcessedDocument(
+								processedDocumentType, Integer.parseInt(documentAttributes[0]), processedAttributes
+							);
+							copiedDocuments.incrementAndGet();
+						}
+					}
+			);
+		}
+
+		/**
+		 * Returns how many documents this step copied in all its executions.
+		 *
+		 * @return The described number of documents.
+		 */
+		int getCopiedDocuments() {
+			return copiedDocuments.get();
+		}
+
+		/**
+		 * Sets the primary key of the document whose batches this step fails to
+		 * process.
+		 *
+		 * @param poisonedPrimaryKey The described primary key, or a negative number
+		 *                           for no document.
+		 */
+		void setPoisonedPrimaryKey(final int poisonedPrimaryKey) {
+			this.poisonedPrimaryKey = poisonedPrimaryKey;
+		}
+	}
+
+	@Entity
+	@Table(name = "copied_text_with_title_document")
+	public static class CopiedTextWithTitleDocument extends ProcessedDocumentWithTitle {
+		public CopiedTextWithTitleDocument(final Integer id) {
+			super(id);
+		}
+
+		protected CopiedTextWithTitleDocument() {}
+	}
+
+	@Entity
+	@Table(name = "copied_text_document")
+	public static class CopiedTextDocument extends ProcessedDocument {
+		public CopiedTextDocument(final Integer id) {
+			super(id, "");
+		}
+
+		protected CopiedTextDocument() {}
+	}
+}
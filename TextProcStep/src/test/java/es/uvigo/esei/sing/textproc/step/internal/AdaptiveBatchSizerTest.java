@@ -0,0 +1,139 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests how {@link AdaptiveBatchSizer} resizes batches to take a target time.
+ *
+ * @author Alejandro González García
+ */
+public class AdaptiveBatchSizerTest {
+	private static final long TARGET_LATENCY = 1_000_000;
+	private static final int CHARACTERS_PER_DOCUMENT = 100;
+
+	/**
+	 * Checks that batches have the initial size until a batch is measured, and
+	 * that the initial size is kept between the bounds.
+	 */
+	@Test
+	void batchesHaveTheInitialSizeUntilMeasured() {
+		assertEquals(64, getBatchSize(new AdaptiveBatchSizer(TARGET_LATENCY, 64, 1, 512)));
+		assertEquals(16, getBatchSize(new AdaptiveBatchSizer(TARGET_LATENCY, 8, 16, 512)));
+		assertEquals(32, getBatchSize(new AdaptiveBatchSizer(TARGET_LATENCY, 64, 1, 32)));
+	}
+
+	/**
+	 * Checks that batches grow when they are processed faster than the target
+	 * time, and shrink when they are processed slower, until they take about the
+	 * target time.
+	 */
+	@Test
+	void batchesGrowWhenFastAndShrinkWhenSlow() {
+		final AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(TARGET_LATENCY, 64, 1, 100_000);
+
+		// 64 documents in a tenth of the target time: the first measurement is taken as it is
+		batchSizer.recordBatch(64 * CHARACTERS_PER_DOCUMENT, TARGET_LATENCY / 10);
+		assertEquals(640, getBatchSize(batchSizer));
+
+		// Batches that take four times the target time shrink, smoothly
+		int previousBatchSize = getBatchSize(batchSizer);
+		for (int i = 0; i < 6; ++i) {
+			batchSizer.recordBatch(previousBatchSize * CHARACTERS_PER_DOCUMENT, TARGET_LATENCY * 4);
+
+			final int batchSize = getBatchSize(batchSizer);
+			assertTrue(batchSize < previousBatchSize, batchSize + " >= " + previousBatchSize);
+			assertTrue(batchSize > previousBatchSize / 4, batchSize + " <= " + previousBatchSize + " / 4");
+			previousBatchSize = batchSize;
+		}
+
+		// Batches that take a fourth of the target time grow, smoothly
+		for (int i = 0; i < 8; ++i) {
+			batchSizer.recordBatch(previousBatchSize * CHARACTERS_PER_DOCUMENT, TARGET_LATENCY / 4);
+
+			final int batchSize = getBatchSize(batchSizer);
+			assertTrue(batchSize > previousBatchSize, batchSize + " <= " + previousBatchSize);
+			assertTrue(batchSize < previousBatchSize * 4, batchSize + " >= " + previousBatchSize + " * 4");
+			previousBatchSize = batchSize;
+		}
+
+		// Batches converge to the size that takes the target time, if the time per character doesn't change
+		final double nanosecondsPerCharacter = TARGET_LATENCY / (500.0 * CHARACTERS_PER_DOCUMENT);
+		for (int i = 0; i < 64; ++i) {
+			final int batchSize = getBatchSize(batchSizer);
+
+			batchSizer.recordBatch(
+				batchSize * CHARACTERS_PER_DOCUMENT, (long) (batchSize * CHARACTERS_PER_DOCUMENT * nanosecondsPerCharacter)
+			);
+		}
+		assertEquals(500, getBatchSize(batchSizer), 1);
+	}
+
+	/**
+	 * Checks that batches are not resized beyond the bounds, no matter how fast
+	 * or slow they are processed.
+	 */
+	@Test
+	void batchSizesAreClampedToTheBounds() {
+		final AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(TARGET_LATENCY, 64, 8, 256);
+
+		batchSizer.recordBatch(64 * CHARACTERS_PER_DOCUMENT, TARGET_LATENCY * 1000);
+		assertEquals(8, getBatchSize(batchSizer));
+
+		for (int i = 0; i < 64; ++i) {
+			batchSizer.recordBatch(8 * CHARACTERS_PER_DOCUMENT, 1);
+		}
+		assertEquals(256, getBatchSize(batchSizer));
+
+		// Documents so long that one of them takes longer than the target time
+		assertTrue(batchSizer.isBatchComplete(256, 256));
+		assertFalse(new AdaptiveBatchSizer(1, 1, 8, 256).isBatchComplete(7, Long.MAX_VALUE));
+	}
+
+	/**
+	 * Checks that batches without characters and negative times are not taken
+	 * into account.
+	 */
+	@Test
+	void meaninglessMeasurementsAreIgnored() {
+		final AdaptiveBatchSizer batchSizer = new AdaptiveBatchSizer(TARGET_LATENCY, 64, 1, 512);
+
+		batchSizer.recordBatch(0, TARGET_LATENCY);
+		batchSizer.recordBatch(64 * CHARACTERS_PER_DOCUMENT, -1);
+		assertEquals(64, getBatchSize(batchSizer));
+	}
+
+	/**
+	 * Checks that invalid bounds and target times are rejected.
+	 */
+	@Test
+	void invalidParametersAreRejected() {
+		assertThrows(IllegalArgumentException.class, () -> new AdaptiveBatchSizer(0, 64, 1, 512));
+		assertThrows(IllegalArgumentException.class, () -> new AdaptiveBatchSizer(TARGET_LATENCY, 0, 1, 512));
+		assertThrows(IllegalArgumentException.class, () -> new AdaptiveBatchSizer(TARGET_LATENCY, 64, 0, 512));
+		assertThrows(IllegalArgumentException.class, () -> new AdaptiveBatchSizer(TARGET_LATENCY, 64, 16, 8));
+	}
+
+	/**
+	 * Returns the number of documents that a batch sizer puts in a batch of
+	 * documents of {@link #CHARACTERS_PER_DOCUMENT} characters.
+	 *
+	 * @param batchSizer The batch sizer.
+	 * @return The described number of documents.
+	 */
+	private static int getBatchSize(final AdaptiveBatchSizer batchSizer) {
+		int documents = 1;
+
+		while (!batchSizer.isBatchComplete(documents, (long) documents * CHARACTERS_PER_DOCUMENT)) {
+			++documents;
+		}
+
+		return documents;
+	}
+}
@@ -0,0 +1,152 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests the buckets {@link LatencyHistogram} counts durations in, and the
+ * accuracy of the percentiles it reports.
+ *
+ * @author Alejandro González García
+ */
+public class LatencyHistogramTest {
+	// Each power of two range is split in 16 buckets
+	private static final double MAXIMUM_RELATIVE_ERROR = 1.0 / 16;
+
+	/**
+	 * Checks that the percentiles of short durations, which get a bucket each,
+	 * are exact.
+	 */
+	@Test
+	void shortDurationsAreExact() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+
+		for (int duration = 1; duration <= 32; ++duration) {
+			histogram.record(duration);
+		}
+
+		for (int rank = 1; rank <= 32; ++rank) {
+			assertEquals(rank, histogram.getPercentile(rank * 100.0 / 32));
+		}
+		assertEquals(1, histogram.getPercentile(0));
+	}
+
+	/**
+	 * Checks that longer durations are reported as the greatest duration of their
+	 * bucket, and that buckets start and end where they should.
+	 */
+	@Test
+	void longerDurationsAreReportedAsTheUpperBoundOfTheirBucket() {
+		// The first buckets that are wider than a nanosecond, and the first ones for the next power of two
+		final long[][] bucketBounds = { { 32, 33 }, { 34, 35 }, { 62, 63 }, { 64, 67 }, { 1024, 1087 } };
+
+		for (final long[] bounds : bucketBounds) {
+			for (long duration = bounds[0]; duration <= bounds[1]; ++duration) {
+				final LatencyHistogram histogram = new LatencyHistogram();
+
+				// A longer duration, so the maximum duration doesn't bound the reported one
+				histogram.record(duration);
+				histogram.record(Long.MAX_VALUE);
+
+				assertEquals(bounds[1], histogram.getPercentile(50), "Duration " + duration);
+			}
+
+			// The next duration is in the next bucket
+			final LatencyHistogram histogram = new LatencyHistogram();
+			histogram.record(bounds[1] + 1);
+			histogram.record(Long.MAX_VALUE);
+			assertTrue(histogram.getPercentile(50) > bounds[1], "Duration " + (bounds[1] + 1));
+		}
+	}
+
+	/**
+	 * Checks that reported durations are not greater than the maximum recorded
+	 * duration, even for the last bucket.
+	 */
+	@Test
+	void percentilesAreBoundedByTheMaximum() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+
+		histogram.record(1000);
+		assertEquals(1000, histogram.getPercentile(100));
+
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+		assertEquals(Long.MAX_VALUE, histogram.getMax());
+	}
+
+	/**
+	 * Checks that the reported percentiles of durations of very different
+	 * magnitudes are never less than the exact ones, nor much greater.
+	 */
+	@Test
+	void percentilesAreAccurate() {
+		final Random random = new Random(42);
+		final LatencyHistogram histogram = new LatencyHistogram();
+		final long[] durations = new long[10_000];
+
+		for (int i = 0; i < durations.length; ++i) {
+			// From a nanosecond to about 17 minutes, evenly spread in magnitude
+			durations[i] = (long) Math.pow(2, random.nextDouble() * 40);
+			histogram.record(durations[i]);
+		}
+		Arrays.sort(durations);
+
+		for (final double percentile : new double[] { 0, 1, 10, 25, 50, 75, 90, 95, 99, 99.9, 99.99, 100 }) {
+			final long exactPercentile = durations[Math.max((int) Math.ceil(percentile / 100 * durations.length), 1) - 1];
+			final long reportedPercentile = histogram.getPercentile(percentile);
+
+			assertTrue(
+				reportedPercentile >= exactPercentile, "Percentile " + percentile + ": " + reportedPercentile + " < " + exactPercentile
+			);
+			assertTrue(
+				reportedPercentile - exactPercentile <= exactPercentile * MAXIMUM_RELATIVE_ERROR,
+				"Percentile " + percentile + ": " + reportedPercentile + " is too far from " + exactPercentile
+			);
+		}
+	}
+
+	/**
+	 * Checks the count, sum, mean and maximum of the recorded durations, and that
+	 * negative durations are recorded as zero.
+	 */
+	@Test
+	void summaryStatisticsAreExact() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMean());
+		assertEquals(0, histogram.getMax());
+		assertEquals(0, histogram.getPercentile(50));
+
+		histogram.record(-5);
+		histogram.record(100);
+		histogram.record(1_000_003);
+
+		assertEquals(3, histogram.getCount());
+		assertEquals(1_000_103, histogram.getSum());
+		assertEquals(1_000_103 / 3.0, histogram.getMean());
+		assertEquals(1_000_003, histogram.getMax());
+		assertEquals(0, histogram.getPercentile(0));
+	}
+
+	/**
+	 * Checks that percentages out of range are rejected.
+	 */
+	@Test
+	void invalidPercentilesAreRejected() {
+		final LatencyHistogram histogram = new LatencyHistogram();
+
+		assertThrows(IllegalArgumentException.class, () -> histogram.getPercentile(-1));
+		assertThrows(IllegalArgumentException.class, () -> histogram.getPercentile(100.5));
+		assertThrows(IllegalArgumentException.class, () -> histogram.getPercentile(Double.NaN));
+	}
+}
@@ -0,0 +1,136 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests how {@link ProcessingStepMetadata} creates its metadata tables, on
+ * SQLite databases, and digests step parameters.
+ *
+ * @author Alejandro González García
+ */
+public class ProcessingStepMetadataTest {
+	private static final String STEP_NAME = "CopyingProcessingStep";
+	private static final String METADATA_STEP_NAME = STEP_NAME + "#0";
+	private static final String SOURCE_TABLE = "submission";
+	private static final String PARAMETERS_DIGEST = ProcessingStepMetadata.digestParameters(Map.of("pageSize", "4"));
+
+	@TempDir
+	Path databaseFolder;
+
+	/**
+	 * Checks that the metadata tables are created again if the transaction that
+	 * created them is rolled back.
+	 */
+	@Test
+	void tablesAreCreatedAgainAfterARollback() throws SQLException {
+		try (final Connection connection = connect("corpus.db")) {
+			connection.setAutoCommit(false);
+
+			ProcessingStepMetadata.setHighWaterMark(connection, METADATA_STEP_NAME, SOURCE_TABLE, 5);
+			ProcessingStepMetadata.setStepStarted(connection, 0, STEP_NAME, PARAMETERS_DIGEST);
+			connection.rollback();
+
+			assertNull(ProcessingStepMetadata.getHighWaterMark(connection, METADATA_STEP_NAME, SOURCE_TABLE));
+			assertNull(ProcessingStepMetadata.getStepStatus(connection, 0, STEP_NAME, PARAMETERS_DIGEST));
+			connection.commit();
+		}
+	}
+
+	/**
+	 * Checks that the metadata tables are created in every database they are
+	 * accessed in, not just in the first one.
+	 */
+	@Test
+	void tablesAreCreatedInEveryDatabase() throws SQLException {
+		for (final String databaseFile : new String[] { "corpus.db", "another_corpus.db" }) {
+			try (final Connection connection = connect(databaseFile)) {
+				ProcessingStepMetadata.setHighWaterMark(connection, METADATA_STEP_NAME, SOURCE_TABLE, 5);
+				ProcessingStepMetadata.setStepCompleted(connection, 0, STEP_NAME, PARAMETERS_DIGEST);
+
+				assertEquals(5, ProcessingStepMetadata.getHighWaterMark(connection, METADATA_STEP_NAME, SOURCE_TABLE));
+				assertTrue(ProcessingStepMetadata.getStepStatus(connection, 0, STEP_NAME, PARAMETERS_DIGEST), databaseFile);
+			}
+		}
+	}
+
+	/**
+	 * Checks that the digest of some parameters doesn't depend on their order.
+	 */
+	@Test
+	void parametersDigestDoesNotDependOnTheOrder() {
+		final Map<String, String> parameters = new LinkedHashMap<>();
+		final Map<String, String> reversedParameters = new LinkedHashMap<>();
+
+		parameters.put("pageSize", "4");
+		parameters.put("batchSize", "2");
+		reversedParameters.put("batchSize", "2");
+		reversedParameters.put("pageSize", "4");
+
+		assertEquals(
+			ProcessingStepMetadata.digestParameters(parameters), ProcessingStepMetadata.digestParameters(reversedParameters)
+		);
+	}
+
+	/**
+	 * Checks that different parameters whose maps have the same hash code have
+	 * different digests.
+	 */
+	@Test
+	void parametersWithTheSameHashCodeHaveDifferentDigests() {
+		final Map<String, String> withNullValue = new HashMap<>();
+		withNullValue.put("batchSize", null);
+
+		for (final Map<String, String>[] parameters : parameterSetsWithTheSameHashCode(withNullValue)) {
+			assertEquals(parameters[0].hashCode(), parameters[1].hashCode());
+			assertNotEquals(
+				ProcessingStepMetadata.digestParameters(parameters[0]), ProcessingStepMetadata.digestParameters(parameters[1]),
+				parameters[0] + " and " + parameters[1]
+			);
+		}
+	}
+
+	/**
+	 * Returns pairs of different parameter maps that have the same hash code.
+	 *
+	 * @param withNullValue A map with a parameter whose value is {@code null}.
+	 * @return The described pairs.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Map<String, String>[][] parameterSetsWithTheSameHashCode(final Map<String, String> withNullValue) {
+		return new Map[][] {
+			// Names and values swapped
+			{ Map.of("pageSize", "batchSize"), Map.of("batchSize", "pageSize") },
+			// Several values changed
+			{ Map.of("pageSize", "4", "batchSize", "2"), Map.of("pageSize", "5", "batchSize", "3") },
+			// Missing value
+			{ withNullValue, Map.of("batchSize", "") }
+		};
+	}
+
+	/**
+	 * Opens a connection to a SQLite database in the database folder.
+	 *
+	 * @param databaseFile The name of the database file.
+	 * @return The described connection.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	private Connection connect(final String databaseFile) throws SQLException {
+		return DriverManager.getConnection("jdbc:sqlite:" + databaseFolder.resolve(databaseFile));
+	}
+}
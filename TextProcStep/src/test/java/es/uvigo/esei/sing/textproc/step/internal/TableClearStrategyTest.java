@@ -0,0 +1,189 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.internal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests how {@link TableClearStrategy} strategies are selected, and how they
+ * clear tables of SQLite databases.
+ *
+ * @author Alejandro González García
+ */
+public class TableClearStrategyTest {
+	@TempDir
+	Path databaseFolder;
+
+	/**
+	 * Checks that strategies are selected by their parameter values, and that
+	 * other values don't select any strategy.
+	 */
+	@Test
+	void strategiesAreSelectedByTheirParameterValue() {
+		for (final TableClearStrategy strategy : TableClearStrategy.values()) {
+			assertEquals(strategy, TableClearStrategy.fromParameterValue(strategy.getParameterValue()));
+		}
+
+		assertEquals(TableClearStrategy.AUTOMATIC, TableClearStrategy.fromParameterValue("auto"));
+		assertNull(TableClearStrategy.fromParameterValue("RECREATE"));
+		assertNull(TableClearStrategy.fromParameterValue("bogus"));
+		assertNull(TableClearStrategy.fromParameterValue(""));
+		assertNull(TableClearStrategy.fromParameterValue(null));
+	}
+
+	/**
+	 * Checks that every strategy that SQLite supports deletes every row of a
+	 * table, and keeps its constraints, indexes and triggers.
+	 */
+	@Test
+	void sqliteTablesAreClearedKeepingTheirDefinition() throws SQLException {
+		for (final TableClearStrategy strategy : new TableClearStrategy[] {
+			TableClearStrategy.AUTOMATIC, TableClearStrategy.DELETE, TableClearStrategy.RECREATE
+		}) {
+			try (
+				final Connection connection = connect(strategy.getParameterValue() + ".db");
+				final Statement statement = connection.createStatement()
+			) {
+				statement.executeUpdate("CREATE TABLE tokenized_submission (id INT PRIMARY KEY, text TEXT NOT NULL)");
+				statement.executeUpdate("CREATE INDEX tokenized_submission_text ON tokenized_submission (text)");
+				statement.executeUpdate("CREATE TABLE inserted_submission (id INT)");
+				statement.executeUpdate(
+					"CREATE TRIGGER tokenized_submission_inserted AFTER INSERT ON tokenized_submission " +
+					"BEGIN INSERT INTO inserted_submission VALUES (NEW.id); END"
+				);
+				statement.executeUpdate("INSERT INTO tokenized_submission VALUES (1, 'a'), (2, 'b')");
+
+				strategy.clear(connection, "tokenized_submission");
+
+				assertEquals(0, queryInt(statement, "SELECT COUNT(*) FROM tokenized_submission"), strategy.name());
+				assertEquals(
+					List.of("index tokenized_submission_text", "trigger tokenized_submission_inserted"),
+					getSchemaObjects(statement, "tokenized_submission"), strategy.name()
+				);
+
+				// The trigger still fires, and the table still has its constraints
+				statement.executeUpdate("INSERT INTO tokenized_submission VALUES (3, 'c')");
+				assertEquals(3, queryInt(statement, "SELECT COUNT(*) FROM inserted_submission"), strategy.name());
+				assertThrows(SQLException.class, () -> statement.executeUpdate("INSERT INTO tokenized_submission VALUES (3, 'd')"));
+			}
+		}
+	}
+
+	/**
+	 * Checks that tables that don't exist can't be recreated.
+	 */
+	@Test
+	void missingTablesAreNotRecreated() throws SQLException {
+		try (final Connection connection = connect("corpus.db")) {
+			assertThrows(SQLException.class, () -> TableClearStrategy.RECREATE.clear(connection, "tokenized_submission"));
+		}
+	}
+
+	/**
+	 * Checks that tables of databases other than SQLite are not recreated, without
+	 * executing any statement on them.
+	 */
+	@Test
+	void tablesAreOnlyRecreatedInSqlite() {
+		final Connection connection = createConnection("PostgreSQL");
+
+		assertThrows(SQLException.class, () -> TableClearStrategy.RECREATE.clear(connection, "tokenized_submission"));
+	}
+
+	/**
+	 * Opens a connection to a SQLite database in the database folder.
+	 *
+	 * @param databaseFile The name of the database file.
+	 * @return The described connection.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	private Connection connect(final String databaseFile) throws SQLException {
+		return DriverManager.getConnection("jdbc:sqlite:" + databaseFolder.resolve(databaseFile));
+	}
+
+	/**
+	 * Creates a connection that only tells the name of the database it connects
+	 * to. Any other method throws an exception.
+	 *
+	 * @param databaseProductName The name of the database.
+	 * @return The described connection.
+	 */
+	private static Connection createConnection(final String databaseProductName) {
+		final DatabaseMetaData metaData = (DatabaseMetaData) Proxy.newProxyInstance(
+			TableClearStrategyTest.class.getClassLoader(), new Class<?>[] { DatabaseMetaData.class },
+			(final Object proxy, final Method method, final Object[] args) -> {
+				if ("getDatabaseProductName".equals(method.getName())) {
+					return databaseProductName;
+				}
+
+				throw new UnsupportedOperationException(method.getName());
+			}
+		);
+
+		return (Connection) Proxy.newProxyInstance(
+			TableClearStrategyTest.class.getClassLoader(), new Class<?>[] { Connection.class },
+			(final Object proxy, final Method method, final Object[] args) -> {
+				if ("getMetaData".equals(method.getName())) {
+					return metaData;
+				}
+
+				throw new UnsupportedOperationException(method.getName());
+			}
+		);
+	}
+
+	/**
+	 * Returns the explicitly created indexes and triggers of a SQLite table, in
+	 * creation order.
+	 *
+	 * @param statement The statement to query the schema table with.
+	 * @param tableName The name of the table.
+	 * @return The type and name of every index and trigger of the table.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	private static List<String> getSchemaObjects(final Statement statement, final String tableName) throws SQLException {
+		final List<String> schemaObjects = new ArrayList<>();
+
+		try (final ResultSet resultSet = statement.executeQuery(
+			"SELECT type, name FROM sqlite_master WHERE tbl_name = '" + tableName + "' AND type <> 'table' AND sql IS NOT NULL ORDER BY rowid"
+		)) {
+			while (resultSet.next()) {
+				schemaObjects.add(resultSet.getString(1) + " " + resultSet.getString(2));
+			}
+		}
+
+		return schemaObjects;
+	}
+
+	/**
+	 * Executes a query that returns an integer.
+	 *
+	 * @param statement The statement to execute the query with.
+	 * @param sql       The query.
+	 * @return The integer returned by the query.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	private static int queryInt(final Statement statement, final String sql) throws SQLException {
+		try (final ResultSet resultSet = statement.executeQuery(sql)) {
+			resultSet.next();
+			return resultSet.getInt(1);
+		}
+	}
+}
@@ -0,0 +1,91 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.tpplemmatization;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.LowerCaseFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.Tokenizer;
+import org.apache.lucene.analysis.core.WhitespaceTokenizer;
+import org.apache.lucene.analysis.en.KStemFilter;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+import es.uvigo.esei.sing.textproc.abstracttppstep.InProcessTppOperation;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import es.uvigo.esei.sing.textproc.step.tpplemmatization.xml.definition.ModelProcessingStepParameter;
+import lombok.NonNull;
+
+/**
+ * Lemmatizes English text in the JVM, using the Krovetz stemmer bundled with
+ * Lucene, which maps inflected words to their dictionary form. Like the
+ * reference implementation of Text Processing Python, words are delimited by
+ * white space and normalized to lowercase, but pronouns are not removed. Text
+ * is always lemmatized as English, so the model parameter must name a model
+ * for English.
+ *
+ * @author Alejandro González García
+ */
+final class KStemLemmatizationOperation implements InProcessTppOperation {
+	private static final String MODEL_PROCESSING_STEP_PARAMETER_NAME = new ModelProcessingStepParameter().getName();
+
+	/**
+	 * The English models of Text Processing Python: the spaCy models for English,
+	 * whose names start with "en_", and the NLTK WordNet lemmatizer.
+	 */
+	private static final Pattern ENGLISH_MODEL_REGEX = Pattern.compile("en_\\w+|wordnet");
+
+	/**
+	 * The analyzer that lemmatizes text. Analyzers keep a token stream per
+	 * thread, so it can be shared by every worker thread.
+	 */
+	private final Analyzer analyzer = new Analyzer() {
+		@Override
+		protected TokenStreamComponents createComponents(final String fieldName) {
+			final Tokenizer tokenizer = new WhitespaceTokenizer();
+
+			return new TokenStreamComponents(tokenizer, new KStemFilter(new LowerCaseFilter(tokenizer)));
+		}
+	};
+
+	@Override
+	public String process(@NonNull final String text, final Map<String, String> stepParameters) throws ProcessingException {
+		final StringBuilder lemmatizedTextBuilder = new StringBuilder(text.length());
+
+		try (final TokenStream lemmas = analyzer.tokenStream("text", text)) {
+			final CharTermAttribute lemma = lemmas.addAttribute(CharTermAttribute.class);
+
+			lemmas.reset();
+
+			while (lemmas.incrementToken()) {
+				if (lemmatizedTextBuilder.length() > 0) {
+					lemmatizedTextBuilder.append(' ');
+				}
+
+				lemmatizedTextBuilder.append(lemma);
+			}
+
+			lemmas.end();
+		} catch (final IOException exc) {
+			throw new ProcessingException("An exception occurred while lemmatizing a document", exc);
+		}
+
+		return lemmatizedTextBuilder.toString();
+	}
+
+	@Override
+	public void validate(@NonNull final Map<String, String> stepParameters) throws ProcessingException {
+		final String model = stepParameters.get(MODEL_PROCESSING_STEP_PARAMETER_NAME);
+
+		if (model == null || !ENGLISH_MODEL_REGEX.matcher(model.toLowerCase(Locale.ROOT)).matches()) {
+			throw new ProcessingException(
+				"The in-process backend can only lemmatize English text, but " + model + " is not an English model. " +
+				"Supported models: en_* spaCy models, wordnet"
+			);
+		}
+	}
+}
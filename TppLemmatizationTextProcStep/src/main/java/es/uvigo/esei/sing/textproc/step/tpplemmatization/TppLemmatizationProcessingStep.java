@@ -44,6 +44,13 @@ import lombok.Setter;
  * 	</parameters>
  * </step>}
  * </pre>
+ * <p>
+ * English documents may also be lemmatized in the JVM, without a web service,
+ * by replacing the endpoint parameter with
+ * {@code <tpp:backend>in-process</tpp:backend>}. See
+ * {@link KStemLemmatizationOperation} for the differences with the reference
+ * implementation.
+ * </p>
  *
  * @author Alejandro González García
  */
@@ -74,7 +81,9 @@ final class TppLemmatizationProcessingStep extends AbstractTppProcessingStep {
 			// Request parameters action
 			requestParametersAction,
 			// Attribute store action
-			new LemmatizedAttributeStoreAction()
+			new LemmatizedAttributeStoreAction(),
+			// In-process operation
+			new KStemLemmatizationOperation()
 		);
 	}
 
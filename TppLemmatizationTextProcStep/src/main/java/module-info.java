@@ -8,6 +8,7 @@
  */
 module es.uvigo.esei.sing.textproc.step.tpplemmatization {
 	requires es.uvigo.esei.sing.textproc.abstracttppstep;
+	requires lucene.shaded;
 
 	requires lombok;
 	requires es.uvigo.esei.sing.textproc.step;
@@ -0,0 +1,44 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.tpplemmatization;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+
+/**
+ * Tests the in-process lemmatization of {@link KStemLemmatizationOperation}.
+ *
+ * @author Alejandro González García
+ */
+public class KStemLemmatizationOperationTest {
+	private final KStemLemmatizationOperation operation = new KStemLemmatizationOperation();
+
+	/**
+	 * Checks that text is lemmatized with the English models Text Processing
+	 * Python offers.
+	 */
+	@Test
+	void englishModelsAreSupported() throws ProcessingException {
+		for (final String model : new String[] { "en_core_web_sm", "en_core_web_lg", "wordnet" }) {
+			operation.validate(Map.of("model", model));
+			assertEquals("the cat sat", operation.process("The  cats sat", Map.of("model", model)), model);
+		}
+	}
+
+	/**
+	 * Checks that models for other languages are rejected, instead of lemmatizing
+	 * their text as English.
+	 */
+	@Test
+	void otherModelsAreRejected() {
+		for (final String model : new String[] { "es_core_news_sm", "de_core_news_sm", "english" }) {
+			assertThrows(ProcessingException.class, () -> operation.validate(Map.of("model", model)), model);
+		}
+	}
+}
@@ -2,18 +2,166 @@
 
 package es.uvigo.esei.sing.textproc.step.tpplemmatization;
 
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import es.uvigo.esei.sing.textproc.logging.TextProcLogging;
+import es.uvigo.esei.sing.textproc.persistence.TextProcPersistence;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import es.uvigo.esei.sing.textproc.step.tpplemmatization.TppLemmatizationProcessingStep.AddModelParameterAction;
+import es.uvigo.esei.sing.textproc.step.tpplemmatization.entity.TppLemmatizedTextDocument;
+import es.uvigo.esei.sing.textproc.step.tpplemmatization.entity.TppLemmatizedTextWithTitleDocument;
+import es.uvigo.esei.sing.textproc.step.xml.definition.TextDocumentTableNameProcessingStepParameter;
+import es.uvigo.esei.sing.textproc.step.xml.definition.TextDocumentWithTitleTableNameProcessingStepParameter;
 
 /**
- * TODO: replace with actual tests.
+ * Tests how {@link TppLemmatizationProcessingStep} lemmatizes documents with
+ * the in-process backend, on a SQLite database.
  *
  * @author Alejandro González García
  */
 public class TppLemmatizationProcessingStepTest {
-    @Test
-    void test() {
-        assertTrue(true);
-    }
+	private static final String CONNECTION_URL_PROPERTY_NAME = "hibernate.connection.url";
+
+	@TempDir
+	static Path databaseFolder;
+	private static String connectionUrl;
+
+	@BeforeAll
+	static void startPersistence() {
+		connectionUrl = "jdbc:sqlite:" + databaseFolder.resolve("corpus.db");
+
+		TextProcLogging.initialize(TppLemmatizationProcessingStepTest.class.getSimpleName());
+		TextProcPersistence.get().start(
+			Set.of(TppLemmatizedTextWithTitleDocument.class, TppLemmatizedTextDocument.class),
+			Map.of(CONNECTION_URL_PROPERTY_NAME, connectionUrl)
+		);
+	}
+
+	@AfterAll
+	static void stopPersistence() {
+		TextProcPersistence.get().stop();
+	}
+
+	@BeforeEach
+	void createTables() throws SQLException {
+		executeStatements(
+			"DROP TABLE IF EXISTS submission",
+			"DROP TABLE IF EXISTS comment",
+			"DROP TABLE IF EXISTS lemmatized_text_with_title_document",
+			"DROP TABLE IF EXISTS lemmatized_text_document",
+			"CREATE TABLE submission (id INT PRIMARY KEY, title TEXT NOT NULL, text TEXT NOT NULL)",
+			"CREATE TABLE comment (id INT PRIMARY KEY, text TEXT NOT NULL)",
+			"CREATE TABLE lemmatized_text_with_title_document (id INT PRIMARY KEY, text TEXT NOT NULL, title TEXT NOT NULL)",
+			"CREATE TABLE lemmatized_text_document (id INT PRIMARY KEY, text TEXT NOT NULL)",
+			"INSERT INTO submission VALUES (1, 'Running cats', 'The cats sat')",
+			"INSERT INTO comment VALUES (1, 'Cats sat')"
+		);
+	}
+
+	/**
+	 * Checks that documents are lemmatized in the JVM with an English model.
+	 */
+	@Test
+	void inProcessStepLemmatizesDocuments() throws ProcessingException, SQLException {
+		createStep().execute(getParameters("en_core_web_sm"));
+
+		assertEquals("the cat sat", querySingleValue("SELECT text FROM lemmatized_text_with_title_document"));
+		assertEquals("running cat", querySingleValue("SELECT title FROM lemmatized_text_with_title_document"));
+		assertEquals("cat sat", querySingleValue("SELECT text FROM lemmatized_text_document"));
+	}
+
+	/**
+	 * Checks that an in-process step with a model it doesn't support fails,
+	 * instead of skipping every document and completing without results.
+	 */
+	@Test
+	void misconfiguredInProcessStepFails() throws SQLException {
+		final TppLemmatizationProcessingStep step = createStep();
+
+		assertThrows(ProcessingException.class, () -> step.execute(getParameters("es_core_news_sm")));
+		assertEquals("0", querySingleValue("SELECT COUNT(*) FROM lemmatized_text_with_title_document"));
+		assertEquals("0", querySingleValue("SELECT COUNT(*) FROM lemmatized_text_document"));
+	}
+
+	/**
+	 * Creates a lemmatization step, as its service does.
+	 *
+	 * @return The described step.
+	 */
+	private static TppLemmatizationProcessingStep createStep() {
+		final AddModelParameterAction requestParametersAction = new AddModelParameterAction();
+		final TppLemmatizationProcessingStep step = new TppLemmatizationProcessingStep(requestParametersAction);
+
+		requestParametersAction.setStep(step);
+
+		return step;
+	}
+
+	/**
+	 * Returns the parameters to execute a lemmatization step with the in-process
+	 * backend.
+	 *
+	 * @param model The model to lemmatize documents with.
+	 * @return The described parameters.
+	 */
+	private static Map<String, String> getParameters(final String model) {
+		return Map.of(
+			new TextDocumentWithTitleTableNameProcessingStepParameter().getName(), "submission",
+			new TextDocumentTableNameProcessingStepParameter().getName(), "comment",
+			"backend", "in-process",
+			"model", model
+		);
+	}
+
+	/**
+	 * Executes a query that returns a single value.
+	 *
+	 * @param sql The query.
+	 * @return The value returned by the query, as a string.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	private static String querySingleValue(final String sql) throws SQLException {
+		try (
+			final Connection connection = DriverManager.getConnection(connectionUrl);
+			final Statement statement = connection.createStatement();
+			final ResultSet result = statement.executeQuery(sql)
+		) {
+			result.next();
+			return result.getString(1);
+		}
+	}
+
+	/**
+	 * Executes SQL statements in the test database, outside of the persistence
+	 * layer.
+	 *
+	 * @param statements The statements to execute.
+	 * @throws SQLException If some data access error occurs.
+	 */
+	private static void executeStatements(final String... statements) throws SQLException {
+		try (
+			final Connection connection = DriverManager.getConnection(connectionUrl);
+			final Statement statement = connection.createStatement()
+		) {
+			for (final String sql : statements) {
+				statement.execute(sql);
+			}
+		}
+	}
 }
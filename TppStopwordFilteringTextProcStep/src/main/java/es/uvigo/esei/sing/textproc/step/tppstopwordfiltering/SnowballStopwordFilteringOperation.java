@@ -0,0 +1,120 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.tppstopwordfiltering;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.apache.lucene.analysis.CharArraySet;
+import org.apache.lucene.analysis.WordlistLoader;
+import org.apache.lucene.analysis.snowball.SnowballFilter;
+import org.apache.lucene.util.IOUtils;
+
+import es.uvigo.esei.sing.textproc.abstracttppstep.InProcessTppOperation;
+import es.uvigo.esei.sing.textproc.step.ProcessingException;
+import es.uvigo.esei.sing.textproc.step.tppstopwordfiltering.xml.definition.LanguageProcessingStepParameter;
+import lombok.NonNull;
+
+/**
+ * Removes stopwords from text in the JVM, using the Snowball stopword lists
+ * bundled with Lucene, which are very similar to the NLTK stopword lists the
+ * reference implementation of Text Processing Python uses. Like it, the
+ * language is referred to by its NLTK name, words are compared regardless of
+ * case, and multiple spaces are normalized to a single space.
+ *
+ * @author Alejandro González García
+ */
+final class SnowballStopwordFilteringOperation implements InProcessTppOperation {
+	private static final String LANGUAGE_PROCESSING_STEP_PARAMETER_NAME = new LanguageProcessingStepParameter().getName();
+
+	/**
+	 * The languages there are Snowball stopword lists for, by their NLTK names.
+	 */
+	private static final Set<String> SUPPORTED_LANGUAGES = Set.of(
+		"danish", "dutch", "english", "finnish", "french", "german", "hungarian",
+		"italian", "norwegian", "portuguese", "russian", "spanish", "swedish"
+	);
+
+	private static final Pattern WHITESPACE_REGEX = Pattern.compile("\\s+");
+
+	private final Map<String, CharArraySet> stopwordSets = new ConcurrentHashMap<>();
+
+	@Override
+	public String process(@NonNull final String text, @NonNull final Map<String, String> stepParameters) throws ProcessingException {
+		final CharArraySet stopwords = getStopwords(stepParameters.get(LANGUAGE_PROCESSING_STEP_PARAMETER_NAME));
+		final StringBuilder filteredTextBuilder = new StringBuilder(text.length());
+
+		for (final String word : WHITESPACE_REGEX.split(text)) {
+			if (!word.isEmpty() && !stopwords.contains(word)) {
+				if (filteredTextBuilder.length() > 0) {
+					filteredTextBuilder.append(' ');
+				}
+
+				filteredTextBuilder.append(word);
+			}
+		}
+
+		return filteredTextBuilder.toString();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * The stopword list of the language is read here, so it is ready before any
+	 * text is processed.
+	 */
+	@Override
+	public void validate(@NonNull final Map<String, String> stepParameters) throws ProcessingException {
+		getStopwords(stepParameters.get(LANGUAGE_PROCESSING_STEP_PARAMETER_NAME));
+	}
+
+	/**
+	 * Returns the stopwords of a language, reading them from the bundled
+	 * Snowball stopword list the first time they are needed, which is when the
+	 * parameters of a step are validated.
+	 *
+	 * @param language The NLTK name of the language.
+	 * @return The stopwords of the language, compared regardless of case.
+	 * @throws ProcessingException If there is no stopword list for the language,
+	 *                             or it could not be read.
+	 */
+	private CharArraySet getStopwords(final String language) throws ProcessingException {
+		final String normalizedLanguage = language.toLowerCase(Locale.ROOT);
+		CharArraySet stopwords = stopwordSets.get(normalizedLanguage);
+
+		if (stopwords == null) {
+			if (!SUPPORTED_LANGUAGES.contains(normalizedLanguage)) {
+				throw new ProcessingException(
+					"The in-process backend can't remove stopwords in " + language + ". Supported languages: " +
+					String.join(", ", new TreeSet<>(SUPPORTED_LANGUAGES))
+				);
+			}
+
+			try (final Reader stopwordsReader = IOUtils.getDecodingReader(
+				SnowballFilter.class, normalizedLanguage + "_stop.txt", UTF_8
+			)) {
+				stopwords = CharArraySet.unmodifiableSet(
+					WordlistLoader.getSnowballWordSet(stopwordsReader, new CharArraySet(16, true))
+				);
+			} catch (final IOException exc) {
+				throw new ProcessingException("Couldn't read the stopword list for " + language, exc);
+			}
+
+			// Several threads may read the same list at first, but any of them will do
+			final CharArraySet previousStopwords = stopwordSets.putIfAbsent(normalizedLanguage, stopwords);
+			if (previousStopwords != null) {
+				stopwords = previousStopwords;
+			}
+		}
+
+		return stopwords;
+	}
+}
@@ -41,6 +41,12 @@ import lombok.Setter;
  *	</parameters>
  * </step>}
  * </pre>
+ * <p>
+ * Stopwords may also be removed in the JVM, without a web service, by
+ * replacing the endpoint parameter with
+ * {@code <tpp:backend>in-process</tpp:backend>}. Then the Snowball stopword
+ * lists are used instead, which support fewer languages.
+ * </p>
  *
  * @author Alejandro González García
  */
@@ -71,7 +77,9 @@ final class TppStopwordFilteringProcessingStep extends AbstractTppProcessingStep
 			// Request parameters action
 			requestParametersAction,
 			// Attribute store action
-			new FilteredAttributeStoreAction()
+			new FilteredAttributeStoreAction(),
+			// In-process operation
+			new SnowballStopwordFilteringOperation()
 		);
 	}
 
@@ -0,0 +1,127 @@
+// SPDX-License-Identifier: GPL-3.0-or-later
+
+package es.uvigo.esei.sing.textproc.step.tpptokenization;
+
+import java.util.Map;
+import java.util.regex.MatchResult;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import es.uvigo.esei.sing.textproc.abstracttppstep.InProcessTppOperation;
+
+/**
+ * Tokenizes text in the JVM, like the {@code casual_tokenize} function of NLTK
+ * the reference implementation of Text Processing Python uses does with its
+ * default arguments: HTML entities are unescaped, runs of more than three equal
+ * non-alphanumeric characters are shortened to three, and the text is split in
+ * URLs, phone numbers, emoticons, HTML tags, arrows, user handles, hashtags,
+ * e-mail addresses, words, numbers, ellipses and any other non-blank
+ * character, preserving case.
+ * <p>
+ * Only the named HTML entities that are common in user generated content are
+ * unescaped, and URLs must start with a scheme or {@code www.} to be recognized
+ * as such.
+ * </p>
+ *
+ * @author Alejandro González García
+ */
+final class CasualTokenizationOperation implements InProcessTppOperation {
+	private static final Pattern URL_REGEX = Pattern.compile(
+		"(?:https?://|www\\d{0,3}\\.)[^\\s()<>{}\\[\\]\"']*[^\\s`!()\\[\\]{};:'\".,<>?«»“”‘’]"
+	);
+	private static final Pattern PHONE_NUMBER_REGEX = Pattern.compile(
+		"(?:\\+?[01][ *\\-.)]*)?(?:\\(?\\d{3}[ *\\-.)]*)?\\d{3}[ *\\-.)]*\\d{4}"
+	);
+	private static final Pattern EMOTICON_REGEX = Pattern.compile(
+		"[<>]?[:;=8][\\-o*']?[)\\](\\[dDpP/:}{@|\\\\]|[)\\](\\[dDpP/:}{@|\\\\][\\-o*']?[:;=8][<>]?|</?3"
+	);
+
+	private static final Pattern TOKEN_REGEX = Pattern.compile(
+		String.join("|",
+			URL_REGEX.pattern(),
+			PHONE_NUMBER_REGEX.pattern(),
+			EMOTICON_REGEX.pattern(),
+			// HTML tags
+			"<[^>\\s]+>",
+			// ASCII arrows
+			"-+>|<-+",
+			// User handles
+			"@\\w+",
+			// Hashtags
+			"#+\\w+[\\w'\\-]*\\w+",
+			// E-mail addresses
+			"[\\w.+\\-]+@[\\w\\-]+\\.(?:[\\w\\-]\\.?)+[\\w\\-]",
+			// Words with apostrophes or dashes
+			"[^\\W\\d_](?:[^\\W\\d_]|['\\-_])+[^\\W\\d_]",
+			// Numbers, including fractions and decimals
+			"[+\\-]?\\d+[,/.:\\-]\\d+[+\\-]?",
+			// Words without apostrophes or dashes
+			"\\w+",
+			// Ellipses
+			"\\.(?:\\s*\\.)+",
+			// Everything else that is not white space
+			"\\S"
+		),
+		Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE | Pattern.UNICODE_CHARACTER_CLASS
+	);
+
+	private static final Pattern HANGING_CHARACTERS_REGEX = Pattern.compile("([^a-zA-Z0-9])\\1{3,}");
+	private static final Pattern HTML_ENTITY_REGEX = Pattern.compile("&(#?)(x?)(\\w+);");
+
+	private static final Map<String, String> NAMED_HTML_ENTITIES = Map.of(
+		"amp", "&",
+		"lt", "<",
+		"gt", ">",
+		"quot", "\"",
+		"apos", "'",
+		"nbsp", " "
+	);
+
+	@Override
+	public String process(final String text, final Map<String, String> stepParameters) {
+		final String normalizedText = HANGING_CHARACTERS_REGEX.matcher(unescapeHtmlEntities(text)).replaceAll("$1$1$1");
+		final Matcher tokenMatcher = TOKEN_REGEX.matcher(normalizedText);
+		final StringBuilder tokenizedTextBuilder = new StringBuilder(normalizedText.length());
+
+		while (tokenMatcher.find()) {
+			if (tokenizedTextBuilder.length() > 0) {
+				tokenizedTextBuilder.append(' ');
+			}
+
+			tokenizedTextBuilder.append(tokenMatcher.group());
+		}
+
+		return tokenizedTextBuilder.toString();
+	}
+
+	/**
+	 * Replaces the numeric and the supported named HTML entities in a text with
+	 * the characters they stand for. Unknown or invalid entities are kept as is.
+	 *
+	 * @param text The text whose HTML entities will be replaced.
+	 * @return The text with its HTML entities replaced.
+	 */
+	private static String unescapeHtmlEntities(final String text) {
+		if (text.indexOf('&') < 0) {
+			return text;
+		}
+
+		return HTML_ENTITY_REGEX.matcher(text).replaceAll((final MatchResult entity) -> {
+			String replacement = null;
+
+			if (entity.group(1).isEmpty()) {
+				replacement = entity.group(2).isEmpty() ? NAMED_HTML_ENTITIES.get(entity.group(3)) : null;
+			} else {
+				try {
+					final int codePoint = Integer.parseInt(entity.group(3), entity.group(2).isEmpty() ? 10 : 16);
+
+					replacement = Character.isValidCodePoint(codePoint) ? new String(Character.toChars(codePoint)) : null;
+				} catch (final NumberFormatException exc) {
+					// Not a valid numeric entity
+				}
+			}
+
+			return Matcher.quoteReplacement(replacement != null ? replacement : entity.group());
+		});
+	}
+}
@@ -32,6 +32,13 @@ import es.uvigo.esei.sing.textproc.step.tpptokenization.entity.TppTokenizedTextW
  * 	</parameters>
  * </step>}
  * </pre>
+ * <p>
+ * Documents may also be tokenized in the JVM, without a web service, by
+ * replacing the endpoint parameter with
+ * {@code <tpp:backend>in-process</tpp:backend>}. See
+ * {@link CasualTokenizationOperation} for the differences with the reference
+ * implementation.
+ * </p>
  *
  * @author Alejandro González García
  */
@@ -54,7 +61,9 @@ final class TppTokenizationProcessingStep extends AbstractTppProcessingStep {
 			// Request parameters action
 			new NullProcessingConsumer<>(),
 			// Attribute store action
-			new TokenStoreAction()
+			new TokenStoreAction(),
+			// In-process operation
+			new CasualTokenizationOperation()
 		);
 	}
 